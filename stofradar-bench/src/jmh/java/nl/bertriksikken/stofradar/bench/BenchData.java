@@ -0,0 +1,76 @@
+package nl.bertriksikken.stofradar.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nl.bertriksikken.stofradar.ParticulateMapper;
+import nl.bertriksikken.stofradar.config.RenderJob;
+import nl.bertriksikken.stofradar.render.ColorMapper;
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.render.SyntheticSensorValues;
+
+/**
+ * Synthetic input data shared by the benchmarks.<br>
+ * <br>
+ * All data is generated from a fixed seed, so runs are comparable.
+ */
+final class BenchData {
+
+    static final long SEED = SyntheticSensorValues.SEED;
+
+    private BenchData() {
+        // utility class
+    }
+
+    /**
+     * @return a colour mapper with the range of the PM2.5 map
+     */
+    static ColorMapper colorMapper() {
+        return ParticulateMapper.createColorMapper();
+    }
+
+    /**
+     * @return the render job of the Netherlands map
+     */
+    static RenderJob netherlands() {
+        return renderJob("netherlands", 53.560406, 3.359403, 50.750938, 7.227496, 1.0, 10.0);
+    }
+
+    /**
+     * @return the render job of the Rotterdam map
+     */
+    static RenderJob rotterdam() {
+        return renderJob("rotterdam", 51.9778, 4.3796, 51.858, 4.5739, 0.1, 0.3);
+    }
+
+    private static RenderJob renderJob(String name, double north, double west, double south, double east,
+            double innerRadius, double outerRadius) {
+        String json = String.format(Locale.ROOT,
+                "{\"name\":\"%s\",\"map\":\"%s.png\",\"north\":%f,\"west\":%f,\"south\":%f,\"east\":%f,"
+                        + "\"innerRadius\":%f,\"outerRadius\":%f,\"maxAgeMinutes\":65}",
+                name, name, north, west, south, east, innerRadius, outerRadius);
+        try {
+            return new ObjectMapper().readValue(json, RenderJob.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generates sensor values spread over a slightly larger area than the job.
+     * 
+     * @param job   the render job
+     * @param count the number of values
+     * @param now   the time of the most recent measurement
+     * @return the sensor values
+     */
+    static List<SensorValue> sensorValues(RenderJob job, int count, Instant now) {
+        return SyntheticSensorValues.generate(job, count, now);
+    }
+
+}
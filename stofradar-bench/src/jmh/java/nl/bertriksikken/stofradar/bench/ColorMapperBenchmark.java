@@ -0,0 +1,50 @@
+package nl.bertriksikken.stofradar.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nl.bertriksikken.stofradar.render.ColorMapper;
+
+/**
+ * Colour lookup, done once for every pixel of every map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ColorMapperBenchmark {
+
+    private static final int VALUES = 1024;
+
+    private ColorMapper mapper;
+    private double[] values;
+
+    @Setup
+    public void setup() {
+        mapper = BenchData.colorMapper();
+        // cover the whole range, including values beyond the last colour point
+        Random random = new Random(BenchData.SEED);
+        values = new double[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = 160.0 * random.nextDouble();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void getColour(Blackhole blackhole) {
+        for (double value : values) {
+            blackhole.consume(mapper.getColour(value));
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package nl.bertriksikken.stofradar.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nl.bertriksikken.stofradar.senscom.dto.DataPoint;
+
+/**
+ * JSON binding of a complete sensor.community dust download, using a recorded
+ * response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DataPointBenchmark {
+
+    private static final String FIXTURE = "201806032249_data.dust.min.json";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream(FIXTURE)) {
+            if (is == null) {
+                throw new IOException("Fixture not found: " + FIXTURE);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = is.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, length);
+            }
+            json = bytes.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public List<DataPoint> bind() throws IOException {
+        return mapper.readValue(json, new TypeReference<List<DataPoint>>() {
+        });
+    }
+
+}
@@ -0,0 +1,66 @@
+package nl.bertriksikken.stofradar.bench;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import nl.bertriksikken.stofradar.config.RenderJob;
+import nl.bertriksikken.stofradar.filter.BoundingBoxFilter;
+import nl.bertriksikken.stofradar.filter.FilterPipeline;
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.filter.ISensorFilter;
+import nl.bertriksikken.stofradar.filter.PercentileFilter;
+import nl.bertriksikken.stofradar.filter.SensorIdFilter;
+import nl.bertriksikken.stofradar.filter.TimeFilter;
+import nl.bertriksikken.stofradar.filter.ValueFilter;
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * The filter stages applied to the PM values before rendering, with the same
+ * stages as the application, for a country-wide and a city job.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterPipelineBenchmark {
+
+    @Param({ "1000", "5000", "20000" })
+    public int sensors;
+
+    private FilterPipeline pipeline;
+    private List<SensorValue> values;
+
+    @Setup
+    public void setup() {
+        RenderJob netherlands = BenchData.netherlands();
+        RenderJob rotterdam = BenchData.rotterdam();
+        Instant now = Instant.now();
+        Instant oldest = now.minus(Duration.ofMinutes(netherlands.getMaxAgeMinutes()));
+
+        List<ISensorFilter> stages = Arrays.asList(new PercentileFilter(0.01), new ValueFilter(),
+                new SensorIdFilter(Collections.singletonList("sensor-1")));
+        pipeline = new FilterPipeline(stages);
+        for (RenderJob job : Arrays.asList(netherlands, rotterdam)) {
+            pipeline.addJob(job.getName(), Arrays.asList(new BoundingBoxFilter(job, 2.0), new TimeFilter(oldest)));
+        }
+        values = BenchData.sensorValues(netherlands, sensors, now);
+    }
+
+    @Benchmark
+    public FilterResult apply() {
+        return pipeline.apply(values);
+    }
+
+}
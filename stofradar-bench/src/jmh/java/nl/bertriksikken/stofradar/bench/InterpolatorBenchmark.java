@@ -0,0 +1,69 @@
+package nl.bertriksikken.stofradar.bench;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import nl.bertriksikken.stofradar.config.RenderJob;
+import nl.bertriksikken.stofradar.render.ColorMapper;
+import nl.bertriksikken.stofradar.render.IShader;
+import nl.bertriksikken.stofradar.render.Interpolator;
+import nl.bertriksikken.stofradar.render.InverseDistanceWeightShader;
+import nl.bertriksikken.stofradar.render.MedianShader;
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Interpolation of a complete map, as done for every render job in every cycle.
+ * The raster sizes are those of the Netherlands map and of the largest city map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InterpolatorBenchmark {
+
+    @Param({ "idw", "median" })
+    public String shader;
+
+    @Param({ "250", "1000", "4000" })
+    public int sensors;
+
+    @Param({ "613x724", "1000x800" })
+    public String size;
+
+    private Interpolator interpolator;
+    private List<SensorValue> values;
+    private WritableRaster raster;
+
+    @Setup
+    public void setup() {
+        RenderJob job = BenchData.netherlands();
+        ColorMapper mapper = BenchData.colorMapper();
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+
+        IShader pixelShader = "median".equals(shader) ? new MedianShader(job, mapper)
+                : new InverseDistanceWeightShader(job, mapper);
+        interpolator = new Interpolator(job, pixelShader, width, height);
+        values = BenchData.sensorValues(job, sensors, Instant.now());
+        raster = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB).getRaster();
+    }
+
+    @Benchmark
+    public WritableRaster interpolate() {
+        interpolator.interpolate(values, raster);
+        return raster;
+    }
+
+}
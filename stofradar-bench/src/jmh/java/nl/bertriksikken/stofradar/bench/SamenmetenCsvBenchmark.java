@@ -0,0 +1,57 @@
+package nl.bertriksikken.stofradar.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nl.bertriksikken.stofradar.samenmeten.csv.SamenmetenCsvLuchtEntry;
+
+/**
+ * Parsing of the lines of a Samenmeten download.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SamenmetenCsvBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int sensors;
+
+    private List<String> lines;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(BenchData.SEED);
+        lines = new ArrayList<>(sensors);
+        for (int i = 0; i < sensors; i++) {
+            double lon = 3.4 + 3.8 * random.nextDouble();
+            double lat = 50.8 + 2.7 * random.nextDouble();
+            double pm10 = 30.0 * random.nextDouble();
+            double pm2_5 = 20.0 * random.nextDouble();
+            lines.add(String.format(Locale.ROOT,
+                    "2021-12-23 19:00:00, LTD_%d, BA%03d, Project, "
+                            + "{\"type\":\"Point\",\"coordinates\":[%.5f,%.5f]}, %.3f, %.3f, , , -99, -99, -99, , 9, 9, ",
+                    i, i % 1000, lon, lat, pm10, pm2_5));
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(SamenmetenCsvLuchtEntry.parse(line));
+        }
+    }
+
+}
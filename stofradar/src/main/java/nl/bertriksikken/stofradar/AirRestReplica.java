@@ -0,0 +1,69 @@
+package nl.bertriksikken.stofradar;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.PropertyConfigurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.config.ParticulateMapperConfig;
+import nl.bertriksikken.stofradar.config.RenderJob;
+import nl.bertriksikken.stofradar.field.FieldStore;
+import nl.bertriksikken.stofradar.restapi.AirRestServer;
+import nl.bertriksikken.stofradar.snapshot.SnapshotConfig;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+import nl.bertriksikken.stofradar.snapshot.SnapshotWatcher;
+import nl.bertriksikken.stofradar.trace.TraceRecorder;
+
+/**
+ * Runs only the REST API, as a read replica of the application.<br>
+ * <br>
+ * The application writes every snapshot to a file with 'snapshot.publish'
+ * enabled in the configuration, and the field of every render job to the
+ * intermediate directory. The replica reads the same configuration, follows
+ * those files and serves them, without downloading or rendering anything
+ * itself. Several replicas can share the files of one application, each with
+ * its own working directory and port. History is not served by a replica.
+ */
+public final class AirRestReplica {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AirRestReplica.class);
+
+    private final SnapshotWatcher watcher;
+    private final AirRestServer server;
+
+    AirRestReplica(ParticulateMapperConfig config) {
+        SnapshotConfig snapshotConfig = config.getSnapshotConfig();
+        Map<String, Path> fieldFiles = new HashMap<>();
+        for (RenderJob job : config.getRenderJobs()) {
+            fieldFiles.put(job.getName(),
+                    Paths.get(config.getIntermediateDir(), job.getName(), ParticulateMapper.FIELD_FILE_NAME));
+        }
+        SnapshotHolder snapshotHolder = new SnapshotHolder();
+        FieldStore fieldStore = new FieldStore();
+        watcher = new SnapshotWatcher(snapshotConfig.getFile(), fieldFiles, snapshotHolder, fieldStore,
+                snapshotConfig.getPollInterval());
+        server = new AirRestServer(config.getPmRestApiConfig(), config.getPipelineConfig().getInterval(),
+                snapshotHolder, fieldStore, null, new TraceRecorder(config.getTraceConfig()));
+    }
+
+    public static void main(String[] args) throws IOException {
+        PropertyConfigurator.configure("log4j.properties");
+
+        ParticulateMapperConfig config = ParticulateMapper.readConfig(new File("stofradar.yaml"));
+        AirRestReplica replica = new AirRestReplica(config);
+        replica.start();
+    }
+
+    void start() throws IOException {
+        LOG.info("Starting read replica");
+        watcher.start();
+        server.start();
+    }
+
+}
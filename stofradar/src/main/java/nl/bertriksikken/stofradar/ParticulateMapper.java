@@ -5,13 +5,12 @@ import java.awt.image.WritableRaster;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -19,18 +18,12 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoField;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.imageio.ImageIO;
@@ -45,26 +38,60 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
+import nl.bertriksikken.stofradar.cache.SensorValueJournal;
 import nl.bertriksikken.stofradar.config.ParticulateMapperConfig;
 import nl.bertriksikken.stofradar.config.RenderJob;
+import nl.bertriksikken.stofradar.field.FieldFile;
+import nl.bertriksikken.stofradar.field.FieldStore;
+import nl.bertriksikken.stofradar.filter.BoundingBoxFilter;
+import nl.bertriksikken.stofradar.filter.FilterPipeline;
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.filter.ISensorFilter;
+import nl.bertriksikken.stofradar.filter.PercentileFilter;
+import nl.bertriksikken.stofradar.filter.SensorIdFilter;
+import nl.bertriksikken.stofradar.filter.TimeFilter;
+import nl.bertriksikken.stofradar.filter.ValueFilter;
+import nl.bertriksikken.stofradar.history.HistoryStore;
+import nl.bertriksikken.stofradar.ingest.RenderTrigger;
+import nl.bertriksikken.stofradar.ingest.SensorStore;
+import nl.bertriksikken.stofradar.ingest.SourceScheduler;
+import nl.bertriksikken.stofradar.ingest.SourceScheduler.ISource;
 import nl.bertriksikken.stofradar.meetjestad.MeetjestadDataEntry;
 import nl.bertriksikken.stofradar.meetjestad.MeetjestadDownloader;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+import nl.bertriksikken.stofradar.metrics.StageMetrics;
+import nl.bertriksikken.stofradar.output.AtomicFiles;
+import nl.bertriksikken.stofradar.output.SideOutputStage;
+import nl.bertriksikken.stofradar.pipeline.CycleContext;
+import nl.bertriksikken.stofradar.pipeline.PipelineScheduler;
+import nl.bertriksikken.stofradar.pipeline.PipelineStats;
 import nl.bertriksikken.stofradar.render.ColorMapper;
 import nl.bertriksikken.stofradar.render.ColorPoint;
 import nl.bertriksikken.stofradar.render.IShader;
 import nl.bertriksikken.stofradar.render.Interpolator;
 import nl.bertriksikken.stofradar.render.InverseDistanceWeightShader;
 import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.replay.RecordingInterceptor;
+import nl.bertriksikken.stofradar.replay.Recordings;
+import nl.bertriksikken.stofradar.replay.ReplayConfig;
+import nl.bertriksikken.stofradar.restapi.AirField;
 import nl.bertriksikken.stofradar.restapi.AirRestServer;
 import nl.bertriksikken.stofradar.samenmeten.csv.SamenmetenCsvDownloader;
 import nl.bertriksikken.stofradar.samenmeten.csv.SamenmetenCsvLuchtEntry;
 import nl.bertriksikken.stofradar.samenmeten.csv.SamenmetenCsvWriter;
-import nl.bertriksikken.stofradar.senscom.SensComConfig;
 import nl.bertriksikken.stofradar.senscom.SensComDataApi;
 import nl.bertriksikken.stofradar.senscom.dto.DataPoint;
 import nl.bertriksikken.stofradar.senscom.dto.DataValue;
 import nl.bertriksikken.stofradar.senscom.dto.Location;
 import nl.bertriksikken.stofradar.senscom.dto.Sensor;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+import nl.bertriksikken.stofradar.snapshot.SnapshotFile;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+import nl.bertriksikken.stofradar.stats.Quantiles;
+import nl.bertriksikken.stofradar.trace.CycleTrace;
+import nl.bertriksikken.stofradar.trace.Span;
+import nl.bertriksikken.stofradar.trace.TraceRecorder;
+import okhttp3.Interceptor;
 
 /**
  * Process the sensor.community JSON and produces a CSV with coordinates and
@@ -75,18 +102,37 @@ public final class ParticulateMapper {
 
     private static final Logger LOG = LoggerFactory.getLogger(ParticulateMapper.class);
     private static final File SENSOR_VALUE_CACHE_FILE = new File("sensorvaluecache.json");
-
-    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private static final File SENSOR_VALUE_JOURNAL_FILE = new File("sensorvaluecache.journal");
+    private static final int SIDE_OUTPUT_QUEUE_SIZE = 16;
+    // in the directory of each render job
+    static final String FIELD_FILE_NAME = "pm2_5.field";
 
     private final ParticulateMapperConfig config;
+    // the time of the data, which is the wall clock except when replaying recorded data
+    private final Clock clock;
     private final SensComDataApi sensComDataApi;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    // map from id to sensor value
-    private final Map<String, SensorValue> sensorValueMap = new ConcurrentHashMap<>();
+    // latest value of every sensor, from all sources
+    private final SensorStore sensorStore = new SensorStore();
+    private final SourceScheduler sourceScheduler = new SourceScheduler(sensorStore);
+    private final RenderTrigger renderTrigger;
+    // latest humidity values from sensor.community
+    private volatile List<SensorValue> rhValues = Collections.emptyList();
+    // time of the most recent meetjestad entry, the next download starts from here
+    private Instant meetjestadLastSeen;
+    // consistent view of the sensor data for readers outside the pipeline
+    private final SnapshotHolder snapshotHolder = new SnapshotHolder();
+    private final FieldStore fieldStore = new FieldStore();
     private final SamenmetenCsvDownloader samenmetenDownloader;
     private final MeetjestadDownloader meetjestadDownloader;
     private final AirRestServer pmRestApiHandler;
     private final SamenmetenCsvWriter csvWriter = new SamenmetenCsvWriter();
+    private final SensorValueJournal journal = new SensorValueJournal(SENSOR_VALUE_JOURNAL_FILE.toPath());
+    private final HistoryStore historyStore;
+    // writes caches, CSV files and snapshots off the render path
+    private final SideOutputStage sideOutput = new SideOutputStage(SIDE_OUTPUT_QUEUE_SIZE);
+    private final PipelineScheduler<SensorSnapshot> scheduler;
+    private final TraceRecorder traceRecorder;
 
     // color range according
     // https://www.luchtmeetnet.nl/informatie/luchtkwaliteit/luchtkwaliteitsindex-(lki)
@@ -103,43 +149,64 @@ public final class ParticulateMapper {
             new ColorPoint(90, new int[] { 255, 75, 0, 0xC0 }), new ColorPoint(100, new int[] { 255, 25, 0, 0xC0 }),
             // very bad
             new ColorPoint(140, new int[] { 164, 58, 217, 0xC0 }) };
-    private final ColorMapper colorMapper = new ColorMapper(RANGE_PM2_5);
+    private final ColorMapper colorMapper = createColorMapper();
 
     ParticulateMapper(ParticulateMapperConfig config) {
-        this.config = config;
-        objectMapper.findAndRegisterModules();
-        sensComDataApi = SensComDataApi.create(config.getSensComConfig());
-        samenmetenDownloader = SamenmetenCsvDownloader.create(config.getSamenmetenCsvConfig());
-        meetjestadDownloader = MeetjestadDownloader.create(config.getMeetjestadConfig());
-        pmRestApiHandler = new AirRestServer(config.getPmRestApiConfig(), sensorValueMap);
+        this(config, Clock.systemUTC(), recorders(config.getReplayConfig()));
     }
 
-    private List<SensorValue> filterBySensorValue(List<SensorValue> values) {
-        List<SensorValue> filtered = values.stream().filter(v -> v.value >= 0.0).collect(Collectors.toList());
-        LOG.info("Filtered by sensor value: {} -> {}", values.size(), filtered.size());
-        return filtered;
-    }
-
-    private List<SensorValue> filterBySensorId(List<SensorValue> values, List<String> blacklist) {
-        List<SensorValue> filtered = values.stream().filter(v -> !blacklist.contains(v.id))
-                .collect(Collectors.toList());
-        LOG.info("Filtered by sensor id: {} -> {}", values.size(), filtered.size());
-        return filtered;
+    /**
+     * @param config       the configuration
+     * @param clock        the clock for the data
+     * @param interceptors interceptors on all upstream downloads
+     */
+    ParticulateMapper(ParticulateMapperConfig config, Clock clock, Interceptor... interceptors) {
+        this.config = config;
+        this.clock = clock;
+        objectMapper.findAndRegisterModules();
+        sensComDataApi = SensComDataApi.create(config.getSensComConfig(), interceptors);
+        samenmetenDownloader = SamenmetenCsvDownloader.create(config.getSamenmetenCsvConfig(), interceptors);
+        meetjestadDownloader = MeetjestadDownloader.create(config.getMeetjestadConfig(), interceptors);
+        historyStore = config.getHistoryConfig().isEnabled() ? new HistoryStore(config.getHistoryConfig()) : null;
+        traceRecorder = new TraceRecorder(config.getTraceConfig());
+        pmRestApiHandler = new AirRestServer(config.getPmRestApiConfig(), config.getPipelineConfig().getInterval(),
+                snapshotHolder, fieldStore, historyStore, traceRecorder);
+        scheduler = new PipelineScheduler<>(config.getPipelineConfig(), this::publishCycle, this::renderAll);
+        scheduler.setTraceListener(traceRecorder::record);
+        sourceScheduler.setTraceListener(traceRecorder::record);
+        renderTrigger = new RenderTrigger(config.getPipelineConfig().getRenderMinChanges(),
+                config.getPipelineConfig().getRenderDebounce(), scheduler::requestCycle);
+        registerMetrics();
     }
 
-    private List<SensorValue> filterByPercentile(List<SensorValue> values, double perc) {
-        List<SensorValue> copy = new ArrayList<>(values);
-        Collections.sort(copy, (v1, v2) -> Double.compare(v1.value, v2.value));
-        int newSize = (int) ((1 - perc) * values.size());
-        List<SensorValue> filtered = copy.subList(0, newSize);
-        LOG.info("Filtered by percentile filter: {} -> {}", values.size(), filtered.size());
-        return filtered;
+    // records the upstream payloads when enabled, for replay with ReplayRunner
+    private static Interceptor[] recorders(ReplayConfig replayConfig) {
+        if (!replayConfig.isRecord()) {
+            return new Interceptor[0];
+        }
+        LOG.info("Recording upstream payloads to {}", replayConfig.getDirectory());
+        return new Interceptor[] { new RecordingInterceptor(new Recordings(replayConfig.getDirectory())) };
     }
 
-    private List<SensorValue> filterByTime(List<SensorValue> values, Instant oldest) {
-        List<SensorValue> filtered = values.stream().filter(v -> v.time.isAfter(oldest)).collect(Collectors.toList());
-        LOG.info("Filtered by time filter: {} -> {}", values.size(), filtered.size());
-        return filtered;
+    private void registerMetrics() {
+        MetricsRegistry registry = MetricsRegistry.getDefault();
+        PipelineStats stats = scheduler.getStats();
+        registry.counter("stofradar_pipeline_cycles_total", "Pipeline cycles started", stats::getCycles);
+        registry.counter("stofradar_pipeline_skipped_cycles_total", "Pipeline cycles skipped",
+                stats::getSkippedCycles);
+        registry.counter("stofradar_pipeline_failed_cycles_total", "Pipeline cycles failed", stats::getFailedCycles);
+        registry.counter("stofradar_pipeline_degraded_cycles_total", "Pipeline cycles that skipped a stage",
+                stats::getDegradedCycles);
+        registry.counter("stofradar_pipeline_superseded_renders_total", "Renders dropped for a newer cycle",
+                stats::getSupersededRenders);
+        registry.gauge("stofradar_pipeline_lateness_seconds", "Delay of the last cycle start after its slot",
+                () -> stats.getLastLatenessMs() / 1000.0);
+        registry.gauge("stofradar_snapshot_generation", "Generation of the published snapshot",
+                () -> snapshotHolder.get().getGeneration());
+        registry.gauge("stofradar_side_output_pending", "Side output tasks waiting to run",
+                sideOutput::getPendingCount);
+        registry.gauge("stofradar_sensor_values", "Number of sensor values per stage", sensorStore::size, "kind",
+                "store", "scope", "all");
     }
 
     public static void main(String[] args) throws IOException {
@@ -150,7 +217,14 @@ public final class ParticulateMapper {
         particulateMapper.start();
     }
 
-    private static ParticulateMapperConfig readConfig(File file) throws IOException {
+    /**
+     * @return a new colour mapper with the colour range of the PM2.5 maps
+     */
+    public static ColorMapper createColorMapper() {
+        return new ColorMapper(RANGE_PM2_5);
+    }
+
+    static ParticulateMapperConfig readConfig(File file) throws IOException {
         ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
         mapper.setVisibility(PropertyAccessor.ALL, Visibility.NONE);
         try (FileInputStream fis = new FileInputStream(file)) {
@@ -170,19 +244,63 @@ public final class ParticulateMapper {
         // start REST API
         pmRestApiHandler.start();
 
-        // schedule immediate job for instant feedback
-        executor.submit(() -> runDownloadAndProcess(0));
+        // run an immediate cycle for instant feedback, then one every slot
+        scheduler.start();
 
-        // schedule periodic job
-        Instant now = Instant.now();
-        long initialDelay = 300L - (now.getEpochSecond() % 300L);
-        executor.scheduleAtFixedRate(() -> runDownloadAndProcess(2), initialDelay, 300L, TimeUnit.SECONDS);
+        // poll every source on its own cadence, re-render early when enough data changed
+        sourceScheduler.add("sensor.community", config.getSensComConfig().getInterval(), this::pollSensCom);
+        sourceScheduler.add("samenmeten", config.getSamenmetenCsvConfig().getInterval(), this::pollSamenmeten);
+        sourceScheduler.add("meetjestad", config.getMeetjestadConfig().getInterval(), this::pollMeetjestad);
+        sensorStore.addListener(renderTrigger);
+        sourceScheduler.start();
+    }
+
+    /**
+     * Runs one complete cycle on the calling thread, without the schedulers: polls
+     * every source once, then publishes and renders.
+     * 
+     * @param listener receives the trace of the polls and the trace of the cycle
+     */
+    void runCycle(Consumer<CycleTrace> listener) {
+        CycleTrace pollTrace = new CycleTrace("poll all");
+        pollOnce("sensor.community", this::pollSensCom, pollTrace);
+        pollOnce("samenmeten", this::pollSamenmeten, pollTrace);
+        pollOnce("meetjestad", this::pollMeetjestad, pollTrace);
+        pollTrace.finish();
+        listener.accept(pollTrace);
+
+        Instant now = clock.instant();
+        CycleContext context = new CycleContext(now, now.plus(config.getPipelineConfig().getDeadline()), clock);
+        SensorSnapshot snapshot = publishCycle(context);
+        renderAll(context, snapshot);
+        context.getTrace().finish();
+        listener.accept(context.getTrace());
+    }
+
+    private void pollOnce(String name, ISource source, CycleTrace trace) {
+        try {
+            sensorStore.update(name, source.poll(trace));
+        } catch (IOException e) {
+            LOG.warn("Failed to poll {}: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Stops all activity, waiting for pending side outputs.
+     */
+    void stop() throws InterruptedException {
+        sourceScheduler.stop();
+        scheduler.stop();
+        renderTrigger.stop();
+        sideOutput.stop(10_000);
     }
 
     private void persistSensorValues(List<SensorValue> values) {
         LOG.info("Persisting {} sensor values to cache", values.size());
-        try (FileOutputStream fos = new FileOutputStream(SENSOR_VALUE_CACHE_FILE)) {
-            objectMapper.writeValue(fos, values);
+        try {
+            Span span = Span.untraced("persist", "cache").sensorsIn(values.size());
+            journal.write(values);
+            span.end();
             LOG.info("Persisting done");
         } catch (Throwable e) {
             LOG.warn("Could not persist sensor values", e);
@@ -191,36 +309,138 @@ public final class ParticulateMapper {
 
     private void restoreSensorValues() {
         LOG.info("Restoring sensor values from cache");
-        try (FileInputStream fos = new FileInputStream(SENSOR_VALUE_CACHE_FILE)) {
-            List<SensorValue> values = objectMapper.readValue(fos, new TypeReference<List<SensorValue>>() {
-            });
-            values.forEach(v -> sensorValueMap.put(v.id, v));
+        try {
+            List<SensorValue> values = journal.restore();
+            if (values.isEmpty() && SENSOR_VALUE_CACHE_FILE.exists()) {
+                // one-time migration from the JSON cache, the next persist writes it to the journal
+                LOG.info("Restoring sensor values from legacy cache {}", SENSOR_VALUE_CACHE_FILE);
+                try (FileInputStream fis = new FileInputStream(SENSOR_VALUE_CACHE_FILE)) {
+                    values = objectMapper.readValue(fis, new TypeReference<List<SensorValue>>() {
+                    });
+                }
+            }
+            sensorStore.update("cache", values);
             LOG.info("Restored {} sensor values from cache", values.size());
         } catch (Throwable e) {
             LOG.warn("Could not restore sensor values", e);
         }
+        publishSnapshot(Instant.now(clock), new CycleTrace("restore"));
     }
 
-    private void runDownloadAndProcess(int retries) {
-        // run the main process in a try-catch to protect the thread it runs on from
-        // exceptions
-        try {
-            Instant now = Instant.now();
-            downloadAndProcess(now);
-        } catch (Throwable e) {
-            LOG.error("Caught top-level throwable", e);
-            if (retries > 0) {
-                LOG.error("Retrying in 30 seconds, retries left: {}", retries);
-                executor.schedule(() -> runDownloadAndProcess(retries - 1), 30L, TimeUnit.SECONDS);
+    /**
+     * Filters the current store contents for all render jobs and publishes the
+     * result as a new snapshot.
+     * 
+     * @param now   the time of the cycle
+     * @param trace the trace of the cycle
+     * @return the published snapshot
+     */
+    private SensorSnapshot publishSnapshot(Instant now, CycleTrace trace) {
+        List<SensorValue> pmValues = sensorStore.getValues();
+
+        // remove top percentile of measurements, then filter by value and id
+        List<ISensorFilter> pmStages = Arrays.asList(new PercentileFilter(0.01), new ValueFilter(),
+                new SensorIdFilter(config.getSensComConfig().getBlacklist()));
+        FilterPipeline pmPipeline = new FilterPipeline(pmStages);
+        FilterPipeline rhPipeline = new FilterPipeline(Collections.emptyList());
+        for (RenderJob job : config.getRenderJobs()) {
+            // apply bounding box and job-specific time limit
+            Instant oldestAllowed = now.minus(Duration.ofMinutes(job.getMaxAgeMinutes()));
+            pmPipeline.addJob(job.getName(),
+                    Arrays.asList(new BoundingBoxFilter(job, 2.0), new TimeFilter(oldestAllowed)));
+            rhPipeline.addJob(job.getName(), Collections.singletonList(new BoundingBoxFilter(job, 1.0)));
+        }
+        Span span = trace.span("filter", "all").sensorsIn(pmValues.size());
+        FilterResult pmResult = pmPipeline.apply(pmValues);
+        FilterResult rhResult = rhPipeline.apply(rhValues);
+        span.sensorsOut(pmResult.getValues().size()).end();
+        pmResult.log("PM");
+        rhResult.log("RH");
+        recordFilterMetrics("pm", pmResult);
+        recordFilterMetrics("rh", rhResult);
+
+        return snapshotHolder.publish(now, pmValues, pmResult, rhResult);
+    }
+
+    private void recordFilterMetrics(String pipeline, FilterResult result) {
+        result.getDropCounts().forEach((stage, count) -> StageMetrics.filterDropped(pipeline, "all", stage).set(count));
+        for (RenderJob job : config.getRenderJobs()) {
+            result.getJobDropCounts(job.getName())
+                    .forEach((stage, count) -> StageMetrics.filterDropped(pipeline, job.getName(), stage).set(count));
+        }
+        if (pipeline.equals("pm")) {
+            StageMetrics.sensors("filtered", "all").set(result.getValues().size());
+            for (RenderJob job : config.getRenderJobs()) {
+                StageMetrics.sensors("filtered", job.getName()).set(result.getJobValues(job.getName()).size());
             }
         }
     }
 
-    private void downloadAndProcess(Instant now) throws IOException {
-        // get UTC time rounded to 5 minutes
-        ZonedDateTime utcTime = ZonedDateTime.ofInstant(now, ZoneOffset.UTC);
-        int minute = 5 * (utcTime.get(ChronoField.MINUTE_OF_HOUR) / 5);
-        utcTime = utcTime.withMinute(minute).truncatedTo(ChronoUnit.MINUTES);
+    /**
+     * @return the name of the animation frame for the slot of a cycle
+     */
+    private String animationName(CycleContext context) {
+        ZonedDateTime utcTime = ZonedDateTime.ofInstant(context.getSlot(), ZoneOffset.UTC);
+        return String.format(Locale.ROOT, "%02d%02d.png", utcTime.getHour(), utcTime.getMinute());
+    }
+
+    private List<SensorValue> pollSensCom(CycleTrace trace) throws IOException {
+        LOG.info("Retrieving dust data from sensor.community");
+        Span span = trace.span("download", "sensor.community");
+        List<DataPoint> dataPoints = sensComDataApi.downloadDust();
+        span.sensorsOut(dataPoints.size()).end();
+
+        span = trace.span("parse", "sensor.community").sensorsIn(dataPoints.size());
+        rhValues = convertDataPoints(dataPoints, "BME280", "humidity");
+        List<SensorValue> pmValues = convertDataPoints(dataPoints, "", "P2");
+        span.sensorsOut(pmValues.size()).end();
+        return pmValues;
+    }
+
+    private List<SensorValue> pollSamenmeten(CycleTrace trace) throws IOException {
+        // download lucht
+        Span span = trace.span("download", "samenmeten");
+        List<String> samenmetenLines = samenmetenDownloader.downloadDataFromFile("lucht");
+        span.sensorsOut(samenmetenLines.size()).end();
+
+        span = trace.span("parse", "samenmeten").sensorsIn(samenmetenLines.size());
+        List<SamenmetenCsvLuchtEntry> luchtEntries = samenmetenLines.stream()
+                .map(line -> SamenmetenCsvLuchtEntry.parse(line)).collect(Collectors.toList());
+        List<SensorValue> values = convertSamenmeten(samenmetenLines);
+        span.sensorsOut(values.size()).end();
+
+        // save to intermediate file
+        sideOutput.submit("lucht.csv", () -> csvWriter.write(new File("lucht.csv"), luchtEntries));
+        return values;
+    }
+
+    private List<SensorValue> pollMeetjestad(CycleTrace trace) throws IOException {
+        // fetch only what is new since the last download
+        Instant from = (meetjestadLastSeen != null) ? meetjestadLastSeen : Instant.now(clock).minusSeconds(600);
+        Span span = trace.span("download", "meetjestad");
+        List<MeetjestadDataEntry> entries = meetjestadDownloader.download(from);
+        span.sensorsOut(entries.size()).end();
+        for (MeetjestadDataEntry entry : entries) {
+            Instant timestamp = entry.getTimestamp();
+            if ((meetjestadLastSeen == null) || timestamp.isAfter(meetjestadLastSeen)) {
+                meetjestadLastSeen = timestamp;
+            }
+        }
+        return convertMeetjestad(entries);
+    }
+
+    /**
+     * First stage of a pipeline cycle: filters and publishes the data collected
+     * so far.
+     * 
+     * @param context the cycle
+     * @return the published snapshot
+     */
+    private SensorSnapshot publishCycle(CycleContext context) {
+        Instant now = Instant.now(clock);
+        CycleTrace trace = context.getTrace();
+        // changes so far are included in this cycle
+        renderTrigger.reset();
 
         // create temporary name
         File tempDir = new File(config.getIntermediateDir());
@@ -229,7 +449,7 @@ public final class ParticulateMapper {
         }
 
         // delete output files for this time-of-day
-        String pngName = String.format(Locale.ROOT, "%02d%02d.png", utcTime.getHour(), utcTime.getMinute());
+        String pngName = animationName(context);
         for (RenderJob job : config.getRenderJobs()) {
             File jobDir = new File(tempDir, job.getName());
             File outputFile = new File(jobDir, pngName);
@@ -241,64 +461,64 @@ public final class ParticulateMapper {
             }
         }
 
-        // download data from sensor.community
-        LOG.info("Retrieving dust data from sensor.community");
-        List<DataPoint> dataPoints = sensComDataApi.downloadDust();
-
-        // convert DataPoints to internal format
-        List<SensorValue> pmValues = convertDataPoints(dataPoints, "", "P2");
-        List<SensorValue> rhValues = convertDataPoints(dataPoints, "BME280", "humidity");
-
-        // download PM2.5 data from RIVM samenmeten
-        try {
-            // download lucht
-            List<String> samenmetenLines = samenmetenDownloader.downloadDataFromFile("lucht");
-            List<SamenmetenCsvLuchtEntry> luchtEntries = samenmetenLines.stream()
-                    .map(line -> SamenmetenCsvLuchtEntry.parse(line)).collect(Collectors.toList());
-            // save to intermediate file
-            csvWriter.write(new File("lucht.csv"), luchtEntries);
-            // add to collection
-            List<SensorValue> samenmetenValues = convertSamenmeten(samenmetenLines);
-            pmValues.addAll(samenmetenValues);
-            LOG.info("Collected {} PM2.5 values from samenmeten", samenmetenValues.size());
-        } catch (IOException e) {
-            LOG.warn("Failed to download samenmeten data: {}", e.getMessage());
-        }
-
-        // download PM2.5 from meetjestad
-        List<MeetjestadDataEntry> meetjestadEntries = meetjestadDownloader.download(now.minusSeconds(600));
-        List<SensorValue> meetjestadValues = convertMeetjestad(meetjestadEntries);
-        LOG.info("Collected {} PM2.5 values from meetjestad", meetjestadValues.size());
-        pmValues.addAll(meetjestadValues);
+        // expire old data
+        Span span = trace.span("expire", "all");
+        int expired = sensorStore.expire(now.minus(config.getKeepingDuration()));
+        span.sensorsOut(sensorStore.size()).end();
+        LOG.info("Expired {} sensor values, {} left", expired, sensorStore.size());
 
-        // update list of sensor values, expiring old data
-        pmValues.forEach(v -> sensorValueMap.put(v.id, v));
-        Instant expiryTime = now.minus(config.getKeepingDuration());
-        sensorValueMap.entrySet().removeIf(e -> e.getValue().time.isBefore(expiryTime));
-        pmValues = new ArrayList<>(sensorValueMap.values());
+        // filter and publish an immutable snapshot for the REST API and renderers
+        SensorSnapshot snapshot = publishSnapshot(context.getSlot(), trace);
 
-        // store cached value
-        persistSensorValues(pmValues);
+        // store cached value, the snapshot lists are immutable so they can be handed off as is
+        sideOutput.submit("cache", () -> persistSensorValues(snapshot.getPmValues()));
 
-        // remove top percentile of measurements
-        pmValues = filterByPercentile(pmValues, 0.01);
+        // hand the snapshot to the read replicas
+        if (config.getSnapshotConfig().isPublish()) {
+            sideOutput.submit("snapshot", () -> SnapshotFile.write(config.getSnapshotConfig().getFile(), snapshot));
+        }
 
-        // filter by value and id
-        pmValues = filterBySensorValue(pmValues);
-        SensComConfig sensComConfig = config.getSensComConfig();
-        pmValues = filterBySensorId(pmValues, sensComConfig.getBlacklist());
+        // record accepted values in the history
+        if (historyStore != null) {
+            sideOutput.submit("history", () -> {
+                Span historySpan = Span.untraced("persist", "history");
+                historyStore.append(now, snapshot.getFilteredPmValues());
+                historySpan.sensorsIn(snapshot.getFilteredPmValues().size()).end();
+            });
+        }
+        return snapshot;
+    }
 
-        // render all jobs
+    /**
+     * Render stage of a pipeline cycle: renders all jobs from a snapshot, until
+     * the cycle deadline passes.
+     * 
+     * @param context  the cycle
+     * @param snapshot the snapshot published by the ingest stage
+     */
+    private void renderAll(CycleContext context, SensorSnapshot snapshot) {
+        File tempDir = new File(config.getIntermediateDir());
+        String pngName = animationName(context);
         for (RenderJob job : config.getRenderJobs()) {
+            if (context.isExpired()) {
+                context.degrade("render of " + job.getName() + " and further jobs");
+                break;
+            }
             File jobDir = new File(tempDir, job.getName());
             if (jobDir.mkdirs()) {
                 LOG.info("Created directory {}", jobDir);
             }
             File outputFile = new File(config.getOutputPath(), job.getName() + ".png");
-            render(job, jobDir, pmValues, rhValues, utcTime.toInstant(), outputFile);
-            // copy file for animation
-            File animationFile = new File(jobDir, pngName);
-            Files.copy(outputFile.toPath(), animationFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (render(job, jobDir, snapshot, context.getSlot(), outputFile, context.getTrace())) {
+                // link file for animation, the next render replaces the output file instead of overwriting it.
+                // Linked right away: a queued link could run after the next render and link the wrong frame.
+                File animationFile = new File(jobDir, pngName);
+                try {
+                    AtomicFiles.link(outputFile.toPath(), animationFile.toPath());
+                } catch (IOException e) {
+                    LOG.warn("Failed to link animation frame {}: {}", animationFile, e.getMessage());
+                }
+            }
         }
     }
 
@@ -328,76 +548,52 @@ public final class ParticulateMapper {
         return values;
     }
 
-    private void render(RenderJob job, File jobDir, List<SensorValue> pmValues, List<SensorValue> rhValues,
-            Instant instant, File outputFile) {
-
-        // apply bounding box
-        pmValues = filterByBoundingBox(pmValues, job, 2.0);
-        rhValues = filterByBoundingBox(rhValues, job, 1.0);
+    private boolean render(RenderJob job, File jobDir, SensorSnapshot snapshot, Instant instant, File outputFile,
+            CycleTrace trace) {
 
-        // apply job-specific time limit
-        Instant oldestAllowed = instant.minus(Duration.ofMinutes(job.getMaxAgeMinutes()));
-        pmValues = filterByTime(pmValues, oldestAllowed);
+        // bounding box and time limit were already applied when publishing the snapshot
+        List<SensorValue> pmValues = snapshot.getPmFilterResult().getJobValues(job.getName());
+        List<SensorValue> rhValues = snapshot.getRhFilterResult().getJobValues(job.getName());
 
         // calculate median humidity
-        double medianRh = calculateMedian(rhValues);
+        double medianRh = Quantiles.median(Quantiles.toArray(rhValues));
         LOG.info("Median humidity = {} %", String.format(Locale.ROOT, "%.2f", medianRh));
 
         try {
             // create overlay
             File overlayFile = new File(jobDir, "overlay.png");
-            renderDust(pmValues, overlayFile, colorMapper, job);
+            renderDust(pmValues, overlayFile, colorMapper, job, snapshot, new File(jobDir, FIELD_FILE_NAME), trace);
 
             // create composite from background image and overlay
             File baseMap = new File(job.getMapFile());
             File compositeFile = new File(jobDir, "composite.png");
+            Span span = trace.span("composite", job.getName());
             composite(config.getCompositeCmd(), overlayFile, baseMap, compositeFile);
+            span.bytes(compositeFile.length()).end();
 
             // add timestamp to composite
             LocalDateTime localDateTime = LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
             String timestampText = localDateTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
             String stampText = String.format(Locale.ROOT, "%s%nRV: %.1f %%", timestampText, medianRh);
-            timestamp(config.getConvertCmd(), stampText, compositeFile, outputFile);
+            // stamp into a temporary file, then publish it atomically
+            File tempFile = AtomicFiles.tempFileFor(outputFile.toPath()).toFile();
+            Files.deleteIfExists(tempFile.toPath());
+            span = trace.span("timestamp", job.getName());
+            timestamp(config.getConvertCmd(), stampText, compositeFile, tempFile);
+            span.bytes(tempFile.length()).end();
+            if (!tempFile.exists()) {
+                LOG.warn("Timestamping did not produce {}", tempFile);
+                return false;
+            }
+            AtomicFiles.replace(tempFile.toPath(), outputFile.toPath());
+            return true;
         } catch (IOException e) {
             LOG.trace("Caught IOException", e);
             LOG.warn("Caught IOException: {}", e.getMessage());
+            return false;
         }
     }
 
-    private double calculateMedian(List<SensorValue> values) {
-        List<SensorValue> copy = new ArrayList<>(values);
-        Collections.sort(copy, (v1, v2) -> Double.compare(v1.value, v2.value));
-        if (copy.isEmpty()) {
-            return Double.NaN;
-        }
-        double left = copy.get((copy.size() - 1) / 2).value;
-        double right = copy.get(copy.size() / 2).value;
-        return (left + right) / 2;
-    }
-
-    /**
-     * Filters sensor values by position according to a bounding box.
-     * 
-     * @param values the sensor values
-     * @param job    the render job
-     * @param area   the area multiplier
-     * @return values filtered by position
-     */
-    private List<SensorValue> filterByBoundingBox(List<SensorValue> values, RenderJob job, double area) {
-        double rangeX = area * (job.getEast() - job.getWest());
-        double rangeY = area * (job.getNorth() - job.getSouth());
-        double midX = (job.getWest() + job.getEast()) / 2;
-        double midY = (job.getNorth() + job.getSouth()) / 2;
-        double minX = midX - rangeX / 2;
-        double maxX = midX + rangeX / 2;
-        double minY = midY - rangeY / 2;
-        double maxY = midY + rangeY / 2;
-        List<SensorValue> filtered = values.stream().filter(v -> (v.x > minX)).filter(v -> (v.x < maxX))
-                .filter(v -> (v.y > minY)).filter(v -> (v.y < maxY)).collect(Collectors.toList());
-        LOG.info("Filtered by bounding box: {} -> {}", values.size(), filtered.size());
-        return filtered;
-    }
-
     /**
      * Converts from the sensor.community datapoints format to internal format.
      * 
@@ -431,15 +627,18 @@ public final class ParticulateMapper {
     }
 
     /**
-     * Renders a JSON file to a PNG.
+     * Renders a JSON file to a PNG, and writes the /air estimates at the pixels
+     * to a field file.
      * 
      * @param sensorValues the data points
      * @param pngFile      the PNG file
      * @param colorMapper  the color mapper
+     * @param snapshot     the snapshot the data points are from
+     * @param fieldFile    the field file
      * @throws IOException
      */
-    private void renderDust(List<SensorValue> sensorValues, File pngFile, ColorMapper colorMapper, RenderJob job)
-            throws IOException {
+    private void renderDust(List<SensorValue> sensorValues, File pngFile, ColorMapper colorMapper, RenderJob job,
+            SensorSnapshot snapshot, File fieldFile, CycleTrace trace) throws IOException {
         LOG.info("Rendering {} data points to {}", sensorValues.size(), pngFile);
 
         // parse background file
@@ -455,11 +654,29 @@ public final class ParticulateMapper {
         // interpolate over grid
         IShader shader = new InverseDistanceWeightShader(job, colorMapper);
         Interpolator interpolator = new Interpolator(job, shader, width, height);
+        long pixels = (long) width * height;
+        Span span = trace.span("interpolate", job.getName()).sensorsIn(sensorValues.size()).pixels(pixels);
         interpolator.interpolate(sensorValues, raster);
+        span.end();
+
+        // keep the /air estimates for lookups, a failure here does not fail the render
+        span = trace.span("field", job.getName()).pixels(pixels);
+        try {
+            float[] field = AirField.calculate(snapshot.getPmIndex(), config.getPmRestApiConfig().getMaxDistance(),
+                    job.getWest(), job.getSouth(), job.getEast(), job.getNorth(), width, height);
+            FieldFile.write(fieldFile.toPath(), job.getWest(), job.getSouth(), job.getEast(), job.getNorth(), width,
+                    height, snapshot.getGeneration(), snapshot.getTimestamp(), field);
+            fieldStore.publish(job.getName(), FieldFile.map(fieldFile.toPath()));
+        } catch (IOException e) {
+            LOG.warn("Writing field {} failed: {}", fieldFile, e.getMessage());
+        }
+        span.bytes(fieldFile.length()).end();
 
         // save it
         LOG.info("Writing to {}", pngFile);
+        span = trace.span("encode", job.getName()).pixels(pixels);
         ImageIO.write(image, "png", pngFile);
+        span.bytes(pngFile.length()).end();
     }
 
     /**
@@ -0,0 +1,121 @@
+package nl.bertriksikken.stofradar;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.PropertyConfigurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.config.ParticulateMapperConfig;
+import nl.bertriksikken.stofradar.config.RenderJob;
+import nl.bertriksikken.stofradar.replay.Recordings;
+import nl.bertriksikken.stofradar.replay.ReplayClock;
+import nl.bertriksikken.stofradar.replay.ReplayInterceptor;
+import nl.bertriksikken.stofradar.stats.Quantiles;
+import nl.bertriksikken.stofradar.trace.CycleTrace;
+import nl.bertriksikken.stofradar.trace.Span;
+
+/**
+ * Runs the pipeline against recorded upstream payloads, without network
+ * access.<br>
+ * <br>
+ * Payloads are recorded by the application with 'replay.record' enabled in the
+ * configuration. Usage: ReplayRunner &lt;cycles&gt; [latency ms]<br>
+ * After the run, the timings of every stage and a hash of every rendered overlay
+ * are reported, so runs can be compared for speed and for identical output. Run
+ * it in a separate working directory, it writes the same caches as the
+ * application.
+ */
+public final class ReplayRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplayRunner.class);
+
+    private final ParticulateMapperConfig config;
+    private final ParticulateMapper mapper;
+    // durations per stage and scope, over all cycles
+    private final Map<String, List<Double>> durations = new TreeMap<>();
+
+    ReplayRunner(ParticulateMapperConfig config, Duration latency) {
+        this.config = config;
+        ReplayClock clock = new ReplayClock(Instant.EPOCH);
+        Recordings recordings = new Recordings(config.getReplayConfig().getDirectory());
+        this.mapper = new ParticulateMapper(config, clock, new ReplayInterceptor(recordings, latency, clock));
+    }
+
+    public static void main(String[] args) throws Exception {
+        PropertyConfigurator.configure("log4j.properties");
+        if (args.length < 1) {
+            LOG.error("Usage: ReplayRunner <cycles> [latency ms]");
+            return;
+        }
+        int cycles = Integer.parseInt(args[0]);
+        Duration latency = Duration.ofMillis((args.length > 1) ? Long.parseLong(args[1]) : 0);
+
+        ParticulateMapperConfig config = ParticulateMapper.readConfig(new File("stofradar.yaml"));
+        ReplayRunner runner = new ReplayRunner(config, latency);
+        runner.run(cycles);
+    }
+
+    void run(int cycles) throws IOException, InterruptedException {
+        LOG.info("Replaying {} cycles from {}", cycles, config.getReplayConfig().getDirectory());
+        for (int i = 0; i < cycles; i++) {
+            mapper.runCycle(this::collect);
+            for (RenderJob job : config.getRenderJobs()) {
+                Path overlay = new File(new File(config.getIntermediateDir(), job.getName()), "overlay.png").toPath();
+                LOG.info("Cycle {}, job {}: overlay {}", i, job.getName(), hash(overlay));
+            }
+        }
+        mapper.stop();
+        report();
+    }
+
+    private void collect(CycleTrace trace) {
+        for (Span span : trace.getSpans()) {
+            String key = span.getStage() + " " + span.getScope();
+            durations.computeIfAbsent(key, k -> new ArrayList<>()).add(span.getDurationMs());
+        }
+    }
+
+    private void report() {
+        LOG.info(String.format(Locale.ROOT, "%-32s %6s %10s %10s %10s", "stage", "count", "min ms", "median ms",
+                "max ms"));
+        durations.forEach((key, list) -> {
+            double[] values = list.stream().mapToDouble(Double::doubleValue).toArray();
+            DoubleSummaryStatistics stats = Arrays.stream(values).summaryStatistics();
+            LOG.info(String.format(Locale.ROOT, "%-32s %6d %10.1f %10.1f %10.1f", key, stats.getCount(),
+                    stats.getMin(), Quantiles.median(values), stats.getMax()));
+        });
+    }
+
+    // SHA-256 of a file, or "-" if it does not exist
+    private static String hash(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return "-";
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format(Locale.ROOT, "%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,339 @@
+package nl.bertriksikken.stofradar.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Persists sensor values as a binary append-only journal.<br>
+ * <br>
+ * Each write appends only the values that changed since the previous write,
+ * plus removals for values that disappeared, followed by a single fsync. When
+ * the journal has grown well beyond the number of live values, it is compacted
+ * into a fresh file holding one record per value, which atomically replaces
+ * the old one.<br>
+ * <br>
+ * Every record carries its length and a CRC32, so a record torn by a crash is
+ * detected on restore and only that record is lost.
+ */
+public final class SensorValueJournal implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SensorValueJournal.class);
+
+    private static final int MAGIC = 0x53564A31; // "SVJ1"
+    private static final int HEADER_SIZE = 4;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    // compact when the journal holds this many more records than live values
+    private static final int COMPACT_SLACK = 1000;
+
+    private final Path path;
+    // the state as it is on disk
+    private final Map<String, SensorValue> persisted = new HashMap<>();
+
+    private FileChannel channel;
+    private long validEnd;
+    private long records;
+
+    /**
+     * Constructor.
+     * 
+     * @param path the journal file
+     */
+    public SensorValueJournal(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Restores the values from the journal by memory-mapping it and replaying all
+     * intact records. Should be called before the first write.
+     * 
+     * @return the restored values
+     * @throws IOException in case of a problem reading the file
+     */
+    public synchronized List<SensorValue> restore() throws IOException {
+        persisted.clear();
+        records = 0;
+        validEnd = 0;
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            if ((buffer.remaining() < HEADER_SIZE) || (buffer.getInt() != MAGIC)) {
+                LOG.warn("Ignoring journal {} without valid header", path);
+                return new ArrayList<>();
+            }
+            validEnd = buffer.position();
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if ((length <= 0) || (length + 4 > buffer.remaining())) {
+                    break;
+                }
+                ByteBuffer payload = buffer.slice();
+                ((Buffer) payload).limit(length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                ((Buffer) buffer).position(buffer.position() + length);
+                if ((int) crc.getValue() != buffer.getInt()) {
+                    break;
+                }
+                apply(payload);
+                records++;
+                validEnd = buffer.position();
+            }
+            if (validEnd < readChannel.size()) {
+                LOG.warn("Dropping {} bytes of incomplete records from journal {}", readChannel.size() - validEnd,
+                        path);
+            }
+        }
+        return new ArrayList<>(persisted.values());
+    }
+
+    private void apply(ByteBuffer payload) {
+        byte type = payload.get();
+        byte[] idBytes = new byte[payload.getShort() & 0xFFFF];
+        payload.get(idBytes);
+        String id = new String(idBytes, StandardCharsets.UTF_8);
+        if (type == PUT) {
+            double x = payload.getDouble();
+            double y = payload.getDouble();
+            double value = payload.getDouble();
+            Instant time = Instant.ofEpochMilli(payload.getLong());
+            persisted.put(id, new SensorValue(id, x, y, value, time));
+        } else if (type == REMOVE) {
+            persisted.remove(id);
+        }
+    }
+
+    /**
+     * Writes the current set of values, appending only what changed since the
+     * previous write.
+     * 
+     * @param values the complete current set of values
+     * @throws IOException in case of a problem writing the file
+     */
+    public synchronized void write(Collection<SensorValue> values) throws IOException {
+        List<SensorValue> puts = new ArrayList<>();
+        Set<String> present = new HashSet<>();
+        for (SensorValue value : values) {
+            present.add(value.id);
+            if (!isSame(persisted.get(value.id), value)) {
+                puts.add(value);
+            }
+        }
+        List<String> removals = new ArrayList<>();
+        for (String id : persisted.keySet()) {
+            if (!present.contains(id)) {
+                removals.add(id);
+            }
+        }
+
+        if (records + puts.size() + removals.size() > 2L * values.size() + COMPACT_SLACK) {
+            compact(values);
+            return;
+        }
+        if (puts.isEmpty() && removals.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(estimateSize(puts, removals));
+        for (SensorValue value : puts) {
+            putRecord(buffer, value);
+        }
+        for (String id : removals) {
+            removeRecord(buffer, id);
+        }
+        ((Buffer) buffer).flip();
+        FileChannel ch = openForAppend();
+        try {
+            while (buffer.hasRemaining()) {
+                ch.write(buffer);
+            }
+            ch.force(false);
+        } catch (IOException e) {
+            discardTail(e);
+            throw e;
+        }
+        validEnd = ch.position();
+
+        // only now the values are on disk
+        for (SensorValue value : puts) {
+            persisted.put(value.id, value);
+        }
+        for (String id : removals) {
+            persisted.remove(id);
+        }
+        records += puts.size() + removals.size();
+        LOG.info("Appended {} changed and {} removed values to journal", puts.size(), removals.size());
+    }
+
+    /**
+     * Rewrites the journal with one record per value, atomically replacing the
+     * existing file.
+     * 
+     * @param values the complete current set of values
+     * @throws IOException in case of a problem writing the file
+     */
+    public synchronized void compact(Collection<SensorValue> values) throws IOException {
+        closeChannel();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(estimateSize(values, new ArrayList<>()) + HEADER_SIZE);
+        buffer.putInt(MAGIC);
+        for (SensorValue value : values) {
+            putRecord(buffer, value);
+        }
+        ((Buffer) buffer).flip();
+        long size;
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                ch.write(buffer);
+            }
+            ch.force(true);
+            size = ch.position();
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        validEnd = size;
+
+        persisted.clear();
+        for (SensorValue value : values) {
+            persisted.put(value.id, value);
+        }
+        records = persisted.size();
+        LOG.info("Compacted journal to {} values, {} bytes", records, validEnd);
+    }
+
+    private FileChannel openForAppend() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (validEnd < HEADER_SIZE) {
+                // new or unusable file, start from scratch
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC);
+                ((Buffer) header).flip();
+                channel.write(header);
+                validEnd = HEADER_SIZE;
+            } else {
+                // drop any incomplete tail found during restore
+                channel.truncate(validEnd);
+            }
+            channel.position(validEnd);
+        }
+        return channel;
+    }
+
+    // drops the records of a failed write, so the next one appends after the last intact record
+    private void discardTail(IOException cause) {
+        try {
+            channel.truncate(validEnd);
+            channel.position(validEnd);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            // reopening truncates it
+            try {
+                closeChannel();
+            } catch (IOException closeException) {
+                cause.addSuppressed(closeException);
+                channel = null;
+            }
+        }
+    }
+
+    private static boolean isSame(SensorValue a, SensorValue b) {
+        return (a != null) && (Double.compare(a.x, b.x) == 0) && (Double.compare(a.y, b.y) == 0)
+                && (Double.compare(a.value, b.value) == 0) && a.time.equals(b.time);
+    }
+
+    private static int estimateSize(Collection<SensorValue> puts, Collection<String> removals) {
+        // length + type + id length + 4 doubles/longs + crc, plus id bytes
+        int size = 0;
+        for (SensorValue value : puts) {
+            size += 4 + 1 + 2 + 32 + 4 + idBytes(value.id).length;
+        }
+        for (String id : removals) {
+            size += 4 + 1 + 2 + 4 + idBytes(id).length;
+        }
+        return size;
+    }
+
+    private static byte[] idBytes(String id) {
+        return id.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putRecord(ByteBuffer buffer, SensorValue value) {
+        byte[] id = idBytes(value.id);
+        int start = beginRecord(buffer, PUT, id);
+        buffer.putDouble(value.x);
+        buffer.putDouble(value.y);
+        buffer.putDouble(value.value);
+        buffer.putLong(value.time.toEpochMilli());
+        endRecord(buffer, start);
+    }
+
+    private static void removeRecord(ByteBuffer buffer, String id) {
+        int start = beginRecord(buffer, REMOVE, idBytes(id));
+        endRecord(buffer, start);
+    }
+
+    // writes a placeholder length and the common fields, returns the position of the length
+    private static int beginRecord(ByteBuffer buffer, byte type, byte[] id) {
+        int start = buffer.position();
+        buffer.putInt(0);
+        buffer.put(type);
+        buffer.putShort((short) id.length);
+        buffer.put(id);
+        return start;
+    }
+
+    // fills in the length and appends the CRC
+    private static void endRecord(ByteBuffer buffer, int start) {
+        int length = buffer.position() - start - 4;
+        buffer.putInt(start, length);
+        ByteBuffer payload = buffer.duplicate();
+        ((Buffer) payload).position(start + 4);
+        ((Buffer) payload).limit(start + 4 + length);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeChannel();
+    }
+
+}
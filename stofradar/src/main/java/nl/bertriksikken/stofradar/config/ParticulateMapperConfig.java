@@ -7,10 +7,15 @@ import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import nl.bertriksikken.stofradar.history.HistoryConfig;
 import nl.bertriksikken.stofradar.meetjestad.MeetjestadConfig;
+import nl.bertriksikken.stofradar.pipeline.PipelineConfig;
+import nl.bertriksikken.stofradar.replay.ReplayConfig;
 import nl.bertriksikken.stofradar.restapi.AirRestApiConfig;
 import nl.bertriksikken.stofradar.samenmeten.csv.SamenmetenCsvConfig;
 import nl.bertriksikken.stofradar.senscom.SensComConfig;
+import nl.bertriksikken.stofradar.snapshot.SnapshotConfig;
+import nl.bertriksikken.stofradar.trace.TraceConfig;
 
 /**
  * Configuration class.
@@ -44,6 +49,21 @@ public final class ParticulateMapperConfig {
     @JsonProperty("airRestApi")
     private final AirRestApiConfig airRestApiConfig = new AirRestApiConfig();
 
+    @JsonProperty("history")
+    private final HistoryConfig historyConfig = new HistoryConfig();
+
+    @JsonProperty("pipeline")
+    private final PipelineConfig pipelineConfig = new PipelineConfig();
+
+    @JsonProperty("trace")
+    private final TraceConfig traceConfig = new TraceConfig();
+
+    @JsonProperty("snapshot")
+    private final SnapshotConfig snapshotConfig = new SnapshotConfig();
+
+    @JsonProperty("replay")
+    private final ReplayConfig replayConfig = new ReplayConfig();
+
     @JsonProperty("renderJobs")
     private final List<RenderJob> renderJobs = new ArrayList<>();
 
@@ -107,4 +127,24 @@ public final class ParticulateMapperConfig {
         return meetjestadConfig;
     }
 
+    public HistoryConfig getHistoryConfig() {
+        return historyConfig;
+    }
+
+    public PipelineConfig getPipelineConfig() {
+        return pipelineConfig;
+    }
+
+    public TraceConfig getTraceConfig() {
+        return traceConfig;
+    }
+
+    public ReplayConfig getReplayConfig() {
+        return replayConfig;
+    }
+
+    public SnapshotConfig getSnapshotConfig() {
+        return snapshotConfig;
+    }
+
 }
@@ -0,0 +1,185 @@
+package nl.bertriksikken.stofradar.field;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+import nl.bertriksikken.stofradar.output.AtomicFiles;
+
+/**
+ * A grid of PM2.5 values in a file, memory-mapped for reading.<br>
+ * <br>
+ * The values are the /air estimates at the centres of the pixels, calculated
+ * from the same snapshot (see AirField), so a lookup gives what /air would
+ * calculate, apart from the interpolation between the pixels. They are not
+ * the values the colours of the map are based on.<br>
+ * <br>
+ * The file is little-endian, and starts with a header of 64 bytes:
+ * <ul>
+ * <li>0: magic "SRFF"
+ * <li>4: version, 32-bit
+ * <li>8, 12: width and height, 32-bit
+ * <li>16: generation of the snapshot the values are from, 64-bit
+ * <li>24: time of the snapshot, epoch milliseconds, 64-bit
+ * <li>32, 40, 48, 56: west, south, east and north, double
+ * </ul>
+ * followed by width * height 32-bit floats, row by row from north to south,
+ * each row from west to east, for the centres of the pixels. NaN means there is
+ * no value. Files are replaced atomically, so other processes can map them too.
+ */
+public final class FieldFile {
+
+    private static final int MAGIC = 0x46465253; // "SRFF" little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+
+    private final int width;
+    private final int height;
+    private final long generation;
+    private final Instant time;
+    private final double west;
+    private final double south;
+    private final double east;
+    private final double north;
+    private final FloatBuffer values;
+
+    private FieldFile(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if ((buffer.capacity() < HEADER_SIZE) || (buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION)) {
+            throw new IOException("Not a field file of version " + VERSION);
+        }
+        this.width = buffer.getInt(8);
+        this.height = buffer.getInt(12);
+        this.generation = buffer.getLong(16);
+        this.time = Instant.ofEpochMilli(buffer.getLong(24));
+        this.west = buffer.getDouble(32);
+        this.south = buffer.getDouble(40);
+        this.east = buffer.getDouble(48);
+        this.north = buffer.getDouble(56);
+        if ((width <= 0) || (height <= 0) || (buffer.capacity() != HEADER_SIZE + 4L * width * height)) {
+            throw new IOException("Invalid field file size " + buffer.capacity() + " for " + width + "x" + height);
+        }
+        ((Buffer) buffer).position(HEADER_SIZE);
+        this.values = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    /**
+     * Writes a field file atomically.
+     *
+     * @param path       the file
+     * @param west       the west edge of the grid
+     * @param south      the south edge of the grid
+     * @param east       the east edge of the grid
+     * @param north      the north edge of the grid
+     * @param width      the width in pixels
+     * @param height     the height in pixels
+     * @param generation the generation of the snapshot
+     * @param time       the time of the snapshot
+     * @param values     the values, row by row from the north-west
+     */
+    public static void write(Path path, double west, double south, double east, double north, int width, int height,
+            long generation, Instant time, float[] values) throws IOException {
+        if (values.length != width * height) {
+            throw new IllegalArgumentException("Expected " + width * height + " values, got " + values.length);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height);
+        header.putLong(generation).putLong(time.toEpochMilli());
+        header.putDouble(west).putDouble(south).putDouble(east).putDouble(north);
+        ((Buffer) header).flip();
+        ByteBuffer body = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+        body.asFloatBuffer().put(values);
+        AtomicFiles.write(path, stream -> {
+            WritableByteChannel channel = Channels.newChannel(stream);
+            channel.write(header);
+            channel.write(body);
+        });
+    }
+
+    /**
+     * Maps a field file into memory, the mapping stays valid when the file is
+     * replaced.
+     *
+     * @param path the file
+     * @return the field
+     */
+    public static FieldFile map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new FieldFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return whether a location is inside the grid
+     */
+    public boolean contains(double latitude, double longitude) {
+        return (latitude >= south) && (latitude <= north) && (longitude >= west) && (longitude <= east);
+    }
+
+    /**
+     * Looks up the value at a location, by bilinear interpolation between the
+     * centres of the surrounding pixels. Pixels without a value are left out.
+     *
+     * @return the value, NaN if none of the surrounding pixels has one
+     */
+    public double valueAt(double latitude, double longitude) {
+        double fx = (longitude - west) / (east - west) * width - 0.5;
+        double fy = (north - latitude) / (north - south) * height - 0.5;
+        fx = Math.max(0.0, Math.min(width - 1, fx));
+        fy = Math.max(0.0, Math.min(height - 1, fy));
+        int x0 = (int) fx;
+        int y0 = (int) fy;
+        int x1 = Math.min(x0 + 1, width - 1);
+        int y1 = Math.min(y0 + 1, height - 1);
+        double dx = fx - x0;
+        double dy = fy - y0;
+
+        double sum = 0.0;
+        double weights = 0.0;
+        double[] corner = new double[] { get(x0, y0), get(x1, y0), get(x0, y1), get(x1, y1) };
+        double[] weight = new double[] { (1 - dx) * (1 - dy), dx * (1 - dy), (1 - dx) * dy, dx * dy };
+        for (int i = 0; i < 4; i++) {
+            if (!Double.isNaN(corner[i]) && (weight[i] > 0.0)) {
+                sum += weight[i] * corner[i];
+                weights += weight[i];
+            }
+        }
+        return (weights > 0.0) ? sum / weights : Double.NaN;
+    }
+
+    private double get(int x, int y) {
+        return values.get(y * width + x);
+    }
+
+    /**
+     * @return the size of a pixel, in square degrees
+     */
+    public double getPixelArea() {
+        return ((east - west) / width) * ((north - south) / height);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+
+}
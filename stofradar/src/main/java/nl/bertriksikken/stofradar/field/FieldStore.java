@@ -0,0 +1,45 @@
+package nl.bertriksikken.stofradar.field;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The latest field of each render job, for lookups by location.
+ */
+public final class FieldStore {
+
+    private final Map<String, FieldFile> fields = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces the field of a render job.
+     *
+     * @param name  the name of the render job
+     * @param field the new field
+     */
+    public void publish(String name, FieldFile field) {
+        fields.put(name, field);
+    }
+
+    /**
+     * Finds the field with the finest pixels that contains a location.
+     *
+     * @param generation the generation of the snapshot the field must be from
+     * @param time       the time of that snapshot, since the generation starts
+     *                   over with the pipeline
+     * @return the field, or null if no field of that snapshot contains the
+     *         location
+     */
+    public FieldFile find(long generation, Instant time, double latitude, double longitude) {
+        FieldFile best = null;
+        for (FieldFile field : fields.values()) {
+            if ((field.getGeneration() == generation) && field.getTime().equals(time)
+                    && field.contains(latitude, longitude)
+                    && ((best == null) || (field.getPixelArea() < best.getPixelArea()))) {
+                best = field;
+            }
+        }
+        return best;
+    }
+
+}
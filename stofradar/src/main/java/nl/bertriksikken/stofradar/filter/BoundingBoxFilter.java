@@ -0,0 +1,43 @@
+package nl.bertriksikken.stofradar.filter;
+
+import nl.bertriksikken.stofradar.config.RenderJob;
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Rejects sensor values outside a bounding box around a render job.
+ */
+public final class BoundingBoxFilter implements ISensorFilter {
+
+    private final double minX;
+    private final double maxX;
+    private final double minY;
+    private final double maxY;
+
+    /**
+     * Constructor.
+     * 
+     * @param job  the render job
+     * @param area the area multiplier
+     */
+    public BoundingBoxFilter(RenderJob job, double area) {
+        double rangeX = area * (job.getEast() - job.getWest());
+        double rangeY = area * (job.getNorth() - job.getSouth());
+        double midX = (job.getWest() + job.getEast()) / 2;
+        double midY = (job.getNorth() + job.getSouth()) / 2;
+        this.minX = midX - rangeX / 2;
+        this.maxX = midX + rangeX / 2;
+        this.minY = midY - rangeY / 2;
+        this.maxY = midY + rangeY / 2;
+    }
+
+    @Override
+    public String getName() {
+        return "bounding box";
+    }
+
+    @Override
+    public boolean accept(SensorValue value) {
+        return (value.x > minX) && (value.x < maxX) && (value.y > minY) && (value.y < maxY);
+    }
+
+}
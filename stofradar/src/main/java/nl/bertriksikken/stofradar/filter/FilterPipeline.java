@@ -0,0 +1,112 @@
+package nl.bertriksikken.stofradar.filter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Applies a sequence of filter stages to sensor values in a single pass.<br>
+ * <br>
+ * Values first go through the global stages. Each value that survives is then
+ * evaluated against the stages of every job, in the same sweep. For each stage
+ * the number of values it dropped is counted.
+ */
+public final class FilterPipeline {
+
+    private final ISensorFilter[] stages;
+    private final Map<String, ISensorFilter[]> jobStages = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     * 
+     * @param stages the global stages, in order of evaluation
+     */
+    public FilterPipeline(List<ISensorFilter> stages) {
+        this.stages = stages.toArray(new ISensorFilter[0]);
+    }
+
+    /**
+     * Adds a job with its own stages, applied after the global stages.
+     * 
+     * @param name   the job name
+     * @param stages the job stages, in order of evaluation
+     * @return this pipeline
+     */
+    public FilterPipeline addJob(String name, List<ISensorFilter> stages) {
+        jobStages.put(name, stages.toArray(new ISensorFilter[0]));
+        return this;
+    }
+
+    /**
+     * Runs all values through the pipeline.
+     * 
+     * @param values the input values
+     * @return the filter result
+     */
+    public FilterResult apply(List<SensorValue> values) {
+        for (ISensorFilter stage : stages) {
+            stage.prepare(values);
+        }
+        for (ISensorFilter[] job : jobStages.values()) {
+            for (ISensorFilter stage : job) {
+                stage.prepare(values);
+            }
+        }
+
+        int[] drops = new int[stages.length];
+        List<SensorValue> accepted = new ArrayList<>(values.size());
+        String[] jobNames = jobStages.keySet().toArray(new String[0]);
+        ISensorFilter[][] jobs = jobStages.values().toArray(new ISensorFilter[0][]);
+        int[][] jobDrops = new int[jobs.length][];
+        List<List<SensorValue>> jobAccepted = new ArrayList<>(jobs.length);
+        for (int j = 0; j < jobs.length; j++) {
+            jobDrops[j] = new int[jobs[j].length];
+            jobAccepted.add(new ArrayList<>());
+        }
+
+        for (SensorValue value : values) {
+            int failed = firstFailing(stages, value);
+            if (failed >= 0) {
+                drops[failed]++;
+                continue;
+            }
+            accepted.add(value);
+            for (int j = 0; j < jobs.length; j++) {
+                int jobFailed = firstFailing(jobs[j], value);
+                if (jobFailed >= 0) {
+                    jobDrops[j][jobFailed]++;
+                } else {
+                    jobAccepted.get(j).add(value);
+                }
+            }
+        }
+
+        FilterResult result = new FilterResult(values.size(), accepted, names(stages), drops);
+        for (int j = 0; j < jobs.length; j++) {
+            result.addJob(jobNames[j], jobAccepted.get(j), names(jobs[j]), jobDrops[j]);
+        }
+        return result;
+    }
+
+    // returns the index of the first stage rejecting the value, or -1 if all accept it
+    private static int firstFailing(ISensorFilter[] stages, SensorValue value) {
+        for (int i = 0; i < stages.length; i++) {
+            if (!stages[i].accept(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String[] names(ISensorFilter[] stages) {
+        String[] names = new String[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            names[i] = stages[i].getName();
+        }
+        return names;
+    }
+
+}
@@ -0,0 +1,117 @@
+package nl.bertriksikken.stofradar.filter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Immutable result of running sensor values through a {@link FilterPipeline}.
+ */
+public final class FilterResult {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FilterResult.class);
+
+    /**
+     * A result without any values.
+     */
+    public static final FilterResult EMPTY = new FilterResult(0, Collections.emptyList(), new String[0], new int[0]);
+
+    private final int inputCount;
+    private final List<SensorValue> values;
+    private final Map<String, Integer> drops;
+    private final Map<String, List<SensorValue>> jobValues = new LinkedHashMap<>();
+    private final Map<String, Map<String, Integer>> jobDrops = new LinkedHashMap<>();
+
+    FilterResult(int inputCount, List<SensorValue> values, String[] stageNames, int[] stageDrops) {
+        this.inputCount = inputCount;
+        this.values = Collections.unmodifiableList(values);
+        this.drops = toMap(stageNames, stageDrops);
+    }
+
+    /**
+     * @param values values that were filtered elsewhere, for example by the
+     *               process that wrote them to a file
+     * @return a result with just these values, without counts per stage
+     */
+    public static FilterResult of(List<SensorValue> values) {
+        return new FilterResult(values.size(), values, new String[0], new int[0]);
+    }
+
+    void addJob(String name, List<SensorValue> values, String[] stageNames, int[] stageDrops) {
+        jobValues.put(name, Collections.unmodifiableList(values));
+        jobDrops.put(name, toMap(stageNames, stageDrops));
+    }
+
+    private static Map<String, Integer> toMap(String[] names, int[] counts) {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            map.merge(names[i], counts[i], Integer::sum);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * @return the number of values that entered the pipeline
+     */
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    /**
+     * @return the values that passed all global stages
+     */
+    public List<SensorValue> getValues() {
+        return values;
+    }
+
+    /**
+     * @return the number of values dropped per global stage, in pipeline order
+     */
+    public Map<String, Integer> getDropCounts() {
+        return drops;
+    }
+
+    /**
+     * @param job the job name
+     * @return the values that passed the global stages and the stages of the job
+     */
+    public List<SensorValue> getJobValues(String job) {
+        return jobValues.getOrDefault(job, Collections.emptyList());
+    }
+
+    /**
+     * @param job the job name
+     * @return the number of values dropped per job stage, in pipeline order
+     */
+    public Map<String, Integer> getJobDropCounts(String job) {
+        return jobDrops.getOrDefault(job, Collections.emptyMap());
+    }
+
+    /**
+     * Logs the effect of each stage.
+     * 
+     * @param label what kind of values were filtered
+     */
+    public void log(String label) {
+        int count = inputCount;
+        for (Map.Entry<String, Integer> entry : drops.entrySet()) {
+            LOG.info("Filtered {} by {}: {} -> {}", label, entry.getKey(), count, count - entry.getValue());
+            count -= entry.getValue();
+        }
+        for (Map.Entry<String, Map<String, Integer>> job : jobDrops.entrySet()) {
+            int jobCount = count;
+            for (Map.Entry<String, Integer> entry : job.getValue().entrySet()) {
+                LOG.info("Filtered {} for {} by {}: {} -> {}", label, job.getKey(), entry.getKey(), jobCount,
+                        jobCount - entry.getValue());
+                jobCount -= entry.getValue();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package nl.bertriksikken.stofradar.filter;
+
+import java.util.List;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * One stage of a {@link FilterPipeline}.
+ */
+public interface ISensorFilter {
+
+    /**
+     * @return a short name of this stage, used for logging and drop counters
+     */
+    String getName();
+
+    /**
+     * Prepares the filter for a pass over a set of values, e.g. to determine a
+     * threshold. Called once before the values are passed to
+     * {@link #accept(SensorValue)}.
+     * 
+     * @param values all values entering the pipeline
+     */
+    default void prepare(List<SensorValue> values) {
+        // nothing to prepare by default
+    }
+
+    /**
+     * @param value the sensor value
+     * @return whether the value passes this stage
+     */
+    boolean accept(SensorValue value);
+
+}
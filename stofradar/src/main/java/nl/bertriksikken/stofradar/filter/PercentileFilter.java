@@ -0,0 +1,69 @@
+package nl.bertriksikken.stofradar.filter;
+
+import java.util.List;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.stats.Quantiles;
+
+/**
+ * Rejects the top percentile of sensor values.<br>
+ * <br>
+ * Keeps exactly as many values as sorting and truncating would, without
+ * reordering the values themselves: during {@link #prepare(List)} the cut-off
+ * value is determined, values equal to the cut-off are accepted only until the
+ * quota is used up.
+ */
+public final class PercentileFilter implements ISensorFilter {
+
+    private final double percentile;
+
+    private double threshold;
+    private int tiesLeft;
+
+    /**
+     * Constructor.
+     * 
+     * @param percentile the fraction of highest values to reject, e.g. 0.01
+     */
+    public PercentileFilter(double percentile) {
+        this.percentile = percentile;
+    }
+
+    @Override
+    public String getName() {
+        return "percentile";
+    }
+
+    @Override
+    public void prepare(List<SensorValue> values) {
+        int keep = (int) ((1 - percentile) * values.size());
+        if (keep == 0) {
+            threshold = Double.NEGATIVE_INFINITY;
+            tiesLeft = 0;
+            return;
+        }
+        double[] array = Quantiles.toArray(values);
+        threshold = Quantiles.select(array, keep - 1);
+        int below = 0;
+        for (double v : array) {
+            if (Double.compare(v, threshold) < 0) {
+                below++;
+            }
+        }
+        tiesLeft = keep - below;
+    }
+
+    @Override
+    public boolean accept(SensorValue value) {
+        int cmp = Double.compare(value.value, threshold);
+        if (cmp < 0) {
+            return true;
+        }
+        if ((cmp == 0) && (tiesLeft > 0)) {
+            tiesLeft--;
+            return true;
+        }
+        return false;
+    }
+
+}
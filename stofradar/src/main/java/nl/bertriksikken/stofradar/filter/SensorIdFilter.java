@@ -0,0 +1,30 @@
+package nl.bertriksikken.stofradar.filter;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Rejects sensors by id, using a hashed blacklist.
+ */
+public final class SensorIdFilter implements ISensorFilter {
+
+    private final Set<String> blacklist;
+
+    public SensorIdFilter(Collection<String> blacklist) {
+        this.blacklist = new HashSet<>(blacklist);
+    }
+
+    @Override
+    public String getName() {
+        return "sensor id";
+    }
+
+    @Override
+    public boolean accept(SensorValue value) {
+        return !blacklist.contains(value.id);
+    }
+
+}
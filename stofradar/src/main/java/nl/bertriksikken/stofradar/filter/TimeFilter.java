@@ -0,0 +1,28 @@
+package nl.bertriksikken.stofradar.filter;
+
+import java.time.Instant;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Rejects sensor values that are not newer than some moment in time.
+ */
+public final class TimeFilter implements ISensorFilter {
+
+    private final Instant oldest;
+
+    public TimeFilter(Instant oldest) {
+        this.oldest = oldest;
+    }
+
+    @Override
+    public String getName() {
+        return "time";
+    }
+
+    @Override
+    public boolean accept(SensorValue value) {
+        return value.time.isAfter(oldest);
+    }
+
+}
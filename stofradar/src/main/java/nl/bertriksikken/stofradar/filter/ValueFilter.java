@@ -0,0 +1,20 @@
+package nl.bertriksikken.stofradar.filter;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Rejects negative sensor values.
+ */
+public final class ValueFilter implements ISensorFilter {
+
+    @Override
+    public String getName() {
+        return "sensor value";
+    }
+
+    @Override
+    public boolean accept(SensorValue value) {
+        return value.value >= 0.0;
+    }
+
+}
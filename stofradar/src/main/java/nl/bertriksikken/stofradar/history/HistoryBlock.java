@@ -0,0 +1,98 @@
+package nl.bertriksikken.stofradar.history;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Columnar encoding of the readings appended in one cycle.<br>
+ * <br>
+ * Layout, big-endian:
+ * <ul>
+ * <li>int magic, int block length in bytes including magic and length
+ * <li>int count, long base time (epoch seconds), int time span (seconds)
+ * <li>int min latitude, int max latitude, int min longitude, int max longitude
+ * <li>int[count] latitude, sorted ascending
+ * <li>int[count] longitude
+ * <li>int[count] time, seconds after base time
+ * <li>short[count] value
+ * </ul>
+ * Coordinates are quantised to 1e-5 degree (about 1 m), values to 0.1.
+ */
+final class HistoryBlock {
+
+    static final int MAGIC = 0x48424C4B; // "HBLK"
+    static final int HEADER_SIZE = 40;
+    static final double COORD_SCALE = 1e5;
+    static final double VALUE_SCALE = 10.0;
+
+    private HistoryBlock() {
+        // utility class
+    }
+
+    /**
+     * Encodes sensor values into a block.
+     * 
+     * @param values the values, must not be empty
+     * @return the encoded block, ready for writing
+     */
+    static ByteBuffer encode(List<SensorValue> values) {
+        List<SensorValue> sorted = new ArrayList<>(values);
+        sorted.sort(Comparator.comparingInt(v -> quantiseCoord(v.y)));
+        int count = sorted.size();
+        long baseTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        int minLat = Integer.MAX_VALUE;
+        int maxLat = Integer.MIN_VALUE;
+        int minLon = Integer.MAX_VALUE;
+        int maxLon = Integer.MIN_VALUE;
+        for (SensorValue v : sorted) {
+            baseTime = Math.min(baseTime, v.time.getEpochSecond());
+            maxTime = Math.max(maxTime, v.time.getEpochSecond());
+            minLat = Math.min(minLat, quantiseCoord(v.y));
+            maxLat = Math.max(maxLat, quantiseCoord(v.y));
+            minLon = Math.min(minLon, quantiseCoord(v.x));
+            maxLon = Math.max(maxLon, quantiseCoord(v.x));
+        }
+
+        int length = HEADER_SIZE + count * (4 + 4 + 4 + 2);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(MAGIC);
+        buffer.putInt(length);
+        buffer.putInt(count);
+        buffer.putLong(baseTime);
+        buffer.putInt((int) (maxTime - baseTime));
+        buffer.putInt(minLat);
+        buffer.putInt(maxLat);
+        buffer.putInt(minLon);
+        buffer.putInt(maxLon);
+        for (SensorValue v : sorted) {
+            buffer.putInt(quantiseCoord(v.y));
+        }
+        for (SensorValue v : sorted) {
+            buffer.putInt(quantiseCoord(v.x));
+        }
+        for (SensorValue v : sorted) {
+            buffer.putInt((int) (v.time.getEpochSecond() - baseTime));
+        }
+        for (SensorValue v : sorted) {
+            buffer.putShort(quantiseValue(v.value));
+        }
+        ((Buffer) buffer).flip();
+        return buffer;
+    }
+
+    static int quantiseCoord(double degrees) {
+        return (int) Math.round(degrees * COORD_SCALE);
+    }
+
+    static short quantiseValue(double value) {
+        double scaled = Math.round(value * VALUE_SCALE);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+    }
+
+}
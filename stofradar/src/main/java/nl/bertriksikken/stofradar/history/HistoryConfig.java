@@ -0,0 +1,43 @@
+package nl.bertriksikken.stofradar.history;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public final class HistoryConfig {
+
+    @JsonProperty("enabled")
+    private boolean enabled = true;
+
+    @JsonProperty("directory")
+    private String directory = "history";
+
+    @JsonProperty("retentionDays")
+    private int retentionDays = 31;
+
+    public HistoryConfig() {
+        // jackson constructor
+    }
+
+    HistoryConfig(String directory, int retentionDays) {
+        this.directory = directory;
+        this.retentionDays = retentionDays;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the directory holding the daily partition files
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the number of days to keep, older partitions are deleted
+     */
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+}
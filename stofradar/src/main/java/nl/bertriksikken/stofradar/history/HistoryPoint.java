@@ -0,0 +1,44 @@
+package nl.bertriksikken.stofradar.history;
+
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * One interpolated value in a history time series.
+ */
+public final class HistoryPoint {
+
+    private final Instant time;
+    private final double value;
+    private final int sensors;
+
+    HistoryPoint(Instant time, double value, int sensors) {
+        this.time = time;
+        this.value = value;
+        this.sensors = sensors;
+    }
+
+    /**
+     * @return the start of the interval
+     */
+    public Instant getTime() {
+        return time;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return the number of readings that contributed to the value
+     */
+    public int getSensors() {
+        return sensors;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "{%s,%.2f,%d}", time, value, sensors);
+    }
+
+}
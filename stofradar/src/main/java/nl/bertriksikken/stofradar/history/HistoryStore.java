@@ -0,0 +1,346 @@
+package nl.bertriksikken.stofradar.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Local time-series store of all accepted sensor readings.<br>
+ * <br>
+ * Readings are appended as columnar blocks (see {@link HistoryBlock}) to one
+ * partition file per UTC day, based on the time of the cycle that appended
+ * them. Each reading is stored once, repeated values with an unchanged
+ * timestamp are skipped. Queries memory-map only the partitions overlapping the
+ * requested time range and, within each block, binary search the sorted
+ * latitude column for nearby readings.<br>
+ * <br>
+ * Blocks are appended with an fsync. A block torn by a crash is cut off when
+ * the partition is next appended to, and the readings that are already in the
+ * partitions of today and yesterday are not appended again after a restart.
+ */
+public final class HistoryStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HistoryStore.class);
+    private static final double KM_PER_DEGREE_LAT = 40075.0 / 360.0;
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String SUFFIX = ".hist";
+
+    private final Path directory;
+    private final int retentionDays;
+
+    // time of the last appended reading per sensor, to store each reading only once
+    private final Map<String, Instant> lastAppended = new HashMap<>();
+    // time of the last stored reading per location, read from the partitions at startup, since
+    // blocks do not hold the sensor ids
+    private final Map<Long, Long> storedBeforeStart = new HashMap<>();
+    // partitions of past days no longer change, so their mapping can be kept
+    private final Map<LocalDate, MappedByteBuffer> closedPartitions = new ConcurrentHashMap<>();
+    private LocalDate lastAppendDay;
+    // end of the last intact block of the partition of that day
+    private long partitionEnd;
+
+    public HistoryStore(HistoryConfig config) {
+        this.directory = new File(config.getDirectory()).toPath();
+        this.retentionDays = config.getRetentionDays();
+    }
+
+    /**
+     * Appends the readings of one cycle.
+     * 
+     * @param now    the time of the cycle, determines the partition
+     * @param values the accepted sensor values
+     * @throws IOException in case of a problem writing the partition
+     */
+    public synchronized void append(Instant now, List<SensorValue> values) throws IOException {
+        LocalDate day = now.atZone(ZoneOffset.UTC).toLocalDate();
+        if (!day.equals(lastAppendDay)) {
+            Files.createDirectories(directory);
+            deleteExpired(day.minusDays(retentionDays));
+            partitionEnd = repair(day);
+            if (lastAppendDay == null) {
+                readStored(day.minusDays(1));
+                readStored(day);
+            }
+            lastAppendDay = day;
+        }
+
+        List<SensorValue> fresh = new ArrayList<>();
+        for (SensorValue value : values) {
+            Instant last = lastAppended.get(value.id);
+            boolean isNew;
+            if (last != null) {
+                isNew = value.time.isAfter(last);
+            } else {
+                // blocks store whole seconds
+                Long stored = storedBeforeStart.get(locationKey(value));
+                isNew = (stored == null) || (value.time.getEpochSecond() > stored);
+            }
+            if (isNew) {
+                fresh.add(value);
+            }
+        }
+        if (!fresh.isEmpty()) {
+            ByteBuffer block = HistoryBlock.encode(fresh);
+            try (FileChannel channel = FileChannel.open(partitionPath(day), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                channel.position(partitionEnd);
+                try {
+                    while (block.hasRemaining()) {
+                        channel.write(block);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    // cut off the torn block, so it does not hide the blocks after it
+                    channel.truncate(partitionEnd);
+                    throw e;
+                }
+                partitionEnd = channel.position();
+            }
+            LOG.info("Appended {} readings to history partition {}", fresh.size(), day);
+        }
+
+        // only now the readings are stored
+        for (SensorValue value : fresh) {
+            lastAppended.put(value.id, value.time);
+        }
+        Instant expiry = now.minus(Duration.ofDays(1));
+        lastAppended.values().removeIf(t -> t.isBefore(expiry));
+        storedBeforeStart.values().removeIf(t -> t < expiry.getEpochSecond());
+    }
+
+    private static long locationKey(SensorValue value) {
+        return ((long) HistoryBlock.quantiseCoord(value.y) << 32)
+                | (HistoryBlock.quantiseCoord(value.x) & 0xFFFFFFFFL);
+    }
+
+    // cuts off an incomplete block at the end of a partition, returns the end of the last intact one
+    private long repair(LocalDate day) throws IOException {
+        Path path = partitionPath(day);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        // reads only the block headers, without a mapping that would prevent truncating on some systems
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long end = 0;
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (size - end >= HistoryBlock.HEADER_SIZE) {
+                ((Buffer) header).clear();
+                channel.read(header, end);
+                int length = header.getInt(4);
+                if (header.hasRemaining() || (header.getInt(0) != HistoryBlock.MAGIC)
+                        || (length < HistoryBlock.HEADER_SIZE) || (length > size - end)) {
+                    break;
+                }
+                end += length;
+            }
+            if (end < size) {
+                LOG.warn("Dropping {} bytes of an incomplete block from history partition {}", size - end, day);
+                channel.truncate(end);
+            }
+            return end;
+        }
+    }
+
+    // remembers the time of the last reading per location in a partition
+    private void readStored(LocalDate day) throws IOException {
+        ByteBuffer partition = map(day);
+        for (int start = 0; blockEnd(partition, start) > 0; start = blockEnd(partition, start)) {
+            int count = partition.getInt(start + 8);
+            long baseTime = partition.getLong(start + 12);
+            int latCol = start + HistoryBlock.HEADER_SIZE;
+            int lonCol = latCol + 4 * count;
+            int timeCol = lonCol + 4 * count;
+            for (int i = 0; i < count; i++) {
+                long key = ((long) partition.getInt(latCol + 4 * i) << 32)
+                        | (partition.getInt(lonCol + 4 * i) & 0xFFFFFFFFL);
+                storedBeforeStart.merge(key, baseTime + partition.getInt(timeCol + 4 * i), Math::max);
+            }
+        }
+    }
+
+    // returns the end of the block at a position, or -1 if there is no intact block there
+    private static int blockEnd(ByteBuffer partition, int start) {
+        if (partition.limit() - start < HistoryBlock.HEADER_SIZE) {
+            return -1;
+        }
+        int length = partition.getInt(start + 4);
+        if ((partition.getInt(start) != HistoryBlock.MAGIC) || (length < HistoryBlock.HEADER_SIZE)
+                || (length > partition.limit() - start)) {
+            return -1;
+        }
+        return start + length;
+    }
+
+    private Path partitionPath(LocalDate day) {
+        return directory.resolve(DAY_FORMATTER.format(day) + SUFFIX);
+    }
+
+    private void deleteExpired(LocalDate oldestKept) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    LocalDate day = LocalDate.parse(name.substring(0, name.length() - SUFFIX.length()),
+                            DAY_FORMATTER);
+                    if (day.isBefore(oldestKept)) {
+                        LOG.info("Deleting expired history partition {}", path);
+                        closedPartitions.remove(day);
+                        Files.delete(path);
+                    }
+                } catch (DateTimeParseException e) {
+                    LOG.warn("Ignoring unexpected file {} in history directory", path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates a time series of inverse-distance weighted values around a
+     * location.
+     * 
+     * @param latitude    the latitude
+     * @param longitude   the longitude
+     * @param maxDistance the maximum distance of readings to include (km)
+     * @param from        start of the time range (inclusive)
+     * @param to          end of the time range (exclusive)
+     * @param interval    the interval to group readings in
+     * @return the time series, one point per interval that had readings
+     * @throws IOException in case of a problem reading a partition
+     */
+    public List<HistoryPoint> query(double latitude, double longitude, double maxDistance, Instant from, Instant to,
+            Duration interval) throws IOException {
+        long fromSec = from.getEpochSecond();
+        long toSec = to.getEpochSecond();
+        long step = Math.max(1, interval.getSeconds());
+        int buckets = (int) Math.max(0, (toSec - fromSec + step - 1) / step);
+        double[] sumW = new double[buckets];
+        double[] sumWV = new double[buckets];
+        double[] exact = new double[buckets];
+        int[] counts = new int[buckets];
+
+        double kmPerDegreeLon = Math.cos(Math.toRadians(latitude)) * KM_PER_DEGREE_LAT;
+        int lat0 = HistoryBlock.quantiseCoord(latitude);
+        int lon0 = HistoryBlock.quantiseCoord(longitude);
+        int dLat = (int) Math.ceil(maxDistance / KM_PER_DEGREE_LAT * HistoryBlock.COORD_SCALE);
+        int dLon = (int) Math.ceil(maxDistance / kmPerDegreeLon * HistoryBlock.COORD_SCALE);
+        double kmPerLat = KM_PER_DEGREE_LAT / HistoryBlock.COORD_SCALE;
+        double kmPerLon = kmPerDegreeLon / HistoryBlock.COORD_SCALE;
+
+        // readings are partitioned by cycle time, which can be somewhat later than their own time
+        LocalDate firstDay = from.atZone(ZoneOffset.UTC).toLocalDate();
+        LocalDate lastDay = to.plus(Duration.ofDays(1)).atZone(ZoneOffset.UTC).toLocalDate();
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            ByteBuffer partition = map(day);
+            // up to an incomplete block at the end of the partition
+            for (int start = 0; blockEnd(partition, start) > 0; start = blockEnd(partition, start)) {
+                int count = partition.getInt(start + 8);
+                long baseTime = partition.getLong(start + 12);
+                int span = partition.getInt(start + 20);
+                if ((baseTime + span < fromSec) || (baseTime >= toSec) || (partition.getInt(start + 24) > lat0 + dLat)
+                        || (partition.getInt(start + 28) < lat0 - dLat) || (partition.getInt(start + 32) > lon0 + dLon)
+                        || (partition.getInt(start + 36) < lon0 - dLon)) {
+                    continue;
+                }
+                int latCol = start + HistoryBlock.HEADER_SIZE;
+                int lonCol = latCol + 4 * count;
+                int timeCol = lonCol + 4 * count;
+                int valueCol = timeCol + 4 * count;
+                for (int i = lowerBound(partition, latCol, count, lat0 - dLat); i < count; i++) {
+                    int lat = partition.getInt(latCol + 4 * i);
+                    if (lat > lat0 + dLat) {
+                        break;
+                    }
+                    long time = baseTime + partition.getInt(timeCol + 4 * i);
+                    if ((time < fromSec) || (time >= toSec)) {
+                        continue;
+                    }
+                    double dx = (partition.getInt(lonCol + 4 * i) - lon0) * kmPerLon;
+                    double dy = (lat - lat0) * kmPerLat;
+                    if ((Math.abs(dx) >= maxDistance) || (Math.abs(dy) >= maxDistance)) {
+                        continue;
+                    }
+                    double value = partition.getShort(valueCol + 2 * i) / HistoryBlock.VALUE_SCALE;
+                    int bucket = (int) ((time - fromSec) / step);
+                    double d2 = (dx * dx) + (dy * dy);
+                    counts[bucket]++;
+                    if (d2 > 0.0) {
+                        sumW[bucket] += 1.0 / d2;
+                        sumWV[bucket] += value / d2;
+                    } else {
+                        exact[bucket] = value;
+                        sumW[bucket] = Double.POSITIVE_INFINITY;
+                    }
+                }
+            }
+        }
+
+        List<HistoryPoint> points = new ArrayList<>();
+        for (int b = 0; b < buckets; b++) {
+            if (counts[b] > 0) {
+                double value = Double.isInfinite(sumW[b]) ? exact[b] : sumWV[b] / sumW[b];
+                points.add(new HistoryPoint(Instant.ofEpochSecond(fromSec + b * step), value, counts[b]));
+            }
+        }
+        return points;
+    }
+
+    // returns the first index in the sorted int column with a value >= key
+    private static int lowerBound(ByteBuffer buffer, int column, int count, int key) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (buffer.getInt(column + 4 * mid) < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // maps a partition read-only, returns an independent view
+    private ByteBuffer map(LocalDate day) throws IOException {
+        MappedByteBuffer closed = closedPartitions.get(day);
+        if (closed != null) {
+            return closed.duplicate();
+        }
+        Path path = partitionPath(day);
+        if (!Files.exists(path)) {
+            return ByteBuffer.allocate(0);
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (day.isBefore(LocalDate.now(ZoneOffset.UTC).minusDays(1))) {
+            closedPartitions.put(day, buffer);
+        }
+        return buffer.duplicate();
+    }
+
+}
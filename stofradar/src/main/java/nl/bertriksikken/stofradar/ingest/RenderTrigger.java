@@ -0,0 +1,84 @@
+package nl.bertriksikken.stofradar.ingest;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Requests a re-render once enough sensor values have changed.<br>
+ * <br>
+ * The trigger is debounced: every change that keeps the count above the
+ * threshold postpones the action, so sources that update close together
+ * result in a single render.
+ */
+public final class RenderTrigger implements SensorStore.IChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RenderTrigger.class);
+
+    private final int minChanges;
+    private final Duration debounce;
+    private final Runnable action;
+    private final ScheduledExecutorService executor = Executors
+            .newSingleThreadScheduledExecutor(r -> new Thread(r, "render-trigger"));
+
+    private int pending;
+    private ScheduledFuture<?> scheduled;
+
+    /**
+     * Constructor.
+     * 
+     * @param minChanges the number of changed values needed to trigger
+     * @param debounce   the quiet time to wait for before triggering
+     * @param action     the action to run
+     */
+    public RenderTrigger(int minChanges, Duration debounce, Runnable action) {
+        this.minChanges = minChanges;
+        this.debounce = debounce;
+        this.action = action;
+    }
+
+    @Override
+    public synchronized void onChange(String source, int changed) {
+        pending += changed;
+        if (pending >= minChanges) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            scheduled = executor.schedule(this::fire, debounce.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Forgets pending changes, for when they got rendered for another reason.
+     */
+    public synchronized void reset() {
+        pending = 0;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    private void fire() {
+        synchronized (this) {
+            LOG.info("Triggering render for {} changed values", pending);
+            pending = 0;
+            scheduled = null;
+        }
+        action.run();
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+}
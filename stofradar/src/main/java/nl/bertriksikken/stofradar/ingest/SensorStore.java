@@ -0,0 +1,87 @@
+package nl.bertriksikken.stofradar.ingest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Holds the latest value of every sensor, from all sources.<br>
+ * <br>
+ * Listeners are told how many values actually changed after each update, so
+ * they can decide whether it is worth acting on.
+ */
+public final class SensorStore {
+
+    /**
+     * Receives change events from the store.
+     */
+    public interface IChangeListener {
+        /**
+         * @param source  the name of the source that was updated
+         * @param changed the number of new or newer values
+         */
+        void onChange(String source, int changed);
+    }
+
+    // map from id to sensor value
+    private final Map<String, SensorValue> values = new ConcurrentHashMap<>();
+    private final List<IChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(IChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Updates the store, keeping the most recent value per sensor.
+     * 
+     * @param source    the name of the source, for the change event
+     * @param newValues the values from the source
+     * @return the number of values that were new or newer
+     */
+    public int update(String source, Collection<SensorValue> newValues) {
+        int changed = 0;
+        for (SensorValue value : newValues) {
+            SensorValue merged = values.merge(value.id, value,
+                    (oldValue, newValue) -> newValue.time.isAfter(oldValue.time) ? newValue : oldValue);
+            if (merged == value) {
+                changed++;
+            }
+        }
+        if (changed > 0) {
+            for (IChangeListener listener : listeners) {
+                listener.onChange(source, changed);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Removes values older than a given time.
+     * 
+     * @param expiryTime the oldest time to keep
+     * @return the number of values removed
+     */
+    public int expire(Instant expiryTime) {
+        int before = values.size();
+        values.values().removeIf(v -> v.time.isBefore(expiryTime));
+        return before - values.size();
+    }
+
+    /**
+     * @return a copy of the current values
+     */
+    public List<SensorValue> getValues() {
+        return new ArrayList<>(values.values());
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+}
@@ -0,0 +1,127 @@
+package nl.bertriksikken.stofradar.ingest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+import nl.bertriksikken.stofradar.metrics.StageMetrics;
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.trace.CycleTrace;
+import nl.bertriksikken.stofradar.trace.Span;
+
+/**
+ * Polls each data source on its own cadence and feeds the results into the
+ * sensor store.
+ */
+public final class SourceScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SourceScheduler.class);
+    private static final MetricsRegistry REGISTRY = MetricsRegistry.getDefault();
+
+    /**
+     * A data source that can be polled for new values.
+     */
+    public interface ISource {
+        /**
+         * @param trace the trace of this poll, for adding stage spans
+         * @return the values
+         */
+        List<SensorValue> poll(CycleTrace trace) throws IOException;
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final Duration interval;
+        private final ISource source;
+
+        Entry(String name, Duration interval, ISource source) {
+            this.name = name;
+            this.interval = interval;
+            this.source = source;
+        }
+    }
+
+    private final SensorStore store;
+    private final List<Entry> entries = new ArrayList<>();
+    private ScheduledExecutorService executor;
+    private volatile Consumer<CycleTrace> traceListener = trace -> {
+    };
+
+    public SourceScheduler(SensorStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Adds a source, must be called before {@link #start()}.
+     * 
+     * @param name     the name of the source
+     * @param interval the time between polls
+     * @param source   the source
+     */
+    public void add(String name, Duration interval, ISource source) {
+        entries.add(new Entry(name, interval, source));
+    }
+
+    /**
+     * @param listener receives the trace of every poll
+     */
+    public void setTraceListener(Consumer<CycleTrace> listener) {
+        this.traceListener = listener;
+    }
+
+    /**
+     * Polls all sources immediately, then each at its own interval.
+     */
+    public void start() {
+        AtomicInteger index = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(entries.size(),
+                r -> new Thread(r, "ingest-" + index.incrementAndGet()));
+        for (Entry entry : entries) {
+            LOG.info("Polling source {} every {} s", entry.name, entry.interval.getSeconds());
+            executor.scheduleAtFixedRate(() -> poll(entry), 0, entry.interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void poll(Entry entry) {
+        // catch everything, an exception would cancel further polls
+        CycleTrace trace = new CycleTrace("poll " + entry.name);
+        try {
+            long start = System.nanoTime();
+            List<SensorValue> values = entry.source.poll(trace);
+            Span span = trace.span("update", entry.name).sensorsIn(values.size());
+            int changed = store.update(entry.name, values);
+            span.sensorsOut(changed).end();
+            StageMetrics.sensors("source", entry.name).set(values.size());
+            REGISTRY.counter("stofradar_source_changed_values_total", "Number of new or newer values per source",
+                    "source", entry.name).add(changed);
+            LOG.info("Polled {} values from {} in {} ms, {} changed", values.size(), entry.name,
+                    (System.nanoTime() - start) / 1_000_000, changed);
+        } catch (Throwable e) {
+            REGISTRY.counter("stofradar_source_failures_total", "Number of failed polls per source", "source",
+                    entry.name).inc();
+            LOG.warn("Failed to poll {}: {}", entry.name, e.getMessage());
+            LOG.trace("Poll failed", e);
+            trace.attribute("error", String.valueOf(e.getMessage()));
+        } finally {
+            trace.finish();
+            traceListener.accept(trace);
+        }
+    }
+
+}
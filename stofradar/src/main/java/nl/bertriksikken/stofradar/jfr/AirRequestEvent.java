@@ -0,0 +1,40 @@
+package nl.bertriksikken.stofradar.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a REST request of the value at a location.
+ */
+@Name("stofradar.AirRequest")
+@Label("Air Request")
+@Category({ "Stofradar", "REST" })
+@StackTrace(false)
+public final class AirRequestEvent extends Event {
+
+    @Label("Latitude")
+    double latitude;
+
+    @Label("Longitude")
+    double longitude;
+
+    @Label("Sensor Count")
+    int sensorCount;
+
+    public static AirRequestEvent begin(double latitude, double longitude) {
+        AirRequestEvent event = new AirRequestEvent();
+        event.latitude = latitude;
+        event.longitude = longitude;
+        event.begin();
+        return event;
+    }
+
+    public AirRequestEvent sensors(int count) {
+        this.sensorCount = count;
+        return this;
+    }
+
+}
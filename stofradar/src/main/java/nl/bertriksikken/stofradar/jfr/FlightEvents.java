@@ -0,0 +1,28 @@
+package nl.bertriksikken.stofradar.jfr;
+
+/**
+ * Tells whether the flight recorder API is there, so events can be created.<br>
+ * <br>
+ * The jdk.jfr API exists on Java 8 from update 262 and on Java 11 and later.
+ * The event classes extend jdk.jfr.Event and fail to load without it, so code
+ * creates events only if {@link #AVAILABLE}. This class itself does not refer
+ * to jdk.jfr.
+ */
+public final class FlightEvents {
+
+    public static final boolean AVAILABLE = isAvailable();
+
+    private FlightEvents() {
+        // utility class
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+}
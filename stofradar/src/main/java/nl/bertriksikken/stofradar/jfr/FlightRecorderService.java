@@ -0,0 +1,80 @@
+package nl.bertriksikken.stofradar.jfr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Makes time-boxed flight recordings on demand, one at a time.
+ */
+public final class FlightRecorderService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlightRecorderService.class);
+
+    /** The longest recording that can be requested. */
+    public static final Duration MAX_DURATION = Duration.ofMinutes(5);
+
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    /**
+     * Records for the given duration, blocking the caller.
+     * 
+     * @param duration the duration, at most {@link #MAX_DURATION}
+     * @return the recording file, to be deleted by the caller
+     * @throws IOException          in case of a problem creating the recording
+     * @throws IllegalStateException if another recording is in progress, or
+     *                               there is no flight recorder
+     * @throws InterruptedException if interrupted while recording
+     */
+    public Path record(Duration duration) throws IOException, InterruptedException {
+        if (duration.isNegative() || duration.isZero() || (duration.compareTo(MAX_DURATION) > 0)) {
+            throw new IllegalArgumentException("Invalid duration " + duration);
+        }
+        if (!FlightEvents.AVAILABLE) {
+            throw new IllegalStateException("No flight recorder on Java " + System.getProperty("java.version"));
+        }
+        if (!busy.compareAndSet(false, true)) {
+            throw new IllegalStateException("A recording is already in progress");
+        }
+        try {
+            return doRecord(duration);
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    private Path doRecord(Duration duration) throws IOException, InterruptedException {
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration("profile");
+        } catch (ParseException e) {
+            throw new IOException(e);
+        }
+        Path file = Files.createTempFile("stofradar", ".jfr");
+        try (Recording recording = new Recording(configuration)) {
+            recording.setName("stofradar");
+            recording.enable(StageEvent.class).withoutThreshold();
+            recording.enable(AirRequestEvent.class).withoutThreshold();
+            LOG.info("Starting flight recording for {} s", duration.getSeconds());
+            recording.start();
+            Thread.sleep(duration.toMillis());
+            recording.stop();
+            recording.dump(file);
+            LOG.info("Flight recording written to {} ({} bytes)", file, Files.size(file));
+            return file;
+        } catch (IOException | InterruptedException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+}
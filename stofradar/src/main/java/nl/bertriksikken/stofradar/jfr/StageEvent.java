@@ -0,0 +1,62 @@
+package nl.bertriksikken.stofradar.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a pipeline stage.<br>
+ * <br>
+ * Usage: create with {@link #begin(String, String)}, fill in the counts, then
+ * call {@link #commit()}. When no recording is running this costs next to
+ * nothing.
+ */
+@Name("stofradar.Stage")
+@Label("Pipeline Stage")
+@Category({ "Stofradar", "Pipeline" })
+@Description("A stage of the download, filter and render pipeline")
+@StackTrace(false)
+public final class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Scope")
+    @Description("The source or render job the stage works on")
+    String scope;
+
+    @Label("Sensor Count")
+    int sensorCount;
+
+    @Label("Pixel Count")
+    long pixelCount;
+
+    /**
+     * Creates and begins a stage event.
+     * 
+     * @param stage the stage
+     * @param scope the source or render job, or "all"
+     * @return the event
+     */
+    public static StageEvent begin(String stage, String scope) {
+        StageEvent event = new StageEvent();
+        event.stage = stage;
+        event.scope = scope;
+        event.begin();
+        return event;
+    }
+
+    public StageEvent sensors(int count) {
+        this.sensorCount = count;
+        return this;
+    }
+
+    public StageEvent pixels(long count) {
+        this.pixelCount = count;
+        return this;
+    }
+
+}
@@ -1,5 +1,7 @@
 package nl.bertriksikken.stofradar.meetjestad;
 
+import java.time.Duration;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public final class MeetjestadConfig {
@@ -10,6 +12,9 @@ public final class MeetjestadConfig {
     @JsonProperty("timeout")
     private long timeoutSec = 30;
 
+    @JsonProperty("intervalSec")
+    private long intervalSec = 120;
+
     /**
      * @return the base API URL
      */
@@ -21,4 +26,11 @@ public final class MeetjestadConfig {
         return timeoutSec;
     }
 
+    /**
+     * @return the time between downloads, each download fetches only new data
+     */
+    public Duration getInterval() {
+        return Duration.ofSeconds(intervalSec);
+    }
+
 }
@@ -13,6 +13,7 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import retrofit2.Response;
 import retrofit2.Retrofit;
@@ -28,10 +29,14 @@ public final class MeetjestadDownloader {
         this.restApi = restApi;
     }
 
-    public static MeetjestadDownloader create(MeetjestadConfig config) {
+    public static MeetjestadDownloader create(MeetjestadConfig config, Interceptor... interceptors) {
         LOG.info("Creating new REST client for URL '{}' with timeout {}", config.getUrl(), config.getTimeoutSec());
-        OkHttpClient client = new OkHttpClient().newBuilder().callTimeout(Duration.ofSeconds(config.getTimeoutSec()))
-                .build();
+        OkHttpClient.Builder builder = new OkHttpClient().newBuilder()
+                .callTimeout(Duration.ofSeconds(config.getTimeoutSec()));
+        for (Interceptor interceptor : interceptors) {
+            builder.addInterceptor(interceptor);
+        }
+        OkHttpClient client = builder.build();
         Retrofit retrofit = new Retrofit.Builder().baseUrl(config.getUrl())
                 .addConverterFactory(JacksonConverterFactory.create()).client(client).build();
         IMeetjestadRestApi restApi = retrofit.create(IMeetjestadRestApi.class);
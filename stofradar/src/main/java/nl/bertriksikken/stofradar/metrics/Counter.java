@@ -0,0 +1,29 @@
+package nl.bertriksikken.stofradar.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count. Increments are striped, so concurrent
+ * writers do not contend.
+ */
+public final class Counter {
+
+    private final LongAdder adder = new LongAdder();
+
+    Counter() {
+        // created by the registry
+    }
+
+    public void inc() {
+        adder.increment();
+    }
+
+    public void add(long amount) {
+        adder.add(amount);
+    }
+
+    public long get() {
+        return adder.sum();
+    }
+
+}
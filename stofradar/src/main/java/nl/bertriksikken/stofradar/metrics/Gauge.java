@@ -0,0 +1,26 @@
+package nl.bertriksikken.stofradar.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value that can go up and down, either set explicitly or read from a
+ * supplier when the metrics are collected.
+ */
+public final class Gauge {
+
+    private final DoubleSupplier supplier;
+    private volatile double value;
+
+    Gauge(DoubleSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    public void set(double value) {
+        this.value = value;
+    }
+
+    public double get() {
+        return (supplier != null) ? supplier.getAsDouble() : value;
+    }
+
+}
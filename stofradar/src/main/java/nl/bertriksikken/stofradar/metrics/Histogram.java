@@ -0,0 +1,69 @@
+package nl.bertriksikken.stofradar.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution over fixed buckets. Observing a value is a binary search over
+ * the bucket bounds and two striped increments, no locks and no allocation.
+ */
+public final class Histogram {
+
+    /** Bucket bounds in seconds, from a millisecond to a minute. */
+    public static final double[] DURATION_BUCKETS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0,
+            2.5, 5.0, 10.0, 30.0, 60.0 };
+
+    private final double[] bounds;
+    // per bucket, not cumulative, the last one is for values above all bounds
+    private final LongAdder[] counts;
+    private final DoubleAdder sum = new DoubleAdder();
+
+    Histogram(double[] bounds) {
+        this.bounds = bounds.clone();
+        this.counts = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void observe(double value) {
+        int index = Arrays.binarySearch(bounds, value);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        counts[index].increment();
+        sum.add(value);
+    }
+
+    /**
+     * Observes the time elapsed since a start time, in seconds.
+     * 
+     * @param startNanos the start time from {@link System#nanoTime()}
+     */
+    public void observeSince(long startNanos) {
+        observe((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    double[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * @return the cumulative counts per bucket, the last one is the total count
+     */
+    long[] getCumulativeCounts() {
+        long[] cumulative = new long[counts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i].sum();
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    double getSum() {
+        return sum.sum();
+    }
+
+}
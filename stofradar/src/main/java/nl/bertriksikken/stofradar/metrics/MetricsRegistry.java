@@ -0,0 +1,193 @@
+package nl.bertriksikken.stofradar.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Collection of named metrics, which can be written in the Prometheus text
+ * exposition format.<br>
+ * <br>
+ * Metrics are created once and kept by the code that updates them, so the
+ * lookup by name and labels is not on the hot path.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private enum Type {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    private static final class Family {
+        private final String help;
+        private final Type type;
+        // map from rendered label set to metric
+        private final Map<String, Object> children = new ConcurrentSkipListMap<>();
+
+        Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return the registry shared by the whole application
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Gets or creates a counter.
+     * 
+     * @param name   the metric name
+     * @param help   the description
+     * @param labels label names and values, alternating
+     * @return the counter
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return get(name, help, Type.COUNTER, labels, key -> new Counter());
+    }
+
+    /**
+     * Registers a counter that is maintained elsewhere and read when collected.
+     */
+    public void counter(String name, String help, LongSupplier supplier, String... labels) {
+        get(name, help, Type.COUNTER, labels, key -> new Gauge(supplier::getAsLong));
+    }
+
+    /**
+     * Gets or creates a gauge that is set explicitly.
+     */
+    public Gauge gauge(String name, String help, String... labels) {
+        return get(name, help, Type.GAUGE, labels, key -> new Gauge(null));
+    }
+
+    /**
+     * Gets or creates a gauge that reads its value when collected.
+     */
+    public Gauge gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        return get(name, help, Type.GAUGE, labels, key -> new Gauge(supplier));
+    }
+
+    /**
+     * Gets or creates a histogram with duration buckets, for values in seconds.
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return histogram(name, help, Histogram.DURATION_BUCKETS, labels);
+    }
+
+    /**
+     * Gets or creates a histogram with the given bucket bounds, in increasing
+     * order.
+     */
+    public Histogram histogram(String name, String help, double[] buckets, String... labels) {
+        return get(name, help, Type.HISTOGRAM, labels, key -> new Histogram(buckets));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(String name, String help, Type type, String[] labels, Function<String, T> factory) {
+        if ((labels.length % 2) != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        Family family = families.computeIfAbsent(name, n -> new Family(help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+        }
+        return (T) family.children.computeIfAbsent(formatLabels(labels), factory);
+    }
+
+    private static String formatLabels(String[] labels) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text format, version 0.0.4.
+     * 
+     * @param writer the writer
+     * @throws IOException in case of a problem writing
+     */
+    public void write(Writer writer) throws IOException {
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            writer.write("# HELP " + name + " " + family.help + "\n");
+            writer.write("# TYPE " + name + " " + family.type.name().toLowerCase(Locale.ROOT) + "\n");
+            for (Map.Entry<String, Object> child : family.children.entrySet()) {
+                String labels = child.getKey();
+                Object metric = child.getValue();
+                switch (family.type) {
+                case COUNTER:
+                    if (metric instanceof Counter) {
+                        writeSample(writer, name, labels, ((Counter) metric).get());
+                    } else {
+                        writeSample(writer, name, labels, ((Gauge) metric).get());
+                    }
+                    break;
+                case GAUGE:
+                    writeSample(writer, name, labels, ((Gauge) metric).get());
+                    break;
+                case HISTOGRAM:
+                default:
+                    writeHistogram(writer, name, labels, (Histogram) metric);
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void writeHistogram(Writer writer, String name, String labels, Histogram histogram)
+            throws IOException {
+        double[] bounds = histogram.getBounds();
+        long[] counts = histogram.getCumulativeCounts();
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for (int i = 0; i < bounds.length; i++) {
+            writeSample(writer, name + "_bucket", prefix + "le=\"" + formatValue(bounds[i]) + "\"", counts[i]);
+        }
+        long count = counts[counts.length - 1];
+        writeSample(writer, name + "_bucket", prefix + "le=\"+Inf\"", count);
+        writeSample(writer, name + "_sum", labels, histogram.getSum());
+        writeSample(writer, name + "_count", labels, count);
+    }
+
+    private static void writeSample(Writer writer, String name, String labels, double value) throws IOException {
+        writer.write(name);
+        if (!labels.isEmpty()) {
+            writer.write("{" + labels + "}");
+        }
+        writer.write(" " + formatValue(value) + "\n");
+    }
+
+    private static String formatValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return (value > 0) ? "+Inf" : "-Inf";
+        }
+        if ((value == Math.rint(value)) && (Math.abs(value) < 1e15)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+}
@@ -0,0 +1,45 @@
+package nl.bertriksikken.stofradar.metrics;
+
+/**
+ * Shorthands for the metrics shared by the pipeline stages.
+ */
+public final class StageMetrics {
+
+    private static final MetricsRegistry REGISTRY = MetricsRegistry.getDefault();
+
+    private StageMetrics() {
+        // utility class
+    }
+
+    /**
+     * @param stage the stage, like "download" or "interpolate"
+     * @param scope what the stage works on, a source, a render job or "all"
+     * @return the duration histogram of the stage
+     */
+    public static Histogram duration(String stage, String scope) {
+        return REGISTRY.histogram("stofradar_stage_duration_seconds", "Duration of pipeline stages", "stage", stage,
+                "scope", scope);
+    }
+
+    /**
+     * @param kind  the kind of count, like "source" or "filtered"
+     * @param scope what is counted, a source or a render job
+     * @return the gauge holding the most recent sensor count
+     */
+    public static Gauge sensors(String kind, String scope) {
+        return REGISTRY.gauge("stofradar_sensor_values", "Number of sensor values per stage", "kind", kind, "scope",
+                scope);
+    }
+
+    /**
+     * @param pipeline the filter pipeline, "pm" or "rh"
+     * @param job      the render job, or "all" for the global stages
+     * @param stage    the filter stage
+     * @return the gauge holding the number of values dropped in the last cycle
+     */
+    public static Gauge filterDropped(String pipeline, String job, String stage) {
+        return REGISTRY.gauge("stofradar_filter_dropped_values", "Number of values dropped per filter stage",
+                "pipeline", pipeline, "job", job, "stage", stage);
+    }
+
+}
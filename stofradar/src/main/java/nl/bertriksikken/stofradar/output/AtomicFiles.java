@@ -0,0 +1,92 @@
+package nl.bertriksikken.stofradar.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * File operations that never expose a partially written file to readers.<br>
+ * <br>
+ * Content is first written under a temporary name in the same directory, then
+ * renamed over the target in one atomic step.
+ */
+public final class AtomicFiles {
+
+    /**
+     * Writes content to a stream.
+     */
+    public interface IContentWriter {
+        void write(OutputStream stream) throws IOException;
+    }
+
+    private AtomicFiles() {
+        // utility class
+    }
+
+    /**
+     * @param target the final file
+     * @return a temporary file next to the target, hidden and with the same
+     *         extension so tools that look at the extension still work
+     */
+    public static Path tempFileFor(Path target) {
+        return target.resolveSibling("." + target.getFileName() + ".tmp" + extension(target));
+    }
+
+    private static String extension(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0) ? name.substring(dot) : "";
+    }
+
+    /**
+     * Writes a file atomically.
+     * 
+     * @param target the file to write
+     * @param writer writes the content
+     * @throws IOException in case of a problem writing the file
+     */
+    public static void write(Path target, IContentWriter writer) throws IOException {
+        Path temp = tempFileFor(target);
+        try (OutputStream stream = Files.newOutputStream(temp)) {
+            writer.write(stream);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        replace(temp, target);
+    }
+
+    /**
+     * Atomically replaces a file by another one.
+     * 
+     * @param source the new file, renamed to the target
+     * @param target the file to replace
+     * @throws IOException in case of a problem renaming
+     */
+    public static void replace(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Makes a target file refer to the same content as a source file, using a
+     * hard link so no bytes are copied. Falls back to copying if the file system
+     * does not support hard links.
+     * 
+     * @param source the existing file
+     * @param target the file to create or replace
+     * @throws IOException in case of a problem linking or copying
+     */
+    public static void link(Path source, Path target) throws IOException {
+        Path temp = tempFileFor(target);
+        Files.deleteIfExists(temp);
+        try {
+            Files.createLink(temp, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        replace(temp, target);
+    }
+
+}
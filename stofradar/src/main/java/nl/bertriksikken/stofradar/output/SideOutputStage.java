@@ -0,0 +1,92 @@
+package nl.bertriksikken.stofradar.output;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs side outputs of the pipeline (caches, CSV files, snapshots) on a
+ * dedicated I/O thread, so they do not add to render latency.<br>
+ * <br>
+ * Tasks run one at a time in submission order. The queue is bounded: when the
+ * I/O thread falls behind, {@link #submit(String, IOTask)} blocks until there
+ * is room again, instead of piling up work in memory.
+ */
+public final class SideOutputStage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SideOutputStage.class);
+
+    /**
+     * A unit of I/O work.
+     */
+    public interface IOTask {
+        void run() throws IOException;
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructor.
+     * 
+     * @param queueSize the maximum number of pending tasks
+     */
+    public SideOutputStage(int queueSize) {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                r -> new Thread(r, "side-output"), (r, e) -> {
+                    // backpressure: block the submitter until there is room
+                    try {
+                        if (!e.isShutdown()) {
+                            e.getQueue().put(r);
+                        }
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for side output queue", ie);
+                    }
+                });
+    }
+
+    /**
+     * Queues a task, blocking if the queue is full.
+     * 
+     * @param name the name of the task, for logging
+     * @param task the task
+     */
+    public void submit(String name, IOTask task) {
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+                LOG.info("Side output '{}' done in {} ms", name, (System.nanoTime() - start) / 1_000_000);
+            } catch (Throwable e) {
+                LOG.warn("Side output '{}' failed: {}", name, e.getMessage());
+                LOG.trace("Side output failed", e);
+            }
+        });
+    }
+
+    /**
+     * @return the number of tasks waiting to run
+     */
+    public int getPendingCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops accepting tasks and waits for pending ones to complete.
+     * 
+     * @param timeoutMs the maximum time to wait
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void stop(long timeoutMs) throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+            LOG.warn("Side output stage did not finish within {} ms", timeoutMs);
+        }
+    }
+
+}
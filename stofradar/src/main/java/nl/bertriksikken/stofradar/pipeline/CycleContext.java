@@ -0,0 +1,98 @@
+package nl.bertriksikken.stofradar.pipeline;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.trace.CycleTrace;
+
+/**
+ * The time slot and deadline of one pipeline cycle, shared by its stages.
+ */
+public final class CycleContext {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CycleContext.class);
+
+    private final Instant slot;
+    private final Instant deadline;
+    private final Clock clock;
+    private final AtomicBoolean degraded = new AtomicBoolean();
+    private final CycleTrace trace;
+
+    /**
+     * @param slot     the start of the slot
+     * @param deadline the time by which the cycle should be complete
+     */
+    public CycleContext(Instant slot, Instant deadline) {
+        this(slot, deadline, Clock.systemUTC());
+    }
+
+    /**
+     * @param slot     the start of the slot
+     * @param deadline the time by which the cycle should be complete
+     * @param clock    the clock the deadline is on
+     */
+    public CycleContext(Instant slot, Instant deadline, Clock clock) {
+        this.slot = slot;
+        this.deadline = deadline;
+        this.clock = clock;
+        this.trace = new CycleTrace("cycle " + slot);
+        trace.attribute("slot", slot.toString());
+        trace.attribute("deadline", deadline.toString());
+    }
+
+    /**
+     * @return the start of the slot this cycle belongs to
+     */
+    public Instant getSlot() {
+        return slot;
+    }
+
+    public Instant getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return the trace of this cycle, for adding stage spans
+     */
+    public CycleTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * @return the time left until the deadline, negative if it has passed
+     */
+    public Duration getRemaining() {
+        return Duration.between(clock.instant(), deadline);
+    }
+
+    public boolean isExpired() {
+        return !clock.instant().isBefore(deadline);
+    }
+
+    /**
+     * Records that a stage was skipped or cut short to meet the deadline.
+     * 
+     * @param stage the name of the stage
+     */
+    public void degrade(String stage) {
+        LOG.warn("Cycle {} degraded, skipping {}", slot, stage);
+        degraded.set(true);
+        trace.attribute("skipped " + stage, true);
+    }
+
+    public boolean isDegraded() {
+        return degraded.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "{slot=%s,deadline=%s}", slot, deadline);
+    }
+
+}
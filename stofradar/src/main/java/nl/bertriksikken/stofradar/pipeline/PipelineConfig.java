@@ -0,0 +1,75 @@
+package nl.bertriksikken.stofradar.pipeline;
+
+import java.time.Duration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public final class PipelineConfig {
+
+    @JsonProperty("intervalSec")
+    private int intervalSec = 300;
+
+    @JsonProperty("deadlineSec")
+    private int deadlineSec = 270;
+
+    @JsonProperty("retryDelaySec")
+    private int retryDelaySec = 30;
+
+    @JsonProperty("maxRetries")
+    private int maxRetries = 2;
+
+    @JsonProperty("renderMinChanges")
+    private int renderMinChanges = 200;
+
+    @JsonProperty("renderDebounceSec")
+    private int renderDebounceSec = 20;
+
+    public PipelineConfig() {
+        // jackson constructor
+    }
+
+    PipelineConfig(int intervalSec, int deadlineSec, int retryDelaySec, int maxRetries) {
+        this.intervalSec = intervalSec;
+        this.deadlineSec = deadlineSec;
+        this.retryDelaySec = retryDelaySec;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @return the time between cycle slots
+     */
+    public Duration getInterval() {
+        return Duration.ofSeconds(intervalSec);
+    }
+
+    /**
+     * @return the time after the slot start by which a cycle must be done
+     */
+    public Duration getDeadline() {
+        return Duration.ofSeconds(deadlineSec);
+    }
+
+    public Duration getRetryDelay() {
+        return Duration.ofSeconds(retryDelaySec);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @return the number of changed sensor values that triggers an extra render
+     *         between slots
+     */
+    public int getRenderMinChanges() {
+        return renderMinChanges;
+    }
+
+    /**
+     * @return the quiet time after the last change before an extra render starts
+     */
+    public Duration getRenderDebounce() {
+        return Duration.ofSeconds(renderDebounceSec);
+    }
+
+}
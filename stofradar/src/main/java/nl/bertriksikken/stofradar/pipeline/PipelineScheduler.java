@@ -0,0 +1,274 @@
+package nl.bertriksikken.stofradar.pipeline;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.trace.CycleTrace;
+import nl.bertriksikken.stofradar.trace.Span;
+
+/**
+ * Runs the pipeline in fixed time slots, with a deadline per cycle.<br>
+ * <br>
+ * A cycle consists of an ingest stage (for example filter and publish) and a render
+ * stage, each on its own thread, so the ingest of the next cycle can overlap
+ * with rendering of the previous one. Policies:
+ * <ul>
+ * <li>a slot that starts after its deadline has passed is skipped as stale
+ * <li>a slot that starts while the previous ingest is still running is skipped
+ * <li>a failed ingest is retried only if the retry can still meet the deadline
+ * <li>only the latest ingested cycle is rendered, older pending ones are
+ * dropped
+ * <li>a render that would start after the deadline is skipped
+ * </ul>
+ *
+ * @param <T> the product handed from the ingest stage to the render stage
+ */
+public final class PipelineScheduler<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineScheduler.class);
+
+    // timer wake-ups slightly before the slot boundary still count for that slot
+    private static final Duration SLOT_TOLERANCE = Duration.ofSeconds(1);
+
+    /**
+     * Downloads and processes the data for one cycle.
+     */
+    public interface IIngestStage<T> {
+        /**
+         * @return the product to render, or null if there is nothing to render
+         */
+        T ingest(CycleContext context) throws Exception;
+    }
+
+    /**
+     * Renders the product of an ingest stage.
+     */
+    public interface IRenderStage<T> {
+        void render(CycleContext context, T product) throws Exception;
+    }
+
+    private static final class Cycle<T> {
+        private final CycleContext context;
+        private final T product;
+
+        Cycle(CycleContext context, T product) {
+            this.context = context;
+            this.product = product;
+        }
+    }
+
+    private final PipelineConfig config;
+    private final IIngestStage<T> ingestStage;
+    private final IRenderStage<T> renderStage;
+    private final PipelineStats stats = new PipelineStats();
+
+    private final ScheduledExecutorService timer = Executors
+            .newSingleThreadScheduledExecutor(r -> new Thread(r, "pipeline-timer"));
+    private final ExecutorService ingestExecutor = Executors
+            .newSingleThreadExecutor(r -> new Thread(r, "pipeline-ingest"));
+    private final ExecutorService renderExecutor = Executors
+            .newSingleThreadExecutor(r -> new Thread(r, "pipeline-render"));
+
+    private final AtomicBoolean ingestBusy = new AtomicBoolean();
+    private final AtomicReference<Cycle<T>> pendingRender = new AtomicReference<>();
+    private Instant lastSlot = Instant.EPOCH;
+    private volatile Consumer<CycleTrace> traceListener = trace -> {
+    };
+
+    public PipelineScheduler(PipelineConfig config, IIngestStage<T> ingestStage, IRenderStage<T> renderStage) {
+        this.config = config;
+        this.ingestStage = ingestStage;
+        this.renderStage = renderStage;
+    }
+
+    /**
+     * Starts an immediate cycle, then one cycle per slot.
+     */
+    public void start() {
+        LOG.info("Starting pipeline, interval {}, deadline {}", config.getInterval(), config.getDeadline());
+        timer.execute(() -> trigger(Instant.now(), false));
+        scheduleNextSlot();
+    }
+
+    /**
+     * Starts an extra cycle as soon as possible, for example because new data
+     * arrived. Subject to the same skip policies as a regular slot.
+     */
+    public void requestCycle() {
+        timer.execute(() -> trigger(Instant.now(), false));
+    }
+
+    public void stop() {
+        timer.shutdownNow();
+        ingestExecutor.shutdownNow();
+        renderExecutor.shutdownNow();
+    }
+
+    public PipelineStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @param listener receives the trace of every cycle once it is complete
+     */
+    public void setTraceListener(Consumer<CycleTrace> listener) {
+        this.traceListener = listener;
+    }
+
+    private void completeTrace(CycleContext context, String outcome) {
+        CycleTrace trace = context.getTrace();
+        trace.attribute("outcome", outcome);
+        trace.attribute("degraded", context.isDegraded());
+        trace.finish();
+        traceListener.accept(trace);
+    }
+
+    // the next wake-up is calculated from the wall clock every time, so delays do
+    // not accumulate and a stalled timer does not fire a burst of missed slots
+    private void scheduleNextSlot() {
+        long intervalMs = config.getInterval().toMillis();
+        long nowMs = System.currentTimeMillis();
+        long delayMs = intervalMs - (nowMs % intervalMs);
+        timer.schedule(() -> {
+            trigger(Instant.now(), true);
+            scheduleNextSlot();
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private Instant slotOf(Instant time) {
+        long intervalMs = config.getInterval().toMillis();
+        long ms = time.plus(SLOT_TOLERANCE).toEpochMilli();
+        return Instant.ofEpochMilli(ms - (ms % intervalMs));
+    }
+
+    /**
+     * Starts a cycle, unless one of the skip policies applies.
+     * 
+     * @param now       the current time
+     * @param scheduled true for a slot wake-up, false for an ad-hoc cycle
+     * @return whether a cycle was started
+     */
+    synchronized boolean trigger(Instant now, boolean scheduled) {
+        Instant slot = slotOf(now);
+        Instant deadline;
+        long latenessMs = 0;
+        if (scheduled) {
+            if (!slot.isAfter(lastSlot)) {
+                LOG.info("Slot {} already handled", slot);
+                return false;
+            }
+            lastSlot = slot;
+            latenessMs = Math.max(0, Duration.between(slot, now).toMillis());
+            stats.recordLateness(latenessMs);
+            deadline = slot.plus(config.getDeadline());
+            if (!now.isBefore(deadline)) {
+                LOG.warn("Skipping stale cycle {}, started at {} after deadline {}", slot, now, deadline);
+                stats.skippedCycles.incrementAndGet();
+                return false;
+            }
+        } else {
+            if (slot.isAfter(lastSlot)) {
+                lastSlot = slot;
+            }
+            deadline = now.plus(config.getDeadline());
+        }
+        if (!ingestBusy.compareAndSet(false, true)) {
+            LOG.warn("Skipping cycle {}, previous cycle is still ingesting", slot);
+            stats.skippedCycles.incrementAndGet();
+            return false;
+        }
+        stats.cycles.incrementAndGet();
+        CycleContext context = new CycleContext(slot, deadline);
+        context.getTrace().attribute("scheduled", scheduled);
+        context.getTrace().attribute("latenessMs", latenessMs);
+        ingestExecutor.execute(() -> runIngest(context));
+        return true;
+    }
+
+    private void runIngest(CycleContext context) {
+        try {
+            Span span = context.getTrace().span("ingest", "all");
+            T product = ingestWithRetries(context);
+            span.end();
+            if (product != null) {
+                Cycle<T> previous = pendingRender.getAndSet(new Cycle<>(context, product));
+                if (previous != null) {
+                    LOG.warn("Dropping render of cycle {}, superseded by {}", previous.context.getSlot(),
+                            context.getSlot());
+                    stats.supersededRenders.incrementAndGet();
+                    completeTrace(previous.context, "superseded");
+                }
+                renderExecutor.execute(this::runRender);
+            } else {
+                completeTrace(context, "failed");
+            }
+        } finally {
+            ingestBusy.set(false);
+        }
+    }
+
+    private T ingestWithRetries(CycleContext context) {
+        int retries = config.getMaxRetries();
+        while (true) {
+            try {
+                return ingestStage.ingest(context);
+            } catch (Exception e) {
+                LOG.warn("Ingest of cycle {} failed: {}", context.getSlot(), e.getMessage());
+                LOG.trace("Ingest failed", e);
+                Duration delay = config.getRetryDelay();
+                if ((retries <= 0) || context.getRemaining().compareTo(delay) <= 0) {
+                    LOG.error("Giving up on cycle {}", context.getSlot());
+                    stats.failedCycles.incrementAndGet();
+                    return null;
+                }
+                retries--;
+                LOG.info("Retrying in {} s, retries left: {}", delay.getSeconds(), retries);
+                try {
+                    Thread.sleep(delay.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+    }
+
+    private void runRender() {
+        Cycle<T> cycle = pendingRender.getAndSet(null);
+        if (cycle == null) {
+            // already rendered by an earlier task
+            return;
+        }
+        CycleContext context = cycle.context;
+        String outcome = "rendered";
+        Span span = context.getTrace().span("render", "all");
+        try {
+            if (context.isExpired()) {
+                context.degrade("render");
+            } else {
+                renderStage.render(context, cycle.product);
+            }
+        } catch (Exception e) {
+            LOG.error("Render of cycle {} failed", context.getSlot(), e);
+            outcome = "render failed";
+        } finally {
+            span.end();
+            if (context.isDegraded()) {
+                stats.degradedCycles.incrementAndGet();
+            }
+            completeTrace(context, outcome);
+            LOG.info("Cycle {} done, {}", context.getSlot(), stats);
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package nl.bertriksikken.stofradar.pipeline;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing how well the pipeline keeps up with its schedule.
+ */
+public final class PipelineStats {
+
+    final AtomicLong cycles = new AtomicLong();
+    final AtomicLong skippedCycles = new AtomicLong();
+    final AtomicLong failedCycles = new AtomicLong();
+    final AtomicLong degradedCycles = new AtomicLong();
+    final AtomicLong supersededRenders = new AtomicLong();
+    final AtomicLong lastLatenessMs = new AtomicLong();
+    final AtomicLong maxLatenessMs = new AtomicLong();
+
+    void recordLateness(long latenessMs) {
+        lastLatenessMs.set(latenessMs);
+        maxLatenessMs.accumulateAndGet(latenessMs, Math::max);
+    }
+
+    /**
+     * @return the number of cycles started
+     */
+    public long getCycles() {
+        return cycles.get();
+    }
+
+    /**
+     * @return the number of cycles not started because they were stale or the
+     *         previous cycle was still ingesting
+     */
+    public long getSkippedCycles() {
+        return skippedCycles.get();
+    }
+
+    /**
+     * @return the number of cycles whose ingest failed after all retries
+     */
+    public long getFailedCycles() {
+        return failedCycles.get();
+    }
+
+    /**
+     * @return the number of cycles that skipped a stage to meet the deadline
+     */
+    public long getDegradedCycles() {
+        return degradedCycles.get();
+    }
+
+    /**
+     * @return the number of renders dropped because a newer cycle was ready
+     */
+    public long getSupersededRenders() {
+        return supersededRenders.get();
+    }
+
+    /**
+     * @return the delay between slot start and the start of the last cycle
+     */
+    public long getLastLatenessMs() {
+        return lastLatenessMs.get();
+    }
+
+    public long getMaxLatenessMs() {
+        return maxLatenessMs.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "{cycles=%d,skipped=%d,failed=%d,degraded=%d,superseded=%d,lateness=%d ms,max=%d ms}", getCycles(),
+                getSkippedCycles(), getFailedCycles(), getDegradedCycles(), getSupersededRenders(),
+                getLastLatenessMs(), getMaxLatenessMs());
+    }
+
+}
@@ -19,40 +19,63 @@ public final class InverseDistanceWeightShader implements IShader {
      * @param job the render job
      */
     public InverseDistanceWeightShader(RenderJob job, ColorMapper mapper) {
-        this.innerRadius = job.getInnerRadius();
-        this.outerRadius = job.getOuterRadius();
+        this(job.getInnerRadius(), job.getOuterRadius(), (job.getNorth() + job.getSouth()) / 2, mapper);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param innerRadius    the radius around a sensor that gets its own value
+     *                       (km)
+     * @param outerRadius    the radius around the sensors outside of which there
+     *                       is no value (km)
+     * @param centerLatitude the latitude for the km per degree of longitude
+     * @param mapper         the colour mapper, only used for pixels
+     */
+    public InverseDistanceWeightShader(double innerRadius, double outerRadius, double centerLatitude,
+            ColorMapper mapper) {
+        this.innerRadius = innerRadius;
+        this.outerRadius = outerRadius;
         this.mapper = mapper;
 
         // calculate km per degree
-        Coord center = new Coord((job.getWest() + job.getEast()) / 2, (job.getNorth() + job.getSouth()) / 2);
-        this.aspect = new double[] { KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(center.getY())), KM_PER_DEGREE_LAT };
+        this.aspect = new double[] { KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(centerLatitude)), KM_PER_DEGREE_LAT };
     }
 
-    @Override
-    public int[] calculatePixel(List<SensorValue> sensorValues, Coord coordinate) {
-        double weightSum = 0.0;
-        double valueSum = 0.0;
-        double closestDistSquared = Double.MAX_VALUE;
-        double closestDistValue = 0.0;
+    // the sums over all sensors for one coordinate
+    private static final class Sums {
+        private double weightSum = 0.0;
+        private double valueSum = 0.0;
+        private double closestDistSquared = Double.MAX_VALUE;
+        private double closestDistValue = 0.0;
+    }
+
+    private Sums sum(List<SensorValue> sensorValues, double x, double y) {
+        Sums sums = new Sums();
         for (SensorValue dp : sensorValues) {
-            Coord c1 = new Coord(dp.x, dp.y);
-            double d2 = distanceSquared(aspect, coordinate, c1);
+            double d2 = distanceSquared(dp.x - x, dp.y - y);
             double w = 1.0 / d2;
             double v = dp.value;
-            valueSum += (v * w);
-            weightSum += w;
-            if (d2 < closestDistSquared) {
-                closestDistSquared = d2;
-                closestDistValue = v;
+            sums.valueSum += (v * w);
+            sums.weightSum += w;
+            if (d2 < sums.closestDistSquared) {
+                sums.closestDistSquared = d2;
+                sums.closestDistValue = v;
             }
         }
-        double closest = Math.sqrt(closestDistSquared);
-        double weighted = valueSum / weightSum;
+        return sums;
+    }
+
+    @Override
+    public int[] calculatePixel(List<SensorValue> sensorValues, Coord coordinate) {
+        Sums sums = sum(sensorValues, coordinate.getX(), coordinate.getY());
+        double closest = Math.sqrt(sums.closestDistSquared);
+        double weighted = sums.valueSum / sums.weightSum;
 
         int[] colour;
         if (closest < innerRadius) {
             // inside inner radius: fully opaque disc
-            colour = mapper.getColour(closestDistValue).clone();
+            colour = mapper.getColour(sums.closestDistValue).clone();
             colour[3] = 255;
         } else if (closest < outerRadius) {
             // between inner and outer radius: semi-transparent weighted sum
@@ -64,17 +87,35 @@ public final class InverseDistanceWeightShader implements IShader {
         return colour;
     }
 
+    /**
+     * Calculates the value that the colour of a pixel is based on.
+     * 
+     * @param x the longitude
+     * @param y the latitude
+     * @return the value of the closest sensor inside the inner radius, the
+     *         weighted value inside the outer radius, NaN outside it
+     */
+    public double calculateValue(List<SensorValue> sensorValues, double x, double y) {
+        Sums sums = sum(sensorValues, x, y);
+        double closest = Math.sqrt(sums.closestDistSquared);
+        if (closest < innerRadius) {
+            return sums.closestDistValue;
+        } else if (closest < outerRadius) {
+            return sums.valueSum / sums.weightSum;
+        }
+        return Double.NaN;
+    }
+
     /**
      * Calculates a measure of the distance between two coordinates.
      * 
-     * @param aspect the x/y aspect ratio
-     * @param c1     the first coordinate
-     * @param c2     the second coordinate
+     * @param dLon the difference in longitude
+     * @param dLat the difference in latitude
      * @return distance-squared
      */
-    private double distanceSquared(double[] aspect, Coord c1, Coord c2) {
-        double dx = aspect[0] * (c1.getX() - c2.getX());
-        double dy = aspect[1] * (c1.getY() - c2.getY());
+    private double distanceSquared(double dLon, double dLat) {
+        double dx = aspect[0] * dLon;
+        double dy = aspect[1] * dLat;
         return (dx * dx) + (dy * dy);
     }
 
@@ -1,75 +1,104 @@
 package nl.bertriksikken.stofradar.render;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 import nl.bertriksikken.stofradar.config.RenderJob;
+import nl.bertriksikken.stofradar.spatial.SpatialIndex;
+import nl.bertriksikken.stofradar.stats.Quantiles;
 
+/**
+ * Colours a pixel by the median of the sensors within the outer radius.<br>
+ * <br>
+ * The sensors near a pixel come from an index of the sensor values, built once
+ * per list of values. Their values are collected in a scratch buffer that is
+ * reused for all pixels, so an instance renders one image at a time.
+ */
 public final class MedianShader implements IShader {
 
     private static final double KM_PER_DEGREE_LAT = 40075.0 / 360.0;
+    // about 2 km, as for the index of a snapshot
+    private static final double INDEX_CELL_DEGREES = 0.02;
 
     private final double innerRadiusSquared;
     private final double maxDistanceSquared;
     private final ColorMapper mapper;
     private final double[] aspect;
+    // a little more than the outer radius, so rounding never skips a sensor
+    private final double boxLon;
+    private final double boxLat;
+    private final Consumer<SensorValue> collector = this::collect;
+
+    private List<SensorValue> indexed;
+    private SpatialIndex index;
+
+    // the pixel being calculated and the sensors within radius so far
+    private double pixelX;
+    private double pixelY;
+    private double[] near = new double[64];
+    private int count;
+    private double closestDistSquared;
+    private double closestDistValue;
 
     public MedianShader(RenderJob job, ColorMapper mapper) {
         this.innerRadiusSquared = Math.pow(job.getInnerRadius(), 2.0);
         this.maxDistanceSquared = Math.pow(job.getOuterRadius(), 2.0);
         this.mapper = mapper;
-        
+
         // calculate km per degree
         Coord center = new Coord((job.getWest() + job.getEast()) / 2, (job.getNorth() + job.getSouth()) / 2);
         this.aspect = new double[] { KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(center.getY())), KM_PER_DEGREE_LAT };
+        this.boxLon = 1.01 * job.getOuterRadius() / aspect[0];
+        this.boxLat = 1.01 * job.getOuterRadius() / aspect[1];
     }
 
-    
+
     @Override
     public int[] calculatePixel(List<SensorValue> sensorValues, Coord coordinate) {
-        
-        // find sensors within radius
-        double closestDistSquared = Double.MAX_VALUE;
-        double closestDistValue = 0.0;
-        List<SensorValue> near = new ArrayList<>();
-        for (SensorValue dp : sensorValues) {
-            Coord c1 = new Coord(dp.x, dp.y);
-            double d2 = distanceSquared(aspect, coordinate, c1);
-            if (d2 < maxDistanceSquared) {
-                near.add(dp);
-                if (d2 < closestDistSquared) {
-                    closestDistSquared = d2;
-                    closestDistValue = dp.value;
-                }
-            }
+        if (sensorValues != indexed) {
+            index = new SpatialIndex(sensorValues, INDEX_CELL_DEGREES);
+            indexed = sensorValues;
         }
-        if (near.isEmpty()) {
+
+        // find sensors within radius
+        pixelX = coordinate.getX();
+        pixelY = coordinate.getY();
+        count = 0;
+        closestDistSquared = Double.MAX_VALUE;
+        closestDistValue = 0.0;
+        index.forEachNear(pixelX - boxLon, pixelY - boxLat, pixelX + boxLon, pixelY + boxLat, collector);
+        if (count == 0) {
             return new int[] {0, 0, 0, 0};
         }
         if (closestDistSquared < innerRadiusSquared) {
-            // inside inner radius: fully opaque disc 
+            // inside inner radius: fully opaque disc
             int[] colour = mapper.getColour(closestDistValue).clone();
             colour[3] = 255;
             return colour;
         }
-        // calculate median
-        double value = median(near);
+        // calculate median, in place on the values found
+        double value = Quantiles.median(near, 0, count);
         return mapper.getColour(value);
     }
-    
-    private double median(List<SensorValue> values) {
-        int len = values.size();
-        Collections.sort(values, (v1, v2) -> Double.compare(v1.value, v2.value));
-        double left = values.get((len - 1) / 2).value;
-        double right = values.get(len / 2).value;
-        return (left + right) / 2;
+
+    private void collect(SensorValue dp) {
+        double d2 = distanceSquared(dp.x - pixelX, dp.y - pixelY);
+        if (d2 < maxDistanceSquared) {
+            if (count == near.length) {
+                near = Arrays.copyOf(near, 2 * count);
+            }
+            near[count++] = dp.value;
+            if (d2 < closestDistSquared) {
+                closestDistSquared = d2;
+                closestDistValue = dp.value;
+            }
+        }
     }
-    
 
-    private double distanceSquared(double[] aspect, Coord c1, Coord c2) {
-        double dx = aspect[0] * (c1.getX() - c2.getX());
-        double dy = aspect[1] * (c1.getY() - c2.getY());
+    private double distanceSquared(double dLon, double dLat) {
+        double dx = aspect[0] * dLon;
+        double dy = aspect[1] * dLat;
         return (dx * dx) + (dy * dy);
     }
 
@@ -0,0 +1,45 @@
+package nl.bertriksikken.stofradar.replay;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Captures the payload of every successful upstream download, for replaying it
+ * later with a {@link ReplayInterceptor}.
+ */
+public final class RecordingInterceptor implements Interceptor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecordingInterceptor.class);
+
+    private final Recordings recordings;
+
+    public RecordingInterceptor(Recordings recordings) {
+        this.recordings = recordings;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (response.isSuccessful()) {
+            String key = Recordings.keyOf(request.url().host(), request.url().encodedPath());
+            try {
+                byte[] payload = response.peekBody(Long.MAX_VALUE).bytes();
+                recordings.save(key, Instant.now(), payload);
+                LOG.info("Recorded {} bytes from {}", payload.length, key);
+            } catch (IOException e) {
+                // recording is best effort, the download itself succeeded
+                LOG.warn("Failed to record {}: {}", key, e.getMessage());
+            }
+        }
+        return response;
+    }
+
+}
@@ -0,0 +1,119 @@
+package nl.bertriksikken.stofradar.replay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import nl.bertriksikken.stofradar.output.AtomicFiles;
+
+/**
+ * Directory of recorded upstream payloads.<br>
+ * <br>
+ * Every endpoint has a sub-directory, named after the host and path of the
+ * request. Each payload is stored as is in a file named after the time it was
+ * captured, in milliseconds since the epoch.
+ */
+public final class Recordings {
+
+    private static final String EXTENSION = ".body";
+
+    private final Path directory;
+    // index of the next payload to replay, per endpoint
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    /**
+     * A recorded payload.
+     */
+    public static final class Recording {
+        private final Instant time;
+        private final byte[] payload;
+
+        Recording(Instant time, byte[] payload) {
+            this.time = time;
+            this.payload = payload;
+        }
+
+        /**
+         * @return the time the payload was captured
+         */
+        public Instant getTime() {
+            return time;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    public Recordings(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param host the host of the request
+     * @param path the path of the request, the query is not part of the key
+     * @return the name of the endpoint, usable as a file name
+     */
+    public static String keyOf(String host, String path) {
+        return (host + path).replaceAll("[^A-Za-z0-9.-]", "_");
+    }
+
+    /**
+     * Stores a payload.
+     * 
+     * @param key     the endpoint
+     * @param time    the time of capture
+     * @param payload the payload
+     */
+    public void save(String key, Instant time, byte[] payload) throws IOException {
+        Path endpointDir = directory.resolve(key);
+        Files.createDirectories(endpointDir);
+        Path file = endpointDir.resolve(time.toEpochMilli() + EXTENSION);
+        AtomicFiles.write(file, os -> os.write(payload));
+    }
+
+    /**
+     * Returns the payloads of an endpoint in order of capture, starting over
+     * after the last one.
+     * 
+     * @param key the endpoint
+     * @return the next payload, null if there are none for this endpoint
+     */
+    public synchronized Recording next(String key) throws IOException {
+        List<Path> files = list(key);
+        if (files.isEmpty()) {
+            return null;
+        }
+        int position = positions.getOrDefault(key, 0) % files.size();
+        positions.put(key, position + 1);
+        Path file = files.get(position);
+        return new Recording(Instant.ofEpochMilli(timeOf(file)), Files.readAllBytes(file));
+    }
+
+    private List<Path> list(String key) throws IOException {
+        Path endpointDir = directory.resolve(key);
+        if (!Files.isDirectory(endpointDir)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> stream = Files.list(endpointDir)) {
+            List<Path> files = stream.filter(p -> p.getFileName().toString().matches("[0-9]+\\" + EXTENSION))
+                    .collect(Collectors.toCollection(ArrayList::new));
+            files.sort((a, b) -> Long.compare(timeOf(a), timeOf(b)));
+            return files;
+        }
+    }
+
+    private static long timeOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+    }
+
+}
@@ -0,0 +1,53 @@
+package nl.bertriksikken.stofradar.replay;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Clock that only moves forward when replayed data moves it.<br>
+ * <br>
+ * Clocks in other zones made with {@link #withZone} share the time with the
+ * clock they were made from.
+ */
+public final class ReplayClock extends Clock {
+
+    private final AtomicReference<Instant> now;
+    private final ZoneId zone;
+
+    public ReplayClock(Instant start) {
+        this(new AtomicReference<>(start), ZoneOffset.UTC);
+    }
+
+    private ReplayClock(AtomicReference<Instant> now, ZoneId zone) {
+        this.now = now;
+        this.zone = zone;
+    }
+
+    /**
+     * Moves the clock forward to a time, if it is not already past it.
+     * 
+     * @param time the new time
+     */
+    public void advanceTo(Instant time) {
+        now.accumulateAndGet(time, (current, update) -> update.isAfter(current) ? update : current);
+    }
+
+    @Override
+    public Instant instant() {
+        return now.get();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public ReplayClock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new ReplayClock(now, zone);
+    }
+
+}
@@ -0,0 +1,37 @@
+package nl.bertriksikken.stofradar.replay;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public final class ReplayConfig {
+
+    // whether to record the payloads of all upstream downloads
+    @JsonProperty("record")
+    private boolean record = false;
+
+    @JsonProperty("directory")
+    private String directory = "recordings";
+
+    public ReplayConfig() {
+        // jackson constructor
+    }
+
+    ReplayConfig(boolean record, String directory) {
+        this.record = record;
+        this.directory = directory;
+    }
+
+    public boolean isRecord() {
+        return record;
+    }
+
+    /**
+     * @return the directory with recorded payloads
+     */
+    public Path getDirectory() {
+        return Paths.get(directory);
+    }
+
+}
@@ -0,0 +1,59 @@
+package nl.bertriksikken.stofradar.replay;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Answers upstream requests from recorded payloads instead of the network.<br>
+ * <br>
+ * Each request is delayed by a fixed latency, to simulate a slow upstream. The
+ * replay clock follows the capture time of the payloads served, so time based
+ * filters see the data as it was when it was recorded.
+ */
+public final class ReplayInterceptor implements Interceptor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplayInterceptor.class);
+
+    private final Recordings recordings;
+    private final Duration latency;
+    private final ReplayClock clock;
+
+    public ReplayInterceptor(Recordings recordings, Duration latency, ReplayClock clock) {
+        this.recordings = recordings;
+        this.latency = latency;
+        this.clock = clock;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String key = Recordings.keyOf(request.url().host(), request.url().encodedPath());
+        Recordings.Recording recording = recordings.next(key);
+        try {
+            Thread.sleep(latency.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while simulating latency");
+        }
+        Response.Builder builder = new Response.Builder().request(request).protocol(Protocol.HTTP_1_1);
+        if (recording == null) {
+            LOG.warn("No recording for {}", key);
+            return builder.code(404).message("Not recorded").body(ResponseBody.create(null, new byte[0])).build();
+        }
+        clock.advanceTo(recording.getTime());
+        LOG.info("Replaying {} bytes for {}, recorded at {}", recording.getPayload().length, key,
+                recording.getTime());
+        return builder.code(200).message("OK").body(ResponseBody.create(null, recording.getPayload())).build();
+    }
+
+}
@@ -0,0 +1,120 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.metrics.Counter;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+
+/**
+ * Access log of the REST server, written by a thread of its own.<br>
+ * <br>
+ * A request thread only decides whether to sample a request and puts it in a
+ * bounded buffer, without waiting: when the buffer is full, the line is
+ * dropped and counted. Failed requests (status 500 and up) are always sampled,
+ * the others at a configurable rate.
+ */
+final class AccessLog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AccessLog.class);
+    private static final Counter DROPPED = MetricsRegistry.getDefault().counter("stofradar_access_log_dropped_total",
+            "Number of sampled access log lines dropped because the buffer was full");
+
+    /**
+     * One request, formatted only when written.
+     */
+    static final class Entry {
+        private final String method;
+        private final String path;
+        private final int status;
+        private final long nanos;
+        private final String address;
+        private final String userAgent;
+
+        Entry(String method, String path, int status, long nanos, String address, String userAgent) {
+            this.method = method;
+            this.path = path;
+            this.status = status;
+            this.nanos = nanos;
+            this.address = address;
+            this.userAgent = userAgent;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s %s %d %.1f ms %s '%s'", method, path, status,
+                    nanos / 1e6, address, userAgent);
+        }
+    }
+
+    private final double sampleRate;
+    private final BlockingQueue<Entry> buffer;
+    private final Thread writer = new Thread(this::write, "access-log");
+
+    /**
+     * @param sampleRate the fraction of successful requests to log
+     * @param bufferSize the maximum number of lines waiting to be written
+     */
+    AccessLog(double sampleRate, int bufferSize) {
+        this.sampleRate = sampleRate;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+        writer.setDaemon(true);
+    }
+
+    void start() {
+        writer.start();
+    }
+
+    void stop() {
+        writer.interrupt();
+    }
+
+    /**
+     * @param status the status of the response
+     * @return whether to log a request with this status
+     */
+    boolean sample(int status) {
+        return (status >= 500) || (ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Queues a sampled request for writing, or drops it if the buffer is full.
+     *
+     * @return whether it was queued
+     */
+    boolean offer(Entry entry) {
+        if (!buffer.offer(entry)) {
+            DROPPED.inc();
+            return false;
+        }
+        return true;
+    }
+
+    private void write() {
+        try {
+            while (true) {
+                Entry entry = buffer.take();
+                LOG.info("{}", entry);
+            }
+        } catch (InterruptedException e) {
+            // write what is left, without waiting for more
+            Entry entry;
+            while ((entry = buffer.poll()) != null) {
+                LOG.info("{}", entry);
+            }
+        }
+    }
+
+    /**
+     * @return the number of lines waiting to be written
+     */
+    int pending() {
+        return buffer.size();
+    }
+
+}
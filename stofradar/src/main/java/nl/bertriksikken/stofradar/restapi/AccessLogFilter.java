@@ -0,0 +1,50 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Writes a sample of the REST requests to the {@link AccessLog}.
+ */
+@Provider
+public final class AccessLogFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String START_PROPERTY = AccessLogFilter.class.getName() + ".start";
+    private static final String ADDRESS_PROPERTY = AccessLogFilter.class.getName() + ".address";
+
+    private static AccessLog accessLog;
+
+    static void initialize(AccessLog log) {
+        accessLog = log;
+    }
+
+    @Context
+    private HttpServletRequest httpRequest;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+        // the servlet request is only available on the thread that received it
+        if (httpRequest != null) {
+            requestContext.setProperty(ADDRESS_PROPERTY, httpRequest.getRemoteAddr());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object start = requestContext.getProperty(START_PROPERTY);
+        int status = responseContext.getStatus();
+        if ((accessLog != null) && (start instanceof Long) && accessLog.sample(status)) {
+            long nanos = System.nanoTime() - (Long) start;
+            accessLog.offer(new AccessLog.Entry(requestContext.getMethod(), requestContext.getUriInfo().getPath(),
+                    status, nanos, (String) requestContext.getProperty(ADDRESS_PROPERTY),
+                    requestContext.getHeaderString("User-Agent")));
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.ForbiddenException;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.jfr.FlightRecorderService;
+import nl.bertriksikken.stofradar.trace.CycleTrace;
+import nl.bertriksikken.stofradar.trace.TraceRecorder;
+
+/**
+ * Administrative endpoints, only available when an admin token is configured.
+ * Requests must present the token in the X-Admin-Token header.
+ */
+@Path("/admin")
+public final class AdminResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdminResource.class);
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+            .withZone(ZoneOffset.UTC);
+
+    private static byte[] adminToken = new byte[0];
+    private static final FlightRecorderService RECORDER = new FlightRecorderService();
+    private static TraceRecorder traceRecorder;
+
+    public static void initialize(String token, TraceRecorder recorder) {
+        adminToken = token.getBytes(StandardCharsets.UTF_8);
+        traceRecorder = recorder;
+    }
+
+    /**
+     * @return the most recent pipeline cycle and source poll traces, newest
+     *         first
+     */
+    @GET
+    @Path("/traces")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<CycleTrace> getTraces(@HeaderParam("X-Admin-Token") String token) {
+        checkToken(token);
+        return traceRecorder.getTraces();
+    }
+
+    /**
+     * Makes a flight recording of the given length and returns it as a .jfr file.
+     */
+    @GET
+    @Path("/jfr")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response getFlightRecording(@HeaderParam("X-Admin-Token") String token,
+            @QueryParam("seconds") @DefaultValue("30") int seconds) {
+        checkToken(token);
+        Duration duration = Duration.ofSeconds(seconds);
+        if ((seconds < 1) || (duration.compareTo(FlightRecorderService.MAX_DURATION) > 0)) {
+            throw new BadRequestException("Invalid duration");
+        }
+
+        java.nio.file.Path file;
+        try {
+            file = RECORDER.record(duration);
+        } catch (IllegalStateException e) {
+            throw new WebApplicationException(e.getMessage(), 409);
+        } catch (IOException e) {
+            LOG.warn("Flight recording failed: {}", e.getMessage());
+            throw new InternalServerErrorException("Flight recording failed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerErrorException("Flight recording interrupted");
+        }
+
+        StreamingOutput output = stream -> {
+            try {
+                Files.copy(file, stream);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        String fileName = "stofradar-" + FILE_TIME_FORMAT.format(Instant.now()) + ".jfr";
+        return Response.ok(output).header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+                .build();
+    }
+
+    private static void checkToken(String token) {
+        if (adminToken.length == 0) {
+            throw new NotFoundException();
+        }
+        byte[] presented = (token != null) ? token.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        // constant time comparison
+        if (!MessageDigest.isEqual(adminToken, presented)) {
+            LOG.warn("Denied admin request, invalid token");
+            throw new ForbiddenException();
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.restapi.AirBatchRequest.Point;
+import nl.bertriksikken.stofradar.spatial.SpatialIndex;
+
+/**
+ * Estimates the PM at many points against one snapshot.<br>
+ * <br>
+ * Every point is looked up the way /air looks up a single point, so the
+ * estimates are the same as for single points. Consecutive points that lie
+ * close together, like the waypoints of a route, form a chunk. When a point of
+ * a chunk has to be calculated, the index is searched once for the union of
+ * the neighbourhoods of the points of the chunk. All points of the chunk are
+ * calculated from those candidates.
+ */
+final class AirBatch {
+
+    private static final int MAX_CHUNK_POINTS = 64;
+    private static final double MAX_CHUNK_SPAN_KM = 2.0;
+
+    /**
+     * Receives the estimates, in the order of the points.
+     */
+    interface IResultHandler {
+        void result(Point point, double value) throws IOException;
+    }
+
+    /**
+     * Looks up the estimate at a location, calculating it only if it has to.
+     */
+    interface ILookup {
+        double lookup(double latitude, double longitude, AirResultCache.ICalculation calculation);
+    }
+
+    private final SpatialIndex index;
+    private final double maxd;
+    private final double margin;
+    private final ILookup lookup;
+    private final AirResultCache.ICalculation calculation = this::calculate;
+    private final List<SensorValue> candidates = new ArrayList<>();
+    private int searches = 0;
+
+    // the chunk being evaluated, and whether the candidates for it were searched yet
+    private double chunkWest;
+    private double chunkSouth;
+    private double chunkEast;
+    private double chunkNorth;
+    private boolean searched;
+
+    /**
+     * Calculates every point.
+     *
+     * @param index the index of the snapshot
+     * @param maxd  half the size of the square around a point (km)
+     */
+    AirBatch(SpatialIndex index, double maxd) {
+        this(index, maxd, 0.0, (latitude, longitude, calculation) -> calculation.calculate(latitude, longitude));
+    }
+
+    /**
+     * @param index  the index of the snapshot
+     * @param maxd   half the size of the square around a point (km)
+     * @param margin how far from a point the lookup can calculate, in latitude
+     *               and in longitude (km)
+     * @param lookup looks up the estimate at a point
+     */
+    AirBatch(SpatialIndex index, double maxd, double margin, ILookup lookup) {
+        this.index = index;
+        this.maxd = maxd;
+        this.margin = margin;
+        this.lookup = lookup;
+    }
+
+    /**
+     * Estimates the PM at the points, chunk by chunk.
+     */
+    void evaluate(List<Point> points, IResultHandler handler) throws IOException {
+        int start = 0;
+        while (start < points.size()) {
+            Point first = points.get(start);
+            double south = first.getLatitude();
+            double north = south;
+            double west = first.getLongitude();
+            double east = west;
+            int end = start + 1;
+            while ((end < points.size()) && (end - start < MAX_CHUNK_POINTS)) {
+                Point p = points.get(end);
+                double s = Math.min(south, p.getLatitude());
+                double n = Math.max(north, p.getLatitude());
+                double w = Math.min(west, p.getLongitude());
+                double e = Math.max(east, p.getLongitude());
+                double kmPerDegreeLon = kmPerDegreeLon(s, n);
+                if (((n - s) * IdwEstimate.KM_PER_DEGREE_LAT > MAX_CHUNK_SPAN_KM)
+                        || ((e - w) * kmPerDegreeLon > MAX_CHUNK_SPAN_KM)) {
+                    break;
+                }
+                south = s;
+                north = n;
+                west = w;
+                east = e;
+                end++;
+            }
+            evaluateChunk(points.subList(start, end), west, south, east, north, handler);
+            start = end;
+        }
+    }
+
+    private void evaluateChunk(List<Point> chunk, double west, double south, double east, double north,
+            IResultHandler handler) throws IOException {
+        chunkWest = west;
+        chunkSouth = south;
+        chunkEast = east;
+        chunkNorth = north;
+        searched = false;
+        for (Point point : chunk) {
+            handler.result(point, lookup.lookup(point.getLatitude(), point.getLongitude(), calculation));
+        }
+    }
+
+    // estimates a location near a point of the current chunk from the candidates of the chunk
+    private double calculate(double latitude, double longitude) {
+        if (!searched) {
+            // the lookup can calculate a little away from the points
+            double distance = maxd + margin;
+            double marginLat = margin / IdwEstimate.KM_PER_DEGREE_LAT;
+            double dLat = distance / IdwEstimate.KM_PER_DEGREE_LAT;
+            double dLon = distance / kmPerDegreeLon(chunkSouth - marginLat, chunkNorth + marginLat);
+            candidates.clear();
+            index.forEachNear(chunkWest - dLon, chunkSouth - dLat, chunkEast + dLon, chunkNorth + dLat,
+                    candidates::add);
+            searches++;
+            searched = true;
+        }
+        IdwEstimate estimate = new IdwEstimate(latitude, longitude, maxd);
+        for (SensorValue value : candidates) {
+            estimate.accept(value);
+        }
+        return estimate.getValue();
+    }
+
+    // the smallest scale over a range of latitudes, so a box in degrees covers
+    // at least the distance in km everywhere in the range
+    private static double kmPerDegreeLon(double south, double north) {
+        double maxAbsLat = Math.max(Math.abs(south), Math.abs(north));
+        return Math.max(1E-3, Math.cos(Math.toRadians(Math.min(90.0, maxAbsLat))) * IdwEstimate.KM_PER_DEGREE_LAT);
+    }
+
+    /**
+     * @return the number of index searches done so far
+     */
+    int getSearches() {
+        return searches;
+    }
+
+}
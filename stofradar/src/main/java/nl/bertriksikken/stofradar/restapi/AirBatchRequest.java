@@ -0,0 +1,168 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Request for the PM at many points, as a list of points and/or an encoded
+ * polyline.<br>
+ * <br>
+ * The request is parsed as a stream and the points are counted while they are
+ * decoded, so a request with too many points is rejected before they are all
+ * in memory.
+ */
+final class AirBatchRequest {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final List<Point> points;
+
+    private AirBatchRequest(List<Point> points) {
+        this.points = points;
+    }
+
+    /**
+     * Reads the JSON of a request, but not more than the maximum size.
+     *
+     * @param stream   the request entity
+     * @param maxBytes the maximum size
+     * @return the JSON, or null if the request is larger than the maximum
+     */
+    static byte[] readJson(InputStream stream, int maxBytes) throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = stream.read(buffer)) >= 0) {
+            if (json.size() + length > maxBytes) {
+                return null;
+            }
+            json.write(buffer, 0, length);
+        }
+        return json.toByteArray();
+    }
+
+    /**
+     * Parses a request like {"points":[{"lat":52.1,"lon":5.2}],"polyline":"..."}.
+     *
+     * @param json      the request
+     * @param maxPoints the maximum number of points
+     * @return the request
+     * @throws IllegalArgumentException if the request is malformed, has more
+     *                                  points than the maximum, or a point that
+     *                                  is not a valid location
+     */
+    static AirBatchRequest parse(byte[] json, int maxPoints) {
+        List<Point> points = new ArrayList<>();
+        String polyline = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("points".equals(name)) {
+                    if (token != JsonToken.VALUE_NULL) {
+                        expect(token, JsonToken.START_ARRAY);
+                        readPoints(parser, points, maxPoints);
+                    }
+                } else if ("polyline".equals(name)) {
+                    if (token != JsonToken.VALUE_NULL) {
+                        expect(token, JsonToken.VALUE_STRING);
+                        polyline = parser.getText();
+                    }
+                } else {
+                    throw new IllegalArgumentException("Unknown field '" + name + "'");
+                }
+            }
+            expect(parser.getCurrentToken(), JsonToken.END_OBJECT);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed request: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            // not thrown for JSON in memory, other than malformed JSON
+            throw new IllegalArgumentException("Malformed request");
+        }
+        if (polyline != null) {
+            points.addAll(Polyline.decode(polyline, maxPoints - points.size()));
+        }
+        for (int i = 0; i < points.size(); i++) {
+            Point point = points.get(i);
+            if (!Coordinates.isValid(point.getLatitude(), point.getLongitude())) {
+                throw new IllegalArgumentException("Invalid location at point " + i);
+            }
+        }
+        return new AirBatchRequest(points);
+    }
+
+    private static void readPoints(JsonParser parser, List<Point> points, int maxPoints) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (points.size() >= maxPoints) {
+                throw new IllegalArgumentException("More than " + maxPoints + " points");
+            }
+            expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+            double latitude = Double.NaN;
+            double longitude = Double.NaN;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("lat".equals(name)) {
+                    latitude = number(parser, token, points.size(), name);
+                } else if ("lon".equals(name)) {
+                    longitude = number(parser, token, points.size(), name);
+                } else {
+                    throw new IllegalArgumentException("Unknown point field '" + name + "'");
+                }
+            }
+            // a missing coordinate is not taken as 0, which is a valid one
+            if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+                throw new IllegalArgumentException("Missing 'lat' or 'lon' at point " + points.size());
+            }
+            points.add(new Point(latitude, longitude));
+        }
+    }
+
+    private static double number(JsonParser parser, JsonToken token, int point, String name) throws IOException {
+        if ((token == null) || !token.isNumeric()) {
+            throw new IllegalArgumentException("'" + name + "' is not a number at point " + point);
+        }
+        return parser.getDoubleValue();
+    }
+
+    private static void expect(JsonToken token, JsonToken expected) {
+        if (token != expected) {
+            throw new IllegalArgumentException("Malformed request, expected " + expected + " but got " + token);
+        }
+    }
+
+    /**
+     * @return the listed points, followed by the points of the polyline
+     */
+    List<Point> getPoints() {
+        return points;
+    }
+
+    static final class Point {
+        private final double latitude;
+        private final double longitude;
+
+        Point(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        double getLatitude() {
+            return latitude;
+        }
+
+        double getLongitude() {
+            return longitude;
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.spatial.SpatialIndex;
+
+/**
+ * Calculates a grid of the same estimates as /air gives for single points,
+ * for a field that /air can look points up in.<br>
+ * <br>
+ * These are not the values the map colours are based on: those leave out
+ * filtered sensors and use the inner and outer radius of the render job.<br>
+ * <br>
+ * The index is searched once per row, for the sensors near any pixel of the
+ * row, into primitive arrays that are reused for all rows. The estimate of a
+ * pixel is the one of {@link IdwEstimate}, over those arrays, so nothing is
+ * allocated per pixel.
+ */
+public final class AirField {
+
+    // the sensors near a row, as primitive arrays
+    private static final class Candidates implements Consumer<SensorValue> {
+        private double[] x = new double[64];
+        private double[] y = new double[64];
+        private double[] value = new double[64];
+        private int count = 0;
+
+        @Override
+        public void accept(SensorValue sensorValue) {
+            if (count == x.length) {
+                x = Arrays.copyOf(x, 2 * count);
+                y = Arrays.copyOf(y, 2 * count);
+                value = Arrays.copyOf(value, 2 * count);
+            }
+            x[count] = sensorValue.x;
+            y[count] = sensorValue.y;
+            value[count] = sensorValue.value;
+            count++;
+        }
+    }
+
+    private AirField() {
+        // utility class
+    }
+
+    /**
+     * Calculates the estimates at the centres of the pixels of a grid.
+     *
+     * @param index  the index of the snapshot
+     * @param maxd   half the size of the square around a point (km), as for
+     *               /air
+     * @param west   the west edge of the grid
+     * @param south  the south edge of the grid
+     * @param east   the east edge of the grid
+     * @param north  the north edge of the grid
+     * @param width  the width in pixels
+     * @param height the height in pixels
+     * @return the estimates, row by row from the north-west, NaN where there is
+     *         no sensor near
+     */
+    public static float[] calculate(SpatialIndex index, double maxd, double west, double south, double east,
+            double north, int width, int height) {
+        float[] field = new float[width * height];
+        Candidates candidates = new Candidates();
+        double firstLon = west + 0.5 * (east - west) / width;
+        double lastLon = west + (width - 0.5) * (east - west) / width;
+        for (int y = 0; y < height; y++) {
+            double lat = north - (0.5 + y) * (north - south) / height;
+            double kmPerDegreeLon = Math.cos(Math.toRadians(lat)) * IdwEstimate.KM_PER_DEGREE_LAT;
+            double dLon = maxd / kmPerDegreeLon;
+            double dLat = maxd / IdwEstimate.KM_PER_DEGREE_LAT;
+            candidates.count = 0;
+            index.forEachNear(firstLon - dLon, lat - dLat, lastLon + dLon, lat + dLat, candidates);
+            for (int x = 0; x < width; x++) {
+                double lon = west + (0.5 + x) * (east - west) / width;
+                field[y * width + x] = (float) estimate(candidates, lat, lon, kmPerDegreeLon, maxd);
+            }
+        }
+        return field;
+    }
+
+    // the same as IdwEstimate, over the candidates
+    private static double estimate(Candidates candidates, double lat, double lon, double kmPerDegreeLon,
+            double maxd) {
+        double sumPm = 0.0;
+        double sumW = 0.0;
+        for (int i = 0; i < candidates.count; i++) {
+            double dx = (candidates.x[i] - lon) * kmPerDegreeLon;
+            double dy = (candidates.y[i] - lat) * IdwEstimate.KM_PER_DEGREE_LAT;
+            double value = candidates.value[i];
+            if ((dx <= -maxd) || (dx >= maxd) || (dy <= -maxd) || (dy >= maxd) || !(value >= 0)) {
+                continue;
+            }
+            double d2 = (dx * dx) + (dy * dy);
+            if (d2 > 0.0) {
+                double w = 1.0 / d2;
+                sumPm += w * value;
+                sumW += w;
+            } else {
+                // a sensor at exactly this point
+                return value;
+            }
+        }
+        return sumPm / sumW;
+    }
+
+}
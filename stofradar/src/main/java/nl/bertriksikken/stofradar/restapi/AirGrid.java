@@ -0,0 +1,126 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import nl.bertriksikken.stofradar.render.InverseDistanceWeightShader;
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.spatial.SpatialIndex;
+
+/**
+ * Calculates a grid of PM2.5 values and encodes it for clients that draw their
+ * own maps.<br>
+ * <br>
+ * The values are the ones the map colours are based on, see
+ * {@link InverseDistanceWeightShader#calculateValue}, for the centre of each
+ * pixel, except that the weighted mean only counts the sensors within the
+ * outer radius of the pixel. Farther sensors hardly weigh in, so the values
+ * differ a little at most from the colours of the map. The encoding is:
+ * <ul>
+ * <li>the length of the header, 32-bit little-endian
+ * <li>the header, UTF-8 JSON, padded with spaces to a multiple of 4 bytes
+ * <li>the values, 32-bit little-endian floats, row by row from north to south,
+ * each row from west to east, NaN where there is no value
+ * </ul>
+ */
+final class AirGrid {
+
+    private static final double KM_PER_DEGREE_LAT = 40075.0 / 360.0;
+    // about 2 km, as for the index of a snapshot
+    private static final double INDEX_CELL_DEGREES = 0.02;
+
+    private AirGrid() {
+        // utility class
+    }
+
+    /**
+     * Calculates the values of a grid.<br>
+     * <br>
+     * The rows are calculated in parallel on the executor that computes the
+     * requests, at most parallelism at a time. Each pixel gets the sensors
+     * within the outer radius from an index, a pixel without any has no value.
+     *
+     * @param values      the sensor values
+     * @param query       the grid
+     * @param innerRadius the radius around a sensor that gets its own value (km)
+     * @param outerRadius the radius around the sensors outside of which there is
+     *                    no value (km)
+     * @param executor    the executor to calculate the rows on
+     * @param parallelism the maximum number of rows calculated at a time
+     * @return the values, row by row from the north-west
+     */
+    static float[] calculate(List<SensorValue> values, GridQuery query, double innerRadius, double outerRadius,
+            RequestExecutor executor, int parallelism) {
+        int width = query.getWidth();
+        int height = query.getHeight();
+        double sizeX = query.getEast() - query.getWest();
+        double sizeY = query.getNorth() - query.getSouth();
+        double centerLatitude = (query.getNorth() + query.getSouth()) / 2;
+        InverseDistanceWeightShader shader = new InverseDistanceWeightShader(innerRadius, outerRadius, centerLatitude,
+                null);
+
+        // the same distances as the shader, the box a little larger so rounding never skips a sensor
+        SpatialIndex index = new SpatialIndex(values, INDEX_CELL_DEGREES);
+        double kmPerDegreeLon = KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(centerLatitude));
+        double dLat = 1.01 * outerRadius / KM_PER_DEGREE_LAT;
+        double dLon = 1.01 * outerRadius / kmPerDegreeLon;
+
+        float[] grid = new float[width * height];
+        executor.forEach(height, parallelism, y -> {
+            double lat = query.getNorth() - (0.5 + y) * sizeY / height;
+            List<SensorValue> near = new ArrayList<>();
+            double[] lon = new double[1];
+            Consumer<SensorValue> collector = value -> {
+                double dx = (value.x - lon[0]) * kmPerDegreeLon;
+                double dy = (value.y - lat) * KM_PER_DEGREE_LAT;
+                if (Math.sqrt((dx * dx) + (dy * dy)) < outerRadius) {
+                    near.add(value);
+                }
+            };
+            for (int x = 0; x < width; x++) {
+                lon[0] = query.getWest() + (0.5 + x) * sizeX / width;
+                near.clear();
+                index.forEachNear(lon[0] - dLon, lat - dLat, lon[0] + dLon, lat + dLat, collector);
+                if (near.isEmpty()) {
+                    grid[y * width + x] = Float.NaN;
+                } else {
+                    grid[y * width + x] = (float) shader.calculateValue(near, lon[0], lat);
+                }
+            }
+        });
+        return grid;
+    }
+
+    /**
+     * Encodes a grid with its header.
+     *
+     * @param query the grid
+     * @param time  the time of the snapshot the values are from
+     * @param grid  the values
+     * @return the encoded grid
+     */
+    static byte[] encode(GridQuery query, Instant time, float[] grid) {
+        String json = String.format(Locale.ROOT,
+                "{\"west\":%s,\"south\":%s,\"east\":%s,\"north\":%s,\"width\":%d,\"height\":%d,\"time\":\"%s\"}",
+                query.getWest(), query.getSouth(), query.getEast(), query.getNorth(), query.getWidth(),
+                query.getHeight(), time);
+        byte[] header = json.getBytes(StandardCharsets.UTF_8);
+        int headerLength = (header.length + 3) & ~3;
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + headerLength + 4 * grid.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(headerLength);
+        buffer.put(header);
+        for (int i = header.length; i < headerLength; i++) {
+            buffer.put((byte) ' ');
+        }
+        buffer.asFloatBuffer().put(grid);
+        return buffer.array();
+    }
+
+}
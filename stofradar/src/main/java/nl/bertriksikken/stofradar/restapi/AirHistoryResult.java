@@ -0,0 +1,56 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import nl.bertriksikken.stofradar.history.HistoryPoint;
+
+final class AirHistoryResult {
+
+    @JsonProperty("from")
+    private String from;
+
+    @JsonProperty("to")
+    private String to;
+
+    @JsonProperty("values")
+    private final List<Entry> values = new ArrayList<>();
+
+    private AirHistoryResult() {
+        // jackson constructor
+    }
+
+    AirHistoryResult(Instant from, Instant to, List<HistoryPoint> points) {
+        this();
+        this.from = from.toString();
+        this.to = to.toString();
+        points.forEach(p -> values.add(new Entry(p)));
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    private static final class Entry {
+        @JsonProperty("time")
+        private final String time;
+
+        @JsonProperty("pm2.5")
+        private final BigDecimal pm2_5;
+
+        @JsonProperty("sensors")
+        private final int sensors;
+
+        Entry(HistoryPoint point) {
+            this.time = point.getTime().toString();
+            this.pm2_5 = BigDecimal.valueOf(point.getValue()).setScale(1, RoundingMode.HALF_UP);
+            this.sensors = point.getSensors();
+        }
+    }
+
+}
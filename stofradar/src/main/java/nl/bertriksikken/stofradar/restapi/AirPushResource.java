@@ -0,0 +1,129 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionStage;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.metrics.Counter;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+
+/**
+ * Pushes the PM value at a location as server-sent events, instead of clients
+ * polling /air for it. Each event is named "pm", has the snapshot generation as
+ * id and an {@link AirResult} as data.
+ */
+@Path("/air/subscribe")
+public final class AirPushResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AirPushResource.class);
+    private static final Counter RATE_LIMITED = MetricsRegistry.getDefault().counter(
+            "stofradar_rest_rate_limited_total", "Number of requests denied by the rate limiter", "endpoint",
+            "subscribe");
+
+    private static SnapshotHolder snapshotHolder = new SnapshotHolder();
+    private static Subscriptions subscriptions;
+    private static RateLimiter rateLimiter;
+
+    public static void initialize(SnapshotHolder holder, Subscriptions subs, RateLimiter limiter) {
+        snapshotHolder = holder;
+        subscriptions = subs;
+        rateLimiter = limiter;
+    }
+
+    @Context
+    private HttpServletRequest httpRequest;
+
+    /**
+     * Sends events to a client over an open connection.
+     */
+    private static final class SseSubscriber implements Subscriptions.ISubscriber {
+        private final SseEventSink sink;
+        private final Sse sse;
+
+        SseSubscriber(SseEventSink sink, Sse sse) {
+            this.sink = sink;
+            this.sse = sse;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return sink.isClosed();
+        }
+
+        @Override
+        public void push(SensorSnapshot snapshot, double value) {
+            OutboundSseEvent event = sse.newEventBuilder().name("pm").id(Long.toString(snapshot.getGeneration()))
+                    .mediaType(MediaType.APPLICATION_JSON_TYPE).data(AirResult.class, new AirResult(value)).build();
+            send(event);
+        }
+
+        @Override
+        public void keepAlive() {
+            send(sse.newEventBuilder().comment("").build());
+        }
+
+        private void send(OutboundSseEvent event) {
+            if (sink.isClosed()) {
+                return;
+            }
+            // the sink can also close between checking and sending, then it throws
+            CompletionStage<?> stage;
+            try {
+                stage = sink.send(event);
+            } catch (IllegalStateException e) {
+                LOG.debug("Subscription closed: {}", e.getMessage());
+                return;
+            }
+            stage.whenComplete((result, e) -> {
+                if (e != null) {
+                    LOG.info("Closing subscription: {}", e.getMessage());
+                    sink.close();
+                }
+            });
+        }
+    }
+
+    @GET
+    @Path("/{lat}/{lon}")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void subscribe(@HeaderParam("User-Agent") String userAgent, @PathParam("lat") double latitude,
+            @PathParam("lon") double longitude, @Context SseEventSink sink, @Context Sse sse) throws IOException {
+        if (!Coordinates.isValid(latitude, longitude)) {
+            throw new BadRequestException("Invalid location");
+        }
+        // a subscription counts as one /air request
+        long retryAfter = rateLimiter.acquire(httpRequest);
+        if (retryAfter > 0) {
+            RATE_LIMITED.inc();
+            LOG.debug("Denied subscription (rate limited), location {}/{}, user '{}'", latitude, longitude,
+                    userAgent);
+            throw RateLimiter.tooManyRequests(retryAfter);
+        }
+        SensorSnapshot snapshot = snapshotHolder.get();
+        if (!subscriptions.subscribe(snapshot, latitude, longitude, new SseSubscriber(sink, sse))) {
+            LOG.warn("Denied subscription, too many subscriptions");
+            rateLimiter.release(httpRequest);
+            throw new ServiceUnavailableException("Too many subscriptions");
+        }
+        LOG.debug("Subscribed to location {}/{}, user '{}'", latitude, longitude, userAgent);
+    }
+
+}
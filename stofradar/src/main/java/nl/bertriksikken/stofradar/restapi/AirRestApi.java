@@ -1,84 +1,353 @@
 package nl.bertriksikken.stofradar.restapi;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import es.moki.ratelimitj.core.limiter.request.RequestRateLimiter;
-import nl.bertriksikken.stofradar.render.SensorValue;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import nl.bertriksikken.stofradar.field.FieldFile;
+import nl.bertriksikken.stofradar.field.FieldStore;
+import nl.bertriksikken.stofradar.history.HistoryPoint;
+import nl.bertriksikken.stofradar.history.HistoryStore;
+import nl.bertriksikken.stofradar.jfr.AirRequestEvent;
+import nl.bertriksikken.stofradar.jfr.FlightEvents;
+import nl.bertriksikken.stofradar.metrics.Counter;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
 
 public final class AirRestApi implements IAirRestApi {
 
     private static final Logger LOG = LoggerFactory.getLogger(AirRestApi.class);
-    private static final double KM_PER_DEGREE_LAT = 40075.0 / 360.0;
+    private static final Duration MAX_HISTORY_RANGE = Duration.ofDays(31);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Counter RATE_LIMITED_AIR = rateLimitedCounter("getAir");
+    private static final Counter RATE_LIMITED_BATCH = rateLimitedCounter("getAirBatch");
+    private static final Counter RATE_LIMITED_GRID = rateLimitedCounter("getGrid");
+    private static final Counter RATE_LIMITED_HISTORY = rateLimitedCounter("getHistory");
 
     private static double maxd = 10;
-    private static Map<String, SensorValue> dataStore = new HashMap<>();
-    private static RequestRateLimiter rateLimiter;
+    private static SnapshotHolder snapshotHolder = new SnapshotHolder();
+    private static FieldStore fieldStore;
+    private static HistoryStore historyStore;
+    private static RateLimiter rateLimiter;
+    private static RequestExecutor requestExecutor = RequestExecutor.direct();
+    private static AirResultCache resultCache = new AirResultCache(0, 0);
+    private static Duration cycleInterval = Duration.ofMinutes(5);
+    private static int batchMaxPoints = 10000;
+    private static int batchMaxBytes = 1024 * 1024;
+    private static AirRestApiConfig gridConfig = new AirRestApiConfig();
+    private static GridCache gridCache = new GridCache(0);
 
-    public static void initialize(double radius, Map<String, SensorValue> map, RequestRateLimiter limiter) {
-        maxd = radius;
-        dataStore = map;
+    /**
+     * @param config   the REST API configuration
+     * @param interval the interval of the pipeline, results are cached by
+     *                 clients until the next one
+     * @param fields   the fields to look up /air results in, null to always
+     *                 calculate them
+     * @param executor computes the responses
+     */
+    public static void initialize(AirRestApiConfig config, Duration interval, SnapshotHolder holder,
+            FieldStore fields, HistoryStore history, RateLimiter limiter, RequestExecutor executor) {
+        maxd = config.getMaxDistance();
+        resultCache = new AirResultCache(config.getCacheGridMetres(), config.getCacheSize());
+        cycleInterval = interval;
+        batchMaxPoints = config.getBatchMaxPoints();
+        batchMaxBytes = config.getBatchMaxBytes();
+        gridConfig = config;
+        gridCache = new GridCache(config.getGridCacheSize());
+        snapshotHolder = holder;
+        fieldStore = config.isFieldLookup() ? fields : null;
+        historyStore = history;
         rateLimiter = limiter;
+        requestExecutor = executor;
+    }
+
+    @Context
+    private HttpServletRequest httpRequest;
+
+    private static Counter rateLimitedCounter(String endpoint) {
+        return MetricsRegistry.getDefault().counter("stofradar_rest_rate_limited_total",
+                "Number of requests denied by the rate limiter", "endpoint", endpoint);
+    }
+
+    // a request rejected with 503 was not computed, so it does not count for the rate limit
+    private void submit(AsyncResponse response, Callable<?> computation) {
+        if (!requestExecutor.submit(response, computation)) {
+            rateLimiter.release(httpRequest);
+        }
     }
 
     @Override
-    public AirResult getAir(String userAgent, double latitude, double longitude) {
+    public void getAir(String userAgent, double latitude, double longitude, String ifNoneMatch,
+            AsyncResponse response) {
+        if (!Coordinates.isValid(latitude, longitude)) {
+            response.resume(new BadRequestException("Invalid location"));
+            return;
+        }
+        // rate limit
+        long retryAfter = rateLimiter.acquire(httpRequest);
+        if (retryAfter > 0) {
+            RATE_LIMITED_AIR.inc();
+            LOG.debug("Denied PM calculation (rate limited), location {}/{}, user '{}'", latitude, longitude,
+                    userAgent);
+            response.resume(RateLimiter.tooManyRequests(retryAfter));
+            return;
+        }
+        submit(response, () -> calculateAir(userAgent, latitude, longitude, ifNoneMatch));
+    }
+
+    private Response calculateAir(String userAgent, double latitude, double longitude, String ifNoneMatch) {
         Instant start = Instant.now();
+        AirRequestEvent event = FlightEvents.AVAILABLE ? AirRequestEvent.begin(latitude, longitude) : null;
 
-        // rate limit
-        if (rateLimiter.overLimitWhenIncremented(userAgent)) {
-            LOG.info("Denied PM calculation (rate limited), location {}/{}, user '{}'", latitude, longitude, userAgent);
-            return null;
+        // the result only changes with the snapshot, so the client can revalidate against it
+        SensorSnapshot snapshot = snapshotHolder.get();
+        EntityTag etag = HttpCaching.entityTag(snapshot, "");
+        CacheControl cacheControl = HttpCaching.untilNextCycle(start, cycleInterval);
+        if (HttpCaching.matches(ifNoneMatch, etag)) {
+            if (event != null) {
+                event.commit();
+            }
+            LOG.debug("PM not modified, location {}/{}, user '{}'", latitude, longitude, userAgent);
+            return Response.notModified(etag).cacheControl(cacheControl).build();
+        }
+
+        // visit only the sensors near the location, through the index of the snapshot
+        double value = lookup(snapshot, latitude, longitude, (lat, lon) -> {
+            IdwEstimate estimate = new IdwEstimate(lat, lon, maxd).collect(snapshot.getPmIndex());
+            if (event != null) {
+                event.sensors(estimate.getCount());
+            }
+            return estimate.getValue();
+        });
+        if (event != null) {
+            event.commit();
+        }
+        long ms = Duration.between(start, Instant.now()).toMillis();
+        AirResult result = new AirResult(value);
+
+        LOG.debug("Calculated PM {} in {} ms, location {}/{}, user '{}'", result, ms, latitude, longitude, userAgent);
+        return Response.ok(result).tag(etag).cacheControl(cacheControl).build();
+    }
+
+    /**
+     * Looks up the estimate at a location, for /air and /air/batch alike: in the
+     * cache, else in the field of a render of the snapshot, else calculated.
+     */
+    private static double lookup(SensorSnapshot snapshot, double latitude, double longitude,
+            AirResultCache.ICalculation calculation) {
+        return resultCache.get(snapshot, latitude, longitude, (lat, lon) -> {
+            FieldFile field = null;
+            if (fieldStore != null) {
+                field = fieldStore.find(snapshot.getGeneration(), snapshot.getTimestamp(), lat, lon);
+            }
+            return (field != null) ? field.valueAt(lat, lon) : calculation.calculate(lat, lon);
+        });
+    }
+
+    @Override
+    public void getAirBatch(String userAgent, InputStream request, AsyncResponse response) {
+        // rate limit, the whole batch counts as one request
+        long retryAfter = rateLimiter.acquire(httpRequest);
+        if (retryAfter > 0) {
+            RATE_LIMITED_BATCH.inc();
+            LOG.debug("Denied PM batch (rate limited), user '{}'", userAgent);
+            response.resume(RateLimiter.tooManyRequests(retryAfter));
+            return;
+        }
+        // read on this thread like any request entity, but only up to the limit
+        byte[] json;
+        try {
+            json = AirBatchRequest.readJson(request, batchMaxBytes);
+        } catch (IOException e) {
+            response.resume(new BadRequestException("Failed to read request"));
+            return;
+        }
+        if (json == null) {
+            response.resume(new WebApplicationException("Request larger than " + batchMaxBytes + " bytes",
+                    Response.Status.REQUEST_ENTITY_TOO_LARGE));
+            return;
+        }
+        submit(response, () -> calculateAirBatch(userAgent, json));
+    }
+
+    private Response calculateAirBatch(String userAgent, byte[] json) {
+        Instant start = Instant.now();
+        List<AirBatchRequest.Point> points;
+        try {
+            points = AirBatchRequest.parse(json, batchMaxPoints).getPoints();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        if (points.isEmpty()) {
+            throw new BadRequestException("Number of points must be between 1 and " + batchMaxPoints);
         }
 
-        // take a snapshot of values
-        List<SensorValue> values = new ArrayList<>(dataStore.values());
+        // evaluate against one snapshot, while streaming the results
+        SensorSnapshot snapshot = snapshotHolder.get();
+        StreamingOutput output = stream -> {
+            AirBatch batch = new AirBatch(snapshot.getPmIndex(), maxd, resultCache.getMaxOffset(),
+                    (lat, lon, calculation) -> lookup(snapshot, lat, lon, calculation));
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(stream)) {
+                generator.writeStartObject();
+                generator.writeStringField("time", snapshot.getTimestamp().toString());
+                generator.writeArrayFieldStart("results");
+                batch.evaluate(points, (point, value) -> {
+                    generator.writeStartObject();
+                    generator.writeNumberField("lat", point.getLatitude());
+                    generator.writeNumberField("lon", point.getLongitude());
+                    if (Double.isFinite(value)) {
+                        BigDecimal pm = BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+                        generator.writeNumberField("pm2.5", pm);
+                    }
+                    generator.writeEndObject();
+                });
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            long ms = Duration.between(start, Instant.now()).toMillis();
+            LOG.debug("Calculated PM for {} points with {} searches in {} ms, user '{}'", points.size(),
+                    batch.getSearches(), ms, userAgent);
+        };
+        return Response.ok(output).build();
+    }
 
-        // convert to km
-        values = convertToKm(values, latitude, longitude);
+    @Override
+    public void getGrid(String userAgent, String bbox, int width, int height, String acceptEncoding,
+            String ifNoneMatch, AsyncResponse response) {
+        // rate limit
+        long retryAfter = rateLimiter.acquire(httpRequest);
+        if (retryAfter > 0) {
+            RATE_LIMITED_GRID.inc();
+            LOG.debug("Denied grid (rate limited), user '{}'", userAgent);
+            response.resume(RateLimiter.tooManyRequests(retryAfter));
+            return;
+        }
+        submit(response, () -> calculateGrid(userAgent, bbox, width, height, acceptEncoding, ifNoneMatch));
+    }
 
-        // roughly filter box around center
-        values = values.stream().filter(v -> (v.x > -maxd) && (v.x < maxd) && (v.y > -maxd) && (v.y < maxd))
-                .filter(v -> (v.value >= 0)).collect(Collectors.toList());
+    private Response calculateGrid(String userAgent, String bbox, int width, int height, String acceptEncoding,
+            String ifNoneMatch) {
+        Instant start = Instant.now();
+        GridQuery query;
+        try {
+            query = GridQuery.parse(bbox, width, height, gridConfig.getGridMaxPixels());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
 
-        // calculate inverse distance weighted value
-        double value = calculateIDW(values);
+        SensorSnapshot snapshot = snapshotHolder.get();
+        boolean gzip = HttpCaching.acceptsGzip(acceptEncoding);
+        EntityTag etag = HttpCaching.entityTag(snapshot, gzip ? "gzip" : "");
+        CacheControl cacheControl = HttpCaching.untilNextCycle(start, cycleInterval);
+        if (HttpCaching.matches(ifNoneMatch, etag)) {
+            return Response.notModified(etag).cacheControl(cacheControl).build();
+        }
+        byte[] grid = gridCache.get(snapshot, query, () -> {
+            float[] values = AirGrid.calculate(snapshot.getFilteredPmValues(), query, gridConfig.getGridInnerRadius(),
+                    gridConfig.getGridOuterRadius(), requestExecutor, gridConfig.getGridParallelism());
+            return AirGrid.encode(query, snapshot.getTimestamp(), values);
+        });
         long ms = Duration.between(start, Instant.now()).toMillis();
-        AirResult result = new AirResult(value);
+        LOG.debug("Calculated grid {} in {} ms, user '{}'", query, ms, userAgent);
 
-        LOG.info("Calculated PM {} in {} ms, location {}/{}, user '{}'", result, ms, latitude, longitude, userAgent);
-        return result;
+        Response.ResponseBuilder builder;
+        if (gzip) {
+            StreamingOutput output = stream -> {
+                try (GZIPOutputStream compressed = new GZIPOutputStream(stream)) {
+                    compressed.write(grid);
+                }
+            };
+            builder = Response.ok(output).header("Content-Encoding", "gzip");
+        } else {
+            builder = Response.ok(grid);
+        }
+        return builder.header("Vary", "Accept-Encoding").tag(etag).cacheControl(cacheControl).build();
     }
 
-    private List<SensorValue> convertToKm(Collection<SensorValue> values, double latitude, double longitude) {
-        double kmPerDegreeLon = Math.cos(Math.toRadians(latitude)) * KM_PER_DEGREE_LAT;
-        return values.stream().map(v -> new SensorValue(v.id, (v.x - longitude) * kmPerDegreeLon,
-                (v.y - latitude) * KM_PER_DEGREE_LAT, v.value, v.time)).collect(Collectors.toList());
+    @Override
+    public void getHistory(String userAgent, double latitude, double longitude, String from, String to, int interval,
+            AsyncResponse response) {
+        if (!Coordinates.isValid(latitude, longitude)) {
+            response.resume(new BadRequestException("Invalid location"));
+            return;
+        }
+        // rate limit
+        long retryAfter = rateLimiter.acquire(httpRequest);
+        if (retryAfter > 0) {
+            RATE_LIMITED_HISTORY.inc();
+            LOG.debug("Denied history (rate limited), location {}/{}, user '{}'", latitude, longitude, userAgent);
+            response.resume(RateLimiter.tooManyRequests(retryAfter));
+            return;
+        }
+        submit(response, () -> calculateHistory(userAgent, latitude, longitude, from, to, interval));
+    }
+
+    private AirHistoryResult calculateHistory(String userAgent, double latitude, double longitude, String from,
+            String to, int interval) {
+        Instant start = Instant.now();
+        if (historyStore == null) {
+            throw new NotFoundException("History is not enabled");
+        }
+
+        Instant end = (to != null) ? parseTime(to) : Instant.now();
+        Instant begin = (from != null) ? parseTime(from) : end.minus(Duration.ofDays(1));
+        if (!begin.isBefore(end) || Duration.between(begin, end).compareTo(MAX_HISTORY_RANGE) > 0 || (interval < 1)) {
+            throw new BadRequestException("Invalid time range or interval");
+        }
+
+        List<HistoryPoint> points;
+        try {
+            points = historyStore.query(latitude, longitude, maxd, begin, end, Duration.ofMinutes(interval));
+        } catch (IOException e) {
+            LOG.warn("Failed to query history: {}", e.getMessage());
+            throw new InternalServerErrorException("Failed to query history");
+        }
+        AirHistoryResult result = new AirHistoryResult(begin, end, points);
+
+        long ms = Duration.between(start, Instant.now()).toMillis();
+        LOG.debug("Calculated history ({} values) in {} ms, location {}/{}, user '{}'", result.size(), ms, latitude,
+                longitude, userAgent);
+        return result;
     }
 
-    private double calculateIDW(List<SensorValue> values) {
-        double sum_pm = 0.0;
-        double sum_w = 0.0;
-        for (SensorValue value : values) {
-            double d2 = (value.x * value.x) + (value.y * value.y);
-            if (d2 > 0.0) {
-                double w = 1.0 / d2;
-                sum_pm += w * value.value;
-                sum_w += w;
-            } else {
-                return value.value;
+    // parses an ISO-8601 instant, or a date which is taken as midnight UTC
+    private static Instant parseTime(String text) {
+        try {
+            if (text.length() == 10) {
+                return LocalDate.parse(text).atStartOfDay(ZoneOffset.UTC).toInstant();
             }
+            return Instant.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid time '" + text + "'");
         }
-        return sum_pm / sum_w;
     }
 
 }
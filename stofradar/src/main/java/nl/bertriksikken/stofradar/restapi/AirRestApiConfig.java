@@ -1,5 +1,8 @@
 package nl.bertriksikken.stofradar.restapi;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public final class AirRestApiConfig {
@@ -13,6 +16,126 @@ public final class AirRestApiConfig {
     @JsonProperty("maxDistance")
     private double maxDistance = 1.0;
 
+    // empty disables the admin endpoints
+    @JsonProperty("adminToken")
+    private String adminToken = "";
+
+    // size of the grid that /air locations are rounded to, 0 disables the result cache
+    @JsonProperty("cacheGridMetres")
+    private double cacheGridMetres = 100.0;
+
+    @JsonProperty("cacheSize")
+    private int cacheSize = 10000;
+
+    // answer /air from the value fields of the rendered maps, where available
+    @JsonProperty("fieldLookup")
+    private boolean fieldLookup = true;
+
+    @JsonProperty("batchMaxPoints")
+    private int batchMaxPoints = 10000;
+
+    // maximum size of an /air/batch request
+    @JsonProperty("batchMaxBytes")
+    private int batchMaxBytes = 1024 * 1024;
+
+    // minimum change of the PM value to push it to a subscriber
+    @JsonProperty("pushThreshold")
+    private double pushThreshold = 1.0;
+
+    @JsonProperty("maxSubscriptions")
+    private int maxSubscriptions = 10000;
+
+    // maximum number of pixels of an /air/grid request
+    @JsonProperty("gridMaxPixels")
+    private int gridMaxPixels = 100000;
+
+    @JsonProperty("gridCacheSize")
+    private int gridCacheSize = 32;
+
+    // same meaning as for a render job (km)
+    @JsonProperty("gridInnerRadius")
+    private double gridInnerRadius = 1.0;
+
+    @JsonProperty("gridOuterRadius")
+    private double gridOuterRadius = 10.0;
+
+    // maximum number of rows of one /air/grid request calculated at a time
+    @JsonProperty("gridParallelism")
+    private int gridParallelism = 4;
+
+    // requests per client address, one per 30 s with a burst of one
+    @JsonProperty("rateLimitPerMinute")
+    private double rateLimitPerMinute = 2.0;
+
+    @JsonProperty("rateLimitBurst")
+    private int rateLimitBurst = 1;
+
+    // maximum number of client addresses to keep a rate limit for, the least recently seen are dropped
+    @JsonProperty("rateLimitMaxKeys")
+    private int rateLimitMaxKeys = 100000;
+
+    // use the last address in X-Forwarded-For, only when behind a proxy that sets it
+    @JsonProperty("trustForwardedFor")
+    private boolean trustForwardedFor = false;
+
+    // clients presenting one of these in X-Api-Key are limited by key instead of by address
+    @JsonProperty("apiKeys")
+    private List<String> apiKeys = new ArrayList<>();
+
+    @JsonProperty("apiKeyRateLimitPerMinute")
+    private double apiKeyRateLimitPerMinute = 60.0;
+
+    @JsonProperty("apiKeyRateLimitBurst")
+    private int apiKeyRateLimitBurst = 10;
+
+    // answer the computing endpoints from a thread pool of their own, releasing the jetty thread meanwhile
+    @JsonProperty("asyncRequests")
+    private boolean asyncRequests = true;
+
+    // 0 for the number of processors
+    @JsonProperty("computeThreads")
+    private int computeThreads = 0;
+
+    // maximum number of requests being computed or waiting for it, more are answered with 503
+    @JsonProperty("computeMaxRequests")
+    private int computeMaxRequests = 1000;
+
+    // compute on virtual threads, only on a JVM that has them (21 and up)
+    @JsonProperty("virtualThreads")
+    private boolean virtualThreads = false;
+
+    @JsonProperty("serverMinThreads")
+    private int serverMinThreads = 8;
+
+    @JsonProperty("serverMaxThreads")
+    private int serverMaxThreads = 200;
+
+    // maximum number of connections waiting for a jetty thread
+    @JsonProperty("serverQueueSize")
+    private int serverQueueSize = 10000;
+
+    // fraction of the successful requests to write to the access log, failed ones are always written
+    @JsonProperty("accessLogSampleRate")
+    private double accessLogSampleRate = 0.01;
+
+    // maximum number of access log lines waiting to be written, more are dropped
+    @JsonProperty("accessLogBufferSize")
+    private int accessLogBufferSize = 4096;
+
+    public AirRestApiConfig() {
+        // jackson constructor
+    }
+
+    AirRestApiConfig(int port, String path, double maxDistance, String adminToken, double rateLimitPerMinute,
+            int rateLimitBurst) {
+        this.port = port;
+        this.path = path;
+        this.maxDistance = maxDistance;
+        this.adminToken = adminToken;
+        this.rateLimitPerMinute = rateLimitPerMinute;
+        this.rateLimitBurst = rateLimitBurst;
+    }
+
     public int getPort() {
         return port;
     }
@@ -25,4 +148,120 @@ public final class AirRestApiConfig {
         return maxDistance;
     }
 
+    public String getAdminToken() {
+        return adminToken;
+    }
+
+    public double getCacheGridMetres() {
+        return cacheGridMetres;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public boolean isFieldLookup() {
+        return fieldLookup;
+    }
+
+    public int getBatchMaxPoints() {
+        return batchMaxPoints;
+    }
+
+    public int getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    public double getPushThreshold() {
+        return pushThreshold;
+    }
+
+    public int getMaxSubscriptions() {
+        return maxSubscriptions;
+    }
+
+    public int getGridMaxPixels() {
+        return gridMaxPixels;
+    }
+
+    public int getGridCacheSize() {
+        return gridCacheSize;
+    }
+
+    public double getGridInnerRadius() {
+        return gridInnerRadius;
+    }
+
+    public double getGridOuterRadius() {
+        return gridOuterRadius;
+    }
+
+    public int getGridParallelism() {
+        return gridParallelism;
+    }
+
+    public double getRateLimitPerMinute() {
+        return rateLimitPerMinute;
+    }
+
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public int getRateLimitMaxKeys() {
+        return rateLimitMaxKeys;
+    }
+
+    public boolean isTrustForwardedFor() {
+        return trustForwardedFor;
+    }
+
+    public List<String> getApiKeys() {
+        return apiKeys;
+    }
+
+    public double getApiKeyRateLimitPerMinute() {
+        return apiKeyRateLimitPerMinute;
+    }
+
+    public int getApiKeyRateLimitBurst() {
+        return apiKeyRateLimitBurst;
+    }
+
+    public boolean isAsyncRequests() {
+        return asyncRequests;
+    }
+
+    public int getComputeThreads() {
+        return (computeThreads > 0) ? computeThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getComputeMaxRequests() {
+        return computeMaxRequests;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getServerMinThreads() {
+        return serverMinThreads;
+    }
+
+    public int getServerMaxThreads() {
+        return serverMaxThreads;
+    }
+
+    public int getServerQueueSize() {
+        return serverQueueSize;
+    }
+
+    public double getAccessLogSampleRate() {
+        return accessLogSampleRate;
+    }
+
+    public int getAccessLogBufferSize() {
+        return accessLogBufferSize;
+    }
+
 }
@@ -2,42 +2,67 @@ package nl.bertriksikken.stofradar.restapi;
 
 import java.io.IOException;
 import java.time.Duration;
-import java.util.Collections;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.glassfish.jersey.server.ServerProperties;
 import org.glassfish.jersey.servlet.ServletContainer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import es.moki.ratelimitj.core.limiter.request.RequestLimitRule;
-import es.moki.ratelimitj.core.limiter.request.RequestRateLimiter;
-import es.moki.ratelimitj.inmemory.request.InMemorySlidingWindowRequestRateLimiter;
-import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.field.FieldStore;
+import nl.bertriksikken.stofradar.history.HistoryStore;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+import nl.bertriksikken.stofradar.trace.TraceRecorder;
 
 public final class AirRestServer {
 
     private static final Logger LOG = LoggerFactory.getLogger(AirRestServer.class);
 
     private final Server server;
+    private final Subscriptions subscriptions;
+    private final RequestExecutor requestExecutor;
+    private final AccessLog accessLog;
 
-    public AirRestServer(AirRestApiConfig config, Map<String, SensorValue> map) {
-        this.server = createRestServer(config.getPort(), config.getPath(), AirRestApi.class);
+    /**
+     * @param cycleInterval the interval of the pipeline that publishes new
+     *                      snapshots
+     * @param fieldStore    the fields of the latest renders
+     */
+    public AirRestServer(AirRestApiConfig config, Duration cycleInterval, SnapshotHolder snapshotHolder,
+            FieldStore fieldStore, HistoryStore historyStore, TraceRecorder traceRecorder) {
+        this.server = createRestServer(config, AirRestApi.class, AirPushResource.class, SensorsResource.class,
+                MetricsResource.class, MetricsFilter.class, AccessLogFilter.class, AdminResource.class);
 
-        RequestLimitRule rule = RequestLimitRule.of(Duration.ofSeconds(30), 1).withPrecision(Duration.ofSeconds(3));
-        RequestRateLimiter rateLimiter = new InMemorySlidingWindowRequestRateLimiter(Collections.singleton(rule));
-        AirRestApi.initialize(config.getMaxDistance(), map, rateLimiter);
+        RateLimiter rateLimiter = new RateLimiter(config);
+        requestExecutor = RequestExecutor.create(config);
+        AirRestApi.initialize(config, cycleInterval, snapshotHolder, fieldStore, historyStore, rateLimiter,
+                requestExecutor);
+        subscriptions = new Subscriptions(config.getMaxDistance(), config.getPushThreshold(),
+                config.getMaxSubscriptions());
+        snapshotHolder.addListener(subscriptions::update);
+        AirPushResource.initialize(snapshotHolder, subscriptions, rateLimiter);
+        // separate limits, so polling the sensors does not use up those of /air
+        SensorsResource.initialize(snapshotHolder, cycleInterval, new RateLimiter(config));
+        AdminResource.initialize(config.getAdminToken(), traceRecorder);
+        accessLog = new AccessLog(config.getAccessLogSampleRate(), config.getAccessLogBufferSize());
+        AccessLogFilter.initialize(accessLog);
     }
 
     public void start() throws IOException {
         LOG.info("Starting Air REST server");
         try {
+            accessLog.start();
             server.start();
+            subscriptions.start();
         } catch (Exception e) {
             throw new IOException(e);
         }
@@ -45,17 +70,28 @@ public final class AirRestServer {
 
     public void stop() {
         LOG.info("Stopping Air REST server");
+        subscriptions.stop();
         try {
             server.stop();
         } catch (Exception e) {
             LOG.error("Caught exception during shutdown: {}", e.getMessage());
             LOG.trace("Caught exception during shutdown", e);
         }
+        requestExecutor.stop();
+        accessLog.stop();
     }
 
-    private Server createRestServer(int port, String contextPath, Class<?> clazz) {
-        LOG.info("Setting up Air REST service on {}", port);
-        Server server = new Server(port);
+    private Server createRestServer(AirRestApiConfig config, Class<?>... classes) {
+        LOG.info("Setting up Air REST service on {}", config.getPort());
+        // bounded, so a burst of connections waits in the queue instead of adding threads without limit
+        QueuedThreadPool threadPool = new QueuedThreadPool(config.getServerMaxThreads(),
+                config.getServerMinThreads(), 60000, new BlockingArrayQueue<>(config.getServerMinThreads(),
+                        config.getServerMinThreads(), config.getServerQueueSize()));
+        threadPool.setName("air-rest");
+        Server server = new Server(threadPool);
+        ServerConnector serverConnector = new ServerConnector(server);
+        serverConnector.setPort(config.getPort());
+        server.addConnector(serverConnector);
 
         // setup context
         ServletContextHandler context = new ServletContextHandler(server, "/", ServletContextHandler.SESSIONS);
@@ -72,8 +108,9 @@ public final class AirRestServer {
 
         // setup web services container
         ServletHolder sh = new ServletHolder(ServletContainer.class);
-        sh.setInitParameter(ServerProperties.PROVIDER_CLASSNAMES, clazz.getCanonicalName());
-        context.addServlet(sh, contextPath + "/*");
+        String classNames = Arrays.stream(classes).map(Class::getCanonicalName).collect(Collectors.joining(","));
+        sh.setInitParameter(ServerProperties.PROVIDER_CLASSNAMES, classNames);
+        context.addServlet(sh, config.getPath() + "/*");
         server.setHandler(context);
         return server;
     }
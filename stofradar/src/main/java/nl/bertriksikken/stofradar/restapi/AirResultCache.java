@@ -0,0 +1,117 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import nl.bertriksikken.stofradar.metrics.Counter;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+
+/**
+ * Cache of air quality results by location, for one snapshot.<br>
+ * <br>
+ * Locations are rounded to the centre of a cell in a grid of fixed size in
+ * metres, and the result is calculated for that centre, so every location in a
+ * cell gets the same result whether it was cached or not. The cache is a
+ * bounded LRU, and is emptied as soon as a result for a newer snapshot is
+ * requested. Results for an older snapshot are calculated but not cached.
+ */
+final class AirResultCache {
+
+    private static final double METRES_PER_DEGREE_LAT = 40075000.0 / 360.0;
+    private static final Counter HITS = requestCounter("hit");
+    private static final Counter MISSES = requestCounter("miss");
+
+    /**
+     * Calculates the result for a location.
+     */
+    interface ICalculation {
+        double calculate(double latitude, double longitude);
+    }
+
+    private final double gridMetres;
+    private final double cellDegrees;
+    private final Map<Long, Double> results;
+    private SensorSnapshot snapshot = SensorSnapshot.EMPTY;
+
+    /**
+     * @param gridMetres the size of a grid cell, 0 disables rounding and caching
+     * @param maxSize    the maximum number of cached results
+     */
+    AirResultCache(double gridMetres, int maxSize) {
+        this.gridMetres = gridMetres;
+        this.cellDegrees = gridMetres / METRES_PER_DEGREE_LAT;
+        this.results = new LinkedHashMap<Long, Double>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static Counter requestCounter(String result) {
+        return MetricsRegistry.getDefault().counter("stofradar_air_cache_requests_total",
+                "Number of /air results served from or added to the cache", "result", result);
+    }
+
+    /**
+     * Returns the cached result for a location, or calculates and caches it.
+     *
+     * @param snapshot    the snapshot the result is for
+     * @param latitude    the latitude
+     * @param longitude   the longitude
+     * @param calculation calculates the result, for the centre of the cell
+     * @return the result
+     */
+    double get(SensorSnapshot snapshot, double latitude, double longitude, ICalculation calculation) {
+        if (cellDegrees <= 0) {
+            return calculation.calculate(latitude, longitude);
+        }
+        // cells span more degrees of longitude towards the poles, so they stay about square
+        long latIndex = Math.round(latitude / cellDegrees);
+        double cellLatitude = latIndex * cellDegrees;
+        double cellDegreesLon = cellDegrees / Math.max(0.01, Math.cos(Math.toRadians(cellLatitude)));
+        long lonIndex = Math.round(longitude / cellDegreesLon);
+        Long key = (latIndex << 32) | (lonIndex & 0xFFFFFFFFL);
+
+        synchronized (this) {
+            if (snapshot.isNewerThan(this.snapshot)) {
+                results.clear();
+                this.snapshot = snapshot;
+            }
+            Double result = (snapshot == this.snapshot) ? results.get(key) : null;
+            if (result != null) {
+                HITS.inc();
+                return result;
+            }
+        }
+        MISSES.inc();
+        double result = calculation.calculate(cellLatitude, lonIndex * cellDegreesLon);
+        synchronized (this) {
+            // do not store a result for an older snapshot than the current one
+            if (snapshot == this.snapshot) {
+                results.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return how far the centre a result is calculated for can be from the
+     *         location, in latitude and in longitude (km)
+     */
+    double getMaxOffset() {
+        // half a cell, with room for cells that are a little wider away from the equator
+        return Math.max(0.0, gridMetres) / 1000.0;
+    }
+
+    /**
+     * @return the number of cached results
+     */
+    synchronized int size() {
+        return results.size();
+    }
+
+}
@@ -0,0 +1,20 @@
+package nl.bertriksikken.stofradar.restapi;
+
+/**
+ * Validation of the locations in requests.
+ */
+final class Coordinates {
+
+    private Coordinates() {
+        // utility class
+    }
+
+    /**
+     * @return whether a location is a finite latitude and longitude within range
+     */
+    static boolean isValid(double latitude, double longitude) {
+        // also false for NaN
+        return (latitude >= -90) && (latitude <= 90) && (longitude >= -180) && (longitude <= 180);
+    }
+
+}
@@ -0,0 +1,144 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import nl.bertriksikken.stofradar.metrics.Counter;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+
+/**
+ * The sensors of the current snapshot, serialised at most once per snapshot
+ * for each format and encoding, so serving them is only a copy of bytes.
+ */
+final class EncodedSensors {
+
+    private static final Counter ENCODINGS = MetricsRegistry.getDefault().counter(
+            "stofradar_sensors_encodings_total", "Number of times the /sensors response was serialised");
+
+    /**
+     * The supported formats.
+     */
+    enum Format {
+        JSON("application/json"), NDJSON("application/x-ndjson"), SMILE("application/x-jackson-smile");
+
+        private final String mediaType;
+
+        Format(String mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        String getMediaType() {
+            return mediaType;
+        }
+
+        /**
+         * Picks the format from an Accept header, by quality and then by order.
+         *
+         * @param accept the Accept header, null for any
+         * @return the format, null if none is acceptable
+         */
+        static Format negotiate(String accept) {
+            if ((accept == null) || accept.trim().isEmpty()) {
+                return JSON;
+            }
+            Format best = null;
+            double bestQuality = 0.0;
+            for (String range : accept.split(",")) {
+                String[] parts = range.split(";");
+                String type = parts[0].trim().toLowerCase(Locale.ROOT);
+                double quality = quality(parts);
+                for (Format format : values()) {
+                    boolean match = type.equals(format.mediaType) || type.equals("*/*")
+                            || type.equals("application/*");
+                    if (match && (quality > bestQuality)) {
+                        best = format;
+                        bestQuality = quality;
+                    }
+                }
+            }
+            return best;
+        }
+
+        private static double quality(String[] parts) {
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        return 0.0;
+                    }
+                }
+            }
+            return 1.0;
+        }
+    }
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+    // index 0 plain, index 1 gzip
+    private final Map<Format, byte[][]> encoded = new EnumMap<>(Format.class);
+    private SensorSnapshot current = SensorSnapshot.EMPTY;
+
+    /**
+     * @param snapshot the snapshot
+     * @param format   the format
+     * @param gzip     whether to compress with gzip
+     * @return the sensors of the snapshot, encoded
+     */
+    synchronized byte[] get(SensorSnapshot snapshot, Format format, boolean gzip) throws IOException {
+        if (snapshot.isNewerThan(current)) {
+            encoded.clear();
+            current = snapshot;
+        } else if (snapshot != current) {
+            // a request that started before the latest publish, do not cache
+            byte[] data = encode(snapshot, format);
+            return gzip ? gzip(data) : data;
+        }
+        byte[][] variants = encoded.computeIfAbsent(format, f -> new byte[2][]);
+        if (variants[0] == null) {
+            variants[0] = encode(snapshot, format);
+        }
+        if (gzip && (variants[1] == null)) {
+            variants[1] = gzip(variants[0]);
+        }
+        return gzip ? variants[1] : variants[0];
+    }
+
+    private byte[] encode(SensorSnapshot snapshot, Format format) throws IOException {
+        ENCODINGS.inc();
+        SensorsResult result = new SensorsResult(snapshot);
+        switch (format) {
+        case NDJSON:
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            for (SensorsResult.Entry entry : result.getSensors()) {
+                stream.write(jsonMapper.writeValueAsBytes(entry));
+                stream.write('\n');
+            }
+            return stream.toByteArray();
+        case SMILE:
+            return smileMapper.writeValueAsBytes(result);
+        case JSON:
+        default:
+            return jsonMapper.writeValueAsBytes(result);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(stream)) {
+            gzip.write(data);
+        }
+        return stream.toByteArray();
+    }
+
+}
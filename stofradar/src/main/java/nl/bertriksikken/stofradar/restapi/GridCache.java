@@ -0,0 +1,83 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import nl.bertriksikken.stofradar.metrics.Counter;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+
+/**
+ * Cache of encoded grids by query, for one snapshot.<br>
+ * <br>
+ * The cache is a bounded LRU, and is emptied as soon as a grid for a newer
+ * snapshot is requested. Grids for an older snapshot are calculated but not
+ * cached.
+ */
+final class GridCache {
+
+    private static final Counter HITS = requestCounter("hit");
+    private static final Counter MISSES = requestCounter("miss");
+
+    private final Map<GridQuery, byte[]> grids;
+    private SensorSnapshot snapshot = SensorSnapshot.EMPTY;
+
+    /**
+     * @param maxSize the maximum number of cached grids, 0 disables caching
+     */
+    GridCache(int maxSize) {
+        this.grids = new LinkedHashMap<GridQuery, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<GridQuery, byte[]> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static Counter requestCounter(String result) {
+        return MetricsRegistry.getDefault().counter("stofradar_grid_cache_requests_total",
+                "Number of /air/grid results served from or added to the cache", "result", result);
+    }
+
+    /**
+     * Returns the cached grid, or calculates and caches it.
+     *
+     * @param snapshot    the snapshot the grid is for
+     * @param query       the grid
+     * @param calculation calculates the encoded grid
+     * @return the encoded grid
+     */
+    byte[] get(SensorSnapshot snapshot, GridQuery query, Supplier<byte[]> calculation) {
+        synchronized (this) {
+            if (snapshot.isNewerThan(this.snapshot)) {
+                grids.clear();
+                this.snapshot = snapshot;
+            }
+            byte[] grid = (snapshot == this.snapshot) ? grids.get(query) : null;
+            if (grid != null) {
+                HITS.inc();
+                return grid;
+            }
+        }
+        MISSES.inc();
+        byte[] grid = calculation.get();
+        synchronized (this) {
+            // do not store a grid for an older snapshot than the current one
+            if (snapshot == this.snapshot) {
+                grids.put(query, grid);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * @return the number of cached grids
+     */
+    synchronized int size() {
+        return grids.size();
+    }
+
+}
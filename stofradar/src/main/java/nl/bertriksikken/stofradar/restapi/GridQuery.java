@@ -0,0 +1,110 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A grid of values requested by a client: a bounding box and a size in
+ * pixels. Also the key for cached grids.
+ */
+final class GridQuery {
+
+    private final double west;
+    private final double south;
+    private final double east;
+    private final double north;
+    private final int width;
+    private final int height;
+
+    GridQuery(double west, double south, double east, double north, int width, int height) {
+        this.west = west;
+        this.south = south;
+        this.east = east;
+        this.north = north;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Parses and validates a query.
+     *
+     * @param bbox      the bounding box, "west,south,east,north" in degrees
+     * @param width     the width in pixels
+     * @param height    the height in pixels
+     * @param maxPixels the maximum number of pixels
+     * @return the query
+     * @throws IllegalArgumentException if the query is not valid
+     */
+    static GridQuery parse(String bbox, int width, int height, int maxPixels) {
+        if (bbox == null) {
+            throw new IllegalArgumentException("Missing bbox");
+        }
+        String[] parts = bbox.split(",", -1);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Invalid bbox, expected west,south,east,north");
+        }
+        double[] values = new double[4];
+        for (int i = 0; i < 4; i++) {
+            try {
+                values[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid bbox value '" + parts[i] + "'");
+            }
+        }
+        GridQuery query = new GridQuery(values[0], values[1], values[2], values[3], width, height);
+        if (!(query.west < query.east) || !(query.south < query.north) || (query.west < -180)
+                || (query.east > 180) || (query.south < -90) || (query.north > 90)) {
+            throw new IllegalArgumentException("Invalid bbox " + bbox);
+        }
+        if ((width <= 0) || (height <= 0) || ((long) width * height > maxPixels)) {
+            throw new IllegalArgumentException("Grid size must be at least 1x1 and at most " + maxPixels + " pixels");
+        }
+        return query;
+    }
+
+    double getWest() {
+        return west;
+    }
+
+    double getSouth() {
+        return south;
+    }
+
+    double getEast() {
+        return east;
+    }
+
+    double getNorth() {
+        return north;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof GridQuery)) {
+            return false;
+        }
+        GridQuery other = (GridQuery) o;
+        return (Double.compare(west, other.west) == 0) && (Double.compare(south, other.south) == 0)
+                && (Double.compare(east, other.east) == 0) && (Double.compare(north, other.north) == 0)
+                && (width == other.width) && (height == other.height);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(west, south, east, north, width, height);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%f,%f,%f,%f %dx%d", west, south, east, north, width, height);
+    }
+
+}
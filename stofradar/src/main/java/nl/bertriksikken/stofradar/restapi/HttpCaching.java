@@ -0,0 +1,74 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+
+/**
+ * HTTP validators and caching headers for responses that only change with the
+ * snapshot.
+ */
+final class HttpCaching {
+
+    private HttpCaching() {
+        // utility class
+    }
+
+    /**
+     * @param snapshot the snapshot the response is calculated from
+     * @param variant  distinguishes representations of the same resource, for
+     *                 example encodings, empty if there is only one
+     * @return the entity tag
+     */
+    static EntityTag entityTag(SensorSnapshot snapshot, String variant) {
+        // the generation restarts at 0 with the application, the timestamp keeps the tag unique
+        String value = snapshot.getTimestamp().toEpochMilli() + "-" + snapshot.getGeneration();
+        return new EntityTag(variant.isEmpty() ? value : value + "-" + variant);
+    }
+
+    /**
+     * @param now      the current time
+     * @param interval the interval of the pipeline
+     * @return a cache control that lets clients keep a response until the next
+     *         pipeline cycle
+     */
+    static CacheControl untilNextCycle(Instant now, Duration interval) {
+        long intervalMs = interval.toMillis();
+        long remainingMs = intervalMs - (now.toEpochMilli() % intervalMs);
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge((int) Math.max(1, (remainingMs + 999) / 1000));
+        return cacheControl;
+    }
+
+    /**
+     * @return whether an If-None-Match header matches the entity tag, weak
+     *         comparison
+     */
+    static boolean matches(String ifNoneMatch, EntityTag etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals("\"" + etag.getValue() + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether an Accept-Encoding header allows gzip
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        return (acceptEncoding != null) && acceptEncoding.contains("gzip");
+    }
+
+}
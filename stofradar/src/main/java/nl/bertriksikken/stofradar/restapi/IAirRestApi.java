@@ -1,21 +1,79 @@
 package nl.bertriksikken.stofradar.restapi;
 
+import java.io.InputStream;
+
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 
+/**
+ * The PM endpoints. Requests are suspended and answered by a
+ * {@link RequestExecutor}, so they do not hold a jetty thread while computed.
+ */
 @Path("/air")
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 public interface IAirRestApi {
 
+    /**
+     * @param ifNoneMatch the entity tags of the results the client already has
+     * @param response    resumed with the {@link AirResult}, or 304 if it has not
+     *                    changed since
+     */
     @GET
     @Path("/{lat}/{lon}")
-    AirResult getAir(@HeaderParam("User-Agent") String userAgent, @PathParam("lat") double latitude,
-            @PathParam("lon") double longitude);
+    void getAir(@HeaderParam("User-Agent") String userAgent, @PathParam("lat") double latitude,
+            @PathParam("lon") double longitude, @HeaderParam("If-None-Match") String ifNoneMatch,
+            @Suspended AsyncResponse response);
+
+    /**
+     * Estimates the PM at many points in one request, for example the waypoints
+     * of a route. The points are evaluated against one snapshot, the response
+     * is streamed, and the request counts once for the rate limit.
+     * 
+     * @param request the JSON of an {@link AirBatchRequest}, parsed only as
+     *                far as the limits on its size and number of points allow
+     */
+    @POST
+    @Path("/batch")
+    void getAirBatch(@HeaderParam("User-Agent") String userAgent, InputStream request,
+            @Suspended AsyncResponse response);
+
+    /**
+     * Calculates a grid of PM2.5 values, see {@link AirGrid} for the encoding.
+     * 
+     * @param bbox           the bounding box, "west,south,east,north" in degrees
+     * @param width          the width in pixels
+     * @param height         the height in pixels
+     * @param acceptEncoding the body is compressed if this includes gzip
+     */
+    @GET
+    @Path("/grid")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    void getGrid(@HeaderParam("User-Agent") String userAgent, @QueryParam("bbox") String bbox,
+            @QueryParam("w") int width, @QueryParam("h") int height,
+            @HeaderParam("Accept-Encoding") String acceptEncoding, @HeaderParam("If-None-Match") String ifNoneMatch,
+            @Suspended AsyncResponse response);
+
+    /**
+     * @param from     start of the time range, ISO-8601 instant or date, default 24
+     *                 hours before 'to'
+     * @param to       end of the time range, ISO-8601 instant or date, default now
+     * @param interval the interval to group readings in (minutes)
+     */
+    @GET
+    @Path("/{lat}/{lon}/history")
+    void getHistory(@HeaderParam("User-Agent") String userAgent, @PathParam("lat") double latitude,
+            @PathParam("lon") double longitude, @QueryParam("from") String from, @QueryParam("to") String to,
+            @QueryParam("interval") @DefaultValue("60") int interval, @Suspended AsyncResponse response);
 
 }
@@ -0,0 +1,84 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.function.Consumer;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.spatial.SpatialIndex;
+
+/**
+ * Inverse distance weighted estimate at a point, from the sensors within a
+ * square of a given half-size around it.
+ */
+final class IdwEstimate implements Consumer<SensorValue> {
+
+    static final double KM_PER_DEGREE_LAT = 40075.0 / 360.0;
+
+    private final double latitude;
+    private final double longitude;
+    private final double maxd;
+    private final double kmPerDegreeLon;
+
+    private double sumPm = 0.0;
+    private double sumW = 0.0;
+    private double exact = Double.NaN;
+    private int count = 0;
+
+    /**
+     * @param latitude  the latitude of the point
+     * @param longitude the longitude of the point
+     * @param maxd      half the size of the square (km)
+     */
+    IdwEstimate(double latitude, double longitude, double maxd) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.maxd = maxd;
+        this.kmPerDegreeLon = Math.cos(Math.toRadians(latitude)) * KM_PER_DEGREE_LAT;
+    }
+
+    /**
+     * Adds the sensors near the point from an index.
+     * 
+     * @param index the index
+     * @return this estimate
+     */
+    IdwEstimate collect(SpatialIndex index) {
+        double dLon = maxd / kmPerDegreeLon;
+        double dLat = maxd / KM_PER_DEGREE_LAT;
+        index.forEachNear(longitude - dLon, latitude - dLat, longitude + dLon, latitude + dLat, this);
+        return this;
+    }
+
+    @Override
+    public void accept(SensorValue value) {
+        double dx = (value.x - longitude) * kmPerDegreeLon;
+        double dy = (value.y - latitude) * KM_PER_DEGREE_LAT;
+        if ((dx <= -maxd) || (dx >= maxd) || (dy <= -maxd) || (dy >= maxd) || !(value.value >= 0)) {
+            return;
+        }
+        count++;
+        double d2 = (dx * dx) + (dy * dy);
+        if (d2 > 0.0) {
+            double w = 1.0 / d2;
+            sumPm += w * value.value;
+            sumW += w;
+        } else if (Double.isNaN(exact)) {
+            // a sensor at exactly this point
+            exact = value.value;
+        }
+    }
+
+    /**
+     * @return the estimate, NaN if there are no sensors near the point
+     */
+    double getValue() {
+        return Double.isNaN(exact) ? sumPm / sumW : exact;
+    }
+
+    /**
+     * @return the number of sensors that contributed
+     */
+    int getCount() {
+        return count;
+    }
+
+}
@@ -0,0 +1,82 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import nl.bertriksikken.stofradar.metrics.Histogram;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+
+/**
+ * Records the latency of every REST request, by resource method and status.<br>
+ * <br>
+ * The histogram of a method and status is looked up in the registry once, and
+ * kept in a table by method and status, so a response does not build labels.
+ */
+@Provider
+public final class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String START_PROPERTY = MetricsFilter.class.getName() + ".start";
+    private static final int STATUSES = 600;
+
+    private static final ConcurrentMap<Method, AtomicReferenceArray<Histogram>> BY_METHOD = new ConcurrentHashMap<>();
+    private static final AtomicReferenceArray<Histogram> UNMATCHED = new AtomicReferenceArray<>(STATUSES);
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object start = requestContext.getProperty(START_PROPERTY);
+        if (start instanceof Long) {
+            Method method = (resourceInfo != null) ? resourceInfo.getResourceMethod() : null;
+            histogram(method, responseContext.getStatus()).observeSince((Long) start);
+        }
+    }
+
+    /**
+     * @param method the resource method, null if the request matched none
+     * @param status the status of the response
+     * @return the histogram of the latency of the method with the status
+     */
+    static Histogram histogram(Method method, int status) {
+        if ((status < 0) || (status >= STATUSES)) {
+            return lookup(method, status);
+        }
+        AtomicReferenceArray<Histogram> byStatus = UNMATCHED;
+        if (method != null) {
+            byStatus = BY_METHOD.get(method);
+            if (byStatus == null) {
+                byStatus = BY_METHOD.computeIfAbsent(method, m -> new AtomicReferenceArray<>(STATUSES));
+            }
+        }
+        Histogram histogram = byStatus.get(status);
+        if (histogram == null) {
+            // the registry returns the same histogram to every thread that gets here
+            histogram = lookup(method, status);
+            byStatus.set(status, histogram);
+        }
+        return histogram;
+    }
+
+    private static Histogram lookup(Method method, int status) {
+        String endpoint = (method != null) ? method.getName() : "unmatched";
+        return MetricsRegistry.getDefault().histogram("stofradar_rest_request_duration_seconds",
+                "REST request latency", "endpoint", endpoint, "status", Integer.toString(status));
+    }
+
+}
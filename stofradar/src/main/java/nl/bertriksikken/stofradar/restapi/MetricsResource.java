@@ -0,0 +1,30 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.StreamingOutput;
+
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+
+/**
+ * Serves the application metrics in Prometheus text format.
+ */
+@Path("/metrics")
+public final class MetricsResource {
+
+    @GET
+    @Produces("text/plain; version=0.0.4; charset=utf-8")
+    public StreamingOutput getMetrics() {
+        return output -> {
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            MetricsRegistry.getDefault().write(writer);
+            writer.flush();
+        };
+    }
+
+}
@@ -0,0 +1,64 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.bertriksikken.stofradar.restapi.AirBatchRequest.Point;
+
+/**
+ * Decoder for the encoded polyline format, as used by route planners: deltas of
+ * latitude and longitude in units of 1e-5 degree, zigzag encoded in 5-bit
+ * chunks.
+ */
+final class Polyline {
+
+    private static final double SCALE = 1E5;
+
+    private Polyline() {
+        // utility class
+    }
+
+    /**
+     * @param encoded   the encoded polyline
+     * @param maxPoints the maximum number of points
+     * @return the points
+     * @throws IllegalArgumentException if the polyline is malformed or has more
+     *                                  points than the maximum
+     */
+    static List<Point> decode(String encoded, int maxPoints) {
+        List<Point> points = new ArrayList<>();
+        int[] index = new int[] { 0 };
+        long lat = 0;
+        long lon = 0;
+        while (index[0] < encoded.length()) {
+            if (points.size() >= maxPoints) {
+                throw new IllegalArgumentException("Too many points in polyline");
+            }
+            lat += decodeValue(encoded, index);
+            lon += decodeValue(encoded, index);
+            points.add(new Point(lat / SCALE, lon / SCALE));
+        }
+        return points;
+    }
+
+    private static long decodeValue(String encoded, int[] index) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            if (index[0] >= encoded.length()) {
+                throw new IllegalArgumentException("Truncated polyline");
+            }
+            int b = encoded.charAt(index[0]++) - 63;
+            if ((b < 0) || (b >= 64) || (shift > 60)) {
+                throw new IllegalArgumentException("Invalid polyline at position " + (index[0] - 1));
+            }
+            result |= (long) (b & 0x1F) << shift;
+            shift += 5;
+            if (b < 0x20) {
+                break;
+            }
+        }
+        return ((result & 1) != 0) ? ~(result >> 1) : (result >> 1);
+    }
+
+}
@@ -0,0 +1,127 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * Limits the rate of requests per client.<br>
+ * <br>
+ * A client is identified by its API key, if it presents one that is
+ * configured, or else by its address. The address is that of the connection,
+ * or the last one in X-Forwarded-For if the server runs behind a proxy that
+ * is trusted to set it.
+ */
+public final class RateLimiter {
+
+    static final String API_KEY_HEADER = "X-Api-Key";
+
+    private final TokenBuckets addresses;
+    private final TokenBuckets apiKeys;
+    private final Set<String> knownApiKeys;
+    private final boolean trustForwardedFor;
+
+    /**
+     * @throws IllegalArgumentException if a configured rate is not positive
+     */
+    public RateLimiter(AirRestApiConfig config) {
+        this(new TokenBuckets(config.getRateLimitPerMinute(), config.getRateLimitBurst(),
+                config.getRateLimitMaxKeys()),
+                TokenBuckets.forKeys(config.getApiKeyRateLimitPerMinute(), config.getApiKeyRateLimitBurst(),
+                        config.getApiKeys().size()),
+                new HashSet<>(config.getApiKeys()), config.isTrustForwardedFor());
+    }
+
+    /**
+     * Limits by address only.
+     *
+     * @param perMinute the number of requests per minute
+     * @param burst     the number of requests that can be made at once
+     * @param maxKeys   the maximum number of addresses to keep track of
+     */
+    public RateLimiter(double perMinute, int burst, int maxKeys) {
+        this(new TokenBuckets(perMinute, burst, maxKeys), TokenBuckets.forKeys(perMinute, burst, 0), new HashSet<>(),
+                false);
+    }
+
+    RateLimiter(TokenBuckets addresses, TokenBuckets apiKeys, Set<String> knownApiKeys, boolean trustForwardedFor) {
+        this.addresses = addresses;
+        this.apiKeys = apiKeys;
+        this.knownApiKeys = knownApiKeys;
+        this.trustForwardedFor = trustForwardedFor;
+    }
+
+    /**
+     * Counts a request of a client.
+     *
+     * @param request the request, null for a request from within the process
+     * @return 0 if the request is allowed, else the number of seconds until the
+     *         client may try again
+     */
+    long acquire(HttpServletRequest request) {
+        long nanos;
+        String apiKey = apiKey(request);
+        if (apiKey != null) {
+            nanos = apiKeys.tryAcquire(apiKey);
+        } else {
+            nanos = addresses.tryAcquire(address(request));
+        }
+        // round up, so the client does not come back too early
+        return (nanos > 0) ? TimeUnit.NANOSECONDS.toSeconds(nanos - 1) + 1 : 0;
+    }
+
+    /**
+     * Gives back the request counted by {@link #acquire(HttpServletRequest)}, for
+     * a request that was rejected for another reason and did not cost anything.
+     *
+     * @param request the request, null for a request from within the process
+     */
+    void release(HttpServletRequest request) {
+        String apiKey = apiKey(request);
+        if (apiKey != null) {
+            apiKeys.release(apiKey);
+        } else {
+            addresses.release(address(request));
+        }
+    }
+
+    /**
+     * @return the configured API key of a request, null if it has none
+     */
+    private String apiKey(HttpServletRequest request) {
+        String apiKey = (request != null) ? request.getHeader(API_KEY_HEADER) : null;
+        return ((apiKey != null) && knownApiKeys.contains(apiKey)) ? apiKey : null;
+    }
+
+    /**
+     * @return the address of the client that made a request
+     */
+    String address(HttpServletRequest request) {
+        if (request == null) {
+            return "";
+        }
+        if (trustForwardedFor) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if ((forwarded != null) && !forwarded.trim().isEmpty()) {
+                // the proxy appends the address it received the request from
+                String[] hops = forwarded.split(",");
+                return hops[hops.length - 1].trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * @param retryAfter the number of seconds until the client may try again
+     * @return the exception to answer a rate limited request with
+     */
+    static WebApplicationException tooManyRequests(long retryAfter) {
+        return new WebApplicationException(Response.status(Response.Status.TOO_MANY_REQUESTS)
+                .header("Retry-After", retryAfter).build());
+    }
+
+}
@@ -0,0 +1,200 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.metrics.Counter;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+
+/**
+ * Computes the responses of suspended requests, so the jetty thread that
+ * received a request is free again while it is computed.<br>
+ * <br>
+ * The number of requests being computed or waiting for it is bounded, beyond
+ * that a request is answered with 503 and a Retry-After right away, so a
+ * burst of clients cannot pile up unbounded work. The computing is done by a
+ * fixed pool of threads, or by a virtual thread per request on a JVM that has
+ * them.
+ */
+public final class RequestExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestExecutor.class);
+    private static final Counter REJECTED = MetricsRegistry.getDefault().counter("stofradar_rest_rejected_total",
+            "Number of requests rejected because too many were being computed");
+
+    // a request that is not answered by then gets a 503
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final long RETRY_AFTER_SECONDS = 1;
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    RequestExecutor(ExecutorService executor, int maxRequests) {
+        this.executor = executor;
+        this.permits = new Semaphore(maxRequests);
+    }
+
+    /**
+     * @return an executor that computes every request on the thread that
+     *         received it
+     */
+    public static RequestExecutor direct() {
+        return new RequestExecutor(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates the executor configured for the REST server.
+     */
+    public static RequestExecutor create(AirRestApiConfig config) {
+        if (!config.isAsyncRequests()) {
+            return direct();
+        }
+        ExecutorService executor = config.isVirtualThreads() ? newVirtualThreadExecutor() : null;
+        if (executor == null) {
+            AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(config.getComputeThreads(),
+                    r -> new Thread(r, "air-compute-" + count.incrementAndGet()));
+            LOG.info("Computing requests on {} threads", config.getComputeThreads());
+        }
+        return new RequestExecutor(executor, config.getComputeMaxRequests());
+    }
+
+    // looked up by reflection, so the application still runs on older JVMs
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            LOG.info("Computing requests on virtual threads");
+            return executor;
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            LOG.warn("Virtual threads are not available on Java {}, using a thread pool",
+                    System.getProperty("java.version"));
+            return null;
+        }
+    }
+
+    /**
+     * Computes the response of a request and resumes it with the result.
+     *
+     * @param response    the suspended request
+     * @param computation computes the response entity, or throws the exception to
+     *                    answer with
+     * @return false if the request was rejected with 503 without computing it
+     */
+    boolean submit(AsyncResponse response, Callable<?> computation) {
+        if (executor == null) {
+            run(response, computation);
+            return true;
+        }
+        if (!permits.tryAcquire()) {
+            REJECTED.inc();
+            response.resume(new ServiceUnavailableException(RETRY_AFTER_SECONDS));
+            return false;
+        }
+        response.setTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        try {
+            executor.execute(() -> {
+                try {
+                    run(response, computation);
+                } finally {
+                    permits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            permits.release();
+            response.resume(new ServiceUnavailableException(RETRY_AFTER_SECONDS));
+            return false;
+        }
+    }
+
+    private static void run(AsyncResponse response, Callable<?> computation) {
+        try {
+            response.resume(computation.call());
+        } catch (Exception e) {
+            response.resume(e);
+        }
+    }
+
+    /**
+     * Runs a task for every index in parallel, from the thread that computes a
+     * request.<br>
+     * <br>
+     * The calling thread takes indices itself, helped by at most parallelism - 1
+     * tasks on the executor. Helpers only take indices once they run, so this
+     * completes even if no helper gets a thread. The first exception of a task
+     * is thrown again, the indices not taken by then are skipped.
+     *
+     * @param count       the number of indices, from 0
+     * @param parallelism the maximum number of threads running tasks
+     * @param task        the task
+     */
+    void forEach(int count, int parallelism, IntConsumer task) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(count);
+        Runnable worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < count) {
+                try {
+                    if (failure.get() == null) {
+                        task.accept(i);
+                    }
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        if (executor != null) {
+            int helpers = Math.min(parallelism, count) - 1;
+            try {
+                for (int i = 0; i < helpers; i++) {
+                    executor.execute(worker);
+                }
+            } catch (RejectedExecutionException e) {
+                // shutting down, the helpers that are in still help
+            }
+        }
+        worker.run();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException(RETRY_AFTER_SECONDS);
+        }
+        Throwable exception = failure.get();
+        if (exception instanceof Error) {
+            throw (Error) exception;
+        } else if (exception != null) {
+            throw (RuntimeException) exception;
+        }
+    }
+
+    /**
+     * Stops computing, requests still waiting are dropped.
+     */
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.NotAcceptableException;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.metrics.Counter;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+import nl.bertriksikken.stofradar.restapi.EncodedSensors.Format;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+
+/**
+ * Serves the filtered sensors of the current snapshot, as JSON, NDJSON or
+ * Smile, optionally gzip compressed.
+ */
+@Path("/sensors")
+public final class SensorsResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SensorsResource.class);
+    private static final Counter RATE_LIMITED = MetricsRegistry.getDefault().counter(
+            "stofradar_rest_rate_limited_total", "Number of requests denied by the rate limiter", "endpoint",
+            "getSensors");
+
+    private static SnapshotHolder snapshotHolder = new SnapshotHolder();
+    private static Duration cycleInterval = Duration.ofMinutes(5);
+    private static RateLimiter rateLimiter;
+    private static final EncodedSensors ENCODED = new EncodedSensors();
+
+    public static void initialize(SnapshotHolder holder, Duration interval, RateLimiter limiter) {
+        snapshotHolder = holder;
+        cycleInterval = interval;
+        rateLimiter = limiter;
+    }
+
+    @Context
+    private HttpServletRequest httpRequest;
+
+    @GET
+    @Produces({ "application/json", "application/x-ndjson", "application/x-jackson-smile" })
+    public Response getSensors(@HeaderParam("User-Agent") String userAgent, @HeaderParam("Accept") String accept,
+            @HeaderParam("Accept-Encoding") String acceptEncoding, @HeaderParam("If-None-Match") String ifNoneMatch) {
+        Instant start = Instant.now();
+
+        // rate limit
+        long retryAfter = rateLimiter.acquire(httpRequest);
+        if (retryAfter > 0) {
+            RATE_LIMITED.inc();
+            LOG.info("Denied sensors (rate limited), user '{}'", userAgent);
+            throw RateLimiter.tooManyRequests(retryAfter);
+        }
+        Format format = Format.negotiate(accept);
+        if (format == null) {
+            throw new NotAcceptableException();
+        }
+
+        SensorSnapshot snapshot = snapshotHolder.get();
+        boolean gzip = HttpCaching.acceptsGzip(acceptEncoding);
+        String variant = format.name().toLowerCase(Locale.ROOT) + (gzip ? "-gzip" : "");
+        EntityTag etag = HttpCaching.entityTag(snapshot, variant);
+        CacheControl cacheControl = HttpCaching.untilNextCycle(start, cycleInterval);
+        if (HttpCaching.matches(ifNoneMatch, etag)) {
+            return Response.notModified(etag).cacheControl(cacheControl).build();
+        }
+        byte[] data;
+        try {
+            data = ENCODED.get(snapshot, format, gzip);
+        } catch (IOException e) {
+            LOG.warn("Encoding sensors failed: {}", e.getMessage());
+            throw new InternalServerErrorException("Encoding sensors failed");
+        }
+        Response.ResponseBuilder builder = Response.ok(data).type(format.getMediaType());
+        if (gzip) {
+            builder.header("Content-Encoding", "gzip");
+        }
+        return builder.header("Vary", "Accept, Accept-Encoding").tag(etag).cacheControl(cacheControl).build();
+    }
+
+}
@@ -0,0 +1,56 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+
+/**
+ * The filtered sensors of a snapshot.
+ */
+final class SensorsResult {
+
+    @JsonProperty("time")
+    private final String time;
+
+    @JsonProperty("sensors")
+    private final List<Entry> sensors = new ArrayList<>();
+
+    SensorsResult(SensorSnapshot snapshot) {
+        this.time = snapshot.getTimestamp().toString();
+        snapshot.getFilteredPmValues().forEach(v -> sensors.add(new Entry(v)));
+    }
+
+    List<Entry> getSensors() {
+        return sensors;
+    }
+
+    static final class Entry {
+        @JsonProperty("id")
+        private final String id;
+
+        @JsonProperty("lat")
+        private final double latitude;
+
+        @JsonProperty("lon")
+        private final double longitude;
+
+        @JsonProperty("pm2.5")
+        private final double pm2_5;
+
+        @JsonProperty("time")
+        private final String time;
+
+        Entry(SensorValue value) {
+            this.id = value.id;
+            this.latitude = value.y;
+            this.longitude = value.x;
+            this.pm2_5 = value.value;
+            this.time = value.time.toString();
+        }
+    }
+
+}
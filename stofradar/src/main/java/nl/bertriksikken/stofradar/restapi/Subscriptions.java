@@ -0,0 +1,229 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.metrics.Gauge;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+import nl.bertriksikken.stofradar.restapi.AirBatchRequest.Point;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+
+/**
+ * Subscriptions to the PM value at a location, pushed whenever a new snapshot
+ * changes the value by at least a threshold.<br>
+ * <br>
+ * All subscriptions are evaluated in one pass per snapshot, on a thread of
+ * their own. They are ordered by grid cell, so subscriptions close together
+ * share one search of the index, see {@link AirBatch}.<br>
+ * <br>
+ * The first value of a new subscription is pushed under the same lock as the
+ * evaluation of a snapshot, and from the newest snapshot evaluated so far, so
+ * it can never overwrite a newer value.
+ */
+final class Subscriptions {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Subscriptions.class);
+    private static final Gauge SUBSCRIPTIONS = MetricsRegistry.getDefault().gauge("stofradar_air_subscriptions",
+            "Number of subscriptions to PM updates");
+
+    // about 2 km, the same as the cells of the snapshot index
+    private static final double CELL_DEGREES = 0.02;
+    // well within the idle timeout of the connections
+    private static final long KEEP_ALIVE_SECONDS = 15;
+
+    /**
+     * Receives the updates of one subscription.
+     */
+    interface ISubscriber {
+        /**
+         * @return whether the subscriber has gone away
+         */
+        boolean isClosed();
+
+        /**
+         * @param snapshot the snapshot the value is from
+         * @param value    the value, NaN if there is none
+         */
+        void push(SensorSnapshot snapshot, double value) throws IOException;
+
+        /**
+         * Sends something without meaning, to keep the connection open.
+         */
+        void keepAlive();
+    }
+
+    private static final class Subscription {
+        private final Point point;
+        private final long cell;
+        private final ISubscriber subscriber;
+        private double lastValue = Double.NaN;
+
+        Subscription(Point point, ISubscriber subscriber) {
+            this.point = point;
+            long cellY = (long) Math.floor(point.getLatitude() / CELL_DEGREES);
+            long cellX = (long) Math.floor(point.getLongitude() / CELL_DEGREES);
+            this.cell = (cellY << 32) | (cellX & 0xFFFFFFFFL);
+            this.subscriber = subscriber;
+        }
+    }
+
+    private final double maxd;
+    private final double threshold;
+    private final int maxSubscriptions;
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private final ScheduledExecutorService executor = Executors
+            .newSingleThreadScheduledExecutor(r -> new Thread(r, "air-push"));
+    // held while pushing values, so the pushes to a subscription are in order
+    private final Object pushLock = new Object();
+    private SensorSnapshot evaluated = SensorSnapshot.EMPTY;
+
+    /**
+     * @param maxd             half the size of the square around a location (km)
+     * @param threshold        the minimum change of the value to push it
+     * @param maxSubscriptions the maximum number of subscriptions
+     */
+    Subscriptions(double maxd, double threshold, int maxSubscriptions) {
+        this.maxd = maxd;
+        this.threshold = threshold;
+        this.maxSubscriptions = maxSubscriptions;
+    }
+
+    /**
+     * Starts keeping the connections of the subscriptions alive.
+     */
+    void start() {
+        executor.scheduleAtFixedRate(this::keepAlive, KEEP_ALIVE_SECONDS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void keepAlive() {
+        List<Subscription> copy;
+        synchronized (this) {
+            copy = new ArrayList<>(subscriptions);
+        }
+        for (Subscription subscription : copy) {
+            // an exception would cancel keeping alive all subscriptions for good
+            try {
+                if (!subscription.subscriber.isClosed()) {
+                    subscription.subscriber.keepAlive();
+                }
+            } catch (RuntimeException e) {
+                LOG.info("Keep-alive failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds a subscription and pushes the current value to it.
+     *
+     * @param snapshot the current snapshot, a newer one that was evaluated
+     *                 already is used instead
+     * @return false if there are too many subscriptions already
+     */
+    boolean subscribe(SensorSnapshot snapshot, double latitude, double longitude, ISubscriber subscriber)
+            throws IOException {
+        Subscription subscription = new Subscription(new Point(latitude, longitude), subscriber);
+        synchronized (pushLock) {
+            SensorSnapshot current;
+            synchronized (this) {
+                subscriptions.removeIf(s -> s.subscriber.isClosed());
+                if (subscriptions.size() >= maxSubscriptions) {
+                    return false;
+                }
+                subscriptions.add(subscription);
+                SUBSCRIPTIONS.set(subscriptions.size());
+                current = evaluated.isNewerThan(snapshot) ? evaluated : snapshot;
+            }
+            List<Point> points = new ArrayList<>();
+            points.add(subscription.point);
+            new AirBatch(current.getPmIndex(), maxd).evaluate(points, (point, value) -> {
+                subscription.lastValue = value;
+                subscriber.push(current, value);
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Schedules the evaluation of all subscriptions against a new snapshot.
+     */
+    void update(SensorSnapshot snapshot) {
+        executor.execute(() -> evaluate(snapshot));
+    }
+
+    /**
+     * Evaluates all subscriptions against a snapshot, and pushes the values that
+     * changed enough.
+     */
+    void evaluate(SensorSnapshot snapshot) {
+        synchronized (pushLock) {
+            evaluateAll(snapshot);
+        }
+    }
+
+    private void evaluateAll(SensorSnapshot snapshot) {
+        List<Subscription> batch;
+        synchronized (this) {
+            if (!snapshot.isNewerThan(evaluated)) {
+                return;
+            }
+            evaluated = snapshot;
+            subscriptions.removeIf(s -> s.subscriber.isClosed());
+            subscriptions.sort(Comparator.comparingLong(s -> s.cell));
+            SUBSCRIPTIONS.set(subscriptions.size());
+            batch = new ArrayList<>(subscriptions);
+        }
+        List<Point> points = new ArrayList<>(batch.size());
+        batch.forEach(s -> points.add(s.point));
+        int[] index = new int[1];
+        int[] pushed = new int[1];
+        try {
+            new AirBatch(snapshot.getPmIndex(), maxd).evaluate(points, (point, value) -> {
+                Subscription subscription = batch.get(index[0]++);
+                if (changed(subscription.lastValue, value) && !subscription.subscriber.isClosed()) {
+                    subscription.lastValue = value;
+                    pushed[0]++;
+                    try {
+                        subscription.subscriber.push(snapshot, value);
+                    } catch (IOException | RuntimeException e) {
+                        LOG.info("Push failed: {}", e.getMessage());
+                    }
+                }
+            });
+        } catch (IOException e) {
+            // pushes handle their own exceptions
+            LOG.warn("Evaluating subscriptions failed", e);
+        }
+        LOG.info("Evaluated {} subscriptions for generation {}, pushed {}", batch.size(),
+                snapshot.getGeneration(), pushed[0]);
+    }
+
+    private boolean changed(double last, double value) {
+        if (Double.isNaN(last) || Double.isNaN(value)) {
+            return Double.isNaN(last) != Double.isNaN(value);
+        }
+        return Math.abs(value - last) >= threshold;
+    }
+
+    /**
+     * @return the number of subscriptions
+     */
+    synchronized int size() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Stops pushing updates.
+     */
+    void stop() {
+        executor.shutdownNow();
+    }
+
+}
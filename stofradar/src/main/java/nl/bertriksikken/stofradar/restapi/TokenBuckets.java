@@ -0,0 +1,141 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket per key, in bounded memory.<br>
+ * <br>
+ * A bucket holds up to 'burst' tokens and refills at a fixed rate, every
+ * request takes one token. The buckets are spread over a number of stripes
+ * with a lock each, so requests for different keys rarely wait for each other.
+ * Each stripe is an LRU of limited size: when it is full, the bucket that was
+ * used longest ago is dropped. A dropped key starts again with a full bucket,
+ * so eviction can only make the limiter more lenient, never stricter.
+ */
+final class TokenBuckets {
+
+    private static final int STRIPES = 16;
+
+    private static final class Bucket {
+        private double tokens;
+        private long updated;
+
+        Bucket(double tokens, long updated) {
+            this.tokens = tokens;
+            this.updated = updated;
+        }
+    }
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final LongSupplier clock;
+    private final Map<String, Bucket>[] stripes;
+
+    /**
+     * @param perMinute the number of tokens added per minute
+     * @param burst     the maximum number of tokens in a bucket
+     * @param maxKeys   the maximum number of keys to keep a bucket for
+     * @throws IllegalArgumentException if the rate is not positive
+     */
+    TokenBuckets(double perMinute, int burst, int maxKeys) {
+        this(perMinute, burst, maxKeys, System::nanoTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    TokenBuckets(double perMinute, int burst, int maxKeys, LongSupplier clock) {
+        if (!(perMinute > 0) || Double.isInfinite(perMinute)) {
+            throw new IllegalArgumentException("Invalid rate limit " + perMinute + " per minute");
+        }
+        this.tokensPerNano = perMinute / TimeUnit.MINUTES.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.clock = clock;
+        int maxPerStripe = Math.max(1, (maxKeys + STRIPES - 1) / STRIPES);
+        this.stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > maxPerStripe;
+                }
+            };
+        }
+    }
+
+    /**
+     * Creates buckets for a fixed set of keys, which are never dropped, even if
+     * they all end up in the same stripe.
+     *
+     * @param perMinute the number of tokens added per minute
+     * @param burst     the maximum number of tokens in a bucket
+     * @param keys      the number of keys
+     */
+    static TokenBuckets forKeys(double perMinute, int burst, int keys) {
+        return new TokenBuckets(perMinute, burst, STRIPES * keys);
+    }
+
+    /**
+     * Takes a token from the bucket of a key, if it has one.
+     *
+     * @param key the key
+     * @return 0 if a token was taken, else the number of nanoseconds until the
+     *         bucket has a token again
+     */
+    long tryAcquire(String key) {
+        Map<String, Bucket> stripe = stripe(key);
+        long now = clock.getAsLong();
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                stripe.put(key, new Bucket(burst - 1, now));
+                return 0;
+            }
+            bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.updated) * tokensPerNano);
+            bucket.updated = now;
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) / tokensPerNano);
+        }
+    }
+
+    /**
+     * Gives back a token taken for a request that was not handled after all.
+     * Nothing is given back if the bucket of the key was dropped since.
+     *
+     * @param key the key
+     */
+    void release(String key) {
+        Map<String, Bucket> stripe = stripe(key);
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(key);
+            if (bucket != null) {
+                bucket.tokens = Math.min(burst, bucket.tokens + 1);
+            }
+        }
+    }
+
+    private Map<String, Bucket> stripe(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * @return the number of keys with a bucket
+     */
+    int size() {
+        int size = 0;
+        for (Map<String, Bucket> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+}
@@ -12,6 +12,9 @@ public final class SamenmetenCsvConfig {
     @JsonProperty("timeout")
     private long timeoutSec = 30;
 
+    @JsonProperty("intervalSec")
+    private long intervalSec = 600;
+
     public String getUrl() {
         return url;
     }
@@ -20,4 +23,8 @@ public final class SamenmetenCsvConfig {
         return Duration.ofSeconds(timeoutSec);
     }
 
+    public Duration getInterval() {
+        return Duration.ofSeconds(intervalSec);
+    }
+
 }
@@ -8,6 +8,7 @@ import java.util.Scanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import retrofit2.Response;
 import retrofit2.Retrofit;
@@ -26,9 +27,13 @@ public final class SamenmetenCsvDownloader {
         this.restApi = restApi;
     }
     
-    public static SamenmetenCsvDownloader create(SamenmetenCsvConfig config) {
+    public static SamenmetenCsvDownloader create(SamenmetenCsvConfig config, Interceptor... interceptors) {
         LOG.info("Creating new REST client for URL '{}' with timeout {}", config.getUrl(), config.getTimeout());
-        OkHttpClient client = new OkHttpClient().newBuilder().callTimeout(config.getTimeout()).build();
+        OkHttpClient.Builder builder = new OkHttpClient().newBuilder().callTimeout(config.getTimeout());
+        for (Interceptor interceptor : interceptors) {
+            builder.addInterceptor(interceptor);
+        }
+        OkHttpClient client = builder.build();
         Retrofit retrofit = new Retrofit.Builder().baseUrl(config.getUrl())
                 .addConverterFactory(ScalarsConverterFactory.create())
                 .client(client).build();
@@ -1,7 +1,6 @@
 package nl.bertriksikken.stofradar.samenmeten.csv;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.List;
 
@@ -12,6 +11,8 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 
+import nl.bertriksikken.stofradar.output.AtomicFiles;
+
 /**
  * Writer for samenmeten CSV lucht data.
  */
@@ -28,14 +29,9 @@ public final class SamenmetenCsvWriter {
     public void write(File file, List<SamenmetenCsvLuchtEntry> entries) throws IOException {
         CsvSchema schema = csvMapper.schemaFor(SamenmetenCsvLuchtEntry.class).withHeader().withColumnSeparator(';');
         ObjectWriter csvWriter = csvMapper.writer(schema);
-        if (file.delete()) {
-            LOG.info("Overwriting existing file {}", file.getAbsolutePath());
-        } else {
-            LOG.info("Creating new file {}", file.getAbsolutePath());
-        }
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            csvWriter.writeValues(fos).writeAll(entries);
-        }
+        LOG.info("Writing {} entries to {}", entries.size(), file.getAbsolutePath());
+        // readers of the file never see a partially written version
+        AtomicFiles.write(file.toPath(), stream -> csvWriter.writeValues(stream).writeAll(entries));
     }
 
 }
@@ -1,5 +1,6 @@
 package nl.bertriksikken.stofradar.senscom;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -20,6 +21,9 @@ public final class SensComConfig {
     @JsonProperty("blacklist")
     private List<String> blacklist = Arrays.asList("11697");
 
+    @JsonProperty("intervalSec")
+    private long intervalSec = 300;
+
 	/**
      * @return the base sensor.community API URL
      */
@@ -41,4 +45,11 @@ public final class SensComConfig {
     	return Collections.unmodifiableList(blacklist);
     }
 
+    /**
+     * @return the time between downloads
+     */
+    public Duration getInterval() {
+        return Duration.ofSeconds(intervalSec);
+    }
+
 }
@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import nl.bertriksikken.stofradar.senscom.dto.DataPoint;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 import retrofit2.converter.jackson.JacksonConverterFactory;
@@ -44,10 +45,14 @@ public final class SensComDataApi {
         return retrofit.create(ISensComRestApi.class);
     }
 
-    public static SensComDataApi create(SensComConfig config) {
+    public static SensComDataApi create(SensComConfig config, Interceptor... interceptors) {
         LOG.info("Creating new REST client for URL '{}' with timeout {}", config.getUrl(), config.getTimeoutSec());
-        OkHttpClient client = new OkHttpClient().newBuilder().callTimeout(Duration.ofSeconds(config.getTimeoutSec()))
-                .build();
+        OkHttpClient.Builder builder = new OkHttpClient().newBuilder()
+                .callTimeout(Duration.ofSeconds(config.getTimeoutSec()));
+        for (Interceptor interceptor : interceptors) {
+            builder.addInterceptor(interceptor);
+        }
+        OkHttpClient client = builder.build();
         Retrofit retrofit = new Retrofit.Builder().baseUrl(config.getUrl())
                 .addConverterFactory(JacksonConverterFactory.create()).client(client).build();
         ISensComRestApi restApi = retrofit.create(ISensComRestApi.class);
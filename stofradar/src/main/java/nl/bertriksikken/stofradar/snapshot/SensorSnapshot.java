@@ -0,0 +1,120 @@
+package nl.bertriksikken.stofradar.snapshot;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.spatial.SpatialIndex;
+
+/**
+ * Immutable view of all sensor data belonging to one processing cycle.<br>
+ * <br>
+ * A snapshot is built once at the end of a cycle and never modified afterwards,
+ * so readers can use its lists directly without copying or locking.
+ */
+public final class SensorSnapshot {
+
+    /**
+     * The initial snapshot, before anything was published.
+     */
+    public static final SensorSnapshot EMPTY = new SensorSnapshot(0, Instant.EPOCH, Collections.emptyList(),
+            FilterResult.EMPTY, FilterResult.EMPTY);
+
+    // about 2 km, so a query for the nearest few km touches only a few cells
+    private static final double INDEX_CELL_DEGREES = 0.02;
+
+    private final long generation;
+    private final Instant timestamp;
+    private final List<SensorValue> pmValues;
+    private final SpatialIndex pmIndex;
+    private final FilterResult pmFilterResult;
+    private final FilterResult rhFilterResult;
+
+    /**
+     * Constructor.
+     * 
+     * @param generation     the generation number
+     * @param timestamp      the time of the cycle that produced this snapshot
+     * @param pmValues       all PM2.5 values currently in the store
+     * @param pmFilterResult the PM2.5 values after global and per-job filtering
+     * @param rhFilterResult the relative humidity values after per-job filtering
+     */
+    SensorSnapshot(long generation, Instant timestamp, List<SensorValue> pmValues, FilterResult pmFilterResult,
+            FilterResult rhFilterResult) {
+        this.generation = generation;
+        this.timestamp = timestamp;
+        this.pmValues = Collections.unmodifiableList(new ArrayList<>(pmValues));
+        this.pmIndex = new SpatialIndex(this.pmValues, INDEX_CELL_DEGREES);
+        this.pmFilterResult = pmFilterResult;
+        this.rhFilterResult = rhFilterResult;
+    }
+
+    /**
+     * @return the generation number, increasing by one for each published snapshot
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Compares snapshots by the time of their cycle, and then by generation.
+     * Unlike the generation alone, this also holds across a restart of the
+     * pipeline, when the generation starts over.
+     * 
+     * @param other another snapshot
+     * @return whether this snapshot is newer than the other one
+     */
+    public boolean isNewerThan(SensorSnapshot other) {
+        int compare = timestamp.compareTo(other.timestamp);
+        return (compare > 0) || ((compare == 0) && (generation > other.generation));
+    }
+
+    /**
+     * @return all PM2.5 values currently in the store, unfiltered
+     */
+    public List<SensorValue> getPmValues() {
+        return pmValues;
+    }
+
+    /**
+     * @return an index by location of all PM2.5 values, built with the snapshot
+     */
+    public SpatialIndex getPmIndex() {
+        return pmIndex;
+    }
+
+    /**
+     * @return the PM2.5 values that passed the percentile, value and blacklist
+     *         filters
+     */
+    public List<SensorValue> getFilteredPmValues() {
+        return pmFilterResult.getValues();
+    }
+
+    public FilterResult getPmFilterResult() {
+        return pmFilterResult;
+    }
+
+    public List<SensorValue> getRhValues() {
+        return rhFilterResult.getValues();
+    }
+
+    public FilterResult getRhFilterResult() {
+        return rhFilterResult;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "{generation=%d,pm=%d,filtered=%d,rh=%d}", generation,
+                pmValues.size(), getFilteredPmValues().size(), getRhValues().size());
+    }
+
+}
@@ -0,0 +1,41 @@
+package nl.bertriksikken.stofradar.snapshot;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public final class SnapshotConfig {
+
+    // write every snapshot to the directory, for read replicas
+    @JsonProperty("publish")
+    private boolean publish = false;
+
+    @JsonProperty("directory")
+    private String directory = "snapshots";
+
+    // how often a read replica looks for a new snapshot
+    @JsonProperty("pollSec")
+    private int pollSec = 2;
+
+    public SnapshotConfig() {
+        // jackson constructor
+    }
+
+    public boolean isPublish() {
+        return publish;
+    }
+
+    /**
+     * @return the file the latest snapshot is written to
+     */
+    public Path getFile() {
+        return Paths.get(directory, "snapshot.srsf");
+    }
+
+    public Duration getPollInterval() {
+        return Duration.ofSeconds(pollSec);
+    }
+
+}
@@ -0,0 +1,134 @@
+package nl.bertriksikken.stofradar.snapshot;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.output.AtomicFiles;
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * A sensor snapshot in a file, for REST servers in other processes.<br>
+ * <br>
+ * The file is little-endian, and starts with a header of 32 bytes:
+ * <ul>
+ * <li>0: magic "SRSF"
+ * <li>4: version, 32-bit
+ * <li>8: generation, 64-bit
+ * <li>16: time of the snapshot, epoch milliseconds, 64-bit
+ * <li>24, 28: number of PM2.5 values and of filtered PM2.5 values, 32-bit
+ * </ul>
+ * followed by all PM2.5 values and then the filtered ones. Each value is the
+ * longitude, latitude and value as double, the time in epoch milliseconds,
+ * and the id as a 16-bit length and UTF-8 bytes. The relative humidity values
+ * and the per-job filter results are only used for rendering, and are not
+ * written. Files are replaced atomically, so other processes can map them
+ * while they are being replaced.
+ */
+public final class SnapshotFile {
+
+    private static final int MAGIC = 0x46535253; // "SRSF" little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    // x, y, value, time and id length
+    private static final int VALUE_SIZE = 8 + 8 + 8 + 8 + 2;
+
+    private SnapshotFile() {
+        // utility class
+    }
+
+    /**
+     * Writes a snapshot to a file atomically.
+     *
+     * @param path     the file
+     * @param snapshot the snapshot
+     */
+    public static void write(Path path, SensorSnapshot snapshot) throws IOException {
+        List<SensorValue> values = snapshot.getPmValues();
+        List<SensorValue> filtered = snapshot.getFilteredPmValues();
+        byte[][] ids = new byte[values.size() + filtered.size()][];
+        int size = HEADER_SIZE;
+        for (int i = 0; i < ids.length; i++) {
+            SensorValue value = (i < values.size()) ? values.get(i) : filtered.get(i - values.size());
+            ids[i] = value.id.getBytes(StandardCharsets.UTF_8);
+            if (ids[i].length > 0xFFFF) {
+                throw new IOException("Sensor id too long: " + value.id.substring(0, 32));
+            }
+            size += VALUE_SIZE + ids[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(snapshot.getGeneration())
+                .putLong(snapshot.getTimestamp().toEpochMilli()).putInt(values.size()).putInt(filtered.size());
+        for (int i = 0; i < ids.length; i++) {
+            SensorValue value = (i < values.size()) ? values.get(i) : filtered.get(i - values.size());
+            buffer.putDouble(value.x).putDouble(value.y).putDouble(value.value).putLong(value.time.toEpochMilli());
+            buffer.putShort((short) ids[i].length).put(ids[i]);
+        }
+        ((Buffer) buffer).flip();
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        AtomicFiles.write(path, stream -> Channels.newChannel(stream).write(buffer));
+    }
+
+    /**
+     * Reads a snapshot from a file, through a mapping of it.
+     *
+     * @param path the file
+     * @return the snapshot, with the generation it was written with
+     */
+    public static SensorSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if ((buffer.capacity() < HEADER_SIZE) || (buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) {
+                throw new IOException("Not a snapshot file of version " + VERSION);
+            }
+            long generation = buffer.getLong();
+            Instant timestamp = Instant.ofEpochMilli(buffer.getLong());
+            int count = buffer.getInt();
+            int filteredCount = buffer.getInt();
+            // every value takes at least this much, so a corrupt count cannot allocate much
+            if ((count < 0) || (filteredCount < 0)
+                    || (((long) count + filteredCount) * VALUE_SIZE > buffer.remaining())) {
+                throw new IOException("Invalid snapshot file, " + count + " + " + filteredCount + " values");
+            }
+            List<SensorValue> values = readValues(buffer, count);
+            List<SensorValue> filtered = readValues(buffer, filteredCount);
+            return new SensorSnapshot(generation, timestamp, values, FilterResult.of(filtered), FilterResult.EMPTY);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot file " + path);
+        }
+    }
+
+    private static List<SensorValue> readValues(ByteBuffer buffer, int count) {
+        List<SensorValue> values = new ArrayList<>(count);
+        byte[] id = new byte[0xFFFF];
+        for (int i = 0; i < count; i++) {
+            double x = buffer.getDouble();
+            double y = buffer.getDouble();
+            double value = buffer.getDouble();
+            Instant time = Instant.ofEpochMilli(buffer.getLong());
+            int length = buffer.getShort() & 0xFFFF;
+            buffer.get(id, 0, length);
+            values.add(new SensorValue(new String(id, 0, length, StandardCharsets.UTF_8), x, y, value, time));
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,71 @@
+package nl.bertriksikken.stofradar.snapshot;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Publishes the most recent sensor snapshot to any number of readers.<br>
+ * <br>
+ * The pipeline is the single writer, readers just pick up the current
+ * snapshot through a volatile reference and never block.
+ */
+public final class SnapshotHolder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotHolder.class);
+
+    private volatile SensorSnapshot current = SensorSnapshot.EMPTY;
+    private final List<Consumer<SensorSnapshot>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return the most recently published snapshot
+     */
+    public SensorSnapshot get() {
+        return current;
+    }
+
+    /**
+     * @param listener receives every newly published snapshot, on the publishing
+     *                 thread, so it should hand off any real work
+     */
+    public void addListener(Consumer<SensorSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Builds and publishes a new snapshot with the next generation number.
+     * 
+     * @param timestamp      the time of the cycle
+     * @param pmValues       all PM2.5 values in the store
+     * @param pmFilterResult the filtered PM2.5 values
+     * @param rhFilterResult the filtered relative humidity values
+     * @return the published snapshot
+     */
+    public synchronized SensorSnapshot publish(Instant timestamp, List<SensorValue> pmValues,
+            FilterResult pmFilterResult, FilterResult rhFilterResult) {
+        SensorSnapshot snapshot = new SensorSnapshot(current.getGeneration() + 1, timestamp, pmValues,
+                pmFilterResult, rhFilterResult);
+        publish(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Publishes a snapshot that was built elsewhere, keeping its generation, for
+     * example one read from a {@link SnapshotFile}.
+     * 
+     * @param snapshot the snapshot
+     */
+    public synchronized void publish(SensorSnapshot snapshot) {
+        current = snapshot;
+        LOG.info("Published snapshot {}", snapshot);
+        listeners.forEach(listener -> listener.accept(snapshot));
+    }
+
+}
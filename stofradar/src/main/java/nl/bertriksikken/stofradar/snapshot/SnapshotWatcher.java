@@ -0,0 +1,109 @@
+package nl.bertriksikken.stofradar.snapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.bertriksikken.stofradar.field.FieldFile;
+import nl.bertriksikken.stofradar.field.FieldStore;
+
+/**
+ * Follows the snapshot and field files that a pipeline in another process
+ * writes, and publishes each new one as soon as it appears.<br>
+ * <br>
+ * The files are polled by their modification time, which also works on
+ * network file systems. Since the files are replaced atomically, a file that
+ * has changed is always complete.
+ */
+public final class SnapshotWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotWatcher.class);
+
+    private final Path snapshotFile;
+    private final Map<String, Path> fieldFiles;
+    private final SnapshotHolder snapshotHolder;
+    private final FieldStore fieldStore;
+    private final Duration interval;
+    private final Map<Path, FileTime> modified = new HashMap<>();
+    private final ScheduledExecutorService executor = Executors
+            .newSingleThreadScheduledExecutor(r -> new Thread(r, "snapshot-watcher"));
+
+    /**
+     * @param snapshotFile   the snapshot file
+     * @param fieldFiles     the field file of each render job, by name
+     * @param snapshotHolder receives the snapshots
+     * @param fieldStore     receives the fields
+     * @param interval       the interval to look for new files
+     */
+    public SnapshotWatcher(Path snapshotFile, Map<String, Path> fieldFiles, SnapshotHolder snapshotHolder,
+            FieldStore fieldStore, Duration interval) {
+        this.snapshotFile = snapshotFile;
+        this.fieldFiles = new HashMap<>(fieldFiles);
+        this.snapshotHolder = snapshotHolder;
+        this.fieldStore = fieldStore;
+        this.interval = interval;
+    }
+
+    public void start() {
+        LOG.info("Watching {} every {}", snapshotFile, interval);
+        executor.scheduleWithFixedDelay(this::poll, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Publishes the files that changed since the previous poll.
+     */
+    void poll() {
+        // fields first, so they are there when the snapshot they belong to is published
+        for (Map.Entry<String, Path> entry : fieldFiles.entrySet()) {
+            try {
+                if (changed(entry.getValue())) {
+                    fieldStore.publish(entry.getKey(), FieldFile.map(entry.getValue()));
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to read field {}: {}", entry.getValue(), e.getMessage());
+                modified.remove(entry.getValue());
+            }
+        }
+        try {
+            if (changed(snapshotFile)) {
+                SensorSnapshot snapshot = SnapshotFile.read(snapshotFile);
+                SensorSnapshot current = snapshotHolder.get();
+                // also after a restart of the pipeline, when the generation starts over
+                if ((snapshot.getGeneration() != current.getGeneration())
+                        || !snapshot.getTimestamp().equals(current.getTimestamp())) {
+                    snapshotHolder.publish(snapshot);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to read snapshot {}: {}", snapshotFile, e.getMessage());
+            modified.remove(snapshotFile);
+        }
+    }
+
+    private boolean changed(Path path) throws IOException {
+        FileTime time;
+        try {
+            time = Files.getLastModifiedTime(path);
+        } catch (NoSuchFileException e) {
+            // not written yet
+            return false;
+        }
+        return !time.equals(modified.put(path, time));
+    }
+
+}
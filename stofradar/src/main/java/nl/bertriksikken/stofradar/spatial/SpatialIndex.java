@@ -0,0 +1,108 @@
+package nl.bertriksikken.stofradar.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Immutable index of sensor values by location, for finding the sensors near a
+ * point without looking at all of them.<br>
+ * <br>
+ * Values are bucketed in a grid of cells of a fixed size in degrees. The values
+ * are kept in one array, sorted by cell, so a query does one binary search per
+ * row of cells it overlaps and then walks the array, without allocating.
+ */
+public final class SpatialIndex {
+
+    private final double cellDegrees;
+    private final long[] keys;
+    private final SensorValue[] values;
+
+    /**
+     * Builds the index, values without a valid location are left out.
+     * 
+     * @param values      the values, with x as longitude and y as latitude
+     * @param cellDegrees the size of a cell in degrees
+     */
+    public SpatialIndex(List<SensorValue> values, double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        List<SensorValue> located = new ArrayList<>(values.size());
+        for (SensorValue value : values) {
+            if (Double.isFinite(value.x) && Double.isFinite(value.y)) {
+                located.add(value);
+            }
+        }
+        this.values = located.toArray(new SensorValue[0]);
+        Arrays.sort(this.values, Comparator.comparingLong(v -> key(cell(v.x), cell(v.y))));
+        this.keys = new long[this.values.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(cell(this.values[i].x), cell(this.values[i].y));
+        }
+    }
+
+    private int cell(double degrees) {
+        return (int) Math.floor(degrees / cellDegrees);
+    }
+
+    // row-major, so the cells of one row are adjacent in the sorted array, the
+    // sign bit of x is flipped to keep negative cells in order
+    private static long key(int cellX, int cellY) {
+        return ((long) cellY << 32) | ((cellX ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the number of values in the index
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Visits all values in the cells overlapping a box. This can include values
+     * just outside the box, so the visitor should apply its own distance check.
+     * 
+     * @param west    the western edge (longitude)
+     * @param south   the southern edge (latitude)
+     * @param east    the eastern edge (longitude)
+     * @param north   the northern edge (latitude)
+     * @param visitor receives the values
+     */
+    public void forEachNear(double west, double south, double east, double north, Consumer<SensorValue> visitor) {
+        if (keys.length == 0) {
+            return;
+        }
+        int minX = cell(west);
+        int maxX = cell(east);
+        // only the rows that have values, which also keeps the row from overflowing at the
+        // largest cell, for a box far outside the range of the index
+        long minY = Math.max(cell(south), keys[0] >> 32);
+        long maxY = Math.min(cell(north), keys[keys.length - 1] >> 32);
+        for (long row = minY; row <= maxY; row++) {
+            int cellY = (int) row;
+            long last = key(maxX, cellY);
+            for (int i = lowerBound(key(minX, cellY)); (i < keys.length) && (keys[i] <= last); i++) {
+                visitor.accept(values[i]);
+            }
+        }
+    }
+
+    // index of the first key that is not less than the given key
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
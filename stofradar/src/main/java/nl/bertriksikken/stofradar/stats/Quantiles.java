@@ -0,0 +1,207 @@
+package nl.bertriksikken.stofradar.stats;
+
+import java.util.Arrays;
+import java.util.List;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+/**
+ * Order statistics on primitive arrays in linear expected time.<br>
+ * <br>
+ * Uses introselect: quickselect with a median-of-three pivot, falling back to
+ * sorting the remaining range if partitioning keeps going badly. Values are
+ * ordered like {@link Arrays#sort(double[])}, so NaN sorts last. All methods
+ * reorder the array they are given.
+ */
+public final class Quantiles {
+
+    // below this size, insertion sort beats partitioning
+    private static final int SMALL = 16;
+
+    private Quantiles() {
+        // utility class
+    }
+
+    /**
+     * Copies the values of sensor values into a new array.
+     * 
+     * @param values the sensor values
+     * @return array with just the values
+     */
+    public static double[] toArray(List<SensorValue> values) {
+        double[] array = new double[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i).value;
+        }
+        return array;
+    }
+
+    /**
+     * Finds the k-th smallest element. Afterwards, the array is partitioned
+     * around index k.
+     * 
+     * @param a the array
+     * @param k the zero-based rank
+     * @return the k-th smallest element
+     */
+    public static double select(double[] a, int k) {
+        return select(a, 0, a.length, k);
+    }
+
+    /**
+     * Finds the k-th smallest element within a range of an array.
+     * 
+     * @param a    the array
+     * @param from start of the range (inclusive)
+     * @param to   end of the range (exclusive)
+     * @param k    the rank, an index within the range
+     * @return the k-th smallest element of the range
+     */
+    public static double select(double[] a, int from, int to, int k) {
+        if ((k < from) || (k >= to)) {
+            throw new IllegalArgumentException("rank " + k + " outside range [" + from + "," + to + ")");
+        }
+        int lo = from;
+        int hi = to - 1;
+        int budget = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        while (hi - lo >= SMALL) {
+            if (budget-- == 0) {
+                // partitioning is not converging, sorting bounds the worst case
+                Arrays.sort(a, lo, hi + 1);
+                return a[k];
+            }
+            int p = partition(a, lo, hi);
+            if (k < p) {
+                hi = p - 1;
+            } else if (k > p) {
+                lo = p + 1;
+            } else {
+                return a[k];
+            }
+        }
+        insertionSort(a, lo, hi);
+        return a[k];
+    }
+
+    /**
+     * Calculates the median, averaging the two middle elements for an even
+     * number of elements.
+     * 
+     * @param a the array
+     * @return the median, NaN for an empty array
+     */
+    public static double median(double[] a) {
+        return median(a, 0, a.length);
+    }
+
+    /**
+     * Calculates the median of a range of an array, averaging the two middle
+     * elements for an even number of elements.
+     * 
+     * @param a    the array
+     * @param from start of the range (inclusive)
+     * @param to   end of the range (exclusive)
+     * @return the median, NaN for an empty range
+     */
+    public static double median(double[] a, int from, int to) {
+        if (to <= from) {
+            return Double.NaN;
+        }
+        int mid = from + (to - from - 1) / 2;
+        double left = select(a, from, to, mid);
+        if (((to - from) % 2) == 1) {
+            return left;
+        }
+        // elements above mid are not smaller than left, the smallest of them is the right middle
+        double right = a[mid + 1];
+        for (int i = mid + 2; i < to; i++) {
+            if (less(a[i], right)) {
+                right = a[i];
+            }
+        }
+        return (left + right) / 2;
+    }
+
+    /**
+     * Calculates a quantile by linear interpolation between closest ranks.
+     * 
+     * @param a the array
+     * @param q the quantile, between 0 and 1
+     * @return the quantile, NaN for an empty array
+     */
+    public static double quantile(double[] a, double q) {
+        if (a.length == 0) {
+            return Double.NaN;
+        }
+        double pos = Math.max(0.0, Math.min(1.0, q)) * (a.length - 1);
+        int below = (int) Math.floor(pos);
+        double lower = select(a, below);
+        if (below == a.length - 1) {
+            return lower;
+        }
+        double upper = a[below + 1];
+        for (int i = below + 2; i < a.length; i++) {
+            if (less(a[i], upper)) {
+                upper = a[i];
+            }
+        }
+        double frac = pos - below;
+        return lower + frac * (upper - lower);
+    }
+
+    // partitions a[lo..hi] around a median-of-three pivot, returns the final pivot index
+    private static int partition(double[] a, int lo, int hi) {
+        int mid = (lo + hi) >>> 1;
+        if (less(a[mid], a[lo])) {
+            swap(a, lo, mid);
+        }
+        if (less(a[hi], a[lo])) {
+            swap(a, lo, hi);
+        }
+        if (less(a[hi], a[mid])) {
+            swap(a, mid, hi);
+        }
+        // a[lo] <= a[mid] <= a[hi], park the pivot next to the end
+        swap(a, mid, hi - 1);
+        double pivot = a[hi - 1];
+        int i = lo;
+        int j = hi - 1;
+        while (true) {
+            while (less(a[++i], pivot)) {
+                // a[hi - 1] is a sentinel
+            }
+            while (less(pivot, a[--j])) {
+                // a[lo] is a sentinel
+            }
+            if (i >= j) {
+                break;
+            }
+            swap(a, i, j);
+        }
+        swap(a, i, hi - 1);
+        return i;
+    }
+
+    private static void insertionSort(double[] a, int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            double v = a[i];
+            int j = i - 1;
+            while ((j >= lo) && less(v, a[j])) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    private static boolean less(double x, double y) {
+        return Double.compare(x, y) < 0;
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+}
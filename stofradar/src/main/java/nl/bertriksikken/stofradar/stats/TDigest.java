@@ -0,0 +1,203 @@
+package nl.bertriksikken.stofradar.stats;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable streaming quantile sketch (merging t-digest, after Dunning).<br>
+ * <br>
+ * Keeps a bounded number of weighted centroids, with small centroids near the
+ * tails so extreme quantiles stay accurate. Memory use depends only on the
+ * compression parameter, not on the number of values added. Digests built on
+ * different threads can be combined with {@link #add(TDigest)}.<br>
+ * <br>
+ * Not thread-safe.
+ */
+public final class TDigest {
+
+    private final double compression;
+
+    // merged centroids, sorted by mean
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+
+    // values added since the last merge
+    private final double[] buffer;
+    private int buffered;
+
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Constructor.
+     * 
+     * @param compression the compression, typically 100; higher is more accurate
+     *                    and uses more memory
+     */
+    public TDigest(double compression) {
+        this.compression = compression;
+        int capacity = (int) Math.ceil(2 * compression) + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.buffer = new double[5 * capacity];
+    }
+
+    /**
+     * Adds a single value.
+     * 
+     * @param value the value, NaN is ignored
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (buffered == buffer.length) {
+            merge();
+        }
+        buffer[buffered++] = value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all values summarised by another digest.
+     * 
+     * @param other the other digest, not modified
+     */
+    public void add(TDigest other) {
+        if (other.size() == 0) {
+            return;
+        }
+        // the values the other digest has not merged yet are merged from a copy
+        double[] pending = Arrays.copyOf(other.buffer, other.buffered);
+        Arrays.sort(pending);
+        merge();
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        if (other.centroids > 0) {
+            compress(other.means, other.weights, other.centroids);
+        }
+        if (pending.length > 0) {
+            compress(pending, null, pending.length);
+        }
+    }
+
+    /**
+     * @return the number of values summarised by this digest
+     */
+    public long size() {
+        return (long) totalWeight + buffered;
+    }
+
+    /**
+     * Estimates a quantile.
+     * 
+     * @param q the quantile, between 0 and 1
+     * @return the estimated value, NaN if the digest is empty
+     */
+    public double quantile(double q) {
+        merge();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (centroids == 1) {
+            return means[0];
+        }
+        double index = Math.max(0.0, Math.min(1.0, q)) * totalWeight;
+        if (index < weights[0] / 2) {
+            // between the minimum and the centre of the first centroid
+            return min + (means[0] - min) * index / (weights[0] / 2);
+        }
+        double cumulative = weights[0] / 2;
+        for (int i = 0; i < centroids - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2;
+            if (cumulative + step > index) {
+                double frac = (index - cumulative) / step;
+                return means[i] + frac * (means[i + 1] - means[i]);
+            }
+            cumulative += step;
+        }
+        // between the centre of the last centroid and the maximum
+        double last = weights[centroids - 1] / 2;
+        double frac = Math.min(1.0, (index - cumulative) / last);
+        return means[centroids - 1] + frac * (max - means[centroids - 1]);
+    }
+
+    private void merge() {
+        if (buffered == 0) {
+            return;
+        }
+        Arrays.sort(buffer, 0, buffered);
+        int count = buffered;
+        buffered = 0;
+        compress(buffer, null, count);
+    }
+
+    /**
+     * Merges a sorted run of centroids into the current ones, then combines
+     * neighbours as far as the scale function allows.
+     * 
+     * @param otherMeans   means of the run, sorted
+     * @param otherWeights weights of the run, or null if all weights are 1
+     * @param otherCount   number of centroids in the run
+     */
+    private void compress(double[] otherMeans, double[] otherWeights, int otherCount) {
+        int count = centroids + otherCount;
+        double[] m = new double[count];
+        double[] w = new double[count];
+        int i1 = 0;
+        int i2 = 0;
+        double total = 0.0;
+        for (int i = 0; i < count; i++) {
+            if ((i2 == otherCount) || ((i1 < centroids) && (means[i1] <= otherMeans[i2]))) {
+                m[i] = means[i1];
+                w[i] = weights[i1];
+                i1++;
+            } else {
+                m[i] = otherMeans[i2];
+                w[i] = (otherWeights != null) ? otherWeights[i2] : 1.0;
+                i2++;
+            }
+            total += w[i];
+        }
+        if (means.length < count) {
+            means = new double[count];
+            weights = new double[count];
+        }
+        int out = 0;
+        double cumulative = 0.0;
+        double mean = m[0];
+        double weight = w[0];
+        double limit = total * limit(0.0);
+        for (int i = 1; i < count; i++) {
+            if (cumulative + weight + w[i] <= limit) {
+                weight += w[i];
+                mean += (m[i] - mean) * w[i] / weight;
+            } else {
+                means[out] = mean;
+                weights[out] = weight;
+                out++;
+                cumulative += weight;
+                limit = total * limit(cumulative / total);
+                mean = m[i];
+                weight = w[i];
+            }
+        }
+        means[out] = mean;
+        weights[out] = weight;
+        centroids = out + 1;
+        totalWeight = total;
+    }
+
+    // the largest cumulative quantile the centroid starting at q may extend to
+    private double limit(double q) {
+        double k = compression / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+        double kMax = compression / 4;
+        if (k >= kMax) {
+            return 1.0;
+        }
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+}
@@ -0,0 +1,98 @@
+package nl.bertriksikken.stofradar.trace;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Structured record of one pipeline cycle or source poll: the spans of its
+ * stages with their timings and counts, plus some attributes.<br>
+ * <br>
+ * Spans may be added from several threads, as a cycle is ingested and rendered
+ * on different threads.
+ */
+public final class CycleTrace {
+
+    @JsonProperty("name")
+    private final String name;
+
+    @JsonProperty("start")
+    private final String start;
+
+    @JsonProperty("durationMs")
+    private volatile double durationMs = Double.NaN;
+
+    // serialised through the getters, which copy them under their lock
+    private final Map<String, Object> attributes = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final List<Span> spans = Collections.synchronizedList(new ArrayList<>());
+
+    private final long startNanos;
+
+    public CycleTrace(String name) {
+        this.name = name;
+        this.start = Instant.now().toString();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Starts a new span in this trace.
+     * 
+     * @param stage the stage
+     * @param scope the source or render job the stage works on, or "all"
+     * @return the span, to be ended by the caller
+     */
+    public Span span(String stage, String scope) {
+        Span span = new Span(stage, scope, startNanos);
+        spans.add(span);
+        return span;
+    }
+
+    public void attribute(String key, Object value) {
+        attributes.put(key, value);
+    }
+
+    /**
+     * Marks the end of the trace.
+     */
+    public void finish() {
+        durationMs = (System.nanoTime() - startNanos) / 1e6;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the total duration in milliseconds, or NaN if not finished
+     */
+    public double getDurationMs() {
+        return durationMs;
+    }
+
+    @JsonProperty("attributes")
+    public Map<String, Object> getAttributes() {
+        synchronized (attributes) {
+            return new LinkedHashMap<>(attributes);
+        }
+    }
+
+    @JsonProperty("spans")
+    public List<Span> getSpans() {
+        synchronized (spans) {
+            return new ArrayList<>(spans);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "{name=%s,duration=%.0f ms,spans=%d}", name, durationMs,
+                spans.size());
+    }
+
+}
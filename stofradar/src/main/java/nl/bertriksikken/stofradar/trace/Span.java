@@ -0,0 +1,123 @@
+package nl.bertriksikken.stofradar.trace;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import nl.bertriksikken.stofradar.jfr.FlightEvents;
+import nl.bertriksikken.stofradar.jfr.StageEvent;
+import nl.bertriksikken.stofradar.metrics.StageMetrics;
+
+/**
+ * A timed stage within a trace.<br>
+ * <br>
+ * Ending a span also records the stage duration metric and commits the flight
+ * recorder event, so each stage needs only one piece of instrumentation.
+ */
+@JsonInclude(Include.NON_NULL)
+public final class Span {
+
+    @JsonProperty("stage")
+    private final String stage;
+
+    @JsonProperty("scope")
+    private final String scope;
+
+    // milliseconds since the start of the trace
+    @JsonProperty("startMs")
+    private final double startMs;
+
+    @JsonProperty("endMs")
+    private volatile Double endMs;
+
+    @JsonProperty("sensorsIn")
+    private volatile Integer sensorsIn;
+
+    @JsonProperty("sensorsOut")
+    private volatile Integer sensorsOut;
+
+    @JsonProperty("pixels")
+    private volatile Long pixels;
+
+    @JsonProperty("bytes")
+    private volatile Long bytes;
+
+    private final long traceStartNanos;
+    private final long startNanos;
+    // null without the flight recorder API
+    private final StageEvent event;
+
+    Span(String stage, String scope, long traceStartNanos) {
+        this.stage = stage;
+        this.scope = scope;
+        this.traceStartNanos = traceStartNanos;
+        this.event = FlightEvents.AVAILABLE ? StageEvent.begin(stage, scope) : null;
+        this.startNanos = System.nanoTime();
+        this.startMs = (startNanos - traceStartNanos) / 1e6;
+    }
+
+    /**
+     * Creates a span that is not part of a trace, it only records the metric and
+     * the flight recorder event.
+     */
+    public static Span untraced(String stage, String scope) {
+        return new Span(stage, scope, System.nanoTime());
+    }
+
+    public Span sensorsIn(int count) {
+        this.sensorsIn = count;
+        if (event != null) {
+            event.sensors(count);
+        }
+        return this;
+    }
+
+    public Span sensorsOut(int count) {
+        this.sensorsOut = count;
+        return this;
+    }
+
+    public Span pixels(long count) {
+        this.pixels = count;
+        if (event != null) {
+            event.pixels(count);
+        }
+        return this;
+    }
+
+    public Span bytes(long count) {
+        this.bytes = count;
+        return this;
+    }
+
+    /**
+     * Ends the span.
+     */
+    public void end() {
+        long endNanos = System.nanoTime();
+        endMs = (endNanos - traceStartNanos) / 1e6;
+        StageMetrics.duration(stage, scope).observe((endNanos - startNanos) / 1e9);
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    /**
+     * @return the duration in milliseconds, or NaN if the span has not ended
+     */
+    @JsonIgnore
+    public double getDurationMs() {
+        Double end = endMs;
+        return (end != null) ? (end - startMs) : Double.NaN;
+    }
+
+}
@@ -0,0 +1,46 @@
+package nl.bertriksikken.stofradar.trace;
+
+import java.time.Duration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public final class TraceConfig {
+
+    @JsonProperty("ringSize")
+    private int ringSize = 100;
+
+    @JsonProperty("slowCycleSec")
+    private int slowCycleSec = 120;
+
+    @JsonProperty("directory")
+    private String directory = "traces";
+
+    public TraceConfig() {
+        // jackson constructor
+    }
+
+    TraceConfig(int ringSize, int slowCycleSec, String directory) {
+        this.ringSize = ringSize;
+        this.slowCycleSec = slowCycleSec;
+        this.directory = directory;
+    }
+
+    /**
+     * @return the number of recent traces to keep in memory, 0 keeps none
+     */
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    /**
+     * @return the duration above which a trace is written to disk
+     */
+    public Duration getSlowCycle() {
+        return Duration.ofSeconds(slowCycleSec);
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+}
@@ -0,0 +1,89 @@
+package nl.bertriksikken.stofradar.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nl.bertriksikken.stofradar.output.AtomicFiles;
+
+/**
+ * Keeps the most recent traces in a ring buffer and writes slow ones to disk.
+ */
+public final class TraceRecorder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TraceRecorder.class);
+
+    private final TraceConfig config;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Deque<CycleTrace> traces = new ArrayDeque<>();
+    private int slowCount;
+
+    public TraceRecorder(TraceConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Finishes a trace and records it.
+     * 
+     * @param trace the trace
+     */
+    public void record(CycleTrace trace) {
+        if (Double.isNaN(trace.getDurationMs())) {
+            trace.finish();
+        }
+        if (config.getRingSize() > 0) {
+            synchronized (traces) {
+                if (traces.size() >= config.getRingSize()) {
+                    traces.removeFirst();
+                }
+                traces.addLast(trace);
+            }
+        }
+        if (trace.getDurationMs() > config.getSlowCycle().toMillis()) {
+            dump(trace);
+        }
+    }
+
+    private void dump(CycleTrace trace) {
+        File dir = new File(config.getDirectory());
+        if (!dir.exists() && !dir.mkdirs()) {
+            LOG.warn("Failed to create directory {}", dir.getAbsolutePath());
+        }
+        String name;
+        synchronized (this) {
+            slowCount++;
+            name = String.format(Locale.ROOT, "trace-%d-%d.json", System.currentTimeMillis(), slowCount);
+        }
+        File file = new File(dir, name);
+        LOG.warn("Slow {}, writing trace to {}", trace, file);
+        try {
+            AtomicFiles.write(file.toPath(),
+                    stream -> mapper.writerWithDefaultPrettyPrinter().writeValue(stream, trace));
+        } catch (IOException e) {
+            LOG.warn("Failed to write trace: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the recorded traces, newest first
+     */
+    public List<CycleTrace> getTraces() {
+        List<CycleTrace> list;
+        synchronized (traces) {
+            list = new ArrayList<>(traces);
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+}
@@ -0,0 +1,165 @@
+package nl.bertriksikken.stofradar.alloc;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+import javax.ws.rs.container.AsyncResponse;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+
+import nl.bertriksikken.stofradar.config.ParticulateMapperConfig;
+import nl.bertriksikken.stofradar.config.RenderJob;
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.render.ColorMapper;
+import nl.bertriksikken.stofradar.render.ColorPoint;
+import nl.bertriksikken.stofradar.render.Interpolator;
+import nl.bertriksikken.stofradar.render.InverseDistanceWeightShader;
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.render.SyntheticSensorValues;
+import nl.bertriksikken.stofradar.restapi.AirRestApi;
+import nl.bertriksikken.stofradar.restapi.AirRestApiConfig;
+import nl.bertriksikken.stofradar.restapi.RateLimiter;
+import nl.bertriksikken.stofradar.restapi.RequestExecutor;
+import nl.bertriksikken.stofradar.samenmeten.csv.SamenmetenCsvLuchtEntry;
+import nl.bertriksikken.stofradar.senscom.dto.DataPoint;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+
+/**
+ * Checks the allocation of the hot paths against the budgets in
+ * allocation-budgets.properties.<br>
+ * <br>
+ * A failure means a change allocates more per pixel, per request or per record
+ * than before. Raise a budget only together with the change that needs it.
+ */
+public final class AllocationBudgetTest {
+
+    private static final ColorPoint[] RANGE = new ColorPoint[] { new ColorPoint(0, new int[] { 0, 100, 255, 0x00 }),
+            new ColorPoint(20, new int[] { 255, 255, 200, 0xC0 }), new ColorPoint(50, new int[] { 255, 200, 0, 0xC0 }),
+            new ColorPoint(140, new int[] { 164, 58, 217, 0xC0 }) };
+
+    private static final Properties BUDGETS = new Properties();
+
+    private final RenderJob job = new ParticulateMapperConfig().getRenderJobs().get(0);
+
+    @BeforeClass
+    public static void loadBudgets() throws IOException {
+        try (InputStream is = AllocationBudgetTest.class.getClassLoader()
+                .getResourceAsStream("allocation-budgets.properties")) {
+            Assert.assertNotNull(is);
+            BUDGETS.load(is);
+        }
+    }
+
+    private static void assertWithinBudget(String name, double actual) {
+        double budget = Double.parseDouble(BUDGETS.getProperty(name));
+        String message = String.format(Locale.ROOT, "%s: allocated %.1f bytes, budget %.1f", name, actual, budget);
+        Assert.assertTrue(message, actual <= budget);
+    }
+
+    @Test
+    public void testInterpolatePerPixel() throws Exception {
+        Assume.assumeTrue(AllocationMeter.isSupported());
+        int width = 100;
+        int height = 100;
+        Interpolator interpolator = new Interpolator(job, new InverseDistanceWeightShader(job, new ColorMapper(RANGE)),
+                width, height);
+        WritableRaster raster = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB).getRaster();
+        List<SensorValue> values = SyntheticSensorValues.generate(job, 500, Instant.now());
+
+        long bytes = AllocationMeter.measure(() -> interpolator.interpolate(values, raster));
+        assertWithinBudget("interpolate.bytesPerPixel", (double) bytes / (width * height));
+    }
+
+    @Test
+    public void testColourPerCall() throws Exception {
+        Assume.assumeTrue(AllocationMeter.isSupported());
+        ColorMapper mapper = new ColorMapper(RANGE);
+        double[] values = new double[10000];
+        Random random = new Random(SyntheticSensorValues.SEED);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 200.0 * random.nextDouble();
+        }
+
+        long bytes = AllocationMeter.measure(() -> {
+            for (double value : values) {
+                mapper.getColour(value);
+            }
+        });
+        assertWithinBudget("colormapper.bytesPerCall", (double) bytes / values.length);
+    }
+
+    @Test
+    public void testGetAirPerRequest() throws Exception {
+        Assume.assumeTrue(AllocationMeter.isSupported());
+        SnapshotHolder holder = new SnapshotHolder();
+        holder.publish(Instant.now(), SyntheticSensorValues.generate(job, 2000, Instant.now()), FilterResult.EMPTY,
+                FilterResult.EMPTY);
+        AirRestApi.initialize(new AirRestApiConfig(), Duration.ofMinutes(5), holder, null, null,
+                new RateLimiter(1E12, Integer.MAX_VALUE, 1), RequestExecutor.direct());
+        AirRestApi api = new AirRestApi();
+        // computed on this thread, the response is discarded
+        AsyncResponse response = (AsyncResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { AsyncResponse.class }, (proxy, method, args) -> Boolean.TRUE);
+        int requests = 100;
+
+        long bytes = AllocationMeter.measure(() -> {
+            for (int i = 0; i < requests; i++) {
+                api.getAir("budget", 52.0 + i * 0.001, 5.0, null, response);
+            }
+        });
+        assertWithinBudget("getair.bytesPerRequest", (double) bytes / requests);
+    }
+
+    @Test
+    public void testSamenmetenPerRecord() throws Exception {
+        Assume.assumeTrue(AllocationMeter.isSupported());
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add(String.format(Locale.ROOT, "2021-12-23 19:00:00, AMF_pm%03d, BA%03d, Amersfoort, "
+                    + "{\"type\":\"Point\",\"coordinates\":[5.37537,52.20406]}, "
+                    + "8.636, 8.614, , , -99, -99, -99, , 9, 9, ",
+                    i, i));
+        }
+
+        long bytes = AllocationMeter.measure(() -> {
+            for (String line : lines) {
+                SamenmetenCsvLuchtEntry.parse(line);
+            }
+        });
+        assertWithinBudget("samenmeten.bytesPerRecord", (double) bytes / lines.size());
+    }
+
+    @Test
+    public void testDataPointPerRecord() throws Exception {
+        Assume.assumeTrue(AllocationMeter.isSupported());
+        byte[] json;
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("201806032249_data.dust.min.json")) {
+            json = ByteStreams.toByteArray(is);
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        TypeReference<List<DataPoint>> type = new TypeReference<List<DataPoint>>() {
+        };
+        int records = mapper.readValue(json, type).size();
+
+        long bytes = AllocationMeter.measure(() -> mapper.readValue(json, type));
+        assertWithinBudget("senscom.bytesPerRecord", (double) bytes / records);
+    }
+
+}
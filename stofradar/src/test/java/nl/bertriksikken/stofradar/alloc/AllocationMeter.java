@@ -0,0 +1,65 @@
+package nl.bertriksikken.stofradar.alloc;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the number of bytes allocated by the current thread.
+ */
+final class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = threadBean();
+
+    /**
+     * A unit of work to measure.
+     */
+    interface IWork {
+        void run() throws Exception;
+    }
+
+    private AllocationMeter() {
+        // utility class
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return whether this JVM can measure allocation per thread
+     */
+    static boolean isSupported() {
+        return THREAD_BEAN != null;
+    }
+
+    /**
+     * Runs the work a number of times to warm it up, then measures it a number of
+     * times and returns the lowest allocation seen, to filter out one-off
+     * allocations such as lazy initialisation.
+     * 
+     * @param work the work
+     * @return the bytes allocated by one run of the work
+     */
+    static long measure(IWork work) throws Exception {
+        for (int i = 0; i < 5; i++) {
+            work.run();
+        }
+        long lowest = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long threadId = Thread.currentThread().getId();
+            long before = THREAD_BEAN.getThreadAllocatedBytes(threadId);
+            work.run();
+            long after = THREAD_BEAN.getThreadAllocatedBytes(threadId);
+            lowest = Math.min(lowest, after - before);
+        }
+        return lowest;
+    }
+
+}
@@ -0,0 +1,159 @@
+package nl.bertriksikken.stofradar.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+public final class SensorValueJournalTest {
+
+    private static final Instant TIME = Instant.parse("2022-06-01T12:00:00Z");
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path file = Files.createTempFile("journal", ".bin");
+        Files.delete(file);
+        List<SensorValue> values = Arrays.asList(new SensorValue("1", 5.1, 52.1, 10.5, TIME),
+                new SensorValue("mjs_2", 5.2, 52.2, 3.25, TIME.plusSeconds(60)));
+        try (SensorValueJournal journal = new SensorValueJournal(file)) {
+            Assert.assertTrue(journal.restore().isEmpty());
+            journal.write(values);
+        }
+        try (SensorValueJournal journal = new SensorValueJournal(file)) {
+            Map<String, SensorValue> restored = toMap(journal.restore());
+            Assert.assertEquals(2, restored.size());
+            SensorValue value = restored.get("mjs_2");
+            Assert.assertEquals(5.2, value.x, 0.0);
+            Assert.assertEquals(52.2, value.y, 0.0);
+            Assert.assertEquals(3.25, value.value, 0.0);
+            Assert.assertEquals(TIME.plusSeconds(60), value.time);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Verifies that values of a failed write are written again by the next one.
+     */
+    @Test
+    public void testFailedWrite() throws IOException {
+        Path file = Files.createTempFile("journal", ".bin");
+        Files.delete(file);
+        List<SensorValue> values = Arrays.asList(new SensorValue("1", 5.1, 52.1, 10.5, TIME));
+        try (SensorValueJournal journal = new SensorValueJournal(file)) {
+            journal.restore();
+            // a directory in place of the file makes the write fail
+            Files.createDirectory(file);
+            try {
+                journal.write(values);
+                Assert.fail("Expected the write to fail");
+            } catch (IOException e) {
+                // expected
+            }
+            Files.delete(file);
+            journal.write(values);
+        }
+        try (SensorValueJournal journal = new SensorValueJournal(file)) {
+            Assert.assertEquals(1, journal.restore().size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testAppendsOnlyChanges() throws IOException {
+        Path file = Files.createTempFile("journal", ".bin");
+        List<SensorValue> values = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            values.add(new SensorValue(Integer.toString(i), 5.0, 52.0, i, TIME));
+        }
+        try (SensorValueJournal journal = new SensorValueJournal(file)) {
+            journal.restore();
+            journal.write(values);
+            long fullSize = Files.size(file);
+
+            // one changed, one removed
+            values.set(0, new SensorValue("0", 5.0, 52.0, 42.0, TIME.plusSeconds(300)));
+            values.remove(99);
+            journal.write(values);
+            long grown = Files.size(file) - fullSize;
+            Assert.assertTrue("appended " + grown, grown < 100);
+
+            // nothing changed, nothing written
+            journal.write(values);
+            Assert.assertEquals(fullSize + grown, Files.size(file));
+        }
+        try (SensorValueJournal journal = new SensorValueJournal(file)) {
+            Map<String, SensorValue> restored = toMap(journal.restore());
+            Assert.assertEquals(99, restored.size());
+            Assert.assertEquals(42.0, restored.get("0").value, 0.0);
+            Assert.assertNull(restored.get("99"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        Path file = Files.createTempFile("journal", ".bin");
+        try (SensorValueJournal journal = new SensorValueJournal(file)) {
+            journal.restore();
+            journal.write(Collections.singletonList(new SensorValue("1", 5.0, 52.0, 1.0, TIME)));
+        }
+        // simulate a crash in the middle of writing a record
+        Files.write(file, new byte[] { 0, 0, 0, 40, 1, 0, 1 }, StandardOpenOption.APPEND);
+        try (SensorValueJournal journal = new SensorValueJournal(file)) {
+            Assert.assertEquals(1, journal.restore().size());
+            // appending after recovery must not leave the garbage in between
+            journal.write(Arrays.asList(new SensorValue("1", 5.0, 52.0, 1.0, TIME),
+                    new SensorValue("2", 5.0, 52.0, 2.0, TIME)));
+        }
+        try (SensorValueJournal journal = new SensorValueJournal(file)) {
+            Assert.assertEquals(2, journal.restore().size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        Path file = Files.createTempFile("journal", ".bin");
+        try (SensorValueJournal journal = new SensorValueJournal(file)) {
+            journal.restore();
+            // keep rewriting the same 10 sensors until the journal gets compacted
+            for (int cycle = 0; cycle < 200; cycle++) {
+                List<SensorValue> values = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    values.add(new SensorValue(Integer.toString(i), 5.0, 52.0, cycle, TIME.plusSeconds(cycle)));
+                }
+                journal.write(values);
+            }
+            Assert.assertTrue(Files.size(file) < 1100 * 60);
+        }
+        try (SensorValueJournal journal = new SensorValueJournal(file)) {
+            List<SensorValue> restored = journal.restore();
+            Assert.assertEquals(10, restored.size());
+            Assert.assertEquals(199.0, restored.get(0).value, 0.0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Map<String, SensorValue> toMap(List<SensorValue> values) {
+        return values.stream().collect(Collectors.toMap(v -> v.id, Function.identity()));
+    }
+
+}
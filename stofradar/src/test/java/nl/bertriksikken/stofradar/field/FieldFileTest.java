@@ -0,0 +1,85 @@
+package nl.bertriksikken.stofradar.field;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class FieldFileTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    // 2x2 pixels of 1x1 degree, centres at 4.5/5.5 east and 52.5/51.5 north
+    private FieldFile write(String name, long generation, float[] values) throws IOException {
+        Path path = tempFolder.getRoot().toPath().resolve(name);
+        FieldFile.write(path, 4.0, 51.0, 6.0, 53.0, 2, 2, generation, Instant.ofEpochSecond(1000), values);
+        return FieldFile.map(path);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        FieldFile field = write("test.field", 7, new float[] { 1, 2, 3, 4 });
+        Assert.assertEquals(2, field.getWidth());
+        Assert.assertEquals(2, field.getHeight());
+        Assert.assertEquals(7, field.getGeneration());
+        Assert.assertEquals(Instant.ofEpochSecond(1000), field.getTime());
+
+        // pixel centres, from the north-west
+        Assert.assertEquals(1.0, field.valueAt(52.5, 4.5), 1E-6);
+        Assert.assertEquals(2.0, field.valueAt(52.5, 5.5), 1E-6);
+        Assert.assertEquals(3.0, field.valueAt(51.5, 4.5), 1E-6);
+        Assert.assertEquals(4.0, field.valueAt(51.5, 5.5), 1E-6);
+        // bilinear in between, constant towards the edges
+        Assert.assertEquals(2.5, field.valueAt(52.0, 5.0), 1E-6);
+        Assert.assertEquals(1.5, field.valueAt(53.0, 5.0), 1E-6);
+        Assert.assertEquals(1.0, field.valueAt(53.0, 4.0), 1E-6);
+
+        Assert.assertTrue(field.contains(52.0, 5.0));
+        Assert.assertFalse(field.contains(50.0, 5.0));
+    }
+
+    @Test
+    public void testNaN() throws IOException {
+        FieldFile field = write("test.field", 1, new float[] { 1, Float.NaN, Float.NaN, Float.NaN });
+        Assert.assertEquals(1.0, field.valueAt(52.0, 5.0), 1E-6);
+        Assert.assertTrue(Double.isNaN(field.valueAt(51.5, 5.5)));
+    }
+
+    /**
+     * Verifies that a mapped field stays valid when its file is replaced.
+     */
+    @Test
+    public void testReplace() throws IOException {
+        FieldFile first = write("test.field", 1, new float[] { 1, 1, 1, 1 });
+        FieldFile second = write("test.field", 2, new float[] { 2, 2, 2, 2 });
+        Assert.assertEquals(1.0, first.valueAt(52.0, 5.0), 1E-6);
+        Assert.assertEquals(2.0, second.valueAt(52.0, 5.0), 1E-6);
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws IOException {
+        Path path = tempFolder.getRoot().toPath().resolve("invalid.field");
+        Files.write(path, new byte[100]);
+        FieldFile.map(path);
+    }
+
+    @Test
+    public void testStore() throws IOException {
+        FieldStore store = new FieldStore();
+        FieldFile field = write("a.field", 3, new float[] { 1, 2, 3, 4 });
+        store.publish("a", field);
+        Instant time = Instant.ofEpochSecond(1000);
+        Assert.assertSame(field, store.find(3, time, 52.0, 5.0));
+        Assert.assertNull(store.find(4, time, 52.0, 5.0));
+        Assert.assertNull(store.find(3, time, 50.0, 5.0));
+        // the same generation of a restarted pipeline
+        Assert.assertNull(store.find(3, Instant.ofEpochSecond(2000), 52.0, 5.0));
+    }
+
+}
@@ -0,0 +1,63 @@
+package nl.bertriksikken.stofradar.filter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+public final class FilterPipelineTest {
+
+    @Test
+    public void testPercentileKeepsSameCountAsSorting() {
+        Random random = new Random(1);
+        List<SensorValue> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            // coarse values, to get plenty of ties around the cut-off
+            double v = Math.round(random.nextGaussian() * 3);
+            values.add(new SensorValue(Integer.toString(i), 5.0, 52.0, v, Instant.now()));
+        }
+        FilterPipeline pipeline = new FilterPipeline(Collections.singletonList(new PercentileFilter(0.01)));
+        FilterResult result = pipeline.apply(values);
+
+        List<SensorValue> sorted = new ArrayList<>(values);
+        Collections.sort(sorted, (v1, v2) -> Double.compare(v1.value, v2.value));
+        List<SensorValue> expected = sorted.subList(0, 990);
+        Assert.assertEquals(990, result.getValues().size());
+        Assert.assertEquals(10, result.getDropCounts().get("percentile").intValue());
+        double max = expected.get(expected.size() - 1).value;
+        Assert.assertTrue(result.getValues().stream().allMatch(v -> v.value <= max));
+    }
+
+    @Test
+    public void testStagesAndJobs() {
+        Instant now = Instant.now();
+        List<SensorValue> values = Arrays.asList(new SensorValue("1", 5.0, 52.0, 10.0, now),
+                new SensorValue("2", 5.0, 52.0, -1.0, now), new SensorValue("11697", 5.0, 52.0, 10.0, now),
+                new SensorValue("3", 5.0, 52.0, 10.0, now.minusSeconds(3600)),
+                new SensorValue("4", 9.0, 52.0, 10.0, now));
+        FilterPipeline pipeline = new FilterPipeline(
+                Arrays.asList(new ValueFilter(), new SensorIdFilter(Collections.singletonList("11697"))));
+        pipeline.addJob("recent", Collections.singletonList(new TimeFilter(now.minusSeconds(600))));
+        pipeline.addJob("all", Collections.emptyList());
+        FilterResult result = pipeline.apply(values);
+
+        Assert.assertEquals(5, result.getInputCount());
+        Assert.assertEquals(Arrays.asList("1", "3", "4"),
+                result.getValues().stream().map(v -> v.id).collect(Collectors.toList()));
+        Assert.assertEquals(1, result.getDropCounts().get("sensor value").intValue());
+        Assert.assertEquals(1, result.getDropCounts().get("sensor id").intValue());
+        Assert.assertEquals(2, result.getJobValues("recent").size());
+        Assert.assertEquals(1, result.getJobDropCounts("recent").get("time").intValue());
+        Assert.assertEquals(3, result.getJobValues("all").size());
+        Assert.assertTrue(result.getJobValues("unknown").isEmpty());
+    }
+
+}
@@ -0,0 +1,91 @@
+package nl.bertriksikken.stofradar.history;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+public final class HistoryStoreTest {
+
+    @Test
+    public void testAppendAndQuery() throws IOException {
+        Path dir = Files.createTempDirectory("history");
+        HistoryStore store = new HistoryStore(new HistoryConfig(dir.toString(), 31));
+        Instant now = Instant.now();
+        Instant t0 = now.minusSeconds(3600);
+
+        // two nearby sensors and one far away
+        store.append(t0, Arrays.asList(new SensorValue("near1", 5.0, 52.0, 10.0, t0),
+                new SensorValue("near2", 5.001, 52.001, 20.0, t0), new SensorValue("far", 6.0, 53.0, 99.0, t0)));
+        // a repeated reading with the same time is stored only once
+        Instant t1 = t0.plusSeconds(300);
+        store.append(t1, Arrays.asList(new SensorValue("near1", 5.0, 52.0, 10.0, t0),
+                new SensorValue("near2", 5.001, 52.001, 30.0, t1)));
+
+        List<HistoryPoint> points = store.query(52.0, 5.0, 1.0, t0, now, Duration.ofMinutes(5));
+        Assert.assertEquals(2, points.size());
+        // exactly on top of a sensor, its value is used
+        Assert.assertEquals(10.0, points.get(0).getValue(), 0.01);
+        Assert.assertEquals(2, points.get(0).getSensors());
+        Assert.assertEquals(30.0, points.get(1).getValue(), 0.01);
+        Assert.assertEquals(1, points.get(1).getSensors());
+
+        // in between, weighted
+        List<HistoryPoint> between = store.query(52.0005, 5.0005, 1.0, t0, t1, Duration.ofMinutes(5));
+        Assert.assertEquals(1, between.size());
+        Assert.assertEquals(15.0, between.get(0).getValue(), 0.1);
+
+        // nothing nearby
+        Assert.assertTrue(store.query(51.0, 4.0, 1.0, t0, now, Duration.ofMinutes(5)).isEmpty());
+
+        delete(dir);
+    }
+
+    /**
+     * Verifies that a torn block is cut off, and that readings stored before a
+     * restart are not stored again.
+     */
+    @Test
+    public void testRestart() throws IOException {
+        Path dir = Files.createTempDirectory("history");
+        Instant now = Instant.now();
+        Instant t0 = now.minusSeconds(600);
+        Instant t1 = now.minusSeconds(300);
+        SensorValue first = new SensorValue("a", 5.0, 52.0, 10.0, t0);
+        new HistoryStore(new HistoryConfig(dir.toString(), 31)).append(t0, Arrays.asList(first));
+
+        // a crash while appending the next block
+        Path partition;
+        try (Stream<Path> files = Files.list(dir)) {
+            partition = files.findFirst().get();
+        }
+        Files.write(partition, new byte[] { 0x48, 0x42, 0x4C, 0x4B, 0, 0, 1, 0 }, StandardOpenOption.APPEND);
+
+        HistoryStore store = new HistoryStore(new HistoryConfig(dir.toString(), 31));
+        store.append(t1, Arrays.asList(first, new SensorValue("a", 5.0, 52.0, 20.0, t1)));
+        List<HistoryPoint> points = store.query(52.0, 5.0, 1.0, t0, now, Duration.ofMinutes(5));
+        Assert.assertEquals(2, points.size());
+        Assert.assertEquals(1, points.get(0).getSensors());
+        Assert.assertEquals(20.0, points.get(1).getValue(), 0.01);
+
+        delete(dir);
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(p -> p.toFile().delete());
+        }
+        Files.delete(dir);
+    }
+
+}
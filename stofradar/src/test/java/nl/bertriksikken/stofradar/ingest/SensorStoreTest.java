@@ -0,0 +1,70 @@
+package nl.bertriksikken.stofradar.ingest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+public final class SensorStoreTest {
+
+    private static final Instant TIME = Instant.parse("2022-06-01T12:00:00Z");
+
+    @Test
+    public void testUpdateCountsChanges() {
+        SensorStore store = new SensorStore();
+        AtomicInteger events = new AtomicInteger();
+        store.addListener((source, changed) -> events.addAndGet(changed));
+
+        Assert.assertEquals(2, store.update("a", Arrays.asList(new SensorValue("1", 5.0, 52.0, 10.0, TIME),
+                new SensorValue("2", 5.0, 52.0, 10.0, TIME))));
+        // same time is not a change, an older value is ignored, a newer one replaces
+        Assert.assertEquals(1, store.update("a", Arrays.asList(new SensorValue("1", 5.0, 52.0, 11.0, TIME),
+                new SensorValue("2", 5.0, 52.0, 12.0, TIME.minusSeconds(60)),
+                new SensorValue("2", 5.0, 52.0, 13.0, TIME.plusSeconds(60)))));
+        Assert.assertEquals(3, events.get());
+        Assert.assertEquals(0, store.update("a", Collections.emptyList()));
+        Assert.assertEquals(3, events.get());
+
+        Assert.assertEquals(1, store.expire(TIME.plusSeconds(1)));
+        Assert.assertEquals(13.0, store.getValues().get(0).value, 0.0);
+    }
+
+    @Test
+    public void testRenderTriggerDebounce() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicInteger count = new AtomicInteger();
+        RenderTrigger trigger = new RenderTrigger(10, Duration.ofMillis(100), () -> {
+            count.incrementAndGet();
+            fired.countDown();
+        });
+
+        // below the threshold nothing happens
+        trigger.onChange("a", 5);
+        Thread.sleep(200);
+        Assert.assertEquals(0, count.get());
+
+        // a burst of changes results in a single render
+        trigger.onChange("a", 5);
+        trigger.onChange("b", 20);
+        Assert.assertTrue(fired.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        Assert.assertEquals(1, count.get());
+        Assert.assertEquals(0, trigger.getPending());
+
+        // a reset drops pending changes
+        trigger.onChange("a", 20);
+        trigger.reset();
+        Thread.sleep(200);
+        Assert.assertEquals(1, count.get());
+        trigger.stop();
+    }
+
+}
@@ -0,0 +1,54 @@
+package nl.bertriksikken.stofradar.jfr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public final class FlightRecorderServiceTest {
+
+    @Test
+    public void testRecordStageEvents() throws IOException, InterruptedException {
+        FlightRecorderService service = new FlightRecorderService();
+        Thread producer = new Thread(() -> {
+            // keep producing events while the recording runs
+            for (int i = 0; i < 20; i++) {
+                StageEvent.begin("interpolate", "test").sensors(10).pixels(100).commit();
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        producer.start();
+        Path file = service.record(Duration.ofSeconds(1));
+        producer.join();
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals("stofradar.Stage")).collect(Collectors.toList());
+            Assert.assertFalse(events.isEmpty());
+            RecordedEvent event = events.get(0);
+            Assert.assertEquals("interpolate", event.getString("stage"));
+            Assert.assertEquals("test", event.getString("scope"));
+            Assert.assertEquals(10, event.getInt("sensorCount"));
+            Assert.assertEquals(100, event.getLong("pixelCount"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLong() throws IOException, InterruptedException {
+        new FlightRecorderService().record(FlightRecorderService.MAX_DURATION.plusSeconds(1));
+    }
+
+}
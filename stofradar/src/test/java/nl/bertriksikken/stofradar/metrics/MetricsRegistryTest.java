@@ -0,0 +1,48 @@
+package nl.bertriksikken.stofradar.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class MetricsRegistryTest {
+
+    @Test
+    public void testPrometheusFormat() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("requests_total", "Requests", "endpoint", "air").add(3);
+        registry.gauge("values", "Values", "source", "a \"quoted\"").set(2.5);
+        Histogram histogram = registry.histogram("latency_seconds", "Latency", new double[] { 0.1, 1.0 });
+        histogram.observe(0.05);
+        histogram.observe(0.1);
+        histogram.observe(0.5);
+        histogram.observe(2.0);
+
+        StringWriter writer = new StringWriter();
+        registry.write(writer);
+        String expected = "# HELP latency_seconds Latency\n" + "# TYPE latency_seconds histogram\n"
+                + "latency_seconds_bucket{le=\"0.1\"} 2\n" + "latency_seconds_bucket{le=\"1\"} 3\n"
+                + "latency_seconds_bucket{le=\"+Inf\"} 4\n" + "latency_seconds_sum 2.65\n"
+                + "latency_seconds_count 4\n" + "# HELP requests_total Requests\n" + "# TYPE requests_total counter\n"
+                + "requests_total{endpoint=\"air\"} 3\n" + "# HELP values Values\n" + "# TYPE values gauge\n"
+                + "values{source=\"a \\\"quoted\\\"\"} 2.5\n";
+        Assert.assertEquals(expected, writer.toString());
+    }
+
+    @Test
+    public void testSameMetricIsShared() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("count_total", "Count", "a", "1");
+        Assert.assertSame(counter, registry.counter("count_total", "Count", "a", "1"));
+        Assert.assertNotSame(counter, registry.counter("count_total", "Count", "a", "2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeConflict() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("metric", "Metric");
+        registry.gauge("metric", "Metric");
+    }
+
+}
@@ -0,0 +1,76 @@
+package nl.bertriksikken.stofradar.output;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class SideOutputStageTest {
+
+    @Test
+    public void testOrderAndBackpressure() throws InterruptedException {
+        SideOutputStage stage = new SideOutputStage(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> done = Collections.synchronizedList(new ArrayList<>());
+
+        // first task blocks the I/O thread, second fills the queue
+        stage.submit("block", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.add(0);
+        });
+        stage.submit("one", () -> done.add(1));
+
+        // third submit has to wait for room in the queue
+        Thread submitter = new Thread(() -> stage.submit("two", () -> done.add(2)));
+        submitter.start();
+        submitter.join(200);
+        Assert.assertTrue(submitter.isAlive());
+
+        release.countDown();
+        submitter.join(5000);
+        Assert.assertFalse(submitter.isAlive());
+        stage.stop(5000);
+        Assert.assertEquals(Arrays.asList(0, 1, 2), done);
+    }
+
+    @Test
+    public void testFailureDoesNotStopStage() throws InterruptedException {
+        SideOutputStage stage = new SideOutputStage(4);
+        CountDownLatch latch = new CountDownLatch(1);
+        stage.submit("fail", () -> {
+            throw new IOException("disk full");
+        });
+        stage.submit("next", latch::countDown);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        stage.stop(5000);
+    }
+
+    @Test
+    public void testAtomicWriteAndLink() throws IOException {
+        Path dir = Files.createTempDirectory("output");
+        Path target = dir.resolve("file.csv");
+        AtomicFiles.write(target, stream -> stream.write("first".getBytes(StandardCharsets.US_ASCII)));
+        Path link = dir.resolve("link.csv");
+        AtomicFiles.link(target, link);
+
+        // replacing the target leaves the linked content alone
+        AtomicFiles.write(target, stream -> stream.write("second".getBytes(StandardCharsets.US_ASCII)));
+        Assert.assertEquals("second", new String(Files.readAllBytes(target), StandardCharsets.US_ASCII));
+        Assert.assertEquals("first", new String(Files.readAllBytes(link), StandardCharsets.US_ASCII));
+        Assert.assertFalse(Files.exists(AtomicFiles.tempFileFor(target)));
+    }
+
+}
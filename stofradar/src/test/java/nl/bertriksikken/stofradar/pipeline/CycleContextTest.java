@@ -0,0 +1,30 @@
+package nl.bertriksikken.stofradar.pipeline;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class CycleContextTest {
+
+    /**
+     * Verifies that the deadline is checked against the clock of the context,
+     * not the wall clock.
+     */
+    @Test
+    public void testClock() {
+        Instant slot = Instant.parse("2018-06-03T22:45:00Z");
+        Instant deadline = slot.plusSeconds(240);
+
+        CycleContext context = new CycleContext(slot, deadline, Clock.fixed(slot, ZoneOffset.UTC));
+        Assert.assertFalse(context.isExpired());
+        Assert.assertEquals(Duration.ofSeconds(240), context.getRemaining());
+
+        context = new CycleContext(slot, deadline, Clock.fixed(deadline, ZoneOffset.UTC));
+        Assert.assertTrue(context.isExpired());
+    }
+
+}
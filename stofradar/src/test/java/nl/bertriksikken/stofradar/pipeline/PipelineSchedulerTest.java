@@ -0,0 +1,128 @@
+package nl.bertriksikken.stofradar.pipeline;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class PipelineSchedulerTest {
+
+    // slots of one minute, with a deadline that never expires during the test
+    private static final PipelineConfig CONFIG = new PipelineConfig(60, 3600, 0, 2);
+
+    private static Instant slot(int index) {
+        long now = System.currentTimeMillis();
+        return Instant.ofEpochMilli(now - (now % 60_000L)).plusSeconds(60L * index);
+    }
+
+    @Test
+    public void testSkipStaleSlot() {
+        PipelineConfig config = new PipelineConfig(60, 30, 0, 0);
+        PipelineScheduler<Integer> scheduler = new PipelineScheduler<>(config, context -> 1, (context, value) -> {
+        });
+        Assert.assertFalse(scheduler.trigger(slot(1).plusSeconds(31), true));
+        Assert.assertEquals(1, scheduler.getStats().getSkippedCycles());
+        Assert.assertEquals(31_000, scheduler.getStats().getLastLatenessMs());
+        scheduler.stop();
+    }
+
+    @Test
+    public void testSkipWhileIngesting() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch rendered = new CountDownLatch(1);
+        PipelineScheduler<Integer> scheduler = new PipelineScheduler<>(CONFIG, context -> {
+            release.await();
+            return 1;
+        }, (context, value) -> rendered.countDown());
+
+        Assert.assertTrue(scheduler.trigger(slot(1), true));
+        Assert.assertFalse(scheduler.trigger(slot(2), true));
+        // the same slot is never started twice
+        Assert.assertFalse(scheduler.trigger(slot(2), true));
+        release.countDown();
+        Assert.assertTrue(rendered.await(5, TimeUnit.SECONDS));
+
+        PipelineStats stats = scheduler.getStats();
+        Assert.assertEquals(1, stats.getCycles());
+        Assert.assertEquals(1, stats.getSkippedCycles());
+        scheduler.stop();
+    }
+
+    @Test
+    public void testLatestRenderWins() throws InterruptedException {
+        CountDownLatch renderBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicInteger counter = new AtomicInteger();
+        List<Integer> rendered = Collections.synchronizedList(new ArrayList<>());
+        PipelineScheduler<Integer> scheduler = new PipelineScheduler<>(CONFIG, context -> counter.incrementAndGet(),
+                (context, value) -> {
+                    renderBlocked.countDown();
+                    release.await();
+                    rendered.add(value);
+                    done.countDown();
+                });
+
+        // first render blocks, meanwhile two more cycles are ingested
+        Assert.assertTrue(scheduler.trigger(slot(1), true));
+        Assert.assertTrue(renderBlocked.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(triggerWhenIdle(scheduler, slot(2)));
+        Assert.assertTrue(triggerWhenIdle(scheduler, slot(3)));
+        waitForIngest(counter, 3);
+        release.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Arrays.asList(1, 3), rendered);
+        Assert.assertEquals(1, scheduler.getStats().getSupersededRenders());
+        scheduler.stop();
+    }
+
+    @Test
+    public void testRetryWithinDeadline() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch rendered = new CountDownLatch(1);
+        PipelineScheduler<Integer> scheduler = new PipelineScheduler<>(CONFIG, context -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IOException("download failed");
+            }
+            return 1;
+        }, (context, value) -> rendered.countDown());
+
+        Assert.assertTrue(scheduler.trigger(slot(1), true));
+        Assert.assertTrue(rendered.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(3, attempts.get());
+        Assert.assertEquals(0, scheduler.getStats().getFailedCycles());
+        scheduler.stop();
+    }
+
+    private static boolean triggerWhenIdle(PipelineScheduler<Integer> scheduler, Instant slot)
+            throws InterruptedException {
+        // the previous ingest may not have released the slot yet
+        for (int i = 0; i < 100; i++) {
+            long skipped = scheduler.getStats().getSkippedCycles();
+            if (scheduler.trigger(slot, false)) {
+                return true;
+            }
+            Assert.assertEquals(skipped + 1, scheduler.getStats().getSkippedCycles());
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private static void waitForIngest(AtomicInteger counter, int count) throws InterruptedException {
+        for (int i = 0; (i < 100) && (counter.get() < count); i++) {
+            Thread.sleep(10);
+        }
+        // give the last ingest time to hand off its product
+        Thread.sleep(50);
+    }
+
+}
@@ -0,0 +1,72 @@
+package nl.bertriksikken.stofradar.render;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.config.ParticulateMapperConfig;
+import nl.bertriksikken.stofradar.config.RenderJob;
+import nl.bertriksikken.stofradar.stats.Quantiles;
+
+public final class MedianShaderTest {
+
+    private static final ColorPoint[] RANGE = new ColorPoint[] { new ColorPoint(0, new int[] { 0, 100, 255, 0x00 }),
+            new ColorPoint(20, new int[] { 255, 255, 200, 0xC0 }), new ColorPoint(50, new int[] { 255, 200, 0, 0xC0 }),
+            new ColorPoint(140, new int[] { 164, 58, 217, 0xC0 }) };
+
+    /**
+     * Verifies that the sensors found through the index give the same colours as
+     * looking at all sensors, with a transparent, an opaque and a median pixel.
+     */
+    @Test
+    public void testSameAsAllSensors() {
+        RenderJob job = new ParticulateMapperConfig().getRenderJobs().get(0);
+        ColorMapper mapper = new ColorMapper(RANGE);
+        MedianShader shader = new MedianShader(job, mapper);
+        List<SensorValue> values = SyntheticSensorValues.generate(job, 200, Instant.now());
+
+        double kmPerDegreeLon = 40075.0 / 360.0 * Math.cos(Math.toRadians((job.getNorth() + job.getSouth()) / 2));
+        double kmPerDegreeLat = 40075.0 / 360.0;
+        int[] counts = new int[3];
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 40; y++) {
+                double lon = job.getWest() + (0.5 + x) * (job.getEast() - job.getWest()) / 40;
+                double lat = job.getNorth() - (0.5 + y) * (job.getNorth() - job.getSouth()) / 40;
+
+                List<SensorValue> near = new ArrayList<>();
+                SensorValue closest = null;
+                double closestDistance = Double.MAX_VALUE;
+                for (SensorValue value : values) {
+                    double dx = (value.x - lon) * kmPerDegreeLon;
+                    double dy = (value.y - lat) * kmPerDegreeLat;
+                    double distance = Math.sqrt((dx * dx) + (dy * dy));
+                    if (distance < job.getOuterRadius()) {
+                        near.add(value);
+                        if (distance < closestDistance) {
+                            closestDistance = distance;
+                            closest = value;
+                        }
+                    }
+                }
+                int[] expected;
+                if (near.isEmpty()) {
+                    expected = new int[] { 0, 0, 0, 0 };
+                    counts[0]++;
+                } else if (closestDistance < job.getInnerRadius()) {
+                    expected = mapper.getColour(closest.value).clone();
+                    expected[3] = 255;
+                    counts[1]++;
+                } else {
+                    expected = mapper.getColour(Quantiles.median(Quantiles.toArray(near)));
+                    counts[2]++;
+                }
+                Assert.assertArrayEquals(expected, shader.calculatePixel(values, new Coord(lon, lat)));
+            }
+        }
+        Assert.assertTrue((counts[1] > 0) && (counts[2] > 0));
+    }
+
+}
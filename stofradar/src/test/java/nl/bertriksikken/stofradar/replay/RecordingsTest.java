@@ -0,0 +1,55 @@
+package nl.bertriksikken.stofradar.replay;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class RecordingsTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testKey() {
+        Assert.assertEquals("data.sensor.community_static_v2_data.json",
+                Recordings.keyOf("data.sensor.community", "/static/v2/data.json"));
+    }
+
+    @Test
+    public void testReplayInOrder() throws IOException {
+        Recordings recordings = new Recordings(tempFolder.getRoot().toPath());
+        // saved out of order
+        recordings.save("key", Instant.ofEpochSecond(2000), "second".getBytes(StandardCharsets.UTF_8));
+        recordings.save("key", Instant.ofEpochSecond(1000), "first".getBytes(StandardCharsets.UTF_8));
+
+        Recordings.Recording recording = recordings.next("key");
+        Assert.assertEquals(Instant.ofEpochSecond(1000), recording.getTime());
+        Assert.assertEquals("first", new String(recording.getPayload(), StandardCharsets.UTF_8));
+        recording = recordings.next("key");
+        Assert.assertEquals("second", new String(recording.getPayload(), StandardCharsets.UTF_8));
+
+        // starts over after the last one
+        recording = recordings.next("key");
+        Assert.assertEquals("first", new String(recording.getPayload(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNotRecorded() throws IOException {
+        Recordings recordings = new Recordings(tempFolder.getRoot().toPath());
+        Assert.assertNull(recordings.next("unknown"));
+    }
+
+    @Test
+    public void testClockOnlyMovesForward() {
+        ReplayClock clock = new ReplayClock(Instant.EPOCH);
+        clock.advanceTo(Instant.ofEpochSecond(2000));
+        clock.advanceTo(Instant.ofEpochSecond(1000));
+        Assert.assertEquals(Instant.ofEpochSecond(2000), clock.instant());
+    }
+
+}
@@ -0,0 +1,32 @@
+package nl.bertriksikken.stofradar.replay;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class ReplayClockTest {
+
+    /**
+     * Verifies that a clock in another zone moves along with the original one.
+     */
+    @Test
+    public void testWithZone() {
+        ReplayClock clock = new ReplayClock(Instant.parse("2021-12-23T19:00:00Z"));
+        ZoneId amsterdam = ZoneId.of("Europe/Amsterdam");
+        ReplayClock local = clock.withZone(amsterdam);
+        Assert.assertEquals(ZoneOffset.UTC, clock.getZone());
+        Assert.assertEquals(amsterdam, local.getZone());
+        Assert.assertEquals(LocalDateTime.parse("2021-12-23T20:00:00"), LocalDateTime.now(local));
+
+        clock.advanceTo(Instant.parse("2021-12-23T19:05:00Z"));
+        Assert.assertEquals(Instant.parse("2021-12-23T19:05:00Z"), local.instant());
+        local.advanceTo(Instant.parse("2021-12-23T19:10:00Z"));
+        Assert.assertEquals(Instant.parse("2021-12-23T19:10:00Z"), clock.instant());
+        Assert.assertSame(clock, clock.withZone(ZoneOffset.UTC));
+    }
+
+}
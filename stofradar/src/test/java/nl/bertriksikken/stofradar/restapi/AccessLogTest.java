@@ -0,0 +1,36 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class AccessLogTest {
+
+    @Test
+    public void testSample() {
+        AccessLog never = new AccessLog(0.0, 10);
+        Assert.assertFalse(never.sample(200));
+        Assert.assertFalse(never.sample(429));
+        Assert.assertTrue(never.sample(500));
+        Assert.assertTrue(never.sample(503));
+
+        AccessLog always = new AccessLog(1.0, 10);
+        Assert.assertTrue(always.sample(200));
+    }
+
+    /**
+     * Verifies that lines are dropped instead of waited for when the buffer is
+     * full.
+     */
+    @Test
+    public void testFull() {
+        // not started, so nothing is taken from the buffer
+        AccessLog log = new AccessLog(1.0, 2);
+        AccessLog.Entry entry = new AccessLog.Entry("GET", "air/52/5", 200, 1000000, "10.0.0.1", "test");
+        Assert.assertTrue(log.offer(entry));
+        Assert.assertTrue(log.offer(entry));
+        Assert.assertFalse(log.offer(entry));
+        Assert.assertEquals(2, log.pending());
+        Assert.assertEquals("GET air/52/5 200 1.0 ms 10.0.0.1 'test'", entry.toString());
+    }
+
+}
@@ -0,0 +1,77 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.restapi.AirBatchRequest.Point;
+
+public final class AirBatchRequestTest {
+
+    private static byte[] json(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Verifies that the listed points come first, followed by those of the
+     * polyline.
+     */
+    @Test
+    public void testParse() {
+        List<Point> points = AirBatchRequest
+                .parse(json("{\"polyline\":\"_p~iF~ps|U\",\"points\":[{\"lat\":52.1,\"lon\":5.2}]}"), 10)
+                .getPoints();
+        Assert.assertEquals(2, points.size());
+        Assert.assertEquals(52.1, points.get(0).getLatitude(), 1E-9);
+        Assert.assertEquals(5.2, points.get(0).getLongitude(), 1E-9);
+        Assert.assertEquals(38.5, points.get(1).getLatitude(), 1E-9);
+        Assert.assertEquals(-120.2, points.get(1).getLongitude(), 1E-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyPoints() {
+        AirBatchRequest.parse(json("{\"points\":[{\"lat\":52,\"lon\":5},{\"lat\":52,\"lon\":5}]}"), 1);
+    }
+
+    /**
+     * Verifies that the points of the list and of the polyline count together.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyPointsWithPolyline() {
+        AirBatchRequest.parse(json("{\"points\":[{\"lat\":52,\"lon\":5}],\"polyline\":\"_p~iF~ps|U\"}"), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLocation() {
+        AirBatchRequest.parse(json("{\"points\":[{\"lat\":91,\"lon\":5}]}"), 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformed() {
+        AirBatchRequest.parse(json("{\"points\":[{\"lat\":\"north\"}]}"), 10);
+    }
+
+    /**
+     * Verifies that a point without a coordinate is rejected, not taken as 0.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingCoordinate() {
+        AirBatchRequest.parse(json("{\"points\":[{\"lat\":52}]}"), 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullCoordinate() {
+        AirBatchRequest.parse(json("{\"points\":[{\"lat\":52,\"lon\":null}]}"), 10);
+    }
+
+    @Test
+    public void testReadJson() throws Exception {
+        byte[] json = json("{\"points\":[]}");
+        Assert.assertArrayEquals(json, AirBatchRequest.readJson(new ByteArrayInputStream(json), json.length));
+        Assert.assertNull(AirBatchRequest.readJson(new ByteArrayInputStream(json), json.length - 1));
+    }
+
+}
@@ -0,0 +1,106 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.restapi.AirBatchRequest.Point;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+import nl.bertriksikken.stofradar.spatial.SpatialIndex;
+
+public final class AirBatchTest {
+
+    /**
+     * Verifies that a batch gives the same estimates as single points, with
+     * fewer searches for points along a route.
+     */
+    @Test
+    public void testSameAsSinglePoints() throws Exception {
+        Random random = new Random(1);
+        List<SensorValue> values = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double x = 4.0 + 2.0 * random.nextDouble();
+            double y = 51.5 + 1.5 * random.nextDouble();
+            values.add(new SensorValue("s" + i, x, y, 20.0 * random.nextDouble(), Instant.now()));
+        }
+        SpatialIndex index = new SpatialIndex(values, 0.02);
+
+        // a route with waypoints about 100 m apart, and a jump
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            points.add(new Point(52.0 + i * 0.0007, 5.0 + i * 0.0007));
+        }
+        points.add(new Point(51.6, 4.1));
+
+        List<Double> results = new ArrayList<>();
+        AirBatch batch = new AirBatch(index, 1.0);
+        batch.evaluate(points, (point, value) -> results.add(value));
+
+        Assert.assertEquals(points.size(), results.size());
+        for (int i = 0; i < points.size(); i++) {
+            Point point = points.get(i);
+            double expected = new IdwEstimate(point.getLatitude(), point.getLongitude(), 1.0).collect(index)
+                    .getValue();
+            Assert.assertEquals(expected, results.get(i), 1E-9);
+        }
+        Assert.assertTrue(batch.getSearches() < points.size() / 10);
+    }
+
+    /**
+     * Verifies that a batch looked up through a result cache gives what /air
+     * gives for the same points, which are calculated for the centres of the
+     * cells of the cache.
+     */
+    @Test
+    public void testSameAsAirWithCache() throws Exception {
+        // dense around the route, so some sensors are only near the centre of a cell
+        Random random = new Random(2);
+        List<SensorValue> values = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            double x = 4.95 + 0.45 * random.nextDouble();
+            double y = 51.95 + 0.45 * random.nextDouble();
+            values.add(new SensorValue("s" + i, x, y, 20.0 * random.nextDouble(), Instant.now()));
+        }
+        SensorSnapshot snapshot = new SnapshotHolder().publish(Instant.now(), values, FilterResult.EMPTY,
+                FilterResult.EMPTY);
+        // small cells, so the search box is tight around the points
+        SpatialIndex index = new SpatialIndex(values, 0.001);
+
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            points.add(new Point(52.0 + i * 0.0007, 5.0 + i * 0.0007));
+        }
+
+        AirResultCache batchCache = new AirResultCache(500, 100);
+        List<Double> results = new ArrayList<>();
+        AirBatch batch = new AirBatch(index, 1.0, batchCache.getMaxOffset(),
+                (lat, lon, calculation) -> batchCache.get(snapshot, lat, lon, calculation));
+        batch.evaluate(points, (point, value) -> results.add(value));
+
+        AirResultCache airCache = new AirResultCache(500, 100);
+        for (int i = 0; i < points.size(); i++) {
+            Point point = points.get(i);
+            double expected = airCache.get(snapshot, point.getLatitude(), point.getLongitude(),
+                    (lat, lon) -> new IdwEstimate(lat, lon, 1.0).collect(index).getValue());
+            Assert.assertEquals(expected, results.get(i), 1E-9);
+        }
+    }
+
+    @Test
+    public void testNoSensors() throws Exception {
+        SpatialIndex index = new SpatialIndex(new ArrayList<>(), 0.02);
+        List<Double> results = new ArrayList<>();
+        List<Point> points = new ArrayList<>();
+        points.add(new Point(52.0, 5.0));
+        new AirBatch(index, 1.0).evaluate(points, (point, value) -> results.add(value));
+        Assert.assertTrue(Double.isNaN(results.get(0)));
+    }
+
+}
@@ -0,0 +1,49 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.spatial.SpatialIndex;
+
+public final class AirFieldTest {
+
+    /**
+     * Verifies that the field has the /air estimates at the centres of the
+     * pixels.
+     */
+    @Test
+    public void testSameAsAir() {
+        Random random = new Random(1);
+        List<SensorValue> values = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            double x = 4.0 + 2.0 * random.nextDouble();
+            double y = 51.5 + 1.5 * random.nextDouble();
+            values.add(new SensorValue("s" + i, x, y, 20.0 * random.nextDouble(), Instant.now()));
+        }
+        SpatialIndex index = new SpatialIndex(values, 0.02);
+
+        int width = 40;
+        int height = 30;
+        float[] field = AirField.calculate(index, 2.0, 4.5, 51.8, 5.5, 52.6, width, height);
+
+        Assert.assertEquals(width * height, field.length);
+        int nan = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double lat = 52.6 - (0.5 + y) * 0.8 / height;
+                double lon = 4.5 + (0.5 + x) * 1.0 / width;
+                float expected = (float) new IdwEstimate(lat, lon, 2.0).collect(index).getValue();
+                Assert.assertEquals(expected, field[y * width + x], 1E-6);
+                nan += Float.isNaN(expected) ? 1 : 0;
+            }
+        }
+        Assert.assertTrue(nan < field.length);
+    }
+
+}
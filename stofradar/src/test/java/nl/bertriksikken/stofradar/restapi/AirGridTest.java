@@ -0,0 +1,127 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.render.InverseDistanceWeightShader;
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+public final class AirGridTest {
+
+    private final InverseDistanceWeightShader shader = new InverseDistanceWeightShader(1.0, 10.0, 52.0, null);
+
+    // the value of the shader over the sensors within the outer radius only
+    private float expected(List<SensorValue> values, double lon, double lat) {
+        List<SensorValue> near = new ArrayList<>();
+        for (SensorValue value : values) {
+            double dx = (value.x - lon) * (40075.0 / 360.0) * Math.cos(Math.toRadians(52.0));
+            double dy = (value.y - lat) * (40075.0 / 360.0);
+            if (Math.sqrt((dx * dx) + (dy * dy)) < 10.0) {
+                near.add(value);
+            }
+        }
+        return near.isEmpty() ? Float.NaN : (float) shader.calculateValue(near, lon, lat);
+    }
+
+    /**
+     * Verifies that the grid has the values of the shader at the pixel centres,
+     * from the north-west, also with the rows calculated in parallel.
+     */
+    @Test
+    public void testCalculate() {
+        List<SensorValue> values = new ArrayList<>();
+        values.add(new SensorValue("a", 5.0, 52.0, 10.0, Instant.now()));
+        values.add(new SensorValue("b", 5.1, 52.1, 20.0, Instant.now()));
+        GridQuery query = new GridQuery(4.0, 51.0, 6.0, 53.0, 20, 10);
+
+        float[] grid = AirGrid.calculate(values, query, 1.0, 10.0, RequestExecutor.direct(), 4);
+        Assert.assertEquals(200, grid.length);
+        // north-west pixel centre is far away from the sensors
+        Assert.assertTrue(Float.isNaN(grid[0]));
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 20; x++) {
+                double lon = 4.0 + (0.5 + x) * 0.1;
+                double lat = 53.0 - (0.5 + y) * 0.2;
+                Assert.assertEquals(expected(values, lon, lat), grid[y * 20 + x], 0.0f);
+            }
+        }
+
+        RequestExecutor executor = new RequestExecutor(Executors.newFixedThreadPool(3), 10);
+        try {
+            Assert.assertArrayEquals(grid, AirGrid.calculate(values, query, 1.0, 10.0, executor, 4), 0.0f);
+        } finally {
+            executor.stop();
+        }
+    }
+
+    /**
+     * Verifies that skipping the pixels far from all sensors skips none that
+     * have a value, also right at the outer radius.
+     */
+    @Test
+    public void testOuterRadius() {
+        List<SensorValue> values = new ArrayList<>();
+        values.add(new SensorValue("a", 5.0, 52.0, 10.0, Instant.now()));
+        GridQuery query = new GridQuery(4.8, 51.8, 5.2, 52.2, 200, 200);
+
+        float[] grid = AirGrid.calculate(values, query, 1.0, 10.0, RequestExecutor.direct(), 1);
+        int count = 0;
+        for (int y = 0; y < 200; y++) {
+            for (int x = 0; x < 200; x++) {
+                double lon = 4.8 + (0.5 + x) * 0.002;
+                double lat = 52.2 - (0.5 + y) * 0.002;
+                float expected = (float) shader.calculateValue(values, lon, lat);
+                Assert.assertEquals(expected, grid[y * 200 + x], 0.0f);
+                count += Float.isNaN(expected) ? 0 : 1;
+            }
+        }
+        // about the area of the outer radius
+        Assert.assertTrue((count > 0) && (count < 200 * 200));
+    }
+
+    /**
+     * Verifies that a sensor beyond the outer radius of a pixel does not count
+     * for its weighted mean.
+     */
+    @Test
+    public void testFarSensor() {
+        List<SensorValue> values = new ArrayList<>();
+        values.add(new SensorValue("a", 5.0, 52.0, 10.0, Instant.now()));
+        values.add(new SensorValue("b", 5.0, 52.15, 100.0, Instant.now()));
+        // 5 km south of a, 21.7 km south of b
+        GridQuery query = new GridQuery(4.999, 51.954, 5.001, 51.956, 1, 1);
+
+        float[] grid = AirGrid.calculate(values, query, 1.0, 10.0, RequestExecutor.direct(), 1);
+        Assert.assertEquals(10.0f, grid[0], 0.0f);
+        Assert.assertTrue(shader.calculateValue(values, 5.0, 51.955) > 10.0);
+    }
+
+    @Test
+    public void testEncode() {
+        GridQuery query = new GridQuery(4.0, 51.0, 6.0, 53.0, 2, 1);
+        byte[] data = AirGrid.encode(query, Instant.ofEpochSecond(0), new float[] { 1.5f, Float.NaN });
+
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int headerLength = buffer.getInt();
+        Assert.assertEquals(0, headerLength % 4);
+        String header = new String(data, 4, headerLength, StandardCharsets.UTF_8).trim();
+        Assert.assertTrue(header.startsWith("{") && header.endsWith("}"));
+        Assert.assertTrue(header.contains("\"width\":2"));
+        Assert.assertTrue(header.contains("\"time\":\"1970-01-01T00:00:00Z\""));
+
+        ((Buffer) buffer).position(4 + headerLength);
+        Assert.assertEquals(8, buffer.remaining());
+        Assert.assertEquals(1.5f, buffer.getFloat(), 0.0f);
+        Assert.assertTrue(Float.isNaN(buffer.getFloat()));
+    }
+
+}
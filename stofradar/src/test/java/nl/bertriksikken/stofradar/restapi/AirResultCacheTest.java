@@ -0,0 +1,104 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+
+public final class AirResultCacheTest {
+
+    private final AtomicInteger calculations = new AtomicInteger();
+    private final SnapshotHolder holder = new SnapshotHolder();
+
+    private SensorSnapshot publish(SnapshotHolder snapshotHolder, long seconds) {
+        return snapshotHolder.publish(Instant.ofEpochSecond(seconds), Collections.emptyList(), FilterResult.EMPTY,
+                FilterResult.EMPTY);
+    }
+
+    private double calculate(double latitude, double longitude) {
+        calculations.incrementAndGet();
+        return latitude + longitude;
+    }
+
+    /**
+     * Verifies that locations in the same cell share one calculation, for the
+     * centre of the cell.
+     */
+    @Test
+    public void testSameCell() {
+        AirResultCache cache = new AirResultCache(100, 100);
+        SensorSnapshot snapshot = publish(holder, 1000);
+        double first = cache.get(snapshot, 52.00001, 5.00001, this::calculate);
+        double second = cache.get(snapshot, 52.00002, 5.00002, this::calculate);
+        Assert.assertEquals(first, second, 0.0);
+        Assert.assertEquals(1, calculations.get());
+        Assert.assertEquals(1, cache.size());
+
+        // a location 1 km away is in another cell
+        cache.get(snapshot, 52.01, 5.0, this::calculate);
+        Assert.assertEquals(2, calculations.get());
+    }
+
+    /**
+     * Verifies that a newer generation empties the cache, and that an older one
+     * is calculated but not cached.
+     */
+    @Test
+    public void testGeneration() {
+        AirResultCache cache = new AirResultCache(100, 100);
+        SensorSnapshot first = publish(holder, 1000);
+        SensorSnapshot second = publish(holder, 1000);
+        cache.get(first, 52.0, 5.0, this::calculate);
+        cache.get(second, 52.0, 5.0, this::calculate);
+        Assert.assertEquals(2, calculations.get());
+        Assert.assertEquals(1, cache.size());
+
+        cache.get(first, 52.1, 5.0, this::calculate);
+        Assert.assertEquals(3, calculations.get());
+        Assert.assertEquals(1, cache.size());
+        cache.get(second, 52.0, 5.0, this::calculate);
+        Assert.assertEquals(3, calculations.get());
+    }
+
+    /**
+     * Verifies that the cache keeps working after a restart of the pipeline,
+     * when the generation starts over at a lower number.
+     */
+    @Test
+    public void testRestart() {
+        AirResultCache cache = new AirResultCache(100, 100);
+        publish(holder, 1000);
+        cache.get(publish(holder, 1300), 52.0, 5.0, this::calculate);
+
+        SensorSnapshot restarted = publish(new SnapshotHolder(), 1600);
+        cache.get(restarted, 52.0, 5.0, this::calculate);
+        cache.get(restarted, 52.0, 5.0, this::calculate);
+        Assert.assertEquals(2, calculations.get());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testMaxSize() {
+        AirResultCache cache = new AirResultCache(100, 10);
+        for (int i = 0; i < 100; i++) {
+            cache.get(SensorSnapshot.EMPTY, 52.0 + i * 0.01, 5.0, this::calculate);
+        }
+        Assert.assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        AirResultCache cache = new AirResultCache(0, 100);
+        Assert.assertEquals(57.00001, cache.get(SensorSnapshot.EMPTY, 52.00001, 5.0, this::calculate), 1E-9);
+        cache.get(SensorSnapshot.EMPTY, 52.00001, 5.0, this::calculate);
+        Assert.assertEquals(2, calculations.get());
+        Assert.assertEquals(0, cache.size());
+    }
+
+}
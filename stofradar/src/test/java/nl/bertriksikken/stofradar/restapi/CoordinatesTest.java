@@ -0,0 +1,18 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class CoordinatesTest {
+
+    @Test
+    public void testIsValid() {
+        Assert.assertTrue(Coordinates.isValid(52.0, 5.0));
+        Assert.assertTrue(Coordinates.isValid(-90.0, 180.0));
+        Assert.assertFalse(Coordinates.isValid(Double.POSITIVE_INFINITY, 5.0));
+        Assert.assertFalse(Coordinates.isValid(4.3E7, 5.0));
+        Assert.assertFalse(Coordinates.isValid(52.0, Double.NaN));
+        Assert.assertFalse(Coordinates.isValid(52.0, -180.1));
+    }
+
+}
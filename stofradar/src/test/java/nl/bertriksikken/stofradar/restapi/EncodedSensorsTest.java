@@ -0,0 +1,91 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.restapi.EncodedSensors.Format;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+
+public final class EncodedSensorsTest {
+
+    private final SnapshotHolder holder = new SnapshotHolder();
+
+    private SensorSnapshot publish() {
+        List<SensorValue> values = Arrays.asList(new SensorValue("a", 5.0, 52.0, 10.0, Instant.now()));
+        holder.publish(Instant.now(), values, FilterResult.EMPTY, FilterResult.EMPTY);
+        return holder.get();
+    }
+
+    @Test
+    public void testNegotiate() {
+        Assert.assertEquals(Format.JSON, Format.negotiate(null));
+        Assert.assertEquals(Format.JSON, Format.negotiate("*/*"));
+        Assert.assertEquals(Format.NDJSON, Format.negotiate("application/x-ndjson"));
+        Assert.assertEquals(Format.SMILE, Format.negotiate("application/json;q=0.5, application/x-jackson-smile"));
+        Assert.assertEquals(Format.JSON, Format.negotiate("text/html, application/json;q=0.9, */*;q=0.8"));
+        Assert.assertNull(Format.negotiate("text/html"));
+    }
+
+    /**
+     * Verifies that a format is encoded once per generation.
+     */
+    @Test
+    public void testCachedPerGeneration() throws IOException {
+        EncodedSensors encoded = new EncodedSensors();
+        SensorSnapshot first = publish();
+        byte[] json = encoded.get(first, Format.JSON, false);
+        Assert.assertSame(json, encoded.get(first, Format.JSON, false));
+        Assert.assertNotSame(json, encoded.get(first, Format.NDJSON, false));
+
+        SensorSnapshot second = publish();
+        Assert.assertNotSame(json, encoded.get(second, Format.JSON, false));
+        // an older generation is encoded, but does not replace the newer one
+        byte[] newer = encoded.get(second, Format.JSON, false);
+        encoded.get(first, Format.JSON, false);
+        Assert.assertSame(newer, encoded.get(second, Format.JSON, false));
+    }
+
+    /**
+     * Verifies that encodings are still cached after a restart of the pipeline,
+     * when the generation starts over.
+     */
+    @Test
+    public void testRestart() throws IOException {
+        EncodedSensors encoded = new EncodedSensors();
+        publish();
+        encoded.get(publish(), Format.JSON, false);
+
+        SnapshotHolder restartedHolder = new SnapshotHolder();
+        List<SensorValue> values = Arrays.asList(new SensorValue("a", 5.0, 52.0, 10.0, Instant.now()));
+        SensorSnapshot restarted = restartedHolder.publish(Instant.now().plusSeconds(300), values,
+                FilterResult.EMPTY, FilterResult.EMPTY);
+        byte[] json = encoded.get(restarted, Format.JSON, false);
+        Assert.assertSame(json, encoded.get(restarted, Format.JSON, false));
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        EncodedSensors encoded = new EncodedSensors();
+        SensorSnapshot snapshot = publish();
+        byte[] plain = encoded.get(snapshot, Format.JSON, false);
+        byte[] gzip = encoded.get(snapshot, Format.JSON, true);
+        Assert.assertSame(gzip, encoded.get(snapshot, Format.JSON, true));
+        try (InputStream stream = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            Assert.assertArrayEquals(plain, ByteStreams.toByteArray(stream));
+        }
+    }
+
+}
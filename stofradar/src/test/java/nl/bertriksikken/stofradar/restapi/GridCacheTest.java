@@ -0,0 +1,55 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+
+public final class GridCacheTest {
+
+    private static final GridQuery QUERY = new GridQuery(3.3, 50.7, 7.3, 53.6, 40, 30);
+
+    private final AtomicInteger calculations = new AtomicInteger();
+
+    private byte[] calculate() {
+        calculations.incrementAndGet();
+        return new byte[1];
+    }
+
+    private static SensorSnapshot publish(SnapshotHolder holder, long seconds) {
+        return holder.publish(Instant.ofEpochSecond(seconds), Collections.emptyList(), FilterResult.EMPTY,
+                FilterResult.EMPTY);
+    }
+
+    /**
+     * Verifies that a newer snapshot empties the cache, also after a restart of
+     * the pipeline when the generation starts over, and that an older one is
+     * calculated but not cached.
+     */
+    @Test
+    public void testSnapshots() {
+        GridCache cache = new GridCache(10);
+        SnapshotHolder holder = new SnapshotHolder();
+        SensorSnapshot first = publish(holder, 1000);
+        SensorSnapshot second = publish(holder, 1300);
+        cache.get(second, QUERY, this::calculate);
+        cache.get(second, QUERY, this::calculate);
+        Assert.assertEquals(1, calculations.get());
+        cache.get(first, QUERY, this::calculate);
+        Assert.assertEquals(2, calculations.get());
+        Assert.assertEquals(1, cache.size());
+
+        SensorSnapshot restarted = publish(new SnapshotHolder(), 1600);
+        cache.get(restarted, QUERY, this::calculate);
+        cache.get(restarted, QUERY, this::calculate);
+        Assert.assertEquals(3, calculations.get());
+        Assert.assertEquals(1, cache.size());
+    }
+
+}
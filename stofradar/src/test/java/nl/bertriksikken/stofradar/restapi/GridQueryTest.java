@@ -0,0 +1,39 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class GridQueryTest {
+
+    @Test
+    public void testParse() {
+        GridQuery query = GridQuery.parse("3.3, 50.7,7.3,53.6", 400, 300, 120000);
+        Assert.assertEquals(new GridQuery(3.3, 50.7, 7.3, 53.6, 400, 300), query);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyPixels() {
+        GridQuery.parse("3.3,50.7,7.3,53.6", 400, 301, 120000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptySize() {
+        GridQuery.parse("3.3,50.7,7.3,53.6", 0, 300, 120000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvertedBbox() {
+        GridQuery.parse("7.3,50.7,3.3,53.6", 400, 300, 120000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBbox() {
+        GridQuery.parse("3.3,50.7,7.3", 400, 300, 120000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNaN() {
+        GridQuery.parse("3.3,NaN,7.3,53.6", 400, 300, 120000);
+    }
+
+}
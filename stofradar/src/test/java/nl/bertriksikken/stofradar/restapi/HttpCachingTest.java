@@ -0,0 +1,38 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import javax.ws.rs.core.EntityTag;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class HttpCachingTest {
+
+    @Test
+    public void testIfNoneMatch() {
+        EntityTag etag = new EntityTag("1000-3");
+        Assert.assertTrue(HttpCaching.matches("\"1000-3\"", etag));
+        Assert.assertTrue(HttpCaching.matches("W/\"1000-3\"", etag));
+        Assert.assertTrue(HttpCaching.matches("\"1000-2\", \"1000-3\"", etag));
+        Assert.assertTrue(HttpCaching.matches("*", etag));
+        Assert.assertFalse(HttpCaching.matches("\"1000-2\"", etag));
+        Assert.assertFalse(HttpCaching.matches(null, etag));
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        Assert.assertTrue(HttpCaching.acceptsGzip("gzip, deflate, br"));
+        Assert.assertFalse(HttpCaching.acceptsGzip("identity"));
+        Assert.assertFalse(HttpCaching.acceptsGzip(null));
+    }
+
+    @Test
+    public void testUntilNextCycle() {
+        // 10:02:30 with a 5 minute interval: 150 seconds to go
+        Instant now = Instant.parse("2022-01-01T10:02:30Z");
+        Assert.assertEquals(150, HttpCaching.untilNextCycle(now, Duration.ofMinutes(5)).getMaxAge());
+    }
+
+}
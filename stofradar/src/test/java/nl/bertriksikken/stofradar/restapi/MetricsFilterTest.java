@@ -0,0 +1,34 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+
+import javax.ws.rs.container.AsyncResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.metrics.Histogram;
+import nl.bertriksikken.stofradar.metrics.MetricsRegistry;
+
+public final class MetricsFilterTest {
+
+    /**
+     * Verifies that the kept histograms are the ones of the registry, by method
+     * name and status.
+     */
+    @Test
+    public void testHistogram() throws NoSuchMethodException {
+        Method method = AirRestApi.class.getMethod("getAirBatch", String.class, InputStream.class, AsyncResponse.class);
+        Histogram histogram = MetricsFilter.histogram(method, 200);
+        Assert.assertSame(histogram, MetricsFilter.histogram(method, 200));
+        Assert.assertSame(histogram, MetricsRegistry.getDefault().histogram("stofradar_rest_request_duration_seconds",
+                "REST request latency", "endpoint", "getAirBatch", "status", "200"));
+        Assert.assertNotSame(histogram, MetricsFilter.histogram(method, 503));
+
+        Assert.assertSame(MetricsFilter.histogram(null, 404), MetricsRegistry.getDefault().histogram(
+                "stofradar_rest_request_duration_seconds", "REST request latency", "endpoint", "unmatched", "status",
+                "404"));
+    }
+
+}
@@ -0,0 +1,48 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.restapi.AirBatchRequest.Point;
+
+public final class PolylineTest {
+
+    /**
+     * Verifies decoding of the example from the format description.
+     */
+    @Test
+    public void testDecode() {
+        List<Point> points = Polyline.decode("_p~iF~ps|U_ulLnnqC_mqNvxq`@", 10);
+        Assert.assertEquals(3, points.size());
+        Assert.assertEquals(38.5, points.get(0).getLatitude(), 1E-9);
+        Assert.assertEquals(-120.2, points.get(0).getLongitude(), 1E-9);
+        Assert.assertEquals(40.7, points.get(1).getLatitude(), 1E-9);
+        Assert.assertEquals(-120.95, points.get(1).getLongitude(), 1E-9);
+        Assert.assertEquals(43.252, points.get(2).getLatitude(), 1E-9);
+        Assert.assertEquals(-126.453, points.get(2).getLongitude(), 1E-9);
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertTrue(Polyline.decode("", 10).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() {
+        // latitude without longitude
+        Polyline.decode("_p~iF", 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyPoints() {
+        Polyline.decode("_p~iF~ps|U_ulLnnqC_mqNvxq`@", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCharacter() {
+        Polyline.decode("_p~iF ps|U", 10);
+    }
+
+}
@@ -0,0 +1,81 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class RateLimiterTest {
+
+    // the clock stands still
+    private RateLimiter limiter(boolean trustForwardedFor) {
+        return new RateLimiter(new TokenBuckets(2.0, 1, 100, () -> 0L), new TokenBuckets(60.0, 2, 100, () -> 0L),
+                new HashSet<>(Arrays.asList("secret")), trustForwardedFor);
+    }
+
+    private static HttpServletRequest request(String address, String... headers) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            map.put(headers[i], headers[i + 1]);
+        }
+        return (HttpServletRequest) Proxy.newProxyInstance(RateLimiterTest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getRemoteAddr":
+                        return address;
+                    case "getHeader":
+                        return map.get(args[0]);
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Verifies that clients are limited by address, whatever their User-Agent.
+     */
+    @Test
+    public void testByAddress() {
+        RateLimiter limiter = limiter(false);
+        Assert.assertEquals(0, limiter.acquire(request("10.0.0.1", "User-Agent", "one")));
+        Assert.assertEquals(30, limiter.acquire(request("10.0.0.1", "User-Agent", "two")));
+        Assert.assertEquals(0, limiter.acquire(request("10.0.0.2")));
+
+        // X-Forwarded-For is ignored unless trusted
+        Assert.assertEquals(30, limiter.acquire(request("10.0.0.1", "X-Forwarded-For", "192.168.1.1")));
+    }
+
+    @Test
+    public void testForwardedFor() {
+        RateLimiter limiter = limiter(true);
+        HttpServletRequest request = request("10.0.0.1", "X-Forwarded-For", "1.2.3.4, 192.168.1.1");
+        Assert.assertEquals("192.168.1.1", limiter.address(request));
+        Assert.assertEquals("10.0.0.1", limiter.address(request("10.0.0.1")));
+    }
+
+    /**
+     * Verifies that a known API key gets its own limit, and an unknown one is
+     * limited by address.
+     */
+    @Test
+    public void testApiKey() {
+        RateLimiter limiter = limiter(false);
+        Assert.assertEquals(0, limiter.acquire(request("10.0.0.1")));
+        Assert.assertEquals(0, limiter.acquire(request("10.0.0.1", RateLimiter.API_KEY_HEADER, "secret")));
+        Assert.assertEquals(0, limiter.acquire(request("10.0.0.1", RateLimiter.API_KEY_HEADER, "secret")));
+        Assert.assertEquals(1, limiter.acquire(request("10.0.0.1", RateLimiter.API_KEY_HEADER, "secret")));
+        Assert.assertEquals(30, limiter.acquire(request("10.0.0.1", RateLimiter.API_KEY_HEADER, "guess")));
+
+        // a request given back is returned to the bucket it was taken from
+        limiter.release(request("10.0.0.1", RateLimiter.API_KEY_HEADER, "secret"));
+        Assert.assertEquals(0, limiter.acquire(request("10.0.0.1", RateLimiter.API_KEY_HEADER, "secret")));
+        Assert.assertEquals(30, limiter.acquire(request("10.0.0.1")));
+    }
+
+}
@@ -0,0 +1,112 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class RequestExecutorTest {
+
+    private final List<Object> resumed = new CopyOnWriteArrayList<>();
+
+    // records what it is resumed with
+    private AsyncResponse response() {
+        return (AsyncResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { AsyncResponse.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("resume")) {
+                        resumed.add(args[0]);
+                    }
+                    return Boolean.TRUE;
+                });
+    }
+
+    @Test
+    public void testDirect() {
+        RequestExecutor executor = RequestExecutor.direct();
+        executor.submit(response(), () -> "result");
+        IllegalStateException exception = new IllegalStateException();
+        executor.submit(response(), () -> {
+            throw exception;
+        });
+        Assert.assertEquals("result", resumed.get(0));
+        Assert.assertSame(exception, resumed.get(1));
+    }
+
+    /**
+     * Verifies that a request beyond the maximum is answered right away with
+     * 503, and the others once computed.
+     */
+    @Test
+    public void testMaxRequests() throws InterruptedException {
+        RequestExecutor executor = new RequestExecutor(Executors.newSingleThreadExecutor(), 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            Assert.assertTrue(executor.submit(response(), () -> latch.await(10, TimeUnit.SECONDS)));
+            Assert.assertFalse(executor.submit(response(), () -> "too many"));
+            Assert.assertEquals(1, resumed.size());
+            Assert.assertTrue(resumed.get(0) instanceof ServiceUnavailableException);
+
+            latch.countDown();
+            long deadline = System.currentTimeMillis() + 10000;
+            while ((resumed.size() < 2) && (System.currentTimeMillis() < deadline)) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(Boolean.TRUE, resumed.get(1));
+
+            // the permit is released again
+            Assert.assertTrue(executor.submit(response(), () -> "next"));
+            deadline = System.currentTimeMillis() + 10000;
+            while ((resumed.size() < 3) && (System.currentTimeMillis() < deadline)) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals("next", resumed.get(2));
+        } finally {
+            executor.stop();
+        }
+    }
+
+    /**
+     * Verifies that every index is run once, with helpers on the pool, and that
+     * the exception of a task is thrown again.
+     */
+    @Test
+    public void testForEach() {
+        RequestExecutor executor = new RequestExecutor(Executors.newFixedThreadPool(2), 10);
+        try {
+            AtomicIntegerArray runs = new AtomicIntegerArray(1000);
+            executor.forEach(1000, 3, i -> runs.incrementAndGet(i));
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertEquals(1, runs.get(i));
+            }
+
+            IllegalStateException exception = new IllegalStateException();
+            try {
+                executor.forEach(100, 3, i -> {
+                    if (i == 50) {
+                        throw exception;
+                    }
+                });
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                Assert.assertSame(exception, e);
+            }
+        } finally {
+            executor.stop();
+        }
+
+        // without a pool, all on the calling thread
+        AtomicIntegerArray runs = new AtomicIntegerArray(10);
+        RequestExecutor.direct().forEach(10, 4, i -> runs.incrementAndGet(i));
+        Assert.assertEquals(1, runs.get(9));
+    }
+
+}
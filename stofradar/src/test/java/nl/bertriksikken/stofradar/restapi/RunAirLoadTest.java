@@ -0,0 +1,208 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+
+import nl.bertriksikken.stofradar.config.ParticulateMapperConfig;
+import nl.bertriksikken.stofradar.config.RenderJob;
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.render.ColorMapper;
+import nl.bertriksikken.stofradar.render.ColorPoint;
+import nl.bertriksikken.stofradar.render.Interpolator;
+import nl.bertriksikken.stofradar.render.InverseDistanceWeightShader;
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.render.SyntheticSensorValues;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+import nl.bertriksikken.stofradar.stats.TDigest;
+import nl.bertriksikken.stofradar.trace.TraceConfig;
+import nl.bertriksikken.stofradar.trace.TraceRecorder;
+
+/**
+ * Load test of the /air endpoint, with the REST server running in-process on
+ * synthetic sensor data.<br>
+ * <br>
+ * Usage: RunAirLoadTest [sensors] [clients] [seconds]<br>
+ * The rate limit is set so high that it never denies a request.
+ * The load runs twice, without and with a map being rendered continuously in
+ * the background, and reports throughput, latency percentiles and the
+ * allocation rate of the server threads.
+ */
+public final class RunAirLoadTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RunAirLoadTest.class);
+
+    // the jetty request threads and the threads that compute the responses
+    private static final String[] SERVER_THREAD_PREFIXES = { "air-rest", "air-compute" };
+
+    private final RenderJob job = new ParticulateMapperConfig().getRenderJobs().get(0);
+    private final List<SensorValue> values;
+    private final int clients;
+    private final Duration duration;
+    private URL baseUrl;
+
+    RunAirLoadTest(int sensors, int clients, Duration duration) {
+        this.values = SyntheticSensorValues.generate(job, sensors, Instant.now());
+        this.clients = clients;
+        this.duration = duration;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sensors = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+        int clients = (args.length > 1) ? Integer.parseInt(args[1]) : 32;
+        int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 30;
+        // keep a connection alive per client, before the first connection reads it
+        System.setProperty("http.maxConnections", Integer.toString(clients));
+        RunAirLoadTest loadTest = new RunAirLoadTest(sensors, clients, Duration.ofSeconds(seconds));
+        loadTest.run();
+    }
+
+    void run() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        SnapshotHolder snapshotHolder = new SnapshotHolder();
+        snapshotHolder.publish(Instant.now(), values, FilterResult.EMPTY, FilterResult.EMPTY);
+        AirRestApiConfig config = new AirRestApiConfig(port, "", 1.0, "", 1E12, 1000);
+        AirRestServer server = new AirRestServer(config, Duration.ofMinutes(5), snapshotHolder, null, null,
+                new TraceRecorder(new TraceConfig()));
+        server.start();
+        baseUrl = new URL("http://localhost:" + port);
+        LOG.info("Server on port {} with {} sensors, {} clients", port, values.size(), clients);
+        try {
+            runPhase("warm-up", Duration.ofSeconds(5), false);
+            runPhase("idle", duration, false);
+            runPhase("render", duration, true);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void runPhase(String name, Duration phaseDuration, boolean render) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong errors = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(clients + 1);
+        try {
+            Future<Integer> renders = executor.submit(() -> render ? renderLoop(running) : 0);
+            List<Future<TDigest>> results = new ArrayList<>();
+            long allocatedBefore = serverAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < clients; i++) {
+                int client = i;
+                results.add(executor.submit(() -> clientLoop(client, running, errors)));
+            }
+            Thread.sleep(phaseDuration.toMillis());
+            running.set(false);
+
+            TDigest latency = new TDigest(100);
+            for (Future<TDigest> result : results) {
+                latency.add(result.get());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long allocated = serverAllocatedBytes() - allocatedBefore;
+            long requests = latency.size();
+            LOG.info(String.format(Locale.ROOT,
+                    "%-8s %8d requests, %6d errors, %8.1f req/s, p50 %6.2f ms, p99 %6.2f ms, p999 %6.2f ms, "
+                            + "%6.1f MB/s, %6.1f kB/req, %d renders",
+                    name, requests, errors.get(), requests / seconds, latency.quantile(0.5), latency.quantile(0.99),
+                    latency.quantile(0.999), allocated / seconds / 1e6, allocated / 1e3 / Math.max(1, requests),
+                    renders.get()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // sends requests back-to-back, returns the latencies in ms
+    private TDigest clientLoop(int client, AtomicBoolean running, AtomicLong errors) {
+        Random random = new Random(SyntheticSensorValues.SEED + client);
+        TDigest latency = new TDigest(100);
+        long count = 0;
+        while (running.get()) {
+            double lat = job.getSouth() + random.nextDouble() * (job.getNorth() - job.getSouth());
+            double lon = job.getWest() + random.nextDouble() * (job.getEast() - job.getWest());
+            long start = System.nanoTime();
+            try {
+                URL url = new URL(baseUrl, String.format(Locale.ROOT, "/air/%.4f/%.4f", lat, lon));
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setRequestProperty("User-Agent", "load-" + client + "-" + count++);
+                int status = connection.getResponseCode();
+                // read the whole response, so the connection is kept alive for the next request
+                try (InputStream stream = (status < 400) ? connection.getInputStream()
+                        : connection.getErrorStream()) {
+                    if (stream != null) {
+                        ByteStreams.exhaust(stream);
+                    }
+                }
+                if (status != 200) {
+                    errors.incrementAndGet();
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            }
+            latency.add((System.nanoTime() - start) / 1e6);
+        }
+        return latency;
+    }
+
+    // renders the map over and over, like the pipeline does
+    private int renderLoop(AtomicBoolean running) {
+        ColorMapper mapper = new ColorMapper(new ColorPoint[] { new ColorPoint(0, new int[] { 0, 100, 255, 0x00 }),
+                new ColorPoint(140, new int[] { 164, 58, 217, 0xC0 }) });
+        int width = 613;
+        int height = 724;
+        Interpolator interpolator = new Interpolator(job, new InverseDistanceWeightShader(job, mapper), width, height);
+        WritableRaster raster = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB).getRaster();
+        int count = 0;
+        while (running.get()) {
+            interpolator.interpolate(values, raster);
+            count++;
+        }
+        return count;
+    }
+
+    // bytes allocated so far by the server threads that are alive
+    private static long serverAllocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long total = 0;
+        for (ThreadInfo info : bean.getThreadInfo(bean.getAllThreadIds())) {
+            if ((info != null) && isServerThread(info.getThreadName())) {
+                total += Math.max(0, bean.getThreadAllocatedBytes(info.getThreadId()));
+            }
+        }
+        return total;
+    }
+
+    private static boolean isServerThread(String name) {
+        for (String prefix : SERVER_THREAD_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,157 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.render.SensorValue;
+import nl.bertriksikken.stofradar.snapshot.SensorSnapshot;
+import nl.bertriksikken.stofradar.snapshot.SnapshotHolder;
+
+public final class SubscriptionsTest {
+
+    private final SnapshotHolder holder = new SnapshotHolder();
+    private final Subscriptions subscriptions = new Subscriptions(1.0, 1.0, 3);
+
+    private static class Subscriber implements Subscriptions.ISubscriber {
+        final List<Double> values = new ArrayList<>();
+        private boolean closed = false;
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void push(SensorSnapshot snapshot, double value) {
+            values.add(value);
+        }
+
+        @Override
+        public void keepAlive() {
+            // nothing to keep alive
+        }
+    }
+
+    @After
+    public void after() {
+        subscriptions.stop();
+    }
+
+    private SensorSnapshot publish(double value) {
+        List<SensorValue> values = new ArrayList<>();
+        values.add(new SensorValue("a", 5.0, 52.0, value, Instant.now()));
+        return holder.publish(Instant.now(), values, FilterResult.EMPTY, FilterResult.EMPTY);
+    }
+
+    /**
+     * Verifies that a subscriber gets the current value, then only changes
+     * beyond the threshold.
+     */
+    @Test
+    public void testPushOnChange() throws IOException {
+        Subscriber near = new Subscriber();
+        Subscriber far = new Subscriber();
+        Assert.assertTrue(subscriptions.subscribe(publish(10.0), 52.001, 5.001, near));
+        Assert.assertTrue(subscriptions.subscribe(holder.get(), 53.0, 5.0, far));
+        Assert.assertEquals(1, near.values.size());
+        Assert.assertEquals(10.0, near.values.get(0), 1E-9);
+        Assert.assertTrue(Double.isNaN(far.values.get(0)));
+
+        // below the threshold
+        subscriptions.evaluate(publish(10.5));
+        Assert.assertEquals(1, near.values.size());
+
+        // beyond the threshold, compared to the last pushed value
+        subscriptions.evaluate(publish(11.0));
+        Assert.assertEquals(2, near.values.size());
+        Assert.assertEquals(11.0, near.values.get(1), 1E-9);
+
+        // the same generation is evaluated only once
+        subscriptions.evaluate(publish(20.0));
+        subscriptions.evaluate(holder.get());
+        Assert.assertEquals(3, near.values.size());
+
+        // no value before and after is no change
+        Assert.assertEquals(1, far.values.size());
+    }
+
+    /**
+     * Verifies that a subscriber that fails to push does not stop the others.
+     */
+    @Test
+    public void testPushFails() throws IOException {
+        Subscriber failing = new Subscriber() {
+            @Override
+            public void push(SensorSnapshot snapshot, double value) {
+                super.push(snapshot, value);
+                if (values.size() > 1) {
+                    throw new IllegalStateException("closed");
+                }
+            }
+        };
+        Subscriber other = new Subscriber();
+        Assert.assertTrue(subscriptions.subscribe(publish(10.0), 52.0, 5.0, failing));
+        Assert.assertTrue(subscriptions.subscribe(holder.get(), 52.0, 5.0, other));
+
+        subscriptions.evaluate(publish(20.0));
+        subscriptions.evaluate(publish(30.0));
+        Assert.assertEquals(3, other.values.size());
+    }
+
+    /**
+     * Verifies that pushes go on after a restart of the pipeline, when the
+     * generation starts over.
+     */
+    @Test
+    public void testRestart() throws IOException {
+        Subscriber subscriber = new Subscriber();
+        Assert.assertTrue(subscriptions.subscribe(publish(10.0), 52.0, 5.0, subscriber));
+        subscriptions.evaluate(publish(20.0));
+
+        List<SensorValue> values = new ArrayList<>();
+        values.add(new SensorValue("a", 5.0, 52.0, 30.0, Instant.now()));
+        SensorSnapshot restarted = new SnapshotHolder().publish(Instant.now().plusSeconds(300), values,
+                FilterResult.EMPTY, FilterResult.EMPTY);
+        subscriptions.evaluate(restarted);
+        Assert.assertEquals(3, subscriber.values.size());
+        Assert.assertEquals(30.0, subscriber.values.get(2), 1E-9);
+    }
+
+    /**
+     * Verifies that a new subscriber gets the value of the newest evaluated
+     * snapshot, when it subscribes with an older one.
+     */
+    @Test
+    public void testSubscribeWithStaleSnapshot() throws IOException {
+        SensorSnapshot stale = publish(10.0);
+        subscriptions.evaluate(publish(20.0));
+
+        Subscriber subscriber = new Subscriber();
+        Assert.assertTrue(subscriptions.subscribe(stale, 52.0, 5.0, subscriber));
+        Assert.assertEquals(1, subscriber.values.size());
+        Assert.assertEquals(20.0, subscriber.values.get(0), 1E-9);
+    }
+
+    @Test
+    public void testMaxSubscriptions() throws IOException {
+        SensorSnapshot snapshot = publish(10.0);
+        Subscriber first = new Subscriber();
+        Assert.assertTrue(subscriptions.subscribe(snapshot, 52.0, 5.0, first));
+        Assert.assertTrue(subscriptions.subscribe(snapshot, 52.0, 5.0, new Subscriber()));
+        Assert.assertTrue(subscriptions.subscribe(snapshot, 52.0, 5.0, new Subscriber()));
+        Assert.assertFalse(subscriptions.subscribe(snapshot, 52.0, 5.0, new Subscriber()));
+
+        // a closed subscriber makes room
+        first.closed = true;
+        Assert.assertTrue(subscriptions.subscribe(snapshot, 52.0, 5.0, new Subscriber()));
+        Assert.assertEquals(3, subscriptions.size());
+    }
+
+}
@@ -0,0 +1,107 @@
+package nl.bertriksikken.stofradar.restapi;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class TokenBucketsTest {
+
+    private long now = 0;
+
+    /**
+     * Verifies that a key can make a burst of requests, and then has to wait for
+     * the bucket to refill.
+     */
+    @Test
+    public void testBurstAndRefill() {
+        // one token every 30 s
+        TokenBuckets buckets = new TokenBuckets(2.0, 3, 100, () -> now);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, buckets.tryAcquire("a"));
+        }
+        long wait = buckets.tryAcquire("a");
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(30), wait);
+
+        // other keys have a bucket of their own
+        Assert.assertEquals(0, buckets.tryAcquire("b"));
+
+        now += TimeUnit.SECONDS.toNanos(10);
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(20), buckets.tryAcquire("a"));
+        now += TimeUnit.SECONDS.toNanos(20);
+        Assert.assertEquals(0, buckets.tryAcquire("a"));
+        Assert.assertTrue(buckets.tryAcquire("a") > 0);
+
+        // a bucket does not fill beyond the burst
+        now += TimeUnit.HOURS.toNanos(1);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, buckets.tryAcquire("a"));
+        }
+        Assert.assertTrue(buckets.tryAcquire("a") > 0);
+    }
+
+    /**
+     * Verifies that the number of keys is bounded, and that the least recently
+     * used are dropped.
+     */
+    @Test
+    public void testMaxKeys() {
+        TokenBuckets buckets = new TokenBuckets(2.0, 1, 160, () -> now);
+        for (int i = 0; i < 10000; i++) {
+            buckets.tryAcquire("key" + i);
+        }
+        Assert.assertTrue(buckets.size() <= 160);
+
+        // a recently used key is still limited
+        Assert.assertTrue(buckets.tryAcquire("key9999") > 0);
+        // one that was dropped starts again with a full bucket
+        Assert.assertEquals(0, buckets.tryAcquire("key0"));
+    }
+
+    /**
+     * Verifies that buckets for a fixed set of keys are never dropped.
+     */
+    @Test
+    public void testForKeys() {
+        TokenBuckets buckets = TokenBuckets.forKeys(2.0, 1, 20);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(0, buckets.tryAcquire("key" + i));
+        }
+        for (int i = 0; i < 20; i++) {
+            Assert.assertTrue(buckets.tryAcquire("key" + i) > 0);
+        }
+    }
+
+    /**
+     * Verifies that a released token can be taken again, but not beyond the
+     * burst.
+     */
+    @Test
+    public void testRelease() {
+        TokenBuckets buckets = new TokenBuckets(2.0, 2, 100, () -> now);
+        Assert.assertEquals(0, buckets.tryAcquire("a"));
+        Assert.assertEquals(0, buckets.tryAcquire("a"));
+        Assert.assertTrue(buckets.tryAcquire("a") > 0);
+
+        buckets.release("a");
+        Assert.assertEquals(0, buckets.tryAcquire("a"));
+        Assert.assertTrue(buckets.tryAcquire("a") > 0);
+
+        buckets.release("a");
+        buckets.release("a");
+        buckets.release("a");
+        Assert.assertEquals(0, buckets.tryAcquire("a"));
+        Assert.assertEquals(0, buckets.tryAcquire("a"));
+        Assert.assertTrue(buckets.tryAcquire("a") > 0);
+
+        // no bucket for an unknown key
+        buckets.release("b");
+        Assert.assertEquals(1, buckets.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroRate() {
+        new TokenBuckets(0.0, 1, 100);
+    }
+
+}
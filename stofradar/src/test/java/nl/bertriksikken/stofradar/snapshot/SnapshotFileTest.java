@@ -0,0 +1,71 @@
+package nl.bertriksikken.stofradar.snapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+public final class SnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static SensorSnapshot snapshot(long generation) {
+        Instant time = Instant.ofEpochSecond(1000);
+        SensorValue first = new SensorValue("sc_1234", 4.5, 52.1, 12.5, time);
+        SensorValue second = new SensorValue("mjs_é", 5.5, 51.9, 7.25, time.plusSeconds(60));
+        return new SensorSnapshot(generation, Instant.ofEpochSecond(2000), Arrays.asList(first, second),
+                FilterResult.of(Arrays.asList(second)), FilterResult.EMPTY);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path path = tempFolder.getRoot().toPath().resolve("dir").resolve("snapshot.srsf");
+        SnapshotFile.write(path, snapshot(42));
+        SensorSnapshot snapshot = SnapshotFile.read(path);
+
+        Assert.assertEquals(42, snapshot.getGeneration());
+        Assert.assertEquals(Instant.ofEpochSecond(2000), snapshot.getTimestamp());
+        List<SensorValue> values = snapshot.getPmValues();
+        Assert.assertEquals(2, values.size());
+        Assert.assertEquals("sc_1234", values.get(0).id);
+        Assert.assertEquals(4.5, values.get(0).x, 0.0);
+        Assert.assertEquals(52.1, values.get(0).y, 0.0);
+        Assert.assertEquals(12.5, values.get(0).value, 0.0);
+        Assert.assertEquals(Instant.ofEpochSecond(1060), values.get(1).time);
+
+        List<SensorValue> filtered = snapshot.getFilteredPmValues();
+        Assert.assertEquals(1, filtered.size());
+        Assert.assertEquals("mjs_é", filtered.get(0).id);
+
+        // the index is built when reading
+        Assert.assertEquals(2, snapshot.getPmIndex().size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        Path path = tempFolder.getRoot().toPath().resolve("snapshot.srsf");
+        SnapshotFile.write(path, snapshot(1));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+        SnapshotFile.read(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotASnapshot() throws IOException {
+        Path path = tempFolder.getRoot().toPath().resolve("other.srsf");
+        Files.write(path, new byte[64]);
+        SnapshotFile.read(path);
+    }
+
+}
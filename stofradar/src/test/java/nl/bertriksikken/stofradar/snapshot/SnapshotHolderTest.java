@@ -0,0 +1,61 @@
+package nl.bertriksikken.stofradar.snapshot;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.filter.FilterPipeline;
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+public final class SnapshotHolderTest {
+
+    @Test
+    public void testGeneration() {
+        SnapshotHolder holder = new SnapshotHolder();
+        Assert.assertEquals(0, holder.get().getGeneration());
+
+        List<SensorValue> values = new ArrayList<>();
+        values.add(new SensorValue("1", 5.0, 52.0, 10.0, Instant.now()));
+        SensorSnapshot first = holder.publish(Instant.now(), values, filter(values), FilterResult.EMPTY);
+        Assert.assertEquals(1, first.getGeneration());
+        Assert.assertSame(first, holder.get());
+
+        // later changes to the source list must not leak into the snapshot
+        values.clear();
+        Assert.assertEquals(1, first.getPmValues().size());
+
+        SensorSnapshot second = holder.publish(Instant.now(), values, filter(values), FilterResult.EMPTY);
+        Assert.assertEquals(2, second.getGeneration());
+        Assert.assertEquals(1, first.getPmValues().size());
+    }
+
+    @Test
+    public void testListener() {
+        SnapshotHolder holder = new SnapshotHolder();
+        List<SensorSnapshot> published = new ArrayList<>();
+        holder.addListener(published::add);
+        SensorSnapshot snapshot = holder.publish(Instant.now(), Collections.emptyList(), FilterResult.EMPTY,
+                FilterResult.EMPTY);
+        Assert.assertEquals(Collections.singletonList(snapshot), published);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        SnapshotHolder holder = new SnapshotHolder();
+        SensorValue value = new SensorValue("1", 5.0, 52.0, 10.0, Instant.now());
+        SensorSnapshot snapshot = holder.publish(Instant.now(), Arrays.asList(value), filter(Arrays.asList(value)),
+                FilterResult.EMPTY);
+        snapshot.getFilteredPmValues().clear();
+    }
+
+    private static FilterResult filter(List<SensorValue> values) {
+        return new FilterPipeline(Collections.emptyList()).apply(values);
+    }
+
+}
@@ -0,0 +1,89 @@
+package nl.bertriksikken.stofradar.snapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.bertriksikken.stofradar.field.FieldFile;
+import nl.bertriksikken.stofradar.field.FieldStore;
+import nl.bertriksikken.stofradar.filter.FilterResult;
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+public final class SnapshotWatcherTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static SensorSnapshot snapshot(long generation, Instant timestamp) {
+        List<SensorValue> values = Collections
+                .singletonList(new SensorValue("1", 5.0, 52.0, 10.0, Instant.ofEpochSecond(1000)));
+        return new SensorSnapshot(generation, timestamp, values, FilterResult.of(values), FilterResult.EMPTY);
+    }
+
+    // sets the modification time, so the change does not depend on its resolution
+    private static void write(Path path, SensorSnapshot snapshot, long seconds) throws IOException {
+        SnapshotFile.write(path, snapshot);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(seconds * 1000));
+    }
+
+    @Test
+    public void testPoll() throws IOException {
+        Path snapshotFile = tempFolder.getRoot().toPath().resolve("snapshot.srsf");
+        Path fieldFile = tempFolder.getRoot().toPath().resolve("pm2_5.field");
+        SnapshotHolder holder = new SnapshotHolder();
+        List<SensorSnapshot> published = new CopyOnWriteArrayList<>();
+        holder.addListener(published::add);
+        FieldStore fieldStore = new FieldStore();
+        SnapshotWatcher watcher = new SnapshotWatcher(snapshotFile, Collections.singletonMap("nl", fieldFile),
+                holder, fieldStore, Duration.ofSeconds(1));
+
+        // nothing written yet
+        watcher.poll();
+        Assert.assertEquals(0, holder.get().getGeneration());
+
+        write(snapshotFile, snapshot(5, Instant.ofEpochSecond(2000)), 1);
+        FieldFile.write(fieldFile, 4.0, 51.0, 6.0, 53.0, 1, 1, 5, Instant.ofEpochSecond(2000), new float[] { 3 });
+        watcher.poll();
+        Assert.assertEquals(5, holder.get().getGeneration());
+        Assert.assertEquals(1, holder.get().getFilteredPmValues().size());
+        Assert.assertNotNull(fieldStore.find(5, Instant.ofEpochSecond(2000), 52.0, 5.0));
+
+        // unchanged, not published again
+        watcher.poll();
+        Assert.assertEquals(1, published.size());
+
+        // the pipeline restarted, its generations start over
+        SensorSnapshot before = holder.get();
+        write(snapshotFile, snapshot(1, Instant.ofEpochSecond(3000)), 2);
+        watcher.poll();
+        Assert.assertEquals(1, holder.get().getGeneration());
+        Assert.assertEquals(Instant.ofEpochSecond(3000), holder.get().getTimestamp());
+        Assert.assertEquals(2, published.size());
+        // consumers of snapshots still see it as the newer one
+        Assert.assertTrue(holder.get().isNewerThan(before));
+        Assert.assertFalse(before.isNewerThan(holder.get()));
+        // the field of the old pipeline is not taken for the new generation
+        Assert.assertNull(fieldStore.find(1, Instant.ofEpochSecond(3000), 52.0, 5.0));
+    }
+
+    @Test
+    public void testIsNewerThan() {
+        SensorSnapshot first = snapshot(5, Instant.ofEpochSecond(2000));
+        Assert.assertTrue(snapshot(6, Instant.ofEpochSecond(2000)).isNewerThan(first));
+        Assert.assertTrue(snapshot(1, Instant.ofEpochSecond(2001)).isNewerThan(first));
+        Assert.assertFalse(snapshot(5, Instant.ofEpochSecond(2000)).isNewerThan(first));
+        Assert.assertFalse(snapshot(9, Instant.ofEpochSecond(1999)).isNewerThan(first));
+    }
+
+}
@@ -0,0 +1,75 @@
+package nl.bertriksikken.stofradar.spatial;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.bertriksikken.stofradar.render.SensorValue;
+
+public final class SpatialIndexTest {
+
+    @Test
+    public void testSameAsFullScan() {
+        // around the prime meridian, to cover negative cells
+        Random random = new Random(1);
+        List<SensorValue> values = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double x = -1.0 + 2.0 * random.nextDouble();
+            double y = 51.0 + 2.0 * random.nextDouble();
+            values.add(new SensorValue("s" + i, x, y, 1.0, Instant.now()));
+        }
+        SpatialIndex index = new SpatialIndex(values, 0.02);
+        Assert.assertEquals(values.size(), index.size());
+
+        for (int i = 0; i < 100; i++) {
+            double west = -1.0 + 2.0 * random.nextDouble();
+            double south = 51.0 + 2.0 * random.nextDouble();
+            double east = west + 0.1 * random.nextDouble();
+            double north = south + 0.1 * random.nextDouble();
+
+            Set<SensorValue> found = new HashSet<>();
+            index.forEachNear(west, south, east, north, found::add);
+            for (SensorValue value : values) {
+                boolean inside = (value.x >= west) && (value.x <= east) && (value.y >= south) && (value.y <= north);
+                if (inside) {
+                    Assert.assertTrue(found.contains(value));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidLocation() {
+        List<SensorValue> values = Arrays.asList(new SensorValue("a", 5.0, 52.0, 1.0, Instant.now()),
+                new SensorValue("b", Double.NaN, 52.0, 1.0, Instant.now()));
+        SpatialIndex index = new SpatialIndex(values, 0.02);
+        Assert.assertEquals(1, index.size());
+
+        List<SensorValue> found = new ArrayList<>();
+        index.forEachNear(4.99, 51.99, 5.01, 52.01, found::add);
+        Assert.assertEquals(1, found.size());
+    }
+
+    /**
+     * A box beyond the largest cell used to never end the loop over its rows.
+     */
+    @Test(timeout = 5000)
+    public void testHugeLocation() {
+        List<SensorValue> values = Arrays.asList(new SensorValue("a", 5.0, 52.0, 1.0, Instant.now()));
+        SpatialIndex index = new SpatialIndex(values, 0.02);
+
+        List<SensorValue> found = new ArrayList<>();
+        index.forEachNear(4.9, Double.POSITIVE_INFINITY, 5.1, Double.POSITIVE_INFINITY, found::add);
+        index.forEachNear(4.9, 1E9, 5.1, 1E9 + 1, found::add);
+        index.forEachNear(Double.NEGATIVE_INFINITY, 51.9, Double.POSITIVE_INFINITY, 52.1, found::add);
+        Assert.assertEquals(1, found.size());
+    }
+
+}
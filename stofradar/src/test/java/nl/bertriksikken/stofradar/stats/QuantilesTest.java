@@ -0,0 +1,72 @@
+package nl.bertriksikken.stofradar.stats;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class QuantilesTest {
+
+    @Test
+    public void testSelectMatchesSort() {
+        Random random = new Random(1);
+        for (int n = 1; n < 300; n += 7) {
+            double[] values = new double[n];
+            for (int i = 0; i < n; i++) {
+                // include plenty of duplicates
+                values[i] = random.nextInt(20);
+            }
+            double[] sorted = values.clone();
+            Arrays.sort(sorted);
+            for (int k = 0; k < n; k++) {
+                Assert.assertEquals(sorted[k], Quantiles.select(values.clone(), k), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testSelectSortedInput() {
+        // already sorted and reversed input are classic worst cases for naive quickselect
+        double[] values = new double[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        Assert.assertEquals(1234.0, Quantiles.select(values.clone(), 1234), 0.0);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = -i;
+        }
+        Assert.assertEquals(-9999.0 + 1234, Quantiles.select(values, 1234), 0.0);
+    }
+
+    @Test
+    public void testMedian() {
+        Assert.assertTrue(Double.isNaN(Quantiles.median(new double[0])));
+        Assert.assertEquals(3.0, Quantiles.median(new double[] { 5, 3, 1 }), 0.0);
+        Assert.assertEquals(2.5, Quantiles.median(new double[] { 4, 1, 3, 2 }), 0.0);
+    }
+
+    @Test
+    public void testMedianOfRange() {
+        double[] values = new double[] { 9, 5, 3, 1, 0, 9 };
+        Assert.assertTrue(Double.isNaN(Quantiles.median(values, 2, 2)));
+        Assert.assertEquals(3.0, Quantiles.median(values, 1, 4), 0.0);
+        Assert.assertEquals(2.0, Quantiles.median(values, 1, 5), 0.0);
+        // the elements outside the range are left alone
+        Assert.assertEquals(9.0, values[0], 0.0);
+        Assert.assertEquals(9.0, values[5], 0.0);
+    }
+
+    @Test
+    public void testQuantile() {
+        double[] values = new double[101];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 - i;
+        }
+        Assert.assertEquals(0.0, Quantiles.quantile(values.clone(), 0.0), 0.0);
+        Assert.assertEquals(99.0, Quantiles.quantile(values.clone(), 0.99), 1e-9);
+        Assert.assertEquals(99.5, Quantiles.quantile(values.clone(), 0.995), 1e-9);
+        Assert.assertEquals(100.0, Quantiles.quantile(values.clone(), 1.0), 0.0);
+    }
+
+}
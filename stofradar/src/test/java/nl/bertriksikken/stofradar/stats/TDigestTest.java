@@ -0,0 +1,50 @@
+package nl.bertriksikken.stofradar.stats;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class TDigestTest {
+
+    @Test
+    public void testUniform() {
+        TDigest digest = new TDigest(100);
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            digest.add(random.nextDouble());
+        }
+        Assert.assertEquals(100000, digest.size());
+        Assert.assertEquals(0.5, digest.quantile(0.5), 0.01);
+        Assert.assertEquals(0.99, digest.quantile(0.99), 0.002);
+        Assert.assertEquals(0.999, digest.quantile(0.999), 0.0005);
+        Assert.assertEquals(0.001, digest.quantile(0.001), 0.0005);
+    }
+
+    @Test
+    public void testMerge() {
+        Random random = new Random(2);
+        TDigest total = new TDigest(100);
+        for (int d = 0; d < 10; d++) {
+            TDigest part = new TDigest(100);
+            for (int i = 0; i < 10000; i++) {
+                part.add(random.nextGaussian());
+            }
+            total.add(part);
+        }
+        Assert.assertEquals(100000, total.size());
+        Assert.assertEquals(0.0, total.quantile(0.5), 0.02);
+        // 99th percentile of the standard normal distribution
+        Assert.assertEquals(2.326, total.quantile(0.99), 0.05);
+    }
+
+    @Test
+    public void testEmptyAndSingle() {
+        TDigest digest = new TDigest(100);
+        Assert.assertTrue(Double.isNaN(digest.quantile(0.5)));
+        digest.add(42.0);
+        Assert.assertEquals(42.0, digest.quantile(0.01), 0.0);
+        Assert.assertEquals(42.0, digest.quantile(0.99), 0.0);
+    }
+
+}
@@ -0,0 +1,55 @@
+package nl.bertriksikken.stofradar.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class TraceRecorderTest {
+
+    @Test
+    public void testRingBuffer() throws IOException {
+        File dir = Files.createTempDirectory("traces").toFile();
+        TraceRecorder recorder = new TraceRecorder(new TraceConfig(2, 3600, dir.getPath()));
+        for (int i = 0; i < 3; i++) {
+            CycleTrace trace = new CycleTrace("cycle " + i);
+            trace.span("filter", "all").sensorsIn(10).sensorsOut(8).end();
+            recorder.record(trace);
+        }
+        List<CycleTrace> traces = recorder.getTraces();
+        Assert.assertEquals(2, traces.size());
+        Assert.assertEquals("cycle 2", traces.get(0).getName());
+        Assert.assertEquals("cycle 1", traces.get(1).getName());
+        Assert.assertFalse(Double.isNaN(traces.get(0).getDurationMs()));
+        // nothing was slow
+        Assert.assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testNoRing() throws IOException {
+        File dir = Files.createTempDirectory("traces").toFile();
+        TraceRecorder recorder = new TraceRecorder(new TraceConfig(0, 3600, dir.getPath()));
+        recorder.record(new CycleTrace("cycle"));
+        Assert.assertTrue(recorder.getTraces().isEmpty());
+    }
+
+    @Test
+    public void testSlowCycleDump() throws IOException, InterruptedException {
+        File dir = Files.createTempDirectory("traces").toFile();
+        TraceRecorder recorder = new TraceRecorder(new TraceConfig(10, 0, dir.getPath()));
+        CycleTrace trace = new CycleTrace("cycle");
+        Span span = trace.span("interpolate", "job").sensorsIn(5).pixels(100);
+        Thread.sleep(5);
+        span.end();
+        recorder.record(trace);
+
+        Assert.assertTrue(span.getDurationMs() >= 5.0);
+        File[] files = dir.listFiles();
+        Assert.assertEquals(1, files.length);
+        Assert.assertTrue(files[0].getName().endsWith(".json"));
+    }
+
+}
@@ -0,0 +1,47 @@
+package nl.bertriksikken.stofradar.render;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.bertriksikken.stofradar.config.RenderJob;
+
+/**
+ * Synthetic sensor values for the tests, load tests and benchmarks.<br>
+ * <br>
+ * All values are generated from a fixed seed, so runs are comparable.
+ */
+public final class SyntheticSensorValues {
+
+    public static final long SEED = 20180603L;
+
+    private SyntheticSensorValues() {
+        // utility class
+    }
+
+    /**
+     * Generates sensor values spread over a slightly larger area than the job.
+     *
+     * @param job   the render job
+     * @param count the number of values
+     * @param now   the time of the most recent measurement
+     * @return the sensor values
+     */
+    public static List<SensorValue> generate(RenderJob job, int count, Instant now) {
+        Random random = new Random(SEED);
+        double width = job.getEast() - job.getWest();
+        double height = job.getNorth() - job.getSouth();
+        List<SensorValue> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double x = job.getWest() + (1.2 * random.nextDouble() - 0.1) * width;
+            double y = job.getSouth() + (1.2 * random.nextDouble() - 0.1) * height;
+            // mostly moderate values, with a tail of outliers
+            double value = Math.abs(10.0 + 8.0 * random.nextGaussian()) * (random.nextInt(100) == 0 ? 20 : 1);
+            Instant time = now.minusSeconds(random.nextInt(7200));
+            values.add(new SensorValue("sensor-" + i, x, y, value, time));
+        }
+        return values;
+    }
+
+}